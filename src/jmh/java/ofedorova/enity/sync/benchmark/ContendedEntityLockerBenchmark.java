@@ -0,0 +1,84 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.AbstractEntityLockerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ContendedEntityLockerBenchmark.
+ *
+ * All benchmark threads lock the same entity, exclusively or in shared mode.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ContendedEntityLockerBenchmark {
+
+    private static final Long KEY = 1L;
+
+    @Param({EntityLockers.CUSTOM, EntityLockers.REENTRANT, EntityLockers.STRIPED})
+    public String engine;
+
+    @Param({"100"})
+    public long tryLockTimeoutMicros;
+
+    private AbstractEntityLockerImpl<Long> locker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locker = EntityLockers.create(engine);
+    }
+
+    @Benchmark
+    public void singleKeyLockUnlock() {
+        locker.lock(KEY);
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            locker.unlock(KEY);
+        }
+    }
+
+    @Benchmark
+    public void singleKeyLockSharedUnlock() {
+        locker.lockShared(KEY);
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            locker.unlockShared(KEY);
+        }
+    }
+
+    @Benchmark
+    public boolean singleKeyTryLockWithTimeout() throws InterruptedException {
+        boolean isLocked = locker.tryLock(KEY, tryLockTimeoutMicros, TimeUnit.MICROSECONDS);
+        if (isLocked) {
+            try {
+                Blackhole.consumeCPU(16);
+            } finally {
+                locker.unlock(KEY);
+            }
+        }
+        return isLocked;
+    }
+}
@@ -0,0 +1,83 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.impl.locks.CustomLock;
+import ofedorova.enity.sync.impl.locks.ExtendedReentrantLock;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
+import ofedorova.enity.sync.impl.locks.WaitMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CriticalSectionBenchmark.
+ *
+ * Waiting of {@link CustomLock} with {@link WaitMode#PARK} and {@link WaitMode#ADAPTIVE_SPIN} against
+ * {@link ExtendedReentrantLock} on one hot lock, for critical sections from a few nanoseconds to tens of
+ * microseconds. Every thread also works outside of the lock, so the lock is handed off between running threads.
+ * CPU burnt by spinning can be added with a profiler such as {@code -prof perfnorm}.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CriticalSectionBenchmark {
+
+    private static final String CUSTOM_PARK = "CUSTOM_PARK";
+    private static final String CUSTOM_ADAPTIVE_SPIN = "CUSTOM_ADAPTIVE_SPIN";
+    private static final String REENTRANT = "REENTRANT";
+
+    @Param({CUSTOM_PARK, CUSTOM_ADAPTIVE_SPIN, REENTRANT})
+    public String lockType;
+
+    @Param({"10", "100", "1000", "10000"})
+    public long criticalSectionTokens;
+
+    private EntityLock lock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (lockType) {
+            case CUSTOM_PARK:
+                lock = new CustomLock(FairnessMode.NON_FAIR, FairnessMode.DEFAULT_MAX_BARGES, WaitMode.PARK);
+                break;
+            case CUSTOM_ADAPTIVE_SPIN:
+                lock = new CustomLock(FairnessMode.NON_FAIR, FairnessMode.DEFAULT_MAX_BARGES, WaitMode.ADAPTIVE_SPIN);
+                break;
+            case REENTRANT:
+                lock = new ExtendedReentrantLock();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown lock: " + lockType);
+        }
+    }
+
+    @Benchmark
+    public void lockUnlock() {
+        lock.lock();
+        try {
+            Blackhole.consumeCPU(criticalSectionTokens);
+        } finally {
+            lock.unlock();
+        }
+        Blackhole.consumeCPU(criticalSectionTokens);
+    }
+}
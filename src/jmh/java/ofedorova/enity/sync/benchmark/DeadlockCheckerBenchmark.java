@@ -0,0 +1,193 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.utils.DeadlockCheckerImpl;
+import ofedorova.enity.sync.impl.utils.WaitDieDeadlockChecker;
+import ofedorova.enity.sync.impl.utils.WaitForGraphDeadlockChecker;
+import ofedorova.enity.sync.impl.utils.WoundWaitDeadlockChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * DeadlockCheckerBenchmark.
+ *
+ * Builds a wait chain of {@code graphSize} threads and locks: thread {@code i} holds lock {@code i} and waits
+ * for lock {@code i + 1}, the benchmark thread holds the last lock and tries to lock the first one,
+ * which closes the cycle. The checked lock is found as a deadlock, so the score includes creation of
+ * {@link DeadlockException}. {@code checker} selects {@link DeadlockCheckerImpl} ("traversal"),
+ * {@link WaitForGraphDeadlockChecker} ("waitForGraph"), {@link WaitDieDeadlockChecker} ("waitDie") or
+ * {@link WoundWaitDeadlockChecker} ("woundWait"). The benchmark thread is the youngest one: wait-die aborts it
+ * without looking at the chain, wound-wait lets it wait, both compare only with the owner of the first lock.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeadlockCheckerBenchmark {
+
+    @Param({"2", "8", "32", "128"})
+    public int graphSize;
+
+    @Param({"traversal", "waitForGraph", "waitDie", "woundWait"})
+    public String checker;
+
+    private DeadlockChecker deadlockChecker;
+    private EntityLockInfo firstLock;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        deadlockChecker = createChecker(checker);
+
+        Thread[] threads = new Thread[graphSize];
+        BenchmarkLock[] locks = new BenchmarkLock[graphSize];
+        EntityLockInfo[] lockInfos = new EntityLockInfo[graphSize];
+        for (int i = 0; i < graphSize; i++) {
+            locks[i] = new BenchmarkLock();
+            lockInfos[i] = new EntityLockInfo<>((long) i, locks[i]);
+        }
+
+        for (int i = 0; i < graphSize - 1; i++) {
+            EntityLockInfo holds = lockInfos[i];
+            EntityLockInfo waits = lockInfos[i + 1];
+            threads[i] = new Thread(() -> {
+                deadlockChecker.beforeLock(holds, false);
+                deadlockChecker.beforeLock(waits, false);
+                deadlockChecker.beforeWait(waits, false);
+            });
+            threads[i].start();
+            threads[i].join();
+        }
+        threads[graphSize - 1] = Thread.currentThread();
+        deadlockChecker.beforeLock(lockInfos[graphSize - 1], false);
+
+        for (int i = 0; i < graphSize; i++) {
+            locks[i].owner = threads[i];
+            if (i > 0) {
+                locks[i].queued.add(threads[i - 1]);
+            }
+        }
+        firstLock = lockInfos[0];
+    }
+
+    private static DeadlockChecker createChecker(String checker) {
+        switch (checker) {
+            case "traversal":
+                return new DeadlockCheckerImpl();
+            case "waitDie":
+                return new WaitDieDeadlockChecker();
+            case "woundWait":
+                return new WoundWaitDeadlockChecker();
+            default:
+                return new WaitForGraphDeadlockChecker();
+        }
+    }
+
+    @Benchmark
+    public Object checkDeadlock() {
+        try {
+            deadlockChecker.beforeLock(firstLock, true);
+            deadlockChecker.beforeWait(firstLock, true);
+            deadlockChecker.afterWait(firstLock);
+            deadlockChecker.afterUnlock(firstLock);
+            return firstLock;
+        } catch (DeadlockException e) {
+            return e;
+        }
+    }
+
+    private static class BenchmarkLock implements EntityLock {
+
+        private final Set<Thread> queued = new HashSet<>();
+        private Thread owner;
+
+        @Override
+        public Thread getOwner() {
+            return owner;
+        }
+
+        @Override
+        public Set<Thread> getSharedOwners() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Set<Thread> getOwnerAndQueuedThreads() {
+            Set<Thread> result = new HashSet<>(queued);
+            result.add(owner);
+            return result;
+        }
+
+        @Override
+        public void lock() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void lockInterruptibly() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLock() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit timeUnit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unlock() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void lockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared(long timeout, TimeUnit timeUnit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unlockShared() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
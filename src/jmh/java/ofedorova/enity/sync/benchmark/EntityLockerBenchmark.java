@@ -0,0 +1,135 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.AbstractEntityLockerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EntityLockerBenchmark.
+ *
+ * Single entity operations without contention between benchmark threads: every thread works with its own keys,
+ * except {@link #zipfianLockUnlock} which shares popular keys between threads.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntityLockerBenchmark {
+
+    private static final AtomicLong THREAD_KEYS = new AtomicLong(1_000_000);
+    private static final int REENTRANT_ACQUISITIONS = 16;
+
+    @Param({EntityLockers.CUSTOM, EntityLockers.REENTRANT, EntityLockers.STRIPED})
+    public String engine;
+
+    @Param({"4"})
+    public int countGlobalLockEscalation;
+
+    private AbstractEntityLockerImpl<Long> locker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locker = EntityLockers.create(engine, countGlobalLockEscalation);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+        Long[] keys;
+        List<Long> keyList;
+        ZipfianKeys zipfianKeys;
+
+        @Setup(Level.Trial)
+        public void setUp(EntityLockerBenchmark benchmark) {
+            keys = new Long[benchmark.countGlobalLockEscalation];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = THREAD_KEYS.getAndIncrement();
+            }
+            keyList = Arrays.asList(keys);
+            zipfianKeys = new ZipfianKeys(10_000, 0.99, 1 << 16, keys[0]);
+        }
+    }
+
+    @Benchmark
+    public void uncontendedLockUnlock(ThreadKeys threadKeys) {
+        Long key = threadKeys.keys[0];
+        locker.lock(key);
+        locker.unlock(key);
+    }
+
+    @Benchmark
+    public void reentrantLockUnlock(ThreadKeys threadKeys) {
+        Long key = threadKeys.keys[0];
+        locker.lock(key);
+        locker.lock(key);
+        locker.unlock(key);
+        locker.unlock(key);
+    }
+
+    /**
+     * Holds an entity and locks it again in a loop, the typical pattern of nested calls working with the same
+     * entities: every acquisition and release after the first one is reentrant.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REENTRANT_ACQUISITIONS)
+    public void reentrantHeavyLockUnlock(ThreadKeys threadKeys) {
+        Long key = threadKeys.keys[0];
+        locker.lock(key);
+        for (int i = 0; i < REENTRANT_ACQUISITIONS; i++) {
+            locker.lock(key);
+            locker.unlock(key);
+        }
+        locker.unlock(key);
+    }
+
+    @Benchmark
+    public void zipfianLockUnlock(ThreadKeys threadKeys) {
+        Long key = threadKeys.zipfianKeys.next();
+        locker.lock(key);
+        locker.unlock(key);
+    }
+
+    /**
+     * Locks {@code countGlobalLockEscalation} entities, so the last lock escalates to the global lock.
+     */
+    @Benchmark
+    public void escalationLockUnlock(ThreadKeys threadKeys) {
+        Long[] keys = threadKeys.keys;
+        for (Long key : keys) {
+            locker.lock(key);
+        }
+        for (int i = keys.length - 1; i >= 0; i--) {
+            locker.unlock(keys[i]);
+        }
+    }
+
+    /**
+     * Locks the same entities as {@link #escalationLockUnlock} in one ordered batch, the global lock escalation
+     * is decided once for the batch.
+     */
+    @Benchmark
+    public void batchLockUnlock(ThreadKeys threadKeys) {
+        List<Long> keys = threadKeys.keyList;
+        locker.lockAll(keys);
+        locker.unlockAll(keys);
+    }
+}
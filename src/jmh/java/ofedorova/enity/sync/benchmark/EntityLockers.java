@@ -0,0 +1,45 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.AbstractEntityLockerImpl;
+import ofedorova.enity.sync.impl.lockers.EntityCustomLockImpl;
+import ofedorova.enity.sync.impl.lockers.EntityExtendedReentrantLockImpl;
+import ofedorova.enity.sync.impl.lockers.EntityStripedLockImpl;
+import ofedorova.enity.sync.impl.lockers.GlobalLockMode;
+
+/**
+ * EntityLockers.
+ *
+ * Creates lockers by the name of the engine used in {@code @Param} of benchmarks.
+ *
+ * @author Olga_Fedorova
+ */
+final class EntityLockers {
+
+    static final String CUSTOM = "custom";
+    static final String REENTRANT = "reentrant";
+    static final String STRIPED = "striped";
+
+    private EntityLockers() {
+    }
+
+    static AbstractEntityLockerImpl<Long> create(String engine) {
+        return create(engine, 4);
+    }
+
+    static AbstractEntityLockerImpl<Long> create(String engine, int countGlobalLockEscalation) {
+        return create(engine, countGlobalLockEscalation, GlobalLockMode.SHARED_READERS);
+    }
+
+    static AbstractEntityLockerImpl<Long> create(String engine, int countGlobalLockEscalation, GlobalLockMode globalLockMode) {
+        switch (engine) {
+            case CUSTOM:
+                return new EntityCustomLockImpl<>(countGlobalLockEscalation, globalLockMode);
+            case REENTRANT:
+                return new EntityExtendedReentrantLockImpl<>(countGlobalLockEscalation, globalLockMode);
+            case STRIPED:
+                return new EntityStripedLockImpl<>(EntityStripedLockImpl.DEFAULT_STRIPES, countGlobalLockEscalation, globalLockMode);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+}
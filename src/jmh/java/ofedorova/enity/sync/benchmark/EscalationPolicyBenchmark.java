@@ -0,0 +1,105 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.EscalationPolicy;
+import ofedorova.enity.sync.impl.lockers.EntityCustomLockImpl;
+import ofedorova.enity.sync.impl.lockers.EntityLockerBuilder;
+import ofedorova.enity.sync.impl.utils.AdaptiveEscalationPolicy;
+import ofedorova.enity.sync.impl.utils.ThresholdEscalationPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EscalationPolicyBenchmark.
+ *
+ * Simulation of a mix of small and large transactions: every operation locks {@code SMALL} or, with probability
+ * {@code largePercent}, {@code LARGE} entities one by one, then releases them. Threads lock disjoint entities, so
+ * every wait is caused by escalation to the global lock. {@code THRESHOLD_4} is the default of lockers,
+ * {@code THRESHOLD_128} never escalates these transactions.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EscalationPolicyBenchmark {
+
+    private static final int SMALL = 4;
+    private static final int LARGE = 64;
+    private static final long KEYS_PER_THREAD = 1_000_000;
+    private static final AtomicLong THREAD_KEYS = new AtomicLong();
+
+    @Param({"THRESHOLD_4", "THRESHOLD_128", "ADAPTIVE"})
+    public String policy;
+
+    @Param({"0", "10", "50"})
+    public int largePercent;
+
+    private EntityCustomLockImpl<Long> locker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locker = new EntityLockerBuilder<Long>().escalationPolicy(createPolicy(policy)).buildCustom();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+        long firstKey = THREAD_KEYS.getAndIncrement() * KEYS_PER_THREAD;
+        Long[] keys = new Long[LARGE];
+    }
+
+    @Benchmark
+    public void transaction(ThreadKeys threadKeys) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = random.nextInt(100) < largePercent ? LARGE : SMALL;
+        long key = threadKeys.firstKey + random.nextLong(KEYS_PER_THREAD - 16L * LARGE);
+        Long[] keys = threadKeys.keys;
+        for (int i = 0; i < size; i++) {
+            key += 1 + random.nextInt(16);
+            keys[i] = key;
+        }
+        int locked = 0;
+        try {
+            for (; locked < size; locked++) {
+                locker.lock(keys[locked]);
+                Blackhole.consumeCPU(16);
+            }
+        } finally {
+            while (locked > 0) {
+                locker.unlock(keys[--locked]);
+            }
+        }
+    }
+
+    private static EscalationPolicy createPolicy(String policy) {
+        switch (policy) {
+            case "THRESHOLD_4":
+                return new ThresholdEscalationPolicy(4);
+            case "THRESHOLD_128":
+                return new ThresholdEscalationPolicy(128);
+            case "ADAPTIVE":
+                return new AdaptiveEscalationPolicy();
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.AbstractEntityLockerImpl;
+import ofedorova.enity.sync.impl.lockers.GlobalLockMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GlobalLockBenchmark.
+ *
+ * One thread takes the global lock while the other threads lock their own entities.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class GlobalLockBenchmark {
+
+    private static final AtomicLong THREAD_KEYS = new AtomicLong();
+
+    @Param({EntityLockers.CUSTOM, EntityLockers.REENTRANT, EntityLockers.STRIPED})
+    public String engine;
+
+    @Param({"SHARED_READERS", "DISTRIBUTED_READERS"})
+    public GlobalLockMode globalLockMode;
+
+    private AbstractEntityLockerImpl<Long> locker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locker = EntityLockers.create(engine, 4, globalLockMode);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        Long key = THREAD_KEYS.getAndIncrement();
+    }
+
+    @Benchmark
+    @Group("globalUnderReaders")
+    @GroupThreads(3)
+    public void reader(ThreadKey threadKey) {
+        locker.lock(threadKey.key);
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            locker.unlock(threadKey.key);
+        }
+    }
+
+    @Benchmark
+    @Group("globalUnderReaders")
+    @GroupThreads(1)
+    public void global() {
+        locker.globalLock();
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            locker.globalUnlock();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.AbstractEntityLockerImpl;
+import ofedorova.enity.sync.impl.lockers.GlobalLockMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GlobalLockReadersBenchmark.
+ *
+ * Every thread locks and unlocks its own entity, so threads contend only on the read side of the global lock.
+ * Benchmarks differ by count of threads only, together they give the scaling curve of the read side for
+ * every {@link GlobalLockMode}.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GlobalLockReadersBenchmark {
+
+    private static final AtomicLong THREAD_KEYS = new AtomicLong();
+
+    @Param({"SHARED_READERS", "DISTRIBUTED_READERS"})
+    public GlobalLockMode globalLockMode;
+
+    private AbstractEntityLockerImpl<Long> locker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locker = EntityLockers.create(EntityLockers.REENTRANT, 4, globalLockMode);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        Long key = THREAD_KEYS.getAndIncrement();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01(ThreadKey threadKey) {
+        lockUnlock(threadKey);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void threads02(ThreadKey threadKey) {
+        lockUnlock(threadKey);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads04(ThreadKey threadKey) {
+        lockUnlock(threadKey);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void threads08(ThreadKey threadKey) {
+        lockUnlock(threadKey);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void threads16(ThreadKey threadKey) {
+        lockUnlock(threadKey);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void threadsMax(ThreadKey threadKey) {
+        lockUnlock(threadKey);
+    }
+
+    private void lockUnlock(ThreadKey threadKey) {
+        locker.lock(threadKey.key);
+        locker.unlock(threadKey.key);
+    }
+}
@@ -0,0 +1,67 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.impl.locks.CustomLock;
+import ofedorova.enity.sync.impl.locks.ExtendedReentrantLock;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LockHandoffBenchmark.
+ *
+ * Compares {@link CustomLock} with {@link ExtendedReentrantLock} on one hot lock. The number of threads is set
+ * with {@code -t}, e.g. {@code -t 1}, {@code -t 8}, {@code -t 64}, {@code -t 256}; CPU usage can be added with
+ * a profiler such as {@code -prof perfnorm}.
+ *
+ * Every {@link FairnessMode} is measured in both modes: throughput, and sample time of {@code lockUnlock}, which is
+ * dominated by the wait for the lock, so its {@code p0.99} percentile shows the tail of wait times.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LockHandoffBenchmark {
+
+    @Param({EntityLockers.CUSTOM, EntityLockers.REENTRANT})
+    public String engine;
+
+    @Param({"NON_FAIR", "FAIR", "BOUNDED_BARGING"})
+    public FairnessMode fairness;
+
+    private EntityLock lock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lock = EntityLockers.CUSTOM.equals(engine) ? new CustomLock(fairness) : new ExtendedReentrantLock(fairness);
+    }
+
+    @Benchmark
+    public void lockUnlock() {
+        lock.lock();
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
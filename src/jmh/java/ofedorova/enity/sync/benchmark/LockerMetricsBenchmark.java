@@ -0,0 +1,84 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.AbstractEntityLockerImpl;
+import ofedorova.enity.sync.impl.metrics.LockerMetricsImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LockerMetricsBenchmark.
+ *
+ * Overhead of {@link LockerMetricsImpl}: the same operations with metrics disabled and enabled. The uncontended
+ * operation pays for hold time measurement, the contended one also for wait time histogram and top-K of entities.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockerMetricsBenchmark {
+
+    private static final AtomicLong THREAD_KEYS = new AtomicLong(1_000_000);
+    private static final Long HOT_KEY = 1L;
+
+    @Param({EntityLockers.CUSTOM, EntityLockers.REENTRANT, EntityLockers.STRIPED})
+    public String engine;
+
+    @Param({"disabled", "enabled"})
+    public String metrics;
+
+    private AbstractEntityLockerImpl<Long> locker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locker = EntityLockers.create(engine);
+        if ("enabled".equals(metrics)) {
+            locker.setLockerMetrics(new LockerMetricsImpl());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        Long key;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            key = THREAD_KEYS.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void uncontendedLockUnlock(ThreadKey threadKey) {
+        locker.lock(threadKey.key);
+        locker.unlock(threadKey.key);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contendedLockUnlock() {
+        locker.lock(HOT_KEY);
+        try {
+            Blackhole.consumeCPU(16);
+        } finally {
+            locker.unlock(HOT_KEY);
+        }
+    }
+}
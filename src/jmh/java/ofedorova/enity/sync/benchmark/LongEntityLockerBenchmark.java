@@ -0,0 +1,136 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.EntityExtendedReentrantLockImpl;
+import ofedorova.enity.sync.impl.lockers.LongEntityLockerImpl;
+import ofedorova.enity.sync.impl.lockers.MappedEntityLockerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LongEntityLockerBenchmark.
+ *
+ * {@link LongEntityLockerImpl} against {@link EntityExtendedReentrantLockImpl} with {@code Long} IDs. Callers hold
+ * primitive IDs, so the boxed locker pays for boxing of IDs outside of the {@code Long} cache, as it would in
+ * the application. {@link MappedEntityLockerImpl} shows the cost of a lock table shared by processes.
+ * Run with {@code -t} to share zipfian keys between threads.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LongEntityLockerBenchmark {
+
+    private static final AtomicLong THREAD_KEYS = new AtomicLong(1_000_000);
+
+    private LongEntityLockerImpl longLocker;
+    private EntityExtendedReentrantLockImpl<Long> boxedLocker;
+    private Path mappedFile;
+    private MappedEntityLockerImpl mappedLocker;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        longLocker = new LongEntityLockerImpl();
+        boxedLocker = new EntityExtendedReentrantLockImpl<>();
+        mappedFile = Files.createTempFile("locks", ".bin");
+        Files.delete(mappedFile);
+        mappedLocker = new MappedEntityLockerImpl(mappedFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mappedLocker.close();
+        Files.deleteIfExists(mappedFile);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+        long key;
+        ZipfianKeys zipfianKeys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            key = THREAD_KEYS.getAndIncrement();
+            zipfianKeys = new ZipfianKeys(10_000, 0.99, 1 << 16, key);
+        }
+    }
+
+    @Benchmark
+    public void longUncontendedLockUnlock(ThreadKeys threadKeys) {
+        long key = threadKeys.key;
+        longLocker.lock(key);
+        longLocker.unlock(key);
+    }
+
+    @Benchmark
+    public void boxedUncontendedLockUnlock(ThreadKeys threadKeys) {
+        long key = threadKeys.key;
+        boxedLocker.lock(key);
+        boxedLocker.unlock(key);
+    }
+
+    @Benchmark
+    public void mappedUncontendedLockUnlock(ThreadKeys threadKeys) {
+        long key = threadKeys.key;
+        mappedLocker.lock(key);
+        mappedLocker.unlock(key);
+    }
+
+    @Benchmark
+    public void longReentrantLockUnlock(ThreadKeys threadKeys) {
+        long key = threadKeys.key;
+        longLocker.lock(key);
+        longLocker.lock(key);
+        longLocker.unlock(key);
+        longLocker.unlock(key);
+    }
+
+    @Benchmark
+    public void boxedReentrantLockUnlock(ThreadKeys threadKeys) {
+        long key = threadKeys.key;
+        boxedLocker.lock(key);
+        boxedLocker.lock(key);
+        boxedLocker.unlock(key);
+        boxedLocker.unlock(key);
+    }
+
+    @Benchmark
+    public void longZipfianLockUnlock(ThreadKeys threadKeys) {
+        long key = threadKeys.zipfianKeys.next();
+        longLocker.lock(key);
+        longLocker.unlock(key);
+    }
+
+    @Benchmark
+    public void boxedZipfianLockUnlock(ThreadKeys threadKeys) {
+        Long key = threadKeys.zipfianKeys.next();
+        boxedLocker.lock(key);
+        boxedLocker.unlock(key);
+    }
+
+    @Benchmark
+    public void mappedZipfianLockUnlock(ThreadKeys threadKeys) {
+        long key = threadKeys.zipfianKeys.next();
+        mappedLocker.lock(key);
+        mappedLocker.unlock(key);
+    }
+}
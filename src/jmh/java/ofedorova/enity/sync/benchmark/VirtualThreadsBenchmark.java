@@ -0,0 +1,82 @@
+package ofedorova.enity.sync.benchmark;
+
+import ofedorova.enity.sync.impl.lockers.AbstractEntityLockerImpl;
+import ofedorova.enity.sync.impl.utils.VirtualThreads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * VirtualThreadsBenchmark.
+ *
+ * Every operation starts {@code tasks} new threads, each thread locks one of {@code keys} entities, waits
+ * {@code holdMicros} holding it, like a call to a remote service, and unlocks it. Platform and virtual threads are
+ * compared for the same engine. Virtual threads need Java 21, on older runtimes the {@code virtual} trial fails
+ * in the setup.
+ *
+ * @author Olga_Fedorova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadsBenchmark {
+
+    @Param({EntityLockers.CUSTOM, EntityLockers.REENTRANT, EntityLockers.STRIPED})
+    public String engine;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000"})
+    public int tasks;
+
+    @Param({"64"})
+    public int keys;
+
+    @Param({"100"})
+    public long holdMicros;
+
+    private AbstractEntityLockerImpl<Long> locker;
+    private ThreadFactory threadFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locker = EntityLockers.create(engine);
+        threadFactory = "virtual".equals(threads) ? VirtualThreads.factory("benchmark-") : Thread::new;
+    }
+
+    @Benchmark
+    public void lockUnlockInNewThreads() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            Long key = (long) (i % keys);
+            threadFactory.newThread(() -> {
+                locker.lock(key);
+                try {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdMicros));
+                } finally {
+                    locker.unlock(key);
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+    }
+}
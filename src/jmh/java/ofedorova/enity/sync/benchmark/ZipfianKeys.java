@@ -0,0 +1,40 @@
+package ofedorova.enity.sync.benchmark;
+
+import java.util.Random;
+
+/**
+ * ZipfianKeys.
+ *
+ * Precomputed sequence of keys with zipfian distribution, the key {@code 0} is the most popular one.
+ * Keys are boxed once, so sampling in the benchmark loop costs only an array read.
+ *
+ * @author Olga_Fedorova
+ */
+final class ZipfianKeys {
+
+    private final Long[] keys;
+    private int position;
+
+    ZipfianKeys(int keyCount, double exponent, int length, long seed) {
+        double[] cumulative = new double[keyCount];
+        double sum = 0;
+        for (int i = 0; i < keyCount; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+
+        Random random = new Random(seed);
+        keys = new Long[length];
+        for (int i = 0; i < length; i++) {
+            double value = random.nextDouble() * sum;
+            int index = java.util.Arrays.binarySearch(cumulative, value);
+            keys[i] = (long) (index >= 0 ? index : -index - 1);
+        }
+    }
+
+    Long next() {
+        Long key = keys[position];
+        position = (position + 1) % keys.length;
+        return key;
+    }
+}
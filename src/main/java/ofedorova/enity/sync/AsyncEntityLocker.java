@@ -0,0 +1,21 @@
+package ofedorova.enity.sync;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncEntityLocker.
+ *
+ * Locks entities without blocking the caller: the returned future is completed with {@link LockHandle} when
+ * the entity is locked. {@code tryLockAsync} completes the future exceptionally with
+ * {@link java.util.concurrent.TimeoutException} if the entity is not locked in time.
+ *
+ * @author Olga_Fedorova
+ */
+public interface AsyncEntityLocker<T> {
+
+    CompletableFuture<LockHandle<T>> lockAsync(T entityId);
+
+    CompletableFuture<LockHandle<T>> tryLockAsync(T entityId, long timeout , TimeUnit timeUnit);
+
+}
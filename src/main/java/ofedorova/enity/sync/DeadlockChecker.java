@@ -3,6 +3,13 @@ package ofedorova.enity.sync;
 /**
  * DeadlockChecker.
  *
+ * The locker calls {@link #beforeLock(EntityLockInfo, boolean)} before every acquisition and
+ * {@link #afterUnlock(EntityLockInfo)} after the last release of the lock by the thread.
+ * {@link #beforeWait(EntityLockInfo, boolean)} and {@link #afterWait(EntityLockInfo)} are called only when
+ * the lock is held by another thread and the current thread is about to wait for it. Waits of owners that are not
+ * threads are reported with {@link #beforeAsyncWait(Object, EntityLockInfo)} and
+ * {@link #afterAsyncWait(Object, EntityLockInfo)}.
+ *
  * @author Olga_Fedorova
  */
 public interface DeadlockChecker {
@@ -10,4 +17,50 @@ public interface DeadlockChecker {
     void beforeLock(EntityLockInfo lockInfo, boolean preventDeadlock);
 
     void afterUnlock(EntityLockInfo lockInfo);
+
+    void beforeWait(EntityLockInfo lockInfo, boolean preventDeadlock);
+
+    void afterWait(EntityLockInfo lockInfo);
+
+    /**
+     * Returns true if the checker decides on its own whether every wait without timeout is allowed and can abort
+     * a wait in progress. The locker then asks to prevent deadlocks on every such wait, waits with
+     * {@link EntityLock#lockAbortably} until {@link #isWaitAborted()} returns true and calls
+     * {@link #checkAborted(EntityLockInfo)}. A checker aborts a wait by marking it and unparking the waiting thread
+     * with {@link java.util.concurrent.locks.LockSupport#unpark(Thread)}, the interrupt status of the thread is
+     * not touched.
+     */
+    default boolean abortsWaits() {
+        return false;
+    }
+
+    /**
+     * Returns true if the wait of the current thread is aborted. Called by the waiting thread whenever it wakes up,
+     * so it must be cheap.
+     */
+    default boolean isWaitAborted() {
+        return false;
+    }
+
+    /**
+     * Called when a wait without timeout stops without the lock, because it is aborted or the thread is interrupted.
+     * Throws {@link ofedorova.enity.sync.exception.DeadlockException} if the wait is aborted, otherwise the thread
+     * keeps waiting or gets the interrupt.
+     */
+    default void checkAborted(EntityLockInfo lockInfo) {
+    }
+
+    /**
+     * Called when an owner that is not a thread, e.g. a {@link LockHandle}, is about to wait for the lock. Such
+     * an owner holds no other entity locks while it waits, so its wait cannot close a cycle and is not checked,
+     * the checker only keeps it for the checks of other waits.
+     */
+    default void beforeAsyncWait(Object waiter, EntityLockInfo lockInfo) {
+    }
+
+    /**
+     * Called when the wait of {@link #beforeAsyncWait(Object, EntityLockInfo)} stops, in any thread.
+     */
+    default void afterAsyncWait(Object waiter, EntityLockInfo lockInfo) {
+    }
 }
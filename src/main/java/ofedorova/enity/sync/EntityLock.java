@@ -1,17 +1,147 @@
 package ofedorova.enity.sync;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.function.BooleanSupplier;
 
 /**
  * EntityLock.
  *
+ * Methods of {@link Lock} acquire the lock exclusively, {@code *Shared} methods acquire it in shared mode:
+ * shared holders exclude only exclusive ones.
+ *
  * @author Olga_Fedorova
  */
 public interface EntityLock extends Lock {
 
     Thread getOwner();
 
+    Set<Thread> getSharedOwners();
+
+    /**
+     * Returns true if the thread holds the lock in shared mode. Unlike {@link #getSharedOwners()}, implementations
+     * answer without allocation, so the locker can call it on every release.
+     */
+    default boolean isSharedOwner(Thread thread) {
+        return getSharedOwners().contains(thread);
+    }
+
     Set<Thread> getOwnerAndQueuedThreads();
 
+    /**
+     * Returns count of exclusive holds of the owner or -1 if the lock does not expose holds of other threads.
+     */
+    default int getExclusiveHoldCount() {
+        return -1;
+    }
+
+    /**
+     * Returns count of shared holds of all threads or -1 if the lock does not expose them.
+     */
+    default int getSharedHoldCount() {
+        return -1;
+    }
+
+    void lockShared();
+
+    boolean tryLockShared();
+
+    boolean tryLockShared(long timeout, TimeUnit timeUnit) throws InterruptedException;
+
+    void unlockShared();
+
+    /**
+     * Acquires the lock like {@link #lock()} or {@link #lockShared()}, but gives up when {@code aborted} returns true.
+     * A thread aborting the wait sets the condition and unparks the waiting thread with
+     * {@link java.util.concurrent.locks.LockSupport#unpark(Thread)}, the condition is checked whenever the waiting
+     * thread wakes up, and at least every 16 ms, so it can also follow changes of the owners. The default
+     * implementation waits in timed slices of {@code tryLock}, since a queued thread of
+     * {@link java.util.concurrent.locks.AbstractQueuedSynchronizer} parks again after a foreign unpark.
+     *
+     * @param interruptible if true, throws {@link InterruptedException} when the thread is interrupted, otherwise
+     *                      keeps waiting and restores the interrupt status before it returns
+     * @return false if the wait is aborted
+     */
+    default boolean lockAbortably(boolean shared, boolean interruptible, BooleanSupplier aborted) throws InterruptedException {
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        boolean interrupted = false;
+        long sliceNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        try {
+            while (!aborted.getAsBoolean()) {
+                try {
+                    if (shared ? tryLockShared(sliceNanos, TimeUnit.NANOSECONDS) : tryLock(sliceNanos, TimeUnit.NANOSECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    if (interruptible) {
+                        throw e;
+                    }
+                    interrupted = true;
+                }
+                if (Thread.interrupted()) {
+                    if (interruptible) {
+                        throw new InterruptedException();
+                    }
+                    interrupted = true;
+                }
+                sliceNanos = Math.min(sliceNanos << 1, TimeUnit.MILLISECONDS.toNanos(16));
+            }
+            return false;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Acquires the lock exclusively for an owner that is not a thread, e.g. a {@link LockHandle}, without blocking
+     * the caller. If the lock is not free, the request waits in the queue of the lock together with waiting threads
+     * and is granted by the thread that frees the lock: {@code onLocked} is called in that thread, so it must be
+     * short. Every granted call takes one hold released by {@link #unlockFor(Object)}, {@link #getOwner()} returns
+     * null while such an owner holds the lock.
+     *
+     * @return null if the lock was acquired at once and {@code onLocked} is not called, otherwise the queued request
+     * @throws UnsupportedOperationException if the lock can be held only by threads
+     */
+    default Request lockFor(Object owner, Runnable onLocked) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Releases the hold of an owner acquired with {@link #lockFor(Object, Runnable)}, any thread may call it.
+     *
+     * @throws IllegalMonitorStateException if the owner does not hold the lock
+     * @throws UnsupportedOperationException if the lock can be held only by threads
+     */
+    default void unlockFor(Object owner) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Releases all exclusive holds of the owner on behalf of another thread, e.g. when the lease of the owner expires.
+     * The caller must make sure that the owner does not acquire or release the lock exclusively at the same time.
+     *
+     * @return false if the thread is not the exclusive owner
+     * @throws UnsupportedOperationException if the lock can be released only by its owner
+     */
+    default boolean forceUnlock(Thread owner) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Request of {@link #lockFor(Object, Runnable)} waiting in the queue of the lock.
+     */
+    interface Request {
+
+        /**
+         * Removes the request from the queue.
+         *
+         * @return false if the request has already been granted and {@code onLocked} is called
+         */
+        boolean cancel();
+    }
 }
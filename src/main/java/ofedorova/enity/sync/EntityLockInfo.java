@@ -1,23 +1,109 @@
 package ofedorova.enity.sync;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * EntityLockInfo.
  *
+ * Besides the lock itself, the object counts its references: every pending or granted acquisition of the entity
+ * retains the object, every release of the entity releases it. Object without references can be evicted from
+ * the lock storage, after eviction it cannot be retained anymore.
+ *
+ * {@code sequence} defines the canonical order of locks for acquisition of several entities at once: while a lock is
+ * retained it cannot be replaced, so all threads see the same order of the locks they acquire.
+ *
  * @author Olga_Fedorova
  */
 public class EntityLockInfo<T> {
+
+    private static final int EVICTED = -1;
+
+    private static final AtomicIntegerFieldUpdater<EntityLockInfo> REFERENCES =
+            AtomicIntegerFieldUpdater.newUpdater(EntityLockInfo.class, "references");
+
     private final T entityId;
     private final EntityLock lock;
+    private final long sequence;
+    private volatile int references;
+    private long holdStartNanos;
 
     public EntityLockInfo(T entityId, EntityLock lock) {
+        this(entityId, lock, 0);
+    }
+
+    public EntityLockInfo(T entityId, EntityLock lock, long sequence) {
         this.entityId = entityId;
         this.lock = lock;
+        this.sequence = sequence;
+    }
+
+    public T getEntityId() {
+        return entityId;
     }
 
     public EntityLock getLock() {
         return lock;
     }
 
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the time of the first exclusive acquisition by the current owner or 0 if the hold is not measured,
+     * accessed only by the exclusive owner.
+     */
+    public long getHoldStartNanos() {
+        return holdStartNanos;
+    }
+
+    public void setHoldStartNanos(long holdStartNanos) {
+        this.holdStartNanos = holdStartNanos;
+    }
+
+    /**
+     * Increments count of references if the object was not evicted.
+     *
+     * @return true if the reference was taken, false if the object was already evicted
+     */
+    public boolean retain() {
+        while (true) {
+            int count = references;
+            if (count == EVICTED) {
+                return false;
+            }
+            if (REFERENCES.compareAndSet(this, count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Decrements count of references.
+     *
+     * @return true if there are no references anymore
+     */
+    public boolean release() {
+        return REFERENCES.decrementAndGet(this) == 0;
+    }
+
+    /**
+     * Marks the object as evicted if it has no references.
+     *
+     * @return true if the object was marked as evicted
+     */
+    public boolean evict() {
+        return REFERENCES.compareAndSet(this, 0, EVICTED);
+    }
+
+    /**
+     * Returns true if the object was evicted from the lock storage. An object that was not evicted is the lock
+     * of the entity in the storage.
+     */
+    public boolean isEvicted() {
+        return references == EVICTED;
+    }
+
     @Override
     public String toString() {
         return String.valueOf(entityId);
@@ -1,5 +1,6 @@
 package ofedorova.enity.sync;
 
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -11,10 +12,29 @@ public interface EntityLocker<T> {
 
     void lock(T entityId);
 
+    void lockInterruptibly(T entityId) throws InterruptedException;
+
+    /**
+     * Acquires the lock only if it is free or already held by the current thread, never waits.
+     */
+    boolean tryLock(T entityId);
+
     boolean tryLock(T entityId, long timeout , TimeUnit timeUnit) throws InterruptedException;
 
     void unlock(T entityId);
 
+    void lockShared(T entityId);
+
+    boolean tryLockShared(T entityId, long timeout , TimeUnit timeUnit) throws InterruptedException;
+
+    void unlockShared(T entityId);
+
+    void lockAll(Collection<T> entityIds);
+
+    boolean tryLockAll(Collection<T> entityIds, long timeout , TimeUnit timeUnit) throws InterruptedException;
+
+    void unlockAll(Collection<T> entityIds);
+
     void globalLock();
 
     boolean tryGlobalLock(long timeout , TimeUnit timeUnit) throws InterruptedException;
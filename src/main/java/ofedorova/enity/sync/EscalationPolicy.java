@@ -0,0 +1,35 @@
+package ofedorova.enity.sync;
+
+/**
+ * EscalationPolicy.
+ *
+ * Decides when a thread holding many entity locks escalates to the global lock, or to the lock of the group if lock
+ * groups are used. The locker asks {@link #shouldEscalate(int)} on every acquisition of a thread that is not escalated
+ * and on every release of an escalated thread, so the check must be cheap. Feedback methods are called only on slow
+ * paths: after an escalation and after a thread waited for the global lock held by an escalated thread.
+ *
+ * @author Olga_Fedorova
+ */
+public interface EscalationPolicy {
+
+    /**
+     * @param countLocks count of entity locks the thread holds, including the lock being acquired
+     * @return true if the thread should hold the global lock exclusively
+     */
+    boolean shouldEscalate(int countLocks);
+
+    /**
+     * Called after an attempt to escalate.
+     *
+     * @param waitNanos time the thread waited for other threads to release the global lock, 0 if it did not wait
+     * @param escalated false if the lock was not acquired: the timeout elapsed or, for groups, the group was held
+     */
+    default void recordEscalation(int countLocks, long waitNanos, boolean escalated) {
+    }
+
+    /**
+     * Called after a thread waited for the global lock while another thread was escalated.
+     */
+    default void recordWaitForEscalation(long waitNanos) {
+    }
+}
@@ -0,0 +1,27 @@
+package ofedorova.enity.sync;
+
+/**
+ * LockHandle.
+ *
+ * Exclusive hold of an entity acquired by {@link AsyncEntityLocker}. The hold belongs to the handle, not to a thread:
+ * any thread may release it.
+ *
+ * @author Olga_Fedorova
+ */
+public interface LockHandle<T> extends AutoCloseable {
+
+    T getEntityId();
+
+    /**
+     * Releases the hold.
+     *
+     * @throws IllegalMonitorStateException if the hold is already released
+     */
+    void unlock();
+
+    /**
+     * Releases the hold if it is not released yet.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,49 @@
+package ofedorova.enity.sync;
+
+/**
+ * LockerMetrics.
+ *
+ * Listener of events of the locker. Events of the fast path are not reported: {@link #recordWait(Object, long)} is
+ * called only when the entity was locked by another thread, {@link #recordHold(long)} only for exclusive holds
+ * chosen by {@link #sampleHold()}.
+ * The listener is called by the thread that locks or unlocks the entity, so it must be thread-safe and cheap.
+ *
+ * @author Olga_Fedorova
+ */
+public interface LockerMetrics {
+
+    /**
+     * Called after the thread waited for the entity locked by another thread.
+     */
+    void recordWait(Object entityId, long waitNanos);
+
+    /**
+     * Called on the first exclusive acquisition of the entity by the thread. Measurement of a hold costs two reads of
+     * the clock, so the listener may measure only a sample of holds.
+     *
+     * @return true if the hold should be measured
+     */
+    boolean sampleHold();
+
+    /**
+     * Called after the last exclusive hold of the entity by the thread is released.
+     */
+    void recordHold(long holdNanos);
+
+    void recordTimeout(Object entityId);
+
+    void recordDeadlock(Object entityId);
+
+    void recordEscalation();
+
+    /**
+     * Called after the lease of the entity expired and the entity was released on behalf of its owner.
+     */
+    void recordLeaseExpiry(Object entityId);
+
+    /**
+     * Called after the thread waited for the global lock, either for its read side held by entity locks or for
+     * its write side held by {@link EntityLocker#globalLock()} and escalated threads.
+     */
+    void recordGlobalWait(long waitNanos);
+}
@@ -0,0 +1,26 @@
+package ofedorova.enity.sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LongEntityLocker.
+ *
+ * {@link EntityLocker} for entities with primitive {@code long} IDs, locking does not box the ID.
+ *
+ * @author Olga_Fedorova
+ */
+public interface LongEntityLocker {
+
+    void lock(long entityId);
+
+    boolean tryLock(long entityId, long timeout , TimeUnit timeUnit) throws InterruptedException;
+
+    void unlock(long entityId);
+
+    void globalLock();
+
+    boolean tryGlobalLock(long timeout , TimeUnit timeUnit) throws InterruptedException;
+
+    void globalUnlock();
+
+}
@@ -1,119 +1,863 @@
 package ofedorova.enity.sync.impl.lockers;
 
+import ofedorova.enity.sync.EntityLock;
 import ofedorova.enity.sync.EntityLockInfo;
 import ofedorova.enity.sync.EntityLocker;
 import ofedorova.enity.sync.DeadlockChecker;
-import ofedorova.enity.sync.impl.utils.DeadlockCheckerImpl;
+import ofedorova.enity.sync.EscalationPolicy;
+import ofedorova.enity.sync.LockerMetrics;
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.locks.IntentionMode;
+import ofedorova.enity.sync.impl.utils.ThresholdEscalationPolicy;
+import ofedorova.enity.sync.impl.utils.TimingWheel;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 /**
  * EntityLockerImpl.
  *
+ * Every thread keeps the last {@link #RECENT_LOCKS} locks it used, so repeated and reentrant acquisitions of
+ * the same entities and releases of held entities do not look up the shared lock storage. A cached lock is valid
+ * while it is not evicted, a lock that was evicted is looked up in the storage again. An acquisition of a lock
+ * the thread already owns exclusively does not retain it: the hold of the thread keeps the lock in the storage,
+ * so the cache only counts such acquisitions and their releases skip the release of the reference.
+ *
+ * If a group resolver is set in the {@link EntityLockerBuilder}, entities are locked under intention locks of their groups, see
+ * {@link LockGroups}, and lock escalation takes the group instead of the global lock. Waits for groups are not seen
+ * by the deadlock checker: groups should be locked before entities and in a fixed order, or with a timeout.
+ *
+ * Implementations whose locks support {@link EntityLock#forceUnlock(Thread)} make the protected lease methods public,
+ * see {@link LockLeases}: an entity whose lease expired is released on behalf of its owner. Implementations whose
+ * locks support {@link EntityLock#lockFor(Object, Runnable)} lock entities for handles of
+ * {@link AsyncEntityLockerImpl}, see {@link AsyncAcquisition}.
+ *
  * @author Olga_Fedorova
  */
 public abstract class AbstractEntityLockerImpl<T> implements EntityLocker<T> {
 
+    private static final int RECENT_LOCKS = 4;
+
     private final Map<T, EntityLockInfo> lockStorage = new ConcurrentHashMap<>();
-    private final DeadlockChecker deadlockChecker = new DeadlockCheckerImpl();
-    private final ReentrantReadWriteLock globalLock = new ReentrantReadWriteLock();
-    private final Map<Thread, Integer> locksCountByThread = new ConcurrentHashMap<>();
-    private final int countGlobalLockEscalation;
+    private final ThreadLocal<RecentLocks> recentLocks = ThreadLocal.withInitial(RecentLocks::new);
+    private final DeadlockChecker deadlockChecker;
+    private final GlobalLockEscalation globalLockEscalation;
+    private final LockGroups<T> lockGroups;
+    private final LockLeases<T> lockLeases = new LockLeases<>(TimingWheel.getDefault());
+    private volatile LockerMetrics metrics;
+    private final AtomicLong lockSequence = new AtomicLong();
+    private final BiFunction<T, EntityLockInfo, EntityLockInfo> retainOrCreateLock = this::retainOrCreateLock;
+    private final BooleanSupplier waitAborted;
 
     protected AbstractEntityLockerImpl() {
-        this.countGlobalLockEscalation = 4;
+        this(4);
     }
 
     protected AbstractEntityLockerImpl(int countGlobalLockEscalation) {
-        this.countGlobalLockEscalation = countGlobalLockEscalation;
+        this(countGlobalLockEscalation, GlobalLockMode.SHARED_READERS);
+    }
+
+    protected AbstractEntityLockerImpl(int countGlobalLockEscalation, GlobalLockMode globalLockMode) {
+        this(countGlobalLockEscalation, globalLockMode, DeadlockPolicy.WAIT_FOR_GRAPH);
+    }
+
+    protected AbstractEntityLockerImpl(int countGlobalLockEscalation, GlobalLockMode globalLockMode, DeadlockPolicy deadlockPolicy) {
+        this(new EntityLockerBuilder<T>()
+                .countGlobalLockEscalation(countGlobalLockEscalation)
+                .globalLockMode(globalLockMode)
+                .deadlockPolicy(deadlockPolicy));
+    }
+
+    /**
+     * @param builder escalation, global lock mode, deadlock checker and group resolver of the locker
+     */
+    protected AbstractEntityLockerImpl(EntityLockerBuilder<T> builder) {
+        EscalationPolicy escalationPolicy = builder.getEscalationPolicy();
+        Function<? super T, ?> groupResolver = builder.getGroupResolver();
+        this.globalLockEscalation = new GlobalLockEscalation(groupResolver == null ? escalationPolicy : ThresholdEscalationPolicy.NEVER,
+                builder.getGlobalLockMode());
+        this.lockGroups = groupResolver == null ? null : new LockGroups<>(groupResolver, escalationPolicy);
+        this.deadlockChecker = builder.createDeadlockChecker();
+        this.waitAborted = deadlockChecker::isWaitAborted;
     }
 
     @Override
     public void lock(T entityId) {
-        EntityLockInfo lockInfo = getLock(entityId);
-        deadlockChecker.beforeLock(lockInfo, true);
-        lockInfo.getLock().lock();
-        incrementLocksAndGlobalEscalation(0, false);
+        lock(entityId, false);
     }
 
     @Override
-    public boolean tryLock(T entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
-        EntityLockInfo lockInfo = getLock(entityId);
-        deadlockChecker.beforeLock(lockInfo, false);
-        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
-        boolean isLocked = lockInfo.getLock().tryLock(timeout, timeUnit);
-        if (isLocked) {
-            incrementLocksAndGlobalEscalation(deadline, true);
+    public void lockInterruptibly(T entityId) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
         }
-        return isLocked;
+        lock(entityId, false, true);
+    }
+
+    /**
+     * Probes the entity without waiting: a failed probe is not reported to metrics as a timeout, and the interrupt
+     * status is ignored, as by {@link java.util.concurrent.locks.Lock#tryLock()}.
+     */
+    @Override
+    public boolean tryLock(T entityId) {
+        if (lockGroups == null) {
+            return tryLockEntityNow(entityId);
+        }
+        Object groupId = lockGroups.getGroup(entityId);
+        if (!lockGroups.tryLockIntention(groupId, false)) {
+            return false;
+        }
+        boolean isLocked = false;
+        try {
+            isLocked = tryLockEntityNow(entityId);
+            return isLocked;
+        } finally {
+            if (!isLocked) {
+                lockGroups.unlockIntention(groupId, false);
+            }
+        }
+    }
+
+    @Override
+    public boolean tryLock(T entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return tryLock(entityId, timeout, timeUnit, false);
     }
 
     @Override
     public void unlock(T entityId) {
-        EntityLockInfo lockInfo = getLock(entityId);
-        lockInfo.getLock().unlock();
-        deadlockChecker.afterUnlock(lockInfo);
-        decrementLocksAndGlobalEscalation();
+        unlock(entityId, false);
     }
 
     @Override
-    public void globalLock() {
-        globalLock.writeLock().lock();
+    public void lockShared(T entityId) {
+        checkSharedLocks();
+        lock(entityId, true);
     }
 
     @Override
-    public boolean tryGlobalLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
-        return globalLock.writeLock().tryLock(timeout, timeUnit);
+    public boolean tryLockShared(T entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        checkSharedLocks();
+        return tryLock(entityId, timeout, timeUnit, true);
     }
 
     @Override
-    public void globalUnlock() {
-        globalLock.writeLock().unlock();
+    public void unlockShared(T entityId) {
+        checkSharedLocks();
+        unlock(entityId, true);
     }
 
-    private void incrementLocksAndGlobalEscalation(long deadline, boolean checkTimeout) {
-        Integer countLocks = locksCountByThread.compute(Thread.currentThread(), (thread, count) -> count == null ? 1 : count + 1);
-        if (countLocks != null && countLocks >= countGlobalLockEscalation) {
-            for (int i = 0; i < countLocks-1; i++) {
-                globalLock.readLock().unlock();
+    private void lock(T entityId, boolean shared) {
+        try {
+            lock(entityId, shared, false);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param interruptible if true, waits for the group and the entity interruptibly
+     */
+    private void lock(T entityId, boolean shared, boolean interruptible) throws InterruptedException {
+        if (lockGroups == null) {
+            lockEntity(entityId, shared, interruptible);
+            return;
+        }
+        Object groupId = lockGroups.getGroup(entityId);
+        if (interruptible) {
+            lockGroups.lockIntentionInterruptibly(groupId, shared);
+        } else {
+            lockGroups.lockIntention(groupId, shared);
+        }
+        boolean isLocked = false;
+        try {
+            lockEntity(entityId, shared, interruptible);
+            isLocked = true;
+        } finally {
+            if (!isLocked) {
+                lockGroups.unlockIntention(groupId, shared);
             }
+        }
+    }
 
-            boolean isGlobalLocked = false;
-            if (checkTimeout) {
+    private void lockEntity(T entityId, boolean shared, boolean interruptible) throws InterruptedException {
+        LockerMetrics metrics = this.metrics;
+        EntityLockInfo lockInfo = acquireLock(entityId);
+        try {
+            deadlockChecker.beforeLock(lockInfo, true);
+        } catch (DeadlockException e) {
+            releaseLock(entityId, lockInfo);
+            recordDeadlock(metrics, entityId);
+            throw e;
+        }
+        EntityLock lock = lockInfo.getLock();
+        boolean isHeld = metrics != null && !shared && lock.getOwner() == Thread.currentThread();
+        if (!tryLockNow(lockInfo, shared)) {
+            long start = 0L;
+            try {
+                deadlockChecker.beforeWait(lockInfo, true);
+                start = metrics != null ? System.nanoTime() : 0L;
                 try {
-                    isGlobalLocked = tryGlobalLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
-                } catch (InterruptedException e) {
-                    isGlobalLocked = false;
+                    waitForLock(lockInfo, shared, interruptible);
+                } finally {
+                    deadlockChecker.afterWait(lockInfo);
                 }
-            } else {
-                globalLock();
-                isGlobalLocked = true;
+            } catch (DeadlockException e) {
+                deadlockChecker.afterUnlock(lockInfo);
+                releaseLock(entityId, lockInfo);
+                recordDeadlock(metrics, entityId);
+                throw e;
+            } catch (InterruptedException e) {
+                deadlockChecker.afterUnlock(lockInfo);
+                releaseLock(entityId, lockInfo);
+                throw e;
             }
+            if (metrics != null) {
+                metrics.recordWait(entityId, System.nanoTime() - start);
+            }
+        }
+        globalLockEscalation.incrementLocksAndGlobalEscalation(1, 0, false);
+        if (metrics != null && !shared && !isHeld) {
+            startHold(metrics, lockInfo);
+        }
+    }
 
-            if (!isGlobalLocked) {
-                for (int i = 0; i < countLocks-1; i++) {
-                    globalLock.readLock().lock();
+    private boolean tryLock(T entityId, long timeout, TimeUnit timeUnit, boolean shared) throws InterruptedException {
+        if (lockGroups == null) {
+            return tryLockEntity(entityId, timeout, timeUnit, shared);
+        }
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        Object groupId = lockGroups.getGroup(entityId);
+        if (!lockGroups.tryLockIntention(groupId, shared, timeUnit.toNanos(timeout))) {
+            LockerMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordTimeout(entityId);
+            }
+            return false;
+        }
+        boolean isLocked = false;
+        try {
+            isLocked = tryLockEntity(entityId, deadline - System.nanoTime(), TimeUnit.NANOSECONDS, shared);
+            return isLocked;
+        } finally {
+            if (!isLocked) {
+                lockGroups.unlockIntention(groupId, shared);
+            }
+        }
+    }
+
+    private boolean tryLockEntity(T entityId, long timeout, TimeUnit timeUnit, boolean shared) throws InterruptedException {
+        LockerMetrics metrics = this.metrics;
+        EntityLockInfo lockInfo = acquireLock(entityId);
+        EntityLock lock = lockInfo.getLock();
+        boolean isHeld = metrics != null && !shared && lock.getOwner() == Thread.currentThread();
+        boolean isLocked = false;
+        try {
+            deadlockChecker.beforeLock(lockInfo, false);
+            long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+            isLocked = tryLockNow(lockInfo, shared) || tryLockWaiting(entityId, lockInfo, timeout, timeUnit, shared);
+            if (isLocked && !globalLockEscalation.incrementLocksAndGlobalEscalation(1, deadline, true)) {
+                if (shared) {
+                    lock.unlockShared();
+                } else {
+                    unlockExclusive(lockInfo);
                 }
+                isLocked = false;
             }
+        } finally {
+            if (!isLocked) {
+                deadlockChecker.afterUnlock(lockInfo);
+                releaseLock(entityId, lockInfo);
+            }
+        }
+        if (metrics != null) {
+            if (!isLocked) {
+                metrics.recordTimeout(entityId);
+            } else if (!shared && !isHeld) {
+                startHold(metrics, lockInfo);
+            }
+        }
+        return isLocked;
+    }
+
+    /**
+     * Acquires the entity lock only if {@link #tryLockNow(EntityLockInfo, boolean)} succeeds and the read side
+     * of the global lock is free or held by the thread.
+     */
+    private boolean tryLockEntityNow(T entityId) {
+        LockerMetrics metrics = this.metrics;
+        EntityLockInfo lockInfo = acquireLock(entityId);
+        boolean isHeld = metrics != null && lockInfo.getLock().getOwner() == Thread.currentThread();
+        boolean isLocked = false;
+        try {
+            deadlockChecker.beforeLock(lockInfo, false);
+            isLocked = tryLockNow(lockInfo, false);
+            if (isLocked && !globalLockEscalation.incrementLocksAndGlobalEscalation(1, System.nanoTime(), true)) {
+                unlockExclusive(lockInfo);
+                isLocked = false;
+            }
+        } finally {
+            if (!isLocked) {
+                deadlockChecker.afterUnlock(lockInfo);
+                releaseLock(entityId, lockInfo);
+            }
+        }
+        if (isLocked && metrics != null && !isHeld) {
+            startHold(metrics, lockInfo);
+        }
+        return isLocked;
+    }
 
+    private boolean tryLockWaiting(T entityId, EntityLockInfo lockInfo, long timeout, TimeUnit timeUnit, boolean shared) throws InterruptedException {
+        LockerMetrics metrics = this.metrics;
+        deadlockChecker.beforeWait(lockInfo, false);
+        long start = metrics != null ? System.nanoTime() : 0L;
+        try {
+            EntityLock lock = lockInfo.getLock();
+            return shared ? lock.tryLockShared(timeout, timeUnit) : lock.tryLock(timeout, timeUnit);
+        } finally {
+            deadlockChecker.afterWait(lockInfo);
+            if (metrics != null) {
+                metrics.recordWait(entityId, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void unlock(T entityId, boolean shared) {
+        LockerMetrics metrics = this.metrics;
+        EntityLockInfo lockInfo = getLock(entityId);
+        if (lockInfo == null) {
+            throw new IllegalMonitorStateException();
+        }
+        EntityLock lock = lockInfo.getLock();
+        long holdStart = metrics != null && !shared ? lockInfo.getHoldStartNanos() : 0L;
+        boolean isReleased = true;
+        if (shared) {
+            lock.unlockShared();
         } else {
-            globalLock.readLock().lock();
+            isReleased = unlockExclusive(lockInfo);
+        }
+        recordHoldIfReleased(metrics, lockInfo, holdStart);
+        if (isReleased) {
+            afterUnlockIfNotHeld(lockInfo);
         }
+        globalLockEscalation.decrementLocksAndGlobalEscalation(1);
+        releaseLock(entityId, lockInfo);
+        unlockIntention(entityId, shared);
     }
 
-    private void decrementLocksAndGlobalEscalation() {
-        Integer countLocks = locksCountByThread.compute(Thread.currentThread(), (thread, count) -> count == null ? 1 : count - 1);
-        if (countLocks != null && globalLock.writeLock().isHeldByCurrentThread() &&
-                countLocks < countGlobalLockEscalation) {
-            globalUnlock();
-            for (int i = 0; i < countLocks; i++) {
-                globalLock.readLock().lock();
+    @Override
+    public void lockAll(Collection<T> entityIds) {
+        try {
+            lockAll(entityIds, 0, TimeUnit.NANOSECONDS, false);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean tryLockAll(Collection<T> entityIds, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return lockAll(entityIds, timeout, timeUnit, true);
+    }
+
+    /**
+     * Locks distinct entities in the canonical order of {@link EntityLockInfo#getSequence()}, so two batches cannot
+     * wait for each other. If the current thread does not hold other entities, the deadlock checker only registers
+     * the waits of the batch for checks of other threads. Either all entities are locked or none of them.
+     */
+    private boolean lockAll(Collection<T> entityIds, long timeout, TimeUnit timeUnit, boolean checkTimeout) throws InterruptedException {
+        Set<T> distinctIds = new LinkedHashSet<>(entityIds);
+        if (distinctIds.contains(null)) {
+            throw new IllegalArgumentException("Entity ID cannot be null");
+        }
+        LockerMetrics metrics = this.metrics;
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        List<Map.Entry<T, EntityLockInfo>> locks = new ArrayList<>(distinctIds.size());
+        for (T entityId : distinctIds) {
+            locks.add(new AbstractMap.SimpleImmutableEntry<>(entityId, acquireLock(entityId)));
+        }
+        locks.sort(Comparator.comparingLong(entry -> entry.getValue().getSequence()));
+
+        boolean preventDeadlock = globalLockEscalation.hasLocks();
+        boolean[] held = new boolean[metrics != null ? locks.size() : 0];
+        int countIntentions = 0;
+        int countLocked = 0;
+        boolean isLocked = false;
+        try {
+            for (Map.Entry<T, EntityLockInfo> entry : locks) {
+                if (metrics != null) {
+                    held[countLocked] = entry.getValue().getLock().getOwner() == Thread.currentThread();
+                }
+                if (!lockIntention(entry.getKey(), deadline, checkTimeout)) {
+                    if (metrics != null) {
+                        metrics.recordTimeout(entry.getKey());
+                    }
+                    return false;
+                }
+                countIntentions++;
+                if (!lockOrdered(entry.getKey(), entry.getValue(), deadline, checkTimeout, preventDeadlock)) {
+                    if (metrics != null) {
+                        metrics.recordTimeout(entry.getKey());
+                    }
+                    return false;
+                }
+                countLocked++;
+            }
+            isLocked = locks.isEmpty() || globalLockEscalation.incrementLocksAndGlobalEscalation(locks.size(), deadline, checkTimeout);
+            if (metrics != null && !isLocked) {
+                metrics.recordTimeout(locks.get(0).getKey());
+            }
+            return isLocked;
+        } finally {
+            if (!isLocked) {
+                for (int i = 0; i < locks.size(); i++) {
+                    EntityLockInfo lockInfo = locks.get(i).getValue();
+                    boolean isReleased = i >= countLocked || unlockExclusive(lockInfo);
+                    if (i <= countLocked && isReleased) {
+                        afterUnlockIfNotHeld(lockInfo);
+                    }
+                    releaseLock(locks.get(i).getKey(), lockInfo);
+                    if (i < countIntentions) {
+                        unlockIntention(locks.get(i).getKey(), false);
+                    }
+                }
+            } else if (metrics != null) {
+                for (int i = 0; i < locks.size(); i++) {
+                    if (!held[i]) {
+                        startHold(metrics, locks.get(i).getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A checker that aborts waits decides on every wait without timeout, it does not rely on checks of other threads.
+     */
+    private boolean lockOrdered(T entityId, EntityLockInfo lockInfo, long deadline, boolean checkTimeout, boolean preventDeadlock) throws InterruptedException {
+        LockerMetrics metrics = this.metrics;
+        deadlockChecker.beforeLock(lockInfo, preventDeadlock);
+        EntityLock lock = lockInfo.getLock();
+        if (tryLockNow(lockInfo, false)) {
+            return true;
+        }
+        try {
+            deadlockChecker.beforeWait(lockInfo, preventDeadlock || !checkTimeout && deadlockChecker.abortsWaits());
+        } catch (DeadlockException e) {
+            recordDeadlock(metrics, entityId);
+            throw e;
+        }
+        long start = metrics != null ? System.nanoTime() : 0L;
+        try {
+            if (checkTimeout) {
+                return lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            waitForLock(lockInfo, false, false);
+            return true;
+        } catch (DeadlockException e) {
+            recordDeadlock(metrics, entityId);
+            throw e;
+        } finally {
+            deadlockChecker.afterWait(lockInfo);
+            if (metrics != null) {
+                metrics.recordWait(entityId, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Waits for the lock without timeout. If the deadlock checker aborts waits, the thread waits with
+     * {@link EntityLock#lockAbortably}, so the checker can wake it up without an interrupt, and the checker throws
+     * {@link DeadlockException} when the wait is aborted. An aborted interruptible wait throws
+     * {@link DeadlockException} with the interrupt status set.
+     */
+    private void waitForLock(EntityLockInfo lockInfo, boolean shared, boolean interruptible) throws InterruptedException {
+        EntityLock lock = lockInfo.getLock();
+        if (deadlockChecker.abortsWaits()) {
+            try {
+                while (!lock.lockAbortably(shared, interruptible, waitAborted)) {
+                    deadlockChecker.checkAborted(lockInfo);
+                }
+            } catch (InterruptedException e) {
+                try {
+                    deadlockChecker.checkAborted(lockInfo);
+                } catch (DeadlockException deadlock) {
+                    Thread.currentThread().interrupt();
+                    throw deadlock;
+                }
+                throw e;
+            }
+        } else if (!interruptible) {
+            if (shared) {
+                lock.lockShared();
+            } else {
+                lock.lock();
             }
         } else {
-            globalLock.readLock().unlock();
+            while (!(shared ? lock.tryLockShared(Long.MAX_VALUE, TimeUnit.NANOSECONDS) : lock.tryLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS))) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void unlockAll(Collection<T> entityIds) {
+        LockerMetrics metrics = this.metrics;
+        List<Map.Entry<T, EntityLockInfo>> unlocked = new ArrayList<>(entityIds.size());
+        try {
+            for (T entityId : new LinkedHashSet<>(entityIds)) {
+                EntityLockInfo lockInfo = getLock(entityId);
+                if (lockInfo == null) {
+                    throw new IllegalMonitorStateException();
+                }
+                long holdStart = metrics != null ? lockInfo.getHoldStartNanos() : 0L;
+                boolean isReleased = unlockExclusive(lockInfo);
+                recordHoldIfReleased(metrics, lockInfo, holdStart);
+                if (isReleased) {
+                    afterUnlockIfNotHeld(lockInfo);
+                }
+                unlocked.add(new AbstractMap.SimpleImmutableEntry<>(entityId, lockInfo));
+            }
+        } finally {
+            if (!unlocked.isEmpty()) {
+                globalLockEscalation.decrementLocksAndGlobalEscalation(unlocked.size());
+            }
+            for (Map.Entry<T, EntityLockInfo> entry : unlocked) {
+                releaseLock(entry.getKey(), entry.getValue());
+                unlockIntention(entry.getKey(), false);
+            }
+        }
+    }
+
+    /**
+     * Takes the intention lock of the group of the entity locked exclusively in a batch.
+     *
+     * @return false if the intention lock was not acquired before the deadline
+     */
+    private boolean lockIntention(T entityId, long deadline, boolean checkTimeout) throws InterruptedException {
+        if (lockGroups == null) {
+            return true;
+        }
+        Object groupId = lockGroups.getGroup(entityId);
+        if (checkTimeout) {
+            return lockGroups.tryLockIntention(groupId, false, deadline - System.nanoTime());
+        }
+        lockGroups.lockIntention(groupId, false);
+        return true;
+    }
+
+    private void unlockIntention(T entityId, boolean shared) {
+        if (lockGroups != null) {
+            lockGroups.unlockIntention(lockGroups.getGroup(entityId), shared);
+        }
+    }
+
+    /**
+     * Acquires the lock if it is free or held by the current thread, a reentrant hold under a lease goes through
+     * the lease.
+     */
+    private boolean tryLockNow(EntityLockInfo lockInfo, boolean shared) {
+        EntityLock lock = lockInfo.getLock();
+        if (shared) {
+            return lock.tryLockShared();
+        }
+        return lockLeases.tryLockLeased(lockInfo) || lock.tryLock();
+    }
+
+    /**
+     * @return false if a hold revoked by an expired lease was released and other revoked holds are left, the deadlock
+     *         checker is told about the release of the lease only once
+     */
+    private boolean unlockExclusive(EntityLockInfo lockInfo) {
+        LockLeases.Release release = lockLeases.unlockLeased(lockInfo);
+        if (release == LockLeases.Release.NOT_LEASED) {
+            lockInfo.getLock().unlock();
+        }
+        return release != LockLeases.Release.REVOKED;
+    }
+
+    private void afterUnlockIfNotHeld(EntityLockInfo lockInfo) {
+        EntityLock lock = lockInfo.getLock();
+        Thread currentThread = Thread.currentThread();
+        if (lock.getOwner() != currentThread && !lock.isSharedOwner(currentThread)) {
+            deadlockChecker.afterUnlock(lockInfo);
+        }
+    }
+
+    /**
+     * Called on the first exclusive acquisition of the lock by the current thread. The hold start of a hold that is
+     * not sampled is reset, so it is not mixed up with the hold of the previous owner.
+     */
+    private void startHold(LockerMetrics metrics, EntityLockInfo lockInfo) {
+        lockInfo.setHoldStartNanos(metrics.sampleHold() ? System.nanoTime() : 0L);
+    }
+
+    /**
+     * Reports the hold time if the current thread released its last exclusive hold of the lock.
+     *
+     * @param holdStart hold start read before the release, 0 if the hold is not measured
+     */
+    private void recordHoldIfReleased(LockerMetrics metrics, EntityLockInfo lockInfo, long holdStart) {
+        if (holdStart != 0L && lockInfo.getLock().getOwner() != Thread.currentThread()) {
+            metrics.recordHold(System.nanoTime() - holdStart);
+        }
+    }
+
+    private void recordDeadlock(LockerMetrics metrics, T entityId) {
+        if (metrics != null) {
+            metrics.recordDeadlock(entityId);
+        }
+    }
+
+    @Override
+    public void globalLock() {
+        globalLockEscalation.globalLock();
+    }
+
+    @Override
+    public boolean tryGlobalLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return globalLockEscalation.tryGlobalLock(timeout, timeUnit);
+    }
+
+    @Override
+    public void globalUnlock() {
+        globalLockEscalation.globalUnlock();
+    }
+
+    /**
+     * Locks all entities of the group exclusively: waits until other threads release the group and its entities.
+     * The current thread may lock entities of the group while it holds the group.
+     *
+     * @throws IllegalStateException if the locker has no group resolver
+     */
+    public void lockGroup(Object groupId) {
+        lockGroup(groupId, IntentionMode.X);
+    }
+
+    public boolean tryLockGroup(Object groupId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return tryLockGroup(groupId, timeout, timeUnit, IntentionMode.X);
+    }
+
+    public void unlockGroup(Object groupId) {
+        unlockGroup(groupId, IntentionMode.X);
+    }
+
+    /**
+     * Locks all entities of the group in shared mode: other threads may lock entities of the group only in shared mode.
+     *
+     * @throws IllegalStateException if the locker has no group resolver
+     */
+    public void lockGroupShared(Object groupId) {
+        lockGroup(groupId, IntentionMode.S);
+    }
+
+    public boolean tryLockGroupShared(Object groupId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return tryLockGroup(groupId, timeout, timeUnit, IntentionMode.S);
+    }
+
+    public void unlockGroupShared(Object groupId) {
+        unlockGroup(groupId, IntentionMode.S);
+    }
+
+    /**
+     * A held group counts as one lock for the global lock, so {@link #globalLock()} excludes group holders as well.
+     */
+    private void lockGroup(Object groupId, IntentionMode mode) {
+        getLockGroups().lockGroup(groupId, mode);
+        globalLockEscalation.incrementLocksAndGlobalEscalation(1, 0, false);
+    }
+
+    private boolean tryLockGroup(Object groupId, long timeout, TimeUnit timeUnit, IntentionMode mode) throws InterruptedException {
+        LockGroups<T> lockGroups = getLockGroups();
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        if (!lockGroups.tryLockGroup(groupId, mode, timeout, timeUnit)) {
+            return false;
+        }
+        if (!globalLockEscalation.incrementLocksAndGlobalEscalation(1, deadline, true)) {
+            lockGroups.unlockGroup(groupId, mode);
+            return false;
+        }
+        return true;
+    }
+
+    private void unlockGroup(Object groupId, IntentionMode mode) {
+        getLockGroups().unlockGroup(groupId, mode);
+        globalLockEscalation.decrementLocksAndGlobalEscalation(1);
+    }
+
+    LockGroups<T> getLockGroups() {
+        if (lockGroups == null) {
+            throw new IllegalStateException("Lock groups are not configured");
+        }
+        return lockGroups;
+    }
+
+    /**
+     * Locks the entity exclusively for at most the lease time, for implementations whose locks support
+     * {@link EntityLock#forceUnlock(Thread)}, see {@link EntityCustomLockImpl#lock(Object, long, TimeUnit)}.
+     *
+     * @throws IllegalStateException if the current thread already holds the entity exclusively
+     */
+    protected void lock(T entityId, long leaseTime, TimeUnit timeUnit) {
+        checkLease(entityId, leaseTime);
+        lock(entityId, false);
+        lockLeases.startLease(entityId, getLock(entityId), timeUnit.toNanos(leaseTime));
+    }
+
+    /**
+     * Tries to lock the entity exclusively within the timeout, the lease starts when the entity is locked.
+     *
+     * @see #lock(Object, long, TimeUnit)
+     */
+    protected boolean tryLock(T entityId, long timeout, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        checkLease(entityId, leaseTime);
+        if (!tryLock(entityId, timeout, timeUnit, false)) {
+            return false;
+        }
+        lockLeases.startLease(entityId, getLock(entityId), timeUnit.toNanos(leaseTime));
+        return true;
+    }
+
+    /**
+     * Sets the listener called in the thread of the timing wheel with the entity and its owner after a lease expired.
+     */
+    protected void setLeaseExpiryListener(BiConsumer<? super T, Thread> listener) {
+        lockLeases.setExpiryListener(listener);
+    }
+
+    /**
+     * Returns true if locks of the implementation support the shared mode.
+     */
+    protected boolean supportsSharedLocks() {
+        return true;
+    }
+
+    private void checkSharedLocks() {
+        if (!supportsSharedLocks()) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns true if locks of the implementation can be held by owners that are not threads, see
+     * {@link EntityLock#lockFor(Object, Runnable)}.
+     */
+    protected boolean supportsAsyncHolders() {
+        return false;
+    }
+
+    /**
+     * Returns the exclusive acquisition of the entity for an owner that is not a thread, the owner must not hold
+     * the entity yet. {@code onLocked} is called once, when the entity is locked for the owner, in the thread that
+     * calls {@link AsyncAcquisition#start()} or in the thread that releases the lock the acquisition waits for.
+     */
+    AsyncAcquisition newAsyncAcquisition(T entityId, Object owner, Runnable onLocked) {
+        if (!supportsAsyncHolders()) {
+            throw new UnsupportedOperationException();
+        }
+        return new AsyncAcquisition(entityId, owner, onLocked);
+    }
+
+    private void checkLease(T entityId, long leaseTime) {
+        if (leaseTime <= 0) {
+            throw new IllegalArgumentException("Lease time must be positive");
+        }
+        EntityLockInfo lockInfo = getLock(entityId);
+        if (lockInfo != null && (lockInfo.getLock().getOwner() == Thread.currentThread() || lockLeases.hasLease(lockInfo))) {
+            throw new IllegalStateException("Entity is already locked by the current thread");
+        }
+    }
+
+    /**
+     * Sets the listener of lock events, null disables metrics. The listener should be set before the locker is used:
+     * holds started before it is set are not measured correctly.
+     */
+    public void setLockerMetrics(LockerMetrics metrics) {
+        this.metrics = metrics;
+        globalLockEscalation.setMetrics(metrics);
+        lockLeases.setMetrics(metrics);
+        if (lockGroups != null) {
+            lockGroups.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Returns lock of the entity and retains it, so it cannot be evicted from the storage until
+     * {@link #releaseLock(Object, EntityLockInfo)} is called.
+     */
+    protected EntityLockInfo acquireLock(T entityId) {
+        if (entityId == null) {
+            throw new IllegalArgumentException("Entity ID cannot be null");
+        }
+        RecentLocks recentLocks = this.recentLocks.get();
+        int index = recentLocks.indexOf(entityId);
+        if (index >= 0) {
+            EntityLockInfo lockInfo = recentLocks.locks[index];
+            if (lockInfo.getLock().getOwner() == Thread.currentThread()) {
+                recentLocks.unretainedHolds[index]++;
+                return lockInfo;
+            }
+            if (lockInfo.retain()) {
+                return lockInfo;
+            }
+        }
+        EntityLockInfo lockInfo = lockStorage.get(entityId);
+        if (lockInfo == null || !lockInfo.retain()) {
+            lockInfo = lockStorage.compute(entityId, retainOrCreateLock);
+        }
+        recentLocks.put(entityId, lockInfo);
+        return lockInfo;
+    }
+
+    private EntityLockInfo retainOrCreateLock(T entityId, EntityLockInfo lockInfo) {
+        if (lockInfo == null || !lockInfo.retain()) {
+            lockInfo = new EntityLockInfo<>(entityId, createLock(), lockSequence.incrementAndGet());
+            lockInfo.retain();
+        }
+        return lockInfo;
+    }
+
+    /**
+     * Releases lock of the entity and evicts it from the storage if it has no owner, waiters and pending acquirers.
+     * If some thread has retained the lock concurrently the eviction fails, if the lock was evicted concurrently with
+     * {@link #acquireLock(Object)} the storage already contains the new lock and it is not removed.
+     */
+    protected void releaseLock(T entityId, EntityLockInfo lockInfo) {
+        if (!recentLocks.get().releaseUnretained(lockInfo)) {
+            releaseRetained(entityId, lockInfo);
+        }
+    }
+
+    /**
+     * Retains lock of the entity without the cache of the current thread, for holders that are not threads.
+     */
+    private EntityLockInfo retainLock(T entityId) {
+        EntityLockInfo lockInfo = lockStorage.get(entityId);
+        if (lockInfo == null || !lockInfo.retain()) {
+            lockInfo = lockStorage.compute(entityId, retainOrCreateLock);
+        }
+        return lockInfo;
+    }
+
+    private void releaseRetained(T entityId, EntityLockInfo lockInfo) {
+        if (lockInfo.release() && lockInfo.evict()) {
+            lockStorage.remove(entityId, lockInfo);
         }
     }
 
@@ -121,5 +865,293 @@ public abstract class AbstractEntityLockerImpl<T> implements EntityLocker<T> {
         return lockStorage;
     }
 
-    protected abstract EntityLockInfo getLock(T entityId);
+    /**
+     * Returns a snapshot of the lock table for diagnostics. Taking the snapshot does not lock anything, entity locks
+     * are read while the snapshot is iterated, see {@link LockTableSnapshot}.
+     */
+    public LockTableSnapshot snapshot() {
+        return new LockTableSnapshot(globalLockEscalation, this::lockTableIterator);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the locks of the table.
+     */
+    protected Iterator<EntityLockInfo> lockTableIterator() {
+        return lockStorage.values().iterator();
+    }
+
+    /**
+     * Returns lock of the entity or null if the entity is not locked and nobody waits for it.
+     */
+    protected EntityLockInfo getLock(T entityId) {
+        if (entityId == null) {
+            throw new IllegalArgumentException("Entity ID cannot be null");
+        }
+        RecentLocks recentLocks = this.recentLocks.get();
+        int index = recentLocks.indexOf(entityId);
+        if (index >= 0 && !recentLocks.locks[index].isEvicted()) {
+            return recentLocks.locks[index];
+        }
+        return lockStorage.get(entityId);
+    }
+
+    protected abstract EntityLock createLock();
+
+    /**
+     * Exclusive acquisition of an entity for an owner that is not a thread. It takes the intention lock of the group,
+     * the entity and the read side of the global lock in the order of {@link #lock(Object)}, but a stage that cannot
+     * be taken at once does not block: the acquisition is queued in the lock as its continuation and goes on in
+     * the thread that releases the lock. A wait for the entity is reported to the deadlock checker by the owner.
+     *
+     * Three parties may end a wait: the owner that queued the acquisition ({@code QUEUED}), the continuation
+     * ({@code RESUMED}) and {@link #cancel()} ({@code CANCELLED}). Whoever sets the second of {@code QUEUED} and
+     * {@code RESUMED} goes on with the acquisition or rolls it back if it is cancelled; a cancel that finds
+     * the acquisition queued and not resumed takes it out of the queue ({@code TAKEN}) and rolls it back itself, unless
+     * the lock has already resumed it. Fields other than {@code signals} are written by the party that goes on before
+     * it publishes the next wait through {@code signals}.
+     */
+    final class AsyncAcquisition implements Runnable {
+
+        private static final int GROUP = 0;
+        private static final int ENTITY = 1;
+        private static final int GLOBAL = 2;
+        private static final int LOCKED = 3;
+
+        private static final int QUEUED = 1;
+        private static final int RESUMED = 2;
+        private static final int CANCELLED = 4;
+        private static final int TAKEN = 8;
+
+        private final T entityId;
+        private final Object owner;
+        private final Runnable onLocked;
+        private Object groupId;
+        private LockGroups.GroupLock groupLock;
+        private EntityLockInfo lockInfo;
+        private EntityLock.Request request;
+        private int stage;
+        private final AtomicInteger signals = new AtomicInteger();
+
+        private AsyncAcquisition(T entityId, Object owner, Runnable onLocked) {
+            if (entityId == null) {
+                throw new IllegalArgumentException("Entity ID cannot be null");
+            }
+            this.entityId = entityId;
+            this.owner = owner;
+            this.onLocked = onLocked;
+        }
+
+        void start() {
+            if (lockGroups == null) {
+                advance(ENTITY);
+                return;
+            }
+            groupId = lockGroups.getGroup(entityId);
+            groupLock = lockGroups.retainGroupLock(groupId);
+            stage = GROUP;
+            request = groupLock.lockIntentionFor(owner, this);
+            if (request == null || resumeAfterQueued()) {
+                advance(ENTITY);
+            }
+        }
+
+        /**
+         * Called by the lock the acquisition waits for: the stage is granted, or the global lock may be free.
+         */
+        @Override
+        public void run() {
+            int previous = signals.getAndUpdate(current -> current | RESUMED);
+            if ((previous & QUEUED) == 0) {
+                return;
+            }
+            if ((previous & CANCELLED) != 0) {
+                rollback(true);
+                return;
+            }
+            if (stage == ENTITY) {
+                deadlockChecker.afterAsyncWait(owner, lockInfo);
+            }
+            advance(stage == GROUP ? ENTITY : GLOBAL);
+        }
+
+        /**
+         * Cancels the acquisition unless the entity is already locked, the owner then has to release it.
+         */
+        void cancel() {
+            int previous = signals.getAndUpdate(current -> current | CANCELLED);
+            if ((previous & (QUEUED | RESUMED | CANCELLED)) == QUEUED) {
+                takeBack();
+            }
+        }
+
+        /**
+         * Releases the entity locked for the owner.
+         */
+        void unlock() {
+            release(LOCKED);
+        }
+
+        /**
+         * Goes on from the stage, returns when the acquisition is queued, locked or rolled back.
+         */
+        private void advance(int next) {
+            if (next == ENTITY && !lockEntity()) {
+                return;
+            }
+            stage = GLOBAL;
+            while (!globalLockEscalation.tryLockForHandle()) {
+                signals.getAndUpdate(current -> current & CANCELLED);
+                if (globalLockEscalation.awaitForHandle(this) && !resumeAfterQueued()) {
+                    return;
+                }
+            }
+            stage = LOCKED;
+            if ((signals.get() & CANCELLED) != 0) {
+                release(LOCKED);
+            } else {
+                onLocked.run();
+            }
+        }
+
+        /**
+         * @return true if the entity is locked, false if the acquisition is queued or rolled back
+         */
+        private boolean lockEntity() {
+            lockInfo = retainLock(entityId);
+            stage = ENTITY;
+            deadlockChecker.beforeAsyncWait(owner, lockInfo);
+            signals.getAndUpdate(current -> current & CANCELLED);
+            request = lockInfo.getLock().lockFor(owner, this);
+            if (request != null && !resumeAfterQueued()) {
+                return false;
+            }
+            deadlockChecker.afterAsyncWait(owner, lockInfo);
+            return true;
+        }
+
+        /**
+         * Publishes that the acquisition is queued, the signals must have been reset before it was queued.
+         *
+         * @return true if the lock has already resumed the acquisition and the caller goes on
+         */
+        private boolean resumeAfterQueued() {
+            int previous = signals.getAndUpdate(current -> current | QUEUED);
+            if ((previous & RESUMED) != 0) {
+                if ((previous & CANCELLED) == 0) {
+                    return true;
+                }
+                rollback(true);
+            } else if ((previous & CANCELLED) != 0) {
+                takeBack();
+            }
+            return false;
+        }
+
+        /**
+         * Takes the queued acquisition out of the lock, unless the lock has resumed it or another party takes it.
+         */
+        private void takeBack() {
+            int current;
+            do {
+                current = signals.get();
+                if ((current & (RESUMED | TAKEN)) != 0) {
+                    return;
+                }
+            } while (!signals.compareAndSet(current, current | TAKEN));
+            boolean removed = stage == GLOBAL ? globalLockEscalation.cancelForHandle(this) : request.cancel();
+            if (removed) {
+                rollback(false);
+            }
+        }
+
+        /**
+         * @param resumed if true, the lock has granted the stage the acquisition waited for
+         */
+        private void rollback(boolean resumed) {
+            if (stage == ENTITY) {
+                deadlockChecker.afterAsyncWait(owner, lockInfo);
+            }
+            release(resumed && stage != GLOBAL ? stage + 1 : stage);
+        }
+
+        /**
+         * Releases locks of the stages before the given one, the global lock first.
+         */
+        private void release(int acquired) {
+            if (acquired > GLOBAL) {
+                globalLockEscalation.unlockForHandle();
+            }
+            if (lockInfo != null) {
+                if (acquired > ENTITY) {
+                    lockInfo.getLock().unlockFor(owner);
+                }
+                releaseRetained(entityId, lockInfo);
+            }
+            if (groupLock != null) {
+                if (acquired > GROUP) {
+                    groupLock.unlockIntentionFor(owner);
+                }
+                lockGroups.releaseGroupLock(groupId, groupLock);
+            }
+        }
+    }
+
+    /**
+     * Last locks used by a thread with their entity IDs, accessed only by the thread itself. A new lock replaces
+     * the oldest one that has no unretained holds. Locks are not retained by the cache, so up to
+     * {@link #RECENT_LOCKS} evicted locks per thread are kept from garbage collection until they are replaced.
+     */
+    private static final class RecentLocks {
+
+        private final Object[] entityIds = new Object[RECENT_LOCKS];
+        private final EntityLockInfo[] locks = new EntityLockInfo[RECENT_LOCKS];
+        private final int[] unretainedHolds = new int[RECENT_LOCKS];
+        private int next;
+
+        private int indexOf(Object entityId) {
+            for (int i = 0; i < RECENT_LOCKS; i++) {
+                Object cachedId = entityIds[i];
+                if (cachedId == entityId || entityId.equals(cachedId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Caches the retained lock, the lock is not cached if all slots have unretained holds.
+         */
+        private void put(Object entityId, EntityLockInfo lockInfo) {
+            int index = indexOf(entityId);
+            if (index < 0) {
+                for (int i = 0; i < RECENT_LOCKS && index < 0; i++) {
+                    int slot = (next + i) % RECENT_LOCKS;
+                    if (unretainedHolds[slot] == 0) {
+                        index = slot;
+                    }
+                }
+                if (index < 0) {
+                    return;
+                }
+                next = (index + 1) % RECENT_LOCKS;
+            } else if (unretainedHolds[index] > 0) {
+                return;
+            }
+            entityIds[index] = entityId;
+            locks[index] = lockInfo;
+        }
+
+        /**
+         * @return true if the release is paired with an acquisition that did not retain the lock
+         */
+        private boolean releaseUnretained(EntityLockInfo lockInfo) {
+            for (int i = 0; i < RECENT_LOCKS; i++) {
+                if (locks[i] == lockInfo && unretainedHolds[i] > 0) {
+                    unretainedHolds[i]--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
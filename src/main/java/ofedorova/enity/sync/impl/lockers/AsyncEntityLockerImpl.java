@@ -0,0 +1,138 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.AsyncEntityLocker;
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.LockHandle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AsyncEntityLockerImpl.
+ *
+ * Asynchronous facade of an {@link AbstractEntityLockerImpl} whose locks can be held by owners that are not threads,
+ * see {@link EntityLock#lockFor(Object, Runnable)}. The handle itself owns the entity: {@code lockAsync} queues
+ * the acquisition in the lock of the entity next to waiting threads, and the thread that releases the entity,
+ * by {@code unlock} or by {@link LockHandle#unlock()}, passes it to the next waiter and schedules the completion of
+ * its future. No thread is parked for an async waiter or holder, so the count of entities locked asynchronously is
+ * not limited. Synchronous callers, the group and the global lock wait for handles like for threads, see
+ * {@link AbstractEntityLockerImpl.AsyncAcquisition}, and waits of handles are reported to the deadlock checker
+ * of the locker with the handle as the waiter.
+ *
+ * A waiter whose future times out or is cancelled is removed from the queue of the lock it waits for, a handle
+ * granted to it concurrently is released. Futures are completed by the completion executor, by default
+ * {@link ForkJoinPool#commonPool()}, so dependent stages never run in the thread that released the entity.
+ *
+ * Limitations:
+ * - handles are not reentrant and are not owners for {@link EntityLock#getOwner()}, so a thread cannot release
+ *   or lock again an entity held by a handle, and a cycle through a handle is not detected as a deadlock;
+ * - handle holds are not measured by {@link ofedorova.enity.sync.LockerMetrics} and do not count for escalation.
+ *
+ * @author Olga_Fedorova
+ */
+public class AsyncEntityLockerImpl<T> implements AsyncEntityLocker<T> {
+
+    private final AbstractEntityLockerImpl<T> locker;
+    private final Executor completionExecutor;
+
+    public AsyncEntityLockerImpl(AbstractEntityLockerImpl<T> locker) {
+        this(locker, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param completionExecutor completes the futures returned by the facade
+     * @throws IllegalArgumentException if locks of the locker can be held only by threads
+     */
+    public AsyncEntityLockerImpl(AbstractEntityLockerImpl<T> locker, Executor completionExecutor) {
+        if (!locker.supportsAsyncHolders()) {
+            throw new IllegalArgumentException("Locks of the locker can be held only by threads");
+        }
+        this.locker = locker;
+        this.completionExecutor = completionExecutor;
+    }
+
+    @Override
+    public CompletableFuture<LockHandle<T>> lockAsync(T entityId) {
+        if (entityId == null) {
+            throw new IllegalArgumentException("Entity ID cannot be null");
+        }
+        CompletableFuture<LockHandle<T>> result = new CompletableFuture<>();
+        Handle<T> handle = new Handle<>(entityId);
+        handle.acquisition = locker.newAsyncAcquisition(entityId, handle, () -> complete(result, handle));
+        result.whenComplete((lockHandle, e) -> {
+            if (e != null) {
+                handle.acquisition.cancel();
+            }
+        });
+        try {
+            handle.acquisition.start();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * The acquisition is removed from the queue of the lock on the timeout, see {@link #lockAsync(Object)}.
+     */
+    @Override
+    public CompletableFuture<LockHandle<T>> tryLockAsync(T entityId, long timeout, TimeUnit timeUnit) {
+        return lockAsync(entityId).orTimeout(timeout, timeUnit);
+    }
+
+    /**
+     * Called when the entity is locked for the handle, the handle is released if the future has already failed.
+     */
+    private void complete(CompletableFuture<LockHandle<T>> result, Handle<T> handle) {
+        try {
+            completionExecutor.execute(() -> {
+                if (!result.complete(handle)) {
+                    handle.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            handle.close();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static class Handle<T> implements LockHandle<T> {
+
+        private final T entityId;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private AbstractEntityLockerImpl<T>.AsyncAcquisition acquisition;
+
+        private Handle(T entityId) {
+            this.entityId = entityId;
+        }
+
+        @Override
+        public T getEntityId() {
+            return entityId;
+        }
+
+        @Override
+        public void unlock() {
+            if (!released.compareAndSet(false, true)) {
+                throw new IllegalMonitorStateException();
+            }
+            acquisition.unlock();
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                acquisition.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(entityId);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.impl.utils.BackgroundDeadlockDetector;
+import ofedorova.enity.sync.impl.utils.DeadlockCheckerImpl;
+import ofedorova.enity.sync.impl.utils.WaitDieDeadlockChecker;
+import ofedorova.enity.sync.impl.utils.WaitForGraphDeadlockChecker;
+import ofedorova.enity.sync.impl.utils.WoundWaitDeadlockChecker;
+
+/**
+ * DeadlockPolicy.
+ *
+ * Implementation of the {@link DeadlockChecker} of a locker.
+ *
+ * @author Olga_Fedorova
+ */
+public enum DeadlockPolicy {
+
+    /**
+     * {@link WaitForGraphDeadlockChecker}: follows the wait chain from the lock, throws only on a real cycle,
+     * the cost of the check grows with the length of the chain.
+     */
+    WAIT_FOR_GRAPH {
+        @Override
+        DeadlockChecker createChecker() {
+            return new WaitForGraphDeadlockChecker();
+        }
+    },
+
+    /**
+     * {@link DeadlockCheckerImpl}: before every acquisition without timeout traverses the locks held by owners and
+     * waiters of the lock, throws only on a real cycle, checks acquisitions that would not wait too.
+     */
+    HELD_LOCKS {
+        @Override
+        DeadlockChecker createChecker() {
+            return new DeadlockCheckerImpl();
+        }
+    },
+
+    /**
+     * {@link WaitDieDeadlockChecker}: a younger thread does not wait for an older one and throws, constant cost
+     * of the check, aborts threads that would not deadlock.
+     */
+    WAIT_DIE {
+        @Override
+        DeadlockChecker createChecker() {
+            return new WaitDieDeadlockChecker();
+        }
+    },
+
+    /**
+     * {@link WoundWaitDeadlockChecker}: an older thread aborts younger owners and waits, constant cost
+     * of the check, aborts threads that would not deadlock.
+     */
+    WOUND_WAIT {
+        @Override
+        DeadlockChecker createChecker() {
+            return new WoundWaitDeadlockChecker();
+        }
+    },
+
+    /**
+     * {@link BackgroundDeadlockDetector}: no check on acquisitions and waits, a daemon thread breaks cycles
+     * of the wait-for graph every interval, a deadlock lasts up to the interval.
+     */
+    BACKGROUND_DETECTION {
+        @Override
+        DeadlockChecker createChecker() {
+            return new BackgroundDeadlockDetector();
+        }
+    };
+
+    abstract DeadlockChecker createChecker();
+}
@@ -1,7 +1,11 @@
 package ofedorova.enity.sync.impl.lockers;
 
-import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.EntityLock;
 import ofedorova.enity.sync.impl.locks.CustomLock;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * EntityCustomLockImpl.
@@ -10,19 +14,76 @@ import ofedorova.enity.sync.impl.locks.CustomLock;
  */
 public class EntityCustomLockImpl<T> extends AbstractEntityLockerImpl<T> {
 
+    private final FairnessMode fairnessMode;
+
     public EntityCustomLockImpl() {
-        super();
+        this(new EntityLockerBuilder<T>());
     }
 
     public EntityCustomLockImpl(int countGlobalLockEscalation) {
-        super(countGlobalLockEscalation);
+        this(new EntityLockerBuilder<T>().countGlobalLockEscalation(countGlobalLockEscalation));
+    }
+
+    public EntityCustomLockImpl(int countGlobalLockEscalation, GlobalLockMode globalLockMode) {
+        this(new EntityLockerBuilder<T>().countGlobalLockEscalation(countGlobalLockEscalation).globalLockMode(globalLockMode));
+    }
+
+    public EntityCustomLockImpl(int countGlobalLockEscalation, GlobalLockMode globalLockMode, DeadlockPolicy deadlockPolicy) {
+        this(new EntityLockerBuilder<T>()
+                .countGlobalLockEscalation(countGlobalLockEscalation)
+                .globalLockMode(globalLockMode)
+                .deadlockPolicy(deadlockPolicy));
+    }
+
+    /**
+     * See {@link EntityLockerBuilder#buildCustom()}.
+     */
+    EntityCustomLockImpl(EntityLockerBuilder<T> builder) {
+        super(builder);
+        this.fairnessMode = builder.getFairnessMode();
+    }
+
+    /**
+     * Locks the entity exclusively for at most the lease time: if the thread does not unlock the entity in time,
+     * all its exclusive holds of the entity are released on behalf of it, and the listener set by
+     * {@link #setLeaseExpiryListener(BiConsumer)} and metrics are notified. The thread still has to call
+     * {@code unlock} for every hold. Reentrant holds taken while the lease is active are covered by the lease.
+     *
+     * @throws IllegalStateException if the current thread already holds the entity exclusively
+     */
+    @Override
+    public void lock(T entityId, long leaseTime, TimeUnit timeUnit) {
+        super.lock(entityId, leaseTime, timeUnit);
+    }
+
+    /**
+     * Tries to lock the entity exclusively within the timeout, the lease starts when the entity is locked.
+     *
+     * @see #lock(Object, long, TimeUnit)
+     */
+    @Override
+    public boolean tryLock(T entityId, long timeout, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        return super.tryLock(entityId, timeout, leaseTime, timeUnit);
+    }
+
+    /**
+     * Sets the listener called in the thread of the timing wheel with the entity and its owner after a lease expired.
+     */
+    @Override
+    public void setLeaseExpiryListener(BiConsumer<? super T, Thread> listener) {
+        super.setLeaseExpiryListener(listener);
+    }
+
+    /**
+     * Locks of the implementation can be held by handles of {@link AsyncEntityLockerImpl}.
+     */
+    @Override
+    protected boolean supportsAsyncHolders() {
+        return true;
     }
 
     @Override
-    protected EntityLockInfo getLock(T entityId) {
-        if (entityId == null) {
-            throw new IllegalArgumentException("Entity ID cannot be null");
-        }
-        return getLockStorage().computeIfAbsent(entityId, lock -> new EntityLockInfo(entityId, new CustomLock()));
+    protected EntityLock createLock() {
+        return new CustomLock(fairnessMode);
     }
 }
@@ -1,28 +1,58 @@
 package ofedorova.enity.sync.impl.lockers;
 
-import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.EntityLock;
 import ofedorova.enity.sync.impl.locks.ExtendedReentrantLock;
+import ofedorova.enity.sync.impl.locks.ExtendedReentrantReadWriteLock;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
 
 /**
  * EntityExtendedReentrantLockImpl.
  *
+ * Locks entities with {@link ExtendedReentrantReadWriteLock}, or with the lighter {@link ExtendedReentrantLock} if
+ * the locker is built {@link EntityLockerBuilder#exclusiveOnly(boolean) exclusive only}.
+ *
  * @author Olga_Fedorova
  */
 public class EntityExtendedReentrantLockImpl<T> extends AbstractEntityLockerImpl<T> {
 
+    private final FairnessMode fairnessMode;
+    private final boolean exclusiveOnly;
+
     public EntityExtendedReentrantLockImpl() {
-        super();
+        this(new EntityLockerBuilder<T>());
     }
 
     public EntityExtendedReentrantLockImpl(int countGlobalLockEscalation) {
-        super(countGlobalLockEscalation);
+        this(new EntityLockerBuilder<T>().countGlobalLockEscalation(countGlobalLockEscalation));
+    }
+
+    public EntityExtendedReentrantLockImpl(int countGlobalLockEscalation, GlobalLockMode globalLockMode) {
+        this(new EntityLockerBuilder<T>().countGlobalLockEscalation(countGlobalLockEscalation).globalLockMode(globalLockMode));
+    }
+
+    public EntityExtendedReentrantLockImpl(int countGlobalLockEscalation, GlobalLockMode globalLockMode, DeadlockPolicy deadlockPolicy) {
+        this(new EntityLockerBuilder<T>()
+                .countGlobalLockEscalation(countGlobalLockEscalation)
+                .globalLockMode(globalLockMode)
+                .deadlockPolicy(deadlockPolicy));
+    }
+
+    /**
+     * See {@link EntityLockerBuilder#buildReentrant()}.
+     */
+    EntityExtendedReentrantLockImpl(EntityLockerBuilder<T> builder) {
+        super(builder);
+        this.fairnessMode = builder.getFairnessMode();
+        this.exclusiveOnly = builder.isExclusiveOnly();
+    }
+
+    @Override
+    protected boolean supportsSharedLocks() {
+        return !exclusiveOnly;
     }
 
     @Override
-    protected EntityLockInfo getLock(T entityId) {
-        if (entityId == null) {
-            throw new IllegalArgumentException("Entity ID cannot be null");
-        }
-        return getLockStorage().computeIfAbsent(entityId, lock -> new EntityLockInfo(entityId, new ExtendedReentrantLock()));
+    protected EntityLock createLock() {
+        return exclusiveOnly ? new ExtendedReentrantLock(fairnessMode) : new ExtendedReentrantReadWriteLock(fairnessMode);
     }
 }
@@ -0,0 +1,133 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.EscalationPolicy;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
+import ofedorova.enity.sync.impl.utils.ThresholdEscalationPolicy;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * EntityLockerBuilder.
+ *
+ * Options of the lockers derived from {@link AbstractEntityLockerImpl}, the constructors of the lockers only cover
+ * the count of escalation, the global lock mode and the deadlock policy. Defaults are the ones of these constructors:
+ * escalation after 4 entities, {@link GlobalLockMode#SHARED_READERS}, {@link DeadlockPolicy#WAIT_FOR_GRAPH},
+ * {@link FairnessMode#NON_FAIR} and no lock groups. A builder can build several lockers.
+ * <pre>
+ * EntityCustomLockImpl&lt;Long&gt; locker = new EntityLockerBuilder&lt;Long&gt;()
+ *         .fairnessMode(FairnessMode.BOUNDED_BARGING)
+ *         .deadlockPolicy(DeadlockPolicy.WAIT_DIE)
+ *         .buildCustom();
+ * </pre>
+ *
+ * @author Olga_Fedorova
+ */
+public final class EntityLockerBuilder<T> {
+
+    private EscalationPolicy escalationPolicy = new ThresholdEscalationPolicy(4);
+    private GlobalLockMode globalLockMode = GlobalLockMode.SHARED_READERS;
+    private DeadlockPolicy deadlockPolicy = DeadlockPolicy.WAIT_FOR_GRAPH;
+    private DeadlockChecker deadlockChecker;
+    private FairnessMode fairnessMode = FairnessMode.NON_FAIR;
+    private Function<? super T, ?> groupResolver;
+    private boolean exclusiveOnly;
+
+    public EntityLockerBuilder<T> countGlobalLockEscalation(int countGlobalLockEscalation) {
+        return escalationPolicy(new ThresholdEscalationPolicy(countGlobalLockEscalation));
+    }
+
+    /**
+     * @param escalationPolicy decides when a thread escalates to the global lock, or to the group with lock groups
+     */
+    public EntityLockerBuilder<T> escalationPolicy(EscalationPolicy escalationPolicy) {
+        this.escalationPolicy = Objects.requireNonNull(escalationPolicy);
+        return this;
+    }
+
+    public EntityLockerBuilder<T> globalLockMode(GlobalLockMode globalLockMode) {
+        this.globalLockMode = Objects.requireNonNull(globalLockMode);
+        return this;
+    }
+
+    /**
+     * Every built locker gets its own checker of the policy, replaces a checker set by {@link #deadlockChecker}.
+     */
+    public EntityLockerBuilder<T> deadlockPolicy(DeadlockPolicy deadlockPolicy) {
+        this.deadlockPolicy = Objects.requireNonNull(deadlockPolicy);
+        this.deadlockChecker = null;
+        return this;
+    }
+
+    /**
+     * @param deadlockChecker configured checker, e.g. a {@code BackgroundDeadlockDetector}, shared by the lockers built
+     *                        after the call
+     */
+    public EntityLockerBuilder<T> deadlockChecker(DeadlockChecker deadlockChecker) {
+        this.deadlockChecker = Objects.requireNonNull(deadlockChecker);
+        return this;
+    }
+
+    /**
+     * Fairness of the entity locks, and of the stripes of {@link EntityStripedLockImpl}.
+     */
+    public EntityLockerBuilder<T> fairnessMode(FairnessMode fairnessMode) {
+        this.fairnessMode = Objects.requireNonNull(fairnessMode);
+        return this;
+    }
+
+    /**
+     * @param groupResolver returns the group of an entity, null disables lock groups, see {@link LockGroups}
+     */
+    public EntityLockerBuilder<T> groupResolver(Function<? super T, ?> groupResolver) {
+        this.groupResolver = groupResolver;
+        return this;
+    }
+
+    /**
+     * Makes {@link #buildReentrant()} use {@link ofedorova.enity.sync.impl.locks.ExtendedReentrantLock} instead of
+     * {@link ofedorova.enity.sync.impl.locks.ExtendedReentrantReadWriteLock}: shared methods of the locker throw
+     * {@link UnsupportedOperationException}, a lock takes a third of the memory and locking of a new entity is faster.
+     */
+    public EntityLockerBuilder<T> exclusiveOnly(boolean exclusiveOnly) {
+        this.exclusiveOnly = exclusiveOnly;
+        return this;
+    }
+
+    public EntityCustomLockImpl<T> buildCustom() {
+        return new EntityCustomLockImpl<>(this);
+    }
+
+    public EntityExtendedReentrantLockImpl<T> buildReentrant() {
+        return new EntityExtendedReentrantLockImpl<>(this);
+    }
+
+    public EntityStripedLockImpl<T> buildStriped(int stripes) {
+        return new EntityStripedLockImpl<>(stripes, this);
+    }
+
+    EscalationPolicy getEscalationPolicy() {
+        return escalationPolicy;
+    }
+
+    GlobalLockMode getGlobalLockMode() {
+        return globalLockMode;
+    }
+
+    DeadlockChecker createDeadlockChecker() {
+        return deadlockChecker != null ? deadlockChecker : deadlockPolicy.createChecker();
+    }
+
+    FairnessMode getFairnessMode() {
+        return fairnessMode;
+    }
+
+    Function<? super T, ?> getGroupResolver() {
+        return groupResolver;
+    }
+
+    boolean isExclusiveOnly() {
+        return exclusiveOnly;
+    }
+}
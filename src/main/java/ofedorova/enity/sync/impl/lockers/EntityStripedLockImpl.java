@@ -0,0 +1,222 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.impl.locks.ExtendedReentrantReadWriteLock;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EntityStripedLockImpl.
+ *
+ * Maps entity IDs onto a fixed, power-of-two array of lock stripes instead of one lock per ID, so memory does not
+ * depend on the number of entities and no lock is allocated on lock. Entities that share a stripe exclude each other
+ * ("false contention"), locking of several entities of one stripe by one thread is reentrant.
+ *
+ * @author Olga_Fedorova
+ */
+public class EntityStripedLockImpl<T> extends AbstractEntityLockerImpl<T> {
+
+    public static final int DEFAULT_STRIPES = 1024;
+
+    private final FairnessMode fairnessMode;
+    private final EntityLockInfo[] stripes;
+    private final AtomicReferenceArray<Object> lockedEntityIds;
+    private final int mask;
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder falseContendedAcquisitions = new LongAdder();
+
+    public EntityStripedLockImpl() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public EntityStripedLockImpl(int stripes) {
+        this(stripes, new EntityLockerBuilder<T>());
+    }
+
+    public EntityStripedLockImpl(int stripes, int countGlobalLockEscalation) {
+        this(stripes, new EntityLockerBuilder<T>().countGlobalLockEscalation(countGlobalLockEscalation));
+    }
+
+    public EntityStripedLockImpl(int stripes, int countGlobalLockEscalation, GlobalLockMode globalLockMode) {
+        this(stripes, new EntityLockerBuilder<T>().countGlobalLockEscalation(countGlobalLockEscalation).globalLockMode(globalLockMode));
+    }
+
+    /**
+     * See {@link EntityLockerBuilder#buildStriped(int)}.
+     */
+    EntityStripedLockImpl(int stripes, EntityLockerBuilder<T> builder) {
+        super(builder);
+        this.fairnessMode = builder.getFairnessMode();
+        this.stripes = createStripes(stripes);
+        this.lockedEntityIds = new AtomicReferenceArray<>(this.stripes.length);
+        this.mask = this.stripes.length - 1;
+    }
+
+    @Override
+    public void lock(T entityId) {
+        int index = recordContention(entityId);
+        super.lock(entityId);
+        lockedEntityIds.set(index, entityId);
+    }
+
+    @Override
+    public void lockInterruptibly(T entityId) throws InterruptedException {
+        int index = recordContention(entityId);
+        super.lockInterruptibly(entityId);
+        lockedEntityIds.set(index, entityId);
+    }
+
+    @Override
+    public boolean tryLock(T entityId) {
+        int index = recordContention(entityId);
+        boolean isLocked = super.tryLock(entityId);
+        if (isLocked) {
+            lockedEntityIds.set(index, entityId);
+        }
+        return isLocked;
+    }
+
+    @Override
+    public boolean tryLock(T entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        int index = recordContention(entityId);
+        boolean isLocked = super.tryLock(entityId, timeout, timeUnit);
+        if (isLocked) {
+            lockedEntityIds.set(index, entityId);
+        }
+        return isLocked;
+    }
+
+    @Override
+    public void lockAll(Collection<T> entityIds) {
+        entityIds.forEach(this::recordContention);
+        super.lockAll(entityIds);
+        entityIds.forEach(entityId -> lockedEntityIds.set(index(entityId), entityId));
+    }
+
+    @Override
+    public boolean tryLockAll(Collection<T> entityIds, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        entityIds.forEach(this::recordContention);
+        boolean isLocked = super.tryLockAll(entityIds, timeout, timeUnit);
+        if (isLocked) {
+            entityIds.forEach(entityId -> lockedEntityIds.set(index(entityId), entityId));
+        }
+        return isLocked;
+    }
+
+    @Override
+    public void unlock(T entityId) {
+        int index = index(entityId);
+        Object lockedEntityId = lockedEntityIds.get(index);
+        super.unlock(entityId);
+        clearLockedEntityId(index, lockedEntityId);
+    }
+
+    @Override
+    public void unlockAll(Collection<T> entityIds) {
+        Object[] locked = new Object[entityIds.size()];
+        int i = 0;
+        for (T entityId : entityIds) {
+            locked[i++] = lockedEntityIds.get(index(entityId));
+        }
+        super.unlockAll(entityIds);
+        i = 0;
+        for (T entityId : entityIds) {
+            clearLockedEntityId(index(entityId), locked[i++]);
+        }
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Returns count of acquisitions that found the stripe locked by another thread.
+     */
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions.sum();
+    }
+
+    /**
+     * Returns count of acquisitions that found the stripe locked by another thread for another entity.
+     * The entity of the owner is the last one locked on the stripe, so the count is approximate.
+     */
+    public long getFalseContendedAcquisitions() {
+        return falseContendedAcquisitions.sum();
+    }
+
+    @Override
+    protected EntityLockInfo acquireLock(T entityId) {
+        return getLock(entityId);
+    }
+
+    @Override
+    protected void releaseLock(T entityId, EntityLockInfo lockInfo) {
+    }
+
+    @Override
+    protected EntityLockInfo getLock(T entityId) {
+        return stripes[index(entityId)];
+    }
+
+    /**
+     * Iterates the stripes, entries of snapshots are identified by the index of the stripe.
+     */
+    @Override
+    protected Iterator<EntityLockInfo> lockTableIterator() {
+        return Arrays.asList(stripes).iterator();
+    }
+
+    @Override
+    protected EntityLock createLock() {
+        return new ExtendedReentrantReadWriteLock(fairnessMode);
+    }
+
+    private int recordContention(T entityId) {
+        int index = index(entityId);
+        Thread owner = stripes[index].getLock().getOwner();
+        if (owner != null && owner != Thread.currentThread()) {
+            contendedAcquisitions.increment();
+            if (!entityId.equals(lockedEntityIds.get(index))) {
+                falseContendedAcquisitions.increment();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Clears the entity of the stripe after the last release by the owner, the entity is read before the release,
+     * so the entity of the next owner is kept.
+     */
+    private void clearLockedEntityId(int index, Object lockedEntityId) {
+        if (lockedEntityId != null && stripes[index].getLock().getOwner() != Thread.currentThread()) {
+            lockedEntityIds.compareAndSet(index, lockedEntityId, null);
+        }
+    }
+
+    private int index(T entityId) {
+        if (entityId == null) {
+            throw new IllegalArgumentException("Entity ID cannot be null");
+        }
+        int hash = entityId.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private EntityLockInfo[] createStripes(int stripes) {
+        if (stripes <= 0 || stripes > 1 << 30) {
+            throw new IllegalArgumentException("Count of stripes must be between 1 and 2^30");
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        EntityLockInfo[] result = new EntityLockInfo[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = new EntityLockInfo<>(i, createLock(), i);
+        }
+        return result;
+    }
+}
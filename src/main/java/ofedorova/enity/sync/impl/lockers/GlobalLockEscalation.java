@@ -0,0 +1,280 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.EscalationPolicy;
+import ofedorova.enity.sync.LockerMetrics;
+import ofedorova.enity.sync.impl.locks.DistributedReadWriteLock;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * GlobalLockEscalation.
+ *
+ * Global lock of a locker and entity lock counts of threads: every thread holding entity locks holds the read side
+ * of the global lock, a thread holds the write side while {@link EscalationPolicy} decides to escalate for the count
+ * of its entity locks. Counts are read only by the thread itself, so they are kept in a {@link ThreadLocal}: locking
+ * does not touch shared structures, and counts are reclaimed with the thread. Waits for the global lock are reported
+ * to the policy only if the lock is not acquired at once. Escalated threads are also kept in a set for
+ * {@link LockTableSnapshot}, escalation is rare, so the set is not updated on the usual lock path.
+ *
+ * Handles of {@link AsyncEntityLockerImpl} hold the read side in {@link HandleHolds}, not in the lock: a thread that
+ * takes the write side waits until they are released, and handles that find the write side taken continue when it
+ * is released.
+ *
+ * @author Olga_Fedorova
+ */
+final class GlobalLockEscalation {
+
+    private final ReadWriteLock globalLock;
+    private final ThreadLocal<GlobalLockHolds> globalLockHolds = ThreadLocal.withInitial(GlobalLockHolds::new);
+    private final EscalationPolicy escalationPolicy;
+    private final AtomicInteger escalatedThreads = new AtomicInteger();
+    private final Set<Thread> escalated = ConcurrentHashMap.newKeySet();
+    private final HandleHolds handleHolds = new HandleHolds(this::isGlobalWriteLocked);
+    private volatile LockerMetrics metrics;
+
+    GlobalLockEscalation(EscalationPolicy escalationPolicy, GlobalLockMode globalLockMode) {
+        this.escalationPolicy = escalationPolicy;
+        this.globalLock = globalLockMode.createLock();
+    }
+
+    void setMetrics(LockerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void globalLock() {
+        acquireGlobalLock(globalLock.writeLock(), 0, false, 0);
+    }
+
+    boolean tryGlobalLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        Lock lock = globalLock.writeLock();
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        LockerMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return lock.tryLock(timeout, timeUnit) && awaitHandles(lock, deadline, true);
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        boolean isLocked = tryLockNow(lock);
+        if (isLocked && handleHolds.getHoldCount() == 0) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            return (isLocked || lock.tryLock(timeout, timeUnit)) && awaitHandles(lock, deadline, true);
+        } finally {
+            metrics.recordGlobalWait(System.nanoTime() - start);
+        }
+    }
+
+    void globalUnlock() {
+        globalLock.writeLock().unlock();
+        handleHolds.exclusiveReleased();
+    }
+
+    /**
+     * Takes the read side for a handle of {@link AsyncEntityLockerImpl}.
+     *
+     * @return false if the write side is held
+     */
+    boolean tryLockForHandle() {
+        return handleHolds.tryAcquire();
+    }
+
+    /**
+     * Queues the continuation of a handle until the write side is released, see {@link HandleHolds#await(Runnable)}.
+     */
+    boolean awaitForHandle(Runnable continuation) {
+        return handleHolds.await(continuation);
+    }
+
+    boolean cancelForHandle(Runnable continuation) {
+        return handleHolds.cancel(continuation);
+    }
+
+    void unlockForHandle() {
+        handleHolds.release();
+    }
+
+    /**
+     * Returns true if the current thread holds entity locks.
+     */
+    boolean hasLocks() {
+        return globalLockHolds.get().countLocks > 0;
+    }
+
+    /**
+     * Returns true if the write side of the global lock is held by {@link ofedorova.enity.sync.EntityLocker#globalLock()}
+     * or an escalated thread.
+     */
+    boolean isGlobalWriteLocked() {
+        if (globalLock instanceof DistributedReadWriteLock) {
+            return ((DistributedReadWriteLock) globalLock).isWriteLocked();
+        }
+        return ((ReentrantReadWriteLock) globalLock).isWriteLocked();
+    }
+
+    /**
+     * Returns count of holds of the read side, one per thread holding entity locks and one per handle of
+     * {@link AsyncEntityLockerImpl}.
+     */
+    int getGlobalReadHolds() {
+        if (globalLock instanceof DistributedReadWriteLock) {
+            return ((DistributedReadWriteLock) globalLock).getReadLockCount() + handleHolds.getHoldCount();
+        }
+        return ((ReentrantReadWriteLock) globalLock).getReadLockCount() + handleHolds.getHoldCount();
+    }
+
+    Set<Thread> getEscalatedThreads() {
+        return Collections.unmodifiableSet(new HashSet<>(escalated));
+    }
+
+    /**
+     * Counts entity locks for the current thread. The first entity lock of the thread takes the read side of
+     * the global lock, escalation swaps it for the write side. If the write side is not acquired, the thread keeps
+     * the read side.
+     *
+     * @return false if the read side of the global lock was not acquired before the deadline
+     */
+    boolean incrementLocksAndGlobalEscalation(int countLocks, long deadline, boolean checkTimeout) {
+        GlobalLockHolds holds = globalLockHolds.get();
+        boolean isGlobalLocked = holds.countLocks > 0;
+        if (!holds.escalated && escalationPolicy.shouldEscalate(holds.countLocks + countLocks)) {
+            if (isGlobalLocked) {
+                globalLock.readLock().unlock();
+            }
+            holds.escalated = acquireGlobalLock(globalLock.writeLock(), deadline, checkTimeout, holds.countLocks + countLocks);
+            LockerMetrics metrics = this.metrics;
+            if (holds.escalated) {
+                escalatedThreads.incrementAndGet();
+                escalated.add(Thread.currentThread());
+                if (metrics != null) {
+                    metrics.recordEscalation();
+                }
+            }
+            if (!holds.escalated && isGlobalLocked) {
+                globalLock.readLock().lock();
+            }
+            isGlobalLocked = isGlobalLocked || holds.escalated;
+        }
+        if (!isGlobalLocked && !acquireGlobalLock(globalLock.readLock(), deadline, checkTimeout, 0)) {
+            return false;
+        }
+        holds.countLocks += countLocks;
+        return true;
+    }
+
+    void decrementLocksAndGlobalEscalation(int countLocks) {
+        GlobalLockHolds holds = globalLockHolds.get();
+        holds.countLocks -= countLocks;
+        if (holds.escalated && (holds.countLocks == 0 || !escalationPolicy.shouldEscalate(holds.countLocks))) {
+            if (holds.countLocks > 0) {
+                globalLock.readLock().lock();
+            }
+            escalatedThreads.decrementAndGet();
+            escalated.remove(Thread.currentThread());
+            globalLock.writeLock().unlock();
+            handleHolds.exclusiveReleased();
+            holds.escalated = false;
+        } else if (!holds.escalated && holds.countLocks == 0) {
+            globalLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Acquires the global lock, the wait is reported to metrics and to the escalation policy only if the lock
+     * is not acquired at once.
+     *
+     * @param countEscalation count of entity locks of the thread if it escalates, otherwise 0
+     */
+    private boolean acquireGlobalLock(Lock lock, long deadline, boolean checkTimeout, int countEscalation) {
+        boolean isLockedNow = tryLockNow(lock);
+        if (isLockedNow && (lock != globalLock.writeLock() || handleHolds.getHoldCount() == 0)) {
+            if (countEscalation > 0) {
+                escalationPolicy.recordEscalation(countEscalation, 0L, true);
+            }
+            return true;
+        }
+        boolean waitsForEscalation = countEscalation == 0 && escalatedThreads.get() > 0;
+        long start = System.nanoTime();
+        boolean isLocked = (isLockedNow || acquireGlobalLockWaiting(lock, deadline, checkTimeout))
+                && awaitHandles(lock, deadline, checkTimeout);
+        long waitNanos = System.nanoTime() - start;
+        LockerMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordGlobalWait(waitNanos);
+        }
+        if (countEscalation > 0) {
+            escalationPolicy.recordEscalation(countEscalation, waitNanos, isLocked);
+        } else if (waitsForEscalation) {
+            escalationPolicy.recordWaitForEscalation(waitNanos);
+        }
+        return isLocked;
+    }
+
+    private boolean acquireGlobalLockWaiting(Lock lock, long deadline, boolean checkTimeout) {
+        if (!checkTimeout) {
+            lock.lock();
+            return true;
+        }
+        long nanos = deadline - System.nanoTime();
+        if (nanos <= 0L) {
+            return false;
+        }
+        try {
+            return lock.tryLock(nanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits until handles release the read side after the write side is taken, the write side is released if they
+     * do not release it before the deadline.
+     *
+     * @return false if the write side was released
+     */
+    private boolean awaitHandles(Lock lock, long deadline, boolean checkTimeout) {
+        if (lock != globalLock.writeLock() || handleHolds.awaitReleased(deadline, checkTimeout)) {
+            return true;
+        }
+        lock.unlock();
+        handleHolds.exclusiveReleased();
+        return false;
+    }
+
+    /**
+     * Unlike {@link Lock#tryLock()}, timed {@code tryLock} of read-write locks does not barge ahead of a queued writer.
+     * The interrupt status is cleared for the attempt and restored, so an interrupted thread is not refused a free lock.
+     */
+    private static boolean tryLockNow(Lock lock) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            return lock.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+            return false;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Global lock holds of a thread, accessed only by the thread itself.
+     */
+    private static class GlobalLockHolds {
+        private int countLocks;
+        private boolean escalated;
+    }
+}
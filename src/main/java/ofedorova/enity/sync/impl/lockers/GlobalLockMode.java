@@ -0,0 +1,40 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.impl.locks.DistributedReadWriteLock;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * GlobalLockMode.
+ *
+ * Implementation of the global lock. Every thread holding entity locks holds the read side of the global lock,
+ * {@link ofedorova.enity.sync.EntityLocker#globalLock()} takes the write side.
+ *
+ * @author Olga_Fedorova
+ */
+public enum GlobalLockMode {
+
+    /**
+     * {@link ReentrantReadWriteLock}: all readers update one shared counter, cheap {@code globalLock()}.
+     */
+    SHARED_READERS {
+        @Override
+        ReadWriteLock createLock() {
+            return new ReentrantReadWriteLock();
+        }
+    },
+
+    /**
+     * {@link DistributedReadWriteLock}: readers update counters of their own slots, reader side scales with cores,
+     * {@code globalLock()} has to scan all slots.
+     */
+    DISTRIBUTED_READERS {
+        @Override
+        ReadWriteLock createLock() {
+            return new DistributedReadWriteLock();
+        }
+    };
+
+    abstract ReadWriteLock createLock();
+}
@@ -0,0 +1,127 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * HandleHolds.
+ *
+ * Shared holds of owners that are not threads, see {@link AsyncEntityLockerImpl}, on a lock whose exclusive side
+ * is taken by threads, e.g. the global lock. An owner counts its hold and then checks the exclusive side, a thread
+ * takes the exclusive side and then waits until the count drops to zero, so at least one of them sees the other one:
+ * the owner backs off, or the thread waits for the owner. An owner that backs off queues a continuation, which is
+ * called when the exclusive side is released, so no thread waits for it.
+ *
+ * @author Olga_Fedorova
+ */
+final class HandleHolds {
+
+    private final AtomicInteger holds = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Runnable> blocked = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> draining = new ConcurrentLinkedQueue<>();
+    private final BooleanSupplier exclusiveHeld;
+
+    /**
+     * @param exclusiveHeld returns true while a thread holds or takes the exclusive side
+     */
+    HandleHolds(BooleanSupplier exclusiveHeld) {
+        this.exclusiveHeld = exclusiveHeld;
+    }
+
+    /**
+     * @return false if the exclusive side is held
+     */
+    boolean tryAcquire() {
+        holds.incrementAndGet();
+        if (!exclusiveHeld.getAsBoolean()) {
+            return true;
+        }
+        release();
+        return false;
+    }
+
+    /**
+     * Releases a hold, the last one wakes up the threads waiting in {@link #awaitReleased(long, boolean)}.
+     */
+    void release() {
+        if (holds.decrementAndGet() == 0) {
+            for (Thread thread : draining) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Queues the continuation until the exclusive side is released, the continuation then tries
+     * {@link #tryAcquire()} again.
+     *
+     * @return false if the exclusive side was released before the continuation was queued, the continuation is not
+     *         called and the owner tries again itself
+     */
+    boolean await(Runnable continuation) {
+        blocked.add(continuation);
+        return exclusiveHeld.getAsBoolean() || !blocked.remove(continuation);
+    }
+
+    /**
+     * @return false if the continuation has already been called or is being called
+     */
+    boolean cancel(Runnable continuation) {
+        return blocked.remove(continuation);
+    }
+
+    /**
+     * Called after the exclusive side is released. Only continuations queued before the call are called, those that
+     * find the exclusive side taken again queue themselves behind them.
+     */
+    void exclusiveReleased() {
+        for (int count = blocked.size(); count > 0; count--) {
+            Runnable continuation = blocked.poll();
+            if (continuation == null) {
+                return;
+            }
+            continuation.run();
+        }
+    }
+
+    /**
+     * Waits until owners release their holds, called by the thread that has taken the exclusive side. The wait is
+     * not interruptible, the interrupt status is kept.
+     *
+     * @return false if holds were not released before the deadline
+     */
+    boolean awaitReleased(long deadline, boolean checkTimeout) {
+        if (holds.get() == 0) {
+            return true;
+        }
+        Thread currentThread = Thread.currentThread();
+        boolean interrupted = false;
+        draining.add(currentThread);
+        try {
+            while (holds.get() != 0) {
+                if (checkTimeout) {
+                    long nanos = deadline - System.nanoTime();
+                    if (nanos <= 0L) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                interrupted |= Thread.interrupted();
+            }
+            return true;
+        } finally {
+            draining.remove(currentThread);
+            if (interrupted) {
+                currentThread.interrupt();
+            }
+        }
+    }
+
+    int getHoldCount() {
+        return holds.get();
+    }
+}
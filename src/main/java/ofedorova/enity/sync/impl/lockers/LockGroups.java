@@ -0,0 +1,339 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EscalationPolicy;
+import ofedorova.enity.sync.LockerMetrics;
+import ofedorova.enity.sync.impl.locks.IntentionLock;
+import ofedorova.enity.sync.impl.locks.IntentionMode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Function;
+
+/**
+ * LockGroups.
+ *
+ * Middle level of multi-granularity locking between the global lock and entities. Every entity belongs to the group
+ * returned by {@code groupResolver}, e.g. a tenant or a partition. Before a thread locks an entity it takes
+ * {@link IntentionMode#IS} or {@link IntentionMode#IX} on the group, so {@link IntentionMode#S} or
+ * {@link IntentionMode#X} on the group excludes its entities without blocking other groups.
+ *
+ * A thread escalates to {@link IntentionMode#X} on the group when {@link EscalationPolicy} decides so for the count
+ * of its entity locks in the group. Escalation does not wait: if other threads hold the group, the thread keeps its
+ * intention lock, the failure is reported to the policy, and the thread tries again on its next lock in the group.
+ * Counts of holds are read only by the thread itself, so they are kept in a {@link ThreadLocal}.
+ *
+ * Group locks are counted like {@link ofedorova.enity.sync.EntityLockInfo}: a thread retains the lock of a group
+ * while it holds or waits for it, and the lock is evicted with its last reference, so groups created on the fly do
+ * not accumulate. A handle of {@link AsyncEntityLockerImpl} retains the lock of its group and holds
+ * {@link IntentionMode#IX} in it as its owner, see {@link IntentionLock#lockFor(Object, IntentionMode, Runnable)}.
+ *
+ * @author Olga_Fedorova
+ */
+final class LockGroups<T> {
+
+    private final Function<? super T, ?> groupResolver;
+    private final EscalationPolicy escalationPolicy;
+    private final Map<Object, GroupLock> groupLocks = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<Object, GroupHolds>> groupHolds = ThreadLocal.withInitial(HashMap::new);
+    private volatile LockerMetrics metrics;
+
+    LockGroups(Function<? super T, ?> groupResolver, EscalationPolicy escalationPolicy) {
+        this.groupResolver = groupResolver;
+        this.escalationPolicy = escalationPolicy;
+    }
+
+    void setMetrics(LockerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    Object getGroup(T entityId) {
+        if (entityId == null) {
+            throw new IllegalArgumentException("Entity ID cannot be null");
+        }
+        Object groupId = groupResolver.apply(entityId);
+        if (groupId == null) {
+            throw new IllegalArgumentException("Group of entity cannot be null");
+        }
+        return groupId;
+    }
+
+    Map<Object, GroupLock> getGroupLocks() {
+        return groupLocks;
+    }
+
+    void lockGroup(Object groupId, IntentionMode mode) {
+        GroupLock groupLock = retainGroupLock(groupId);
+        boolean isLocked = false;
+        try {
+            groupLock.lock.lock(mode);
+            isLocked = true;
+        } finally {
+            if (!isLocked) {
+                releaseGroupLock(groupId, groupLock);
+            }
+        }
+    }
+
+    boolean tryLockGroup(Object groupId, IntentionMode mode, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        GroupLock groupLock = retainGroupLock(groupId);
+        boolean isLocked = false;
+        try {
+            isLocked = groupLock.lock.tryLock(mode, timeout, timeUnit);
+            return isLocked;
+        } finally {
+            if (!isLocked) {
+                releaseGroupLock(groupId, groupLock);
+            }
+        }
+    }
+
+    void unlockGroup(Object groupId, IntentionMode mode) {
+        if (groupId == null) {
+            throw new IllegalArgumentException("Group ID cannot be null");
+        }
+        GroupLock groupLock = groupLocks.get(groupId);
+        if (groupLock == null) {
+            throw new IllegalMonitorStateException();
+        }
+        groupLock.lock.unlock(mode);
+        releaseGroupLock(groupId, groupLock);
+    }
+
+    /**
+     * Counts an entity lock of the current thread in the group, the first shared or exclusive entity lock takes
+     * the intention lock of the group.
+     */
+    void lockIntention(Object groupId, boolean shared) {
+        GroupHolds holds = retainHolds(groupId);
+        if (holds.countLocks(shared) == 0) {
+            boolean isLocked = false;
+            try {
+                holds.groupLock.lock.lock(shared ? IntentionMode.IS : IntentionMode.IX);
+                isLocked = true;
+            } finally {
+                if (!isLocked) {
+                    releaseHoldsIfEmpty(groupId, holds);
+                }
+            }
+        }
+        countLock(holds, shared);
+    }
+
+    /**
+     * Same as {@link #lockIntention(Object, boolean)}, but waits for the intention lock interruptibly.
+     */
+    void lockIntentionInterruptibly(Object groupId, boolean shared) throws InterruptedException {
+        GroupHolds holds = retainHolds(groupId);
+        if (holds.countLocks(shared) == 0) {
+            boolean isLocked = false;
+            try {
+                holds.groupLock.lock.lockInterruptibly(shared ? IntentionMode.IS : IntentionMode.IX);
+                isLocked = true;
+            } finally {
+                if (!isLocked) {
+                    releaseHoldsIfEmpty(groupId, holds);
+                }
+            }
+        }
+        countLock(holds, shared);
+    }
+
+    /**
+     * @return false if the intention lock was not acquired before the timeout
+     */
+    boolean tryLockIntention(Object groupId, boolean shared, long timeoutNanos) throws InterruptedException {
+        GroupHolds holds = retainHolds(groupId);
+        if (holds.countLocks(shared) == 0) {
+            boolean isLocked = false;
+            try {
+                isLocked = holds.groupLock.lock.tryLock(shared ? IntentionMode.IS : IntentionMode.IX, timeoutNanos, TimeUnit.NANOSECONDS);
+            } finally {
+                if (!isLocked) {
+                    releaseHoldsIfEmpty(groupId, holds);
+                }
+            }
+            if (!isLocked) {
+                return false;
+            }
+        }
+        countLock(holds, shared);
+        return true;
+    }
+
+    /**
+     * Takes the intention lock only if it is granted at once, ignores the interrupt status.
+     */
+    boolean tryLockIntention(Object groupId, boolean shared) {
+        GroupHolds holds = retainHolds(groupId);
+        if (holds.countLocks(shared) == 0 && !holds.groupLock.lock.tryLock(shared ? IntentionMode.IS : IntentionMode.IX)) {
+            releaseHoldsIfEmpty(groupId, holds);
+            return false;
+        }
+        countLock(holds, shared);
+        return true;
+    }
+
+    void unlockIntention(Object groupId, boolean shared) {
+        GroupHolds holds = groupHolds.get().get(groupId);
+        if (holds == null || holds.countLocks(shared) == 0) {
+            throw new IllegalMonitorStateException();
+        }
+        IntentionLock groupLock = holds.groupLock.lock;
+        if (shared) {
+            holds.countSharedLocks--;
+        } else {
+            holds.countExclusiveLocks--;
+        }
+        if (holds.countLocks(shared) == 0) {
+            groupLock.unlock(shared ? IntentionMode.IS : IntentionMode.IX);
+        }
+        if (holds.escalated && (holds.isEmpty() || !escalationPolicy.shouldEscalate(holds.countSharedLocks + holds.countExclusiveLocks))) {
+            groupLock.unlock(IntentionMode.X);
+            holds.escalated = false;
+        }
+        releaseHoldsIfEmpty(groupId, holds);
+    }
+
+    private void countLock(GroupHolds holds, boolean shared) {
+        if (shared) {
+            holds.countSharedLocks++;
+        } else {
+            holds.countExclusiveLocks++;
+        }
+        int countLocks = holds.countSharedLocks + holds.countExclusiveLocks;
+        if (!holds.escalated && escalationPolicy.shouldEscalate(countLocks)) {
+            holds.escalated = holds.groupLock.lock.tryLock(IntentionMode.X);
+            escalationPolicy.recordEscalation(countLocks, 0L, holds.escalated);
+            LockerMetrics metrics = this.metrics;
+            if (holds.escalated && metrics != null) {
+                metrics.recordEscalation();
+            }
+        }
+    }
+
+    /**
+     * Returns holds of the current thread in the group, the first entity lock of the thread in the group retains
+     * the group lock until its holds are empty again.
+     */
+    private GroupHolds retainHolds(Object groupId) {
+        Map<Object, GroupHolds> holdsOfThread = groupHolds.get();
+        GroupHolds holds = holdsOfThread.get(groupId);
+        if (holds == null) {
+            holds = new GroupHolds(retainGroupLock(groupId));
+            holdsOfThread.put(groupId, holds);
+        }
+        return holds;
+    }
+
+    private void releaseHoldsIfEmpty(Object groupId, GroupHolds holds) {
+        if (holds.isEmpty()) {
+            groupHolds.get().remove(groupId);
+            releaseGroupLock(groupId, holds.groupLock);
+        }
+    }
+
+    /**
+     * Returns lock of the group and retains it, so it cannot be evicted until
+     * {@link #releaseGroupLock(Object, GroupLock)} is called.
+     */
+    GroupLock retainGroupLock(Object groupId) {
+        if (groupId == null) {
+            throw new IllegalArgumentException("Group ID cannot be null");
+        }
+        GroupLock groupLock = groupLocks.get(groupId);
+        if (groupLock == null || !groupLock.retain()) {
+            groupLock = groupLocks.compute(groupId, LockGroups::retainOrCreateLock);
+        }
+        return groupLock;
+    }
+
+    private static GroupLock retainOrCreateLock(Object groupId, GroupLock groupLock) {
+        if (groupLock == null || !groupLock.retain()) {
+            groupLock = new GroupLock();
+            groupLock.retain();
+        }
+        return groupLock;
+    }
+
+    /**
+     * Releases lock of the group and evicts it if it has no references, a lock retained concurrently is not evicted.
+     */
+    void releaseGroupLock(Object groupId, GroupLock groupLock) {
+        if (groupLock.release() && groupLock.evict()) {
+            groupLocks.remove(groupId, groupLock);
+        }
+    }
+
+    /**
+     * Lock of a group with the count of its references, see {@link ofedorova.enity.sync.EntityLockInfo}.
+     */
+    static final class GroupLock {
+
+        private static final int EVICTED = -1;
+
+        private static final AtomicIntegerFieldUpdater<GroupLock> REFERENCES =
+                AtomicIntegerFieldUpdater.newUpdater(GroupLock.class, "references");
+
+        private final IntentionLock lock = new IntentionLock();
+        private volatile int references;
+
+        private boolean retain() {
+            while (true) {
+                int count = references;
+                if (count == EVICTED) {
+                    return false;
+                }
+                if (REFERENCES.compareAndSet(this, count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean release() {
+            return REFERENCES.decrementAndGet(this) == 0;
+        }
+
+        private boolean evict() {
+            return REFERENCES.compareAndSet(this, 0, EVICTED);
+        }
+
+        /**
+         * Takes {@link IntentionMode#IX} for an owner that is not a thread, the group lock must be retained.
+         *
+         * @return null if the mode was granted at once, otherwise the queued request
+         */
+        EntityLock.Request lockIntentionFor(Object owner, Runnable onLocked) {
+            return lock.lockFor(owner, IntentionMode.IX, onLocked);
+        }
+
+        void unlockIntentionFor(Object owner) {
+            lock.unlockFor(owner, IntentionMode.IX);
+        }
+    }
+
+    /**
+     * Entity locks of a thread in one group, accessed only by the thread itself.
+     */
+    private static class GroupHolds {
+        private final GroupLock groupLock;
+        private int countSharedLocks;
+        private int countExclusiveLocks;
+        private boolean escalated;
+
+        private GroupHolds(GroupLock groupLock) {
+            this.groupLock = groupLock;
+        }
+
+        private int countLocks(boolean shared) {
+            return shared ? countSharedLocks : countExclusiveLocks;
+        }
+
+        private boolean isEmpty() {
+            return countSharedLocks == 0 && countExclusiveLocks == 0;
+        }
+    }
+}
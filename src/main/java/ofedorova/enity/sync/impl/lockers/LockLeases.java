@@ -0,0 +1,176 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.LockerMetrics;
+import ofedorova.enity.sync.impl.utils.TimingWheel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * LockLeases.
+ *
+ * Leases of exclusive holds: when a lease expires, the timing wheel releases all exclusive holds of the entity on behalf
+ * of its owner with {@link ofedorova.enity.sync.EntityLock#forceUnlock(Thread)}, so a hung owner or an owner that
+ * forgot {@code unlock} blocks other threads only until the lease expires. A lease covers the first exclusive hold of
+ * the entity by the thread and all reentrant holds taken while the lease is active; the last release cancels it.
+ *
+ * Exclusive acquisitions and releases of the owner and the expiry are serialized by the monitor of the lease, so
+ * the lock is never released on behalf of the owner while the owner updates it. After the expiry the owner is
+ * expected to call {@code unlock} for every revoked hold as usual: these calls do not touch the lock, they only update
+ * the bookkeeping of the owner, and only the last of them is reported to the deadlock checker, which saw one
+ * acquisition of the lease. Until then the owner keeps the read side of the global lock and the intention lock
+ * of the group. Leases of a thread are read only by the thread itself, so they are kept in a {@link ThreadLocal},
+ * and a locker that never used leases does not look them up.
+ *
+ * @author Olga_Fedorova
+ */
+final class LockLeases<T> {
+
+    private final TimingWheel timingWheel;
+    private final ThreadLocal<Map<EntityLockInfo, Lease>> leases = ThreadLocal.withInitial(HashMap::new);
+    private volatile boolean used;
+    private volatile LockerMetrics metrics;
+    private volatile BiConsumer<? super T, Thread> expiryListener;
+
+    LockLeases(TimingWheel timingWheel) {
+        this.timingWheel = timingWheel;
+    }
+
+    void setMetrics(LockerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void setExpiryListener(BiConsumer<? super T, Thread> expiryListener) {
+        this.expiryListener = expiryListener;
+    }
+
+    /**
+     * Starts the lease of the first exclusive hold of the entity by the current thread.
+     */
+    void startLease(T entityId, EntityLockInfo lockInfo, long leaseNanos) {
+        used = true;
+        Lease lease = new Lease(entityId, lockInfo, Thread.currentThread());
+        leases.get().put(lockInfo, lease);
+        lease.timeout = timingWheel.schedule(() -> expire(lease), leaseNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns true if the current thread has a lease of the lock, active or expired with revoked holds.
+     */
+    boolean hasLease(EntityLockInfo lockInfo) {
+        return used && leases.get().containsKey(lockInfo);
+    }
+
+    /**
+     * Takes a reentrant hold of the lock if the current thread holds it under an active lease.
+     *
+     * @return false if the current thread has no active lease of the lock, the caller acquires the lock itself
+     */
+    boolean tryLockLeased(EntityLockInfo lockInfo) {
+        if (!used) {
+            return false;
+        }
+        Lease lease = leases.get().get(lockInfo);
+        if (lease == null) {
+            return false;
+        }
+        synchronized (lease) {
+            if (lease.expired) {
+                return false;
+            }
+            lockInfo.getLock().lock();
+            lease.holds++;
+            return true;
+        }
+    }
+
+    /**
+     * Releases an exclusive hold of the current thread under its lease. A hold revoked by the expiry is only counted.
+     *
+     * @return {@link Release#NOT_LEASED} if the current thread has no lease of the lock, the caller releases the lock
+     *         itself
+     */
+    Release unlockLeased(EntityLockInfo lockInfo) {
+        if (!used) {
+            return Release.NOT_LEASED;
+        }
+        Map<EntityLockInfo, Lease> leasesOfThread = leases.get();
+        Lease lease = leasesOfThread.get(lockInfo);
+        if (lease == null) {
+            return Release.NOT_LEASED;
+        }
+        synchronized (lease) {
+            if (!lease.expired) {
+                lockInfo.getLock().unlock();
+            }
+            if (--lease.holds == 0) {
+                lease.timeout.cancel();
+                leasesOfThread.remove(lockInfo);
+                return Release.RELEASED;
+            }
+            return lease.expired ? Release.REVOKED : Release.RELEASED;
+        }
+    }
+
+    /**
+     * Called by the timing wheel.
+     */
+    private void expire(Lease lease) {
+        synchronized (lease) {
+            if (lease.holds == 0 || lease.expired) {
+                return;
+            }
+            lease.expired = true;
+            lease.lockInfo.getLock().forceUnlock(lease.owner);
+        }
+        LockerMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordLeaseExpiry(lease.entityId);
+        }
+        BiConsumer<? super T, Thread> expiryListener = this.expiryListener;
+        if (expiryListener != null) {
+            expiryListener.accept(lease.entityId, lease.owner);
+        }
+    }
+
+    /**
+     * Outcome of {@link #unlockLeased(EntityLockInfo)}.
+     */
+    enum Release {
+        /**
+         * The current thread has no lease of the lock.
+         */
+        NOT_LEASED,
+        /**
+         * The hold was released under an active lease, or the last hold revoked by the expiry was counted.
+         */
+        RELEASED,
+        /**
+         * A hold revoked by the expiry was counted and other revoked holds are left. The lock was released once
+         * by the expiry, so only the last revoked hold is reported as released.
+         */
+        REVOKED
+    }
+
+    /**
+     * Lease of the exclusive holds of one thread, holds and expiry are guarded by the monitor of the lease.
+     */
+    private final class Lease {
+
+        private final T entityId;
+        private final EntityLockInfo lockInfo;
+        private final Thread owner;
+        private int holds = 1;
+        private boolean expired;
+        private TimingWheel.Timeout timeout;
+
+        private Lease(T entityId, EntityLockInfo lockInfo, Thread owner) {
+            this.entityId = entityId;
+            this.lockInfo = lockInfo;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EntityLockInfo;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * LockTableSnapshot.
+ *
+ * State of the locks of a locker for diagnostics of stalls: owners and holds of entity locks, threads queued for them,
+ * escalated threads and the state of the global lock. Nothing is locked to take the snapshot, so lockers keep working
+ * while it is taken. The global state is read when the snapshot is created. Entity locks are read one by one while
+ * {@link #entries()} or {@link #writeJson(Appendable)} iterates the lock table, so memory of the snapshot does not
+ * depend on the size of the table, and threads locking entities meanwhile only share cache lines with the reader.
+ *
+ * Every entry is consistent by itself: the owner is read before and after the other fields of the lock, an entry whose
+ * owner changed is read again. The snapshot as a whole is not atomic: locks taken or released during the iteration may
+ * be seen or missed, as with any iteration of a {@link java.util.concurrent.ConcurrentHashMap}. Locks without owners
+ * and queued threads are skipped, every call of {@link #entries()} reads the table again.
+ *
+ * @author Olga_Fedorova
+ */
+public final class LockTableSnapshot {
+
+    private static final int MAX_READS = 4;
+
+    private final long capturedAtMillis;
+    private final boolean globalWriteLocked;
+    private final int globalReadHolds;
+    private final Set<Thread> escalatedThreads;
+    private final Supplier<Iterator<EntityLockInfo>> locks;
+
+    LockTableSnapshot(GlobalLockEscalation globalLockEscalation, Supplier<Iterator<EntityLockInfo>> locks) {
+        this.capturedAtMillis = System.currentTimeMillis();
+        this.globalWriteLocked = globalLockEscalation.isGlobalWriteLocked();
+        this.globalReadHolds = globalLockEscalation.getGlobalReadHolds();
+        this.escalatedThreads = globalLockEscalation.getEscalatedThreads();
+        this.locks = locks;
+    }
+
+    public long getCapturedAtMillis() {
+        return capturedAtMillis;
+    }
+
+    /**
+     * Returns true if the write side of the global lock is held by {@code globalLock()} or an escalated thread.
+     */
+    public boolean isGlobalWriteLocked() {
+        return globalWriteLocked;
+    }
+
+    /**
+     * Returns count of holds of the read side of the global lock, one per thread holding entity locks.
+     */
+    public int getGlobalReadHolds() {
+        return globalReadHolds;
+    }
+
+    public Set<Thread> getEscalatedThreads() {
+        return escalatedThreads;
+    }
+
+    /**
+     * Returns locks with owners or queued threads, read lazily from the lock table.
+     */
+    public Stream<Entry> entries() {
+        Iterator<EntityLockInfo> iterator = locks.get();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .map(LockTableSnapshot::read)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Writes the snapshot as compact JSON, entries are written as they are read. Threads are written as ID and name,
+     * empty and unknown fields are omitted:
+     * <pre>
+     * {"capturedAt":1700000000000,"global":{"writeLocked":false,"readHolds":2,"escalated":[]},
+     *  "locks":[{"entity":"42","owner":{"id":1,"name":"main"},"holds":1,"queued":[{"id":21,"name":"worker"}]}]}
+     * </pre>
+     */
+    public void writeJson(Appendable out) throws IOException {
+        out.append("{\"capturedAt\":").append(Long.toString(capturedAtMillis))
+                .append(",\"global\":{\"writeLocked\":").append(Boolean.toString(globalWriteLocked))
+                .append(",\"readHolds\":").append(Integer.toString(globalReadHolds))
+                .append(",\"escalated\":");
+        writeThreads(out, escalatedThreads);
+        out.append("},\"locks\":[");
+        Iterator<Entry> entries = entries().iterator();
+        boolean first = true;
+        while (entries.hasNext()) {
+            if (!first) {
+                out.append(',');
+            }
+            writeEntry(out, entries.next());
+            first = false;
+        }
+        out.append("]}");
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        try {
+            writeJson(json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    /**
+     * @return null if the lock has no owners and queued threads
+     */
+    private static Entry read(EntityLockInfo lockInfo) {
+        EntityLock lock = lockInfo.getLock();
+        for (int reads = 1; ; reads++) {
+            Thread owner = lock.getOwner();
+            int exclusiveHolds = lock.getExclusiveHoldCount();
+            int sharedHolds = lock.getSharedHoldCount();
+            Set<Thread> sharedOwners = lock.getSharedOwners();
+            Set<Thread> queued = new HashSet<>(lock.getOwnerAndQueuedThreads());
+            if (lock.getOwner() != owner && reads < MAX_READS) {
+                continue;
+            }
+            queued.remove(owner);
+            queued.removeAll(sharedOwners);
+            if (owner == null && sharedOwners.isEmpty() && queued.isEmpty()) {
+                return null;
+            }
+            return new Entry(lockInfo.getEntityId(), owner, owner == null ? 0 : exclusiveHolds, sharedOwners, sharedHolds,
+                    Collections.unmodifiableSet(queued));
+        }
+    }
+
+    private static void writeEntry(Appendable out, Entry entry) throws IOException {
+        out.append("{\"entity\":");
+        writeString(out, String.valueOf(entry.entityId));
+        if (entry.owner != null) {
+            out.append(",\"owner\":");
+            writeThread(out, entry.owner);
+            if (entry.exclusiveHolds >= 0) {
+                out.append(",\"holds\":").append(Integer.toString(entry.exclusiveHolds));
+            }
+        }
+        if (!entry.sharedOwners.isEmpty()) {
+            out.append(",\"sharedOwners\":");
+            writeThreads(out, entry.sharedOwners);
+        }
+        if (entry.sharedHolds > 0) {
+            out.append(",\"sharedHolds\":").append(Integer.toString(entry.sharedHolds));
+        }
+        if (!entry.queuedThreads.isEmpty()) {
+            out.append(",\"queued\":");
+            writeThreads(out, entry.queuedThreads);
+        }
+        out.append('}');
+    }
+
+    private static void writeThreads(Appendable out, Collection<Thread> threads) throws IOException {
+        out.append('[');
+        boolean first = true;
+        for (Thread thread : threads) {
+            if (!first) {
+                out.append(',');
+            }
+            writeThread(out, thread);
+            first = false;
+        }
+        out.append(']');
+    }
+
+    private static void writeThread(Appendable out, Thread thread) throws IOException {
+        out.append("{\"id\":").append(Long.toString(thread.getId())).append(",\"name\":");
+        writeString(out, thread.getName());
+        out.append('}');
+    }
+
+    private static void writeString(Appendable out, String value) throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Lock of one entity, or of one stripe for {@link EntityStripedLockImpl}.
+     */
+    public static final class Entry {
+
+        private final Object entityId;
+        private final Thread owner;
+        private final int exclusiveHolds;
+        private final Set<Thread> sharedOwners;
+        private final int sharedHolds;
+        private final Set<Thread> queuedThreads;
+
+        private Entry(Object entityId, Thread owner, int exclusiveHolds, Set<Thread> sharedOwners, int sharedHolds,
+                Set<Thread> queuedThreads) {
+            this.entityId = entityId;
+            this.owner = owner;
+            this.exclusiveHolds = exclusiveHolds;
+            this.sharedOwners = sharedOwners;
+            this.sharedHolds = sharedHolds;
+            this.queuedThreads = queuedThreads;
+        }
+
+        /**
+         * Returns ID of the entity, or index of the stripe for {@link EntityStripedLockImpl}.
+         */
+        public Object getEntityId() {
+            return entityId;
+        }
+
+        public Thread getOwner() {
+            return owner;
+        }
+
+        /**
+         * Returns count of exclusive holds of the owner, -1 if the lock does not expose it.
+         */
+        public int getExclusiveHolds() {
+            return exclusiveHolds;
+        }
+
+        public Set<Thread> getSharedOwners() {
+            return sharedOwners;
+        }
+
+        /**
+         * Returns count of shared holds of all shared owners, -1 if the lock does not expose it.
+         */
+        public int getSharedHolds() {
+            return sharedHolds;
+        }
+
+        /**
+         * Returns threads waiting for the lock that do not hold it.
+         */
+        public Set<Thread> getQueuedThreads() {
+            return queuedThreads;
+        }
+    }
+}
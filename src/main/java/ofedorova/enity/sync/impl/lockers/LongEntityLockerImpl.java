@@ -0,0 +1,113 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.EscalationPolicy;
+import ofedorova.enity.sync.LongEntityLocker;
+import ofedorova.enity.sync.impl.locks.LongLockTable;
+import ofedorova.enity.sync.impl.utils.ThresholdEscalationPolicy;
+import ofedorova.enity.sync.impl.utils.WaitForGraphDeadlockChecker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LongEntityLockerImpl.
+ *
+ * Keeps locks of entities in {@link LongLockTable} instead of {@code lockStorage}, so an acquisition that does not
+ * wait neither boxes the ID nor allocates. Reentrancy, global lock and lock escalation work as in
+ * {@link AbstractEntityLockerImpl}. {@link EntityLockInfo} is created only when the thread has to wait, to register
+ * the wait in the deadlock checker.
+ *
+ * @author Olga_Fedorova
+ */
+public class LongEntityLockerImpl implements LongEntityLocker {
+
+    private final LongLockTable lockTable;
+    private final DeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+    private final GlobalLockEscalation globalLockEscalation;
+
+    public LongEntityLockerImpl() {
+        this(4);
+    }
+
+    public LongEntityLockerImpl(int countGlobalLockEscalation) {
+        this(countGlobalLockEscalation, GlobalLockMode.SHARED_READERS);
+    }
+
+    public LongEntityLockerImpl(int countGlobalLockEscalation, GlobalLockMode globalLockMode) {
+        this(new LongLockTable(), new ThresholdEscalationPolicy(countGlobalLockEscalation), globalLockMode);
+    }
+
+    public LongEntityLockerImpl(int segments, int countGlobalLockEscalation, GlobalLockMode globalLockMode) {
+        this(new LongLockTable(segments), new ThresholdEscalationPolicy(countGlobalLockEscalation), globalLockMode);
+    }
+
+    public LongEntityLockerImpl(int segments, EscalationPolicy escalationPolicy, GlobalLockMode globalLockMode) {
+        this(new LongLockTable(segments), escalationPolicy, globalLockMode);
+    }
+
+    private LongEntityLockerImpl(LongLockTable lockTable, EscalationPolicy escalationPolicy, GlobalLockMode globalLockMode) {
+        this.lockTable = lockTable;
+        this.globalLockEscalation = new GlobalLockEscalation(escalationPolicy, globalLockMode);
+    }
+
+    @Override
+    public void lock(long entityId) {
+        if (!lockTable.tryLock(entityId)) {
+            EntityLockInfo<Long> lockInfo = new EntityLockInfo<>(entityId, lockTable.getLock(entityId));
+            deadlockChecker.beforeWait(lockInfo, true);
+            try {
+                lockTable.lock(entityId);
+            } finally {
+                deadlockChecker.afterWait(lockInfo);
+            }
+        }
+        globalLockEscalation.incrementLocksAndGlobalEscalation(1, 0, false);
+    }
+
+    @Override
+    public boolean tryLock(long entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        boolean isLocked = lockTable.tryLock(entityId) || tryLockWaiting(entityId, timeout, timeUnit);
+        if (isLocked && !globalLockEscalation.incrementLocksAndGlobalEscalation(1, deadline, true)) {
+            lockTable.unlock(entityId);
+            isLocked = false;
+        }
+        return isLocked;
+    }
+
+    private boolean tryLockWaiting(long entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        EntityLockInfo<Long> lockInfo = new EntityLockInfo<>(entityId, lockTable.getLock(entityId));
+        deadlockChecker.beforeWait(lockInfo, false);
+        try {
+            return lockTable.tryLock(entityId, timeout, timeUnit);
+        } finally {
+            deadlockChecker.afterWait(lockInfo);
+        }
+    }
+
+    @Override
+    public void unlock(long entityId) {
+        lockTable.unlock(entityId);
+        globalLockEscalation.decrementLocksAndGlobalEscalation(1);
+    }
+
+    @Override
+    public void globalLock() {
+        globalLockEscalation.globalLock();
+    }
+
+    @Override
+    public boolean tryGlobalLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return globalLockEscalation.tryGlobalLock(timeout, timeUnit);
+    }
+
+    @Override
+    public void globalUnlock() {
+        globalLockEscalation.globalUnlock();
+    }
+
+    protected LongLockTable getLockTable() {
+        return lockTable;
+    }
+}
@@ -0,0 +1,154 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.EscalationPolicy;
+import ofedorova.enity.sync.LongEntityLocker;
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.locks.MappedLockTable;
+import ofedorova.enity.sync.impl.utils.ThresholdEscalationPolicy;
+import ofedorova.enity.sync.impl.utils.WaitForGraphDeadlockChecker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * MappedEntityLockerImpl.
+ *
+ * {@link LongEntityLocker} whose entity locks are shared by all processes that open the same file, see
+ * {@link MappedLockTable}: several JVMs of one host working with one storage exclude each other on entities without
+ * file locks or a lock server. The global lock and lock escalation are local to the process, they work as in
+ * {@link LongEntityLockerImpl}.
+ *
+ * Waits of threads are registered in a {@link WaitForGraphDeadlockChecker} of the locker, as in
+ * {@link LongEntityLockerImpl}, so a deadlock among threads of one process throws {@link DeadlockException}. The owner
+ * of a slot is resolved to a thread only if it waits itself, an owner that does not wait cannot close a cycle. Cycles
+ * through threads of other processes are not detected, so across processes entities should be locked in a fixed order
+ * or with a timeout.
+ *
+ * @author Olga_Fedorova
+ */
+public class MappedEntityLockerImpl implements LongEntityLocker, Closeable {
+
+    private final MappedLockTable lockTable;
+    private final DeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+    private final Map<Long, Thread> waitingThreads = new ConcurrentHashMap<>();
+    private final LongFunction<Thread> waitingThread = waitingThreads::get;
+    private final GlobalLockEscalation globalLockEscalation;
+
+    public MappedEntityLockerImpl(Path file) throws IOException {
+        this(file, MappedLockTable.DEFAULT_SLOTS, 4);
+    }
+
+    public MappedEntityLockerImpl(Path file, int slots, int countGlobalLockEscalation) throws IOException {
+        this(file, slots, new ThresholdEscalationPolicy(countGlobalLockEscalation), GlobalLockMode.SHARED_READERS);
+    }
+
+    /**
+     * @param slots count of slots of a new file, the count of an existing file is kept
+     */
+    public MappedEntityLockerImpl(Path file, int slots, EscalationPolicy escalationPolicy, GlobalLockMode globalLockMode)
+            throws IOException {
+        this.lockTable = new MappedLockTable(file, slots);
+        this.globalLockEscalation = new GlobalLockEscalation(escalationPolicy, globalLockMode);
+    }
+
+    @Override
+    public void lock(long entityId) {
+        if (!lockTable.tryLock(entityId)) {
+            EntityLockInfo<Long> lockInfo = beforeWait(entityId, true);
+            try {
+                lockTable.lock(entityId);
+            } finally {
+                afterWait(lockInfo);
+            }
+        }
+        globalLockEscalation.incrementLocksAndGlobalEscalation(1, 0, false);
+    }
+
+    @Override
+    public boolean tryLock(long entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        boolean isLocked = lockTable.tryLock(entityId) || tryLockWaiting(entityId, timeout, timeUnit);
+        if (isLocked && !globalLockEscalation.incrementLocksAndGlobalEscalation(1, deadline, true)) {
+            lockTable.unlock(entityId);
+            isLocked = false;
+        }
+        return isLocked;
+    }
+
+    private boolean tryLockWaiting(long entityId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        EntityLockInfo<Long> lockInfo = beforeWait(entityId, false);
+        try {
+            return lockTable.tryLock(entityId, timeout, timeUnit);
+        } finally {
+            afterWait(lockInfo);
+        }
+    }
+
+    /**
+     * The thread is published before the checker follows the edges, so it can be resolved as the owner of its slots.
+     */
+    private EntityLockInfo<Long> beforeWait(long entityId, boolean preventDeadlock) {
+        Thread currentThread = Thread.currentThread();
+        EntityLockInfo<Long> lockInfo = new EntityLockInfo<>(entityId, lockTable.getLock(entityId, waitingThread));
+        waitingThreads.put(threadId(currentThread), currentThread);
+        try {
+            deadlockChecker.beforeWait(lockInfo, preventDeadlock);
+        } catch (RuntimeException e) {
+            waitingThreads.remove(threadId(currentThread));
+            throw e;
+        }
+        return lockInfo;
+    }
+
+    private void afterWait(EntityLockInfo<Long> lockInfo) {
+        deadlockChecker.afterWait(lockInfo);
+        waitingThreads.remove(threadId(Thread.currentThread()));
+    }
+
+    @Override
+    public void unlock(long entityId) {
+        lockTable.unlock(entityId);
+        globalLockEscalation.decrementLocksAndGlobalEscalation(1);
+    }
+
+    @Override
+    public void globalLock() {
+        globalLockEscalation.globalLock();
+    }
+
+    @Override
+    public boolean tryGlobalLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return globalLockEscalation.tryGlobalLock(timeout, timeUnit);
+    }
+
+    @Override
+    public void globalUnlock() {
+        globalLockEscalation.globalUnlock();
+    }
+
+    /**
+     * Closes the file, locks held by the process stay held until they are unlocked or the process exits.
+     */
+    @Override
+    public void close() throws IOException {
+        lockTable.close();
+    }
+
+    protected MappedLockTable getLockTable() {
+        return lockTable;
+    }
+
+    /**
+     * Thread ID as kept in the slots, see {@link MappedLockTable#getLocalOwnerThreadId(long)}.
+     */
+    private static long threadId(Thread thread) {
+        return thread.getId() & 0xffffffffL;
+    }
+}
@@ -0,0 +1,55 @@
+package ofedorova.enity.sync.impl.locks;
+
+/**
+ * AdaptiveSpin.
+ *
+ * Spin budget of a lock for {@link WaitMode#ADAPTIVE_SPIN}, learned from hold times of the lock. Only holds granted
+ * to queued threads are timed, so uncontended acquisitions do not read the clock, and the budget follows the lock
+ * while it is contended, which is when it is used. The hold time is an exponentially weighted moving average with
+ * weight 1/8 of the last hold. It is updated by the thread that releases the lock exclusively, so there is
+ * a single writer; the field is volatile because queued threads read it.
+ *
+ * A hold longer than {@link #MAX_SPIN_NANOS} costs more than a park and an unpark, so the head does not spin for
+ * such locks. Spinning cannot help on a single processor, where the owner does not run while the head spins.
+ *
+ * @author Olga_Fedorova
+ */
+final class AdaptiveSpin {
+
+    static final long MAX_SPIN_NANOS = 20_000;
+    static final int MAX_YIELDS = 2;
+
+    private final boolean enabled;
+    private volatile long holdNanos = -1L;
+
+    AdaptiveSpin(WaitMode waitMode) {
+        this(waitMode, Runtime.getRuntime().availableProcessors());
+    }
+
+    AdaptiveSpin(WaitMode waitMode, int processors) {
+        this.enabled = waitMode == WaitMode.ADAPTIVE_SPIN && processors > 1;
+    }
+
+    /**
+     * Returns true if hold times are learned and the head spins.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Called by the thread that releases a hold granted after waiting in the queue.
+     */
+    void recordHold(long nanos) {
+        long holdNanos = this.holdNanos;
+        this.holdNanos = holdNanos < 0L ? nanos : holdNanos + ((nanos - holdNanos) >> 3);
+    }
+
+    /**
+     * Returns how long the head spins before it yields and parks, 0 if it parks at once.
+     */
+    long getSpinNanos() {
+        long holdNanos = this.holdNanos;
+        return !enabled || holdNanos < 0L || holdNanos > MAX_SPIN_NANOS ? 0L : Math.max(2 * holdNanos, 1000L);
+    }
+}
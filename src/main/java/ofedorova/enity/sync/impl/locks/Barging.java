@@ -0,0 +1,54 @@
+package ofedorova.enity.sync.impl.locks;
+
+/**
+ * Barging.
+ *
+ * Decides whether an exclusive newcomer may take a free lock ahead of queued threads according to
+ * {@link FairnessMode}. The count of barges is updated only by the thread that has just acquired the lock exclusively,
+ * so it is a plain field: the release of the lock publishes it to the next owner.
+ *
+ * @author Olga_Fedorova
+ */
+final class Barging {
+
+    private final FairnessMode fairnessMode;
+    private final int maxBarges;
+    private int barges;
+
+    Barging(FairnessMode fairnessMode, int maxBarges) {
+        if (maxBarges < 0) {
+            throw new IllegalArgumentException("Maximum count of barges cannot be negative");
+        }
+        this.fairnessMode = fairnessMode;
+        this.maxBarges = maxBarges;
+    }
+
+    FairnessMode getFairnessMode() {
+        return fairnessMode;
+    }
+
+    /**
+     * Returns true if a newcomer may take the lock while other threads are queued for it.
+     */
+    boolean mayBarge() {
+        return fairnessMode == FairnessMode.NON_FAIR || fairnessMode == FairnessMode.BOUNDED_BARGING && barges < maxBarges;
+    }
+
+    /**
+     * Called by a newcomer that has acquired the lock ahead of queued threads.
+     */
+    void barged() {
+        if (fairnessMode == FairnessMode.BOUNDED_BARGING) {
+            barges++;
+        }
+    }
+
+    /**
+     * Called by a thread that has acquired the lock after waiting in the queue.
+     */
+    void handedOff() {
+        if (fairnessMode == FairnessMode.BOUNDED_BARGING) {
+            barges = 0;
+        }
+    }
+}
@@ -2,39 +2,120 @@ package ofedorova.enity.sync.impl.locks;
 
 import ofedorova.enity.sync.EntityLock;
 
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
 
 /**
  * CustomLock.
  *
+ * Waiting threads are parked in FIFO queue {@code waiters}, only the head of the queue tries to acquire the lock.
+ * Release of the lock unparks the head. With {@link WaitMode#ADAPTIVE_SPIN} (default) the head spins for a budget
+ * learned from recent hold times, see {@link AdaptiveSpin}, and yields before it parks, so a short critical section
+ * is handed off without a context switch.
+ *
+ * Low 16 bits of {@code state} count exclusive holds of the owner, high 16 bits count shared holds of all threads.
+ * A shared waiter that acquires the lock unparks the next head, so consecutive shared waiters are granted together.
+ * A new shared acquisition does not barge into a non-empty queue unless the thread already holds the lock,
+ * so exclusive waiters are not starved by readers. The first shared owner and its holds are kept in fields, other shared
+ * owners in {@code sharedOwners}, so a single reader does not allocate a map entry per acquisition.
+ *
+ * An exclusive newcomer takes a free lock ahead of queued threads according to {@link FairnessMode}, by default
+ * {@link FairnessMode#NON_FAIR}.
+ *
+ * An owner that is not a thread, see {@link #lockFor(Object, Runnable)}, waits in the same queue as a
+ * {@link QueuedRequest}: the thread that finds it at the head of the queue when the lock is free acquires the lock
+ * for it and calls its continuation, so no thread is parked for it.
+ *
+ * Conditions are bound to exclusive holds: {@code await} releases all exclusive holds of the owner and reacquires
+ * them through the queue of waiters after a signal, shared holds of the owner are kept.
+ *
  * @author Olga_Fedorova
  */
 public class CustomLock implements EntityLock {
 
-    private volatile Thread ownerThread;
+    private static final int SHARED_UNIT = 1 << 16;
+    private static final int EXCLUSIVE_MASK = SHARED_UNIT - 1;
+    private static final int MAX_COUNT = EXCLUSIVE_MASK;
+    private static final long MAX_ABORT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    private static final AtomicReferenceFieldUpdater<CustomLock, Thread> FIRST_SHARED_OWNER =
+            AtomicReferenceFieldUpdater.newUpdater(CustomLock.class, Thread.class, "firstSharedOwner");
+
+    /**
+     * Exclusive owner: a thread or an owner of {@link #lockFor(Object, Runnable)}, see {@link #getOwner()}.
+     */
+    private volatile Object ownerThread;
     private final AtomicInteger state = new AtomicInteger(0);
-    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    /**
+     * Waiting threads and {@link QueuedRequest} requests.
+     */
+    private final ConcurrentLinkedQueue<Object> waiters = new ConcurrentLinkedQueue<>();
+    private final Map<Thread, Integer> sharedOwners = new ConcurrentHashMap<>();
+    private volatile Thread firstSharedOwner;
+    private int firstSharedHolds;
+    private final Barging barging;
+    private final AdaptiveSpin adaptiveSpin;
+    /**
+     * Start of the hold of the owner, 0 if the hold is not sampled, written only by the owner.
+     */
+    private long acquiredAt;
+
+    public CustomLock() {
+        this(FairnessMode.NON_FAIR);
+    }
+
+    public CustomLock(FairnessMode fairnessMode) {
+        this(fairnessMode, FairnessMode.DEFAULT_MAX_BARGES);
+    }
+
+    /**
+     * @param maxBarges count of barges in a row for {@link FairnessMode#BOUNDED_BARGING}
+     */
+    public CustomLock(FairnessMode fairnessMode, int maxBarges) {
+        this(fairnessMode, maxBarges, WaitMode.ADAPTIVE_SPIN);
+    }
+
+    public CustomLock(FairnessMode fairnessMode, int maxBarges, WaitMode waitMode) {
+        this(fairnessMode, maxBarges, new AdaptiveSpin(waitMode));
+    }
+
+    CustomLock(FairnessMode fairnessMode, int maxBarges, AdaptiveSpin adaptiveSpin) {
+        this.barging = new Barging(fairnessMode, maxBarges);
+        this.adaptiveSpin = adaptiveSpin;
+    }
 
     @Override
     public void lock() {
-        if (!tryAcquire() && addWaiterAndAcquireQueued(0, false)) {
-            Thread.currentThread().interrupt();
+        if (!tryAcquire()) {
+            acquireQueued(0, false, false, false, null);
         }
     }
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        throw new UnsupportedOperationException();
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (!tryAcquire() && !acquireQueued(0, false, true, false, null)) {
+            Thread.interrupted();
+            throw new InterruptedException();
+        }
     }
 
     @Override
     public boolean tryLock() {
-        throw new UnsupportedOperationException();
+        return tryAcquire();
     }
 
     @Override
@@ -46,6 +127,52 @@ public class CustomLock implements EntityLock {
         }
     }
 
+    @Override
+    public void lockShared() {
+        if (!tryAcquireShared(false)) {
+            acquireQueued(0, false, false, true, null);
+        }
+    }
+
+    @Override
+    public boolean tryLockShared() {
+        return tryAcquireShared(false);
+    }
+
+    @Override
+    public boolean tryLockShared(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        } else {
+            return tryAcquireShared(false) || acquireQueued(timeUnit.toNanos(timeout), true, true, true, null);
+        }
+    }
+
+    /**
+     * Waits in the queue like {@link #lock()}, checks {@code aborted} before the first park and after every wakeup.
+     */
+    @Override
+    public boolean lockAbortably(boolean shared, boolean interruptible, BooleanSupplier aborted) throws InterruptedException {
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (shared ? tryAcquireShared(false) : tryAcquire()) {
+            return true;
+        }
+        if (acquireQueued(0, false, interruptible, shared, aborted)) {
+            return true;
+        }
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return false;
+    }
+
+    @Override
+    public void unlockShared() {
+        releaseShared();
+    }
+
     @Override
     public void unlock() {
         release();
@@ -53,85 +180,549 @@ public class CustomLock implements EntityLock {
 
     @Override
     public Condition newCondition() {
-        throw new UnsupportedOperationException();
+        return new ConditionObject();
+    }
+
+    /**
+     * A free lock is acquired only if {@link FairnessMode} lets a newcomer barge, otherwise the request is queued.
+     */
+    @Override
+    public Request lockFor(Object owner, Runnable onLocked) {
+        if (owner == null || onLocked == null) {
+            throw new IllegalArgumentException("Owner and continuation cannot be null");
+        }
+        if (tryAcquire(owner, false)) {
+            return null;
+        }
+        QueuedRequest request = new QueuedRequest(owner, onLocked);
+        waiters.add(request);
+        request.tryGrant();
+        return request;
+    }
+
+    @Override
+    public void unlockFor(Object owner) {
+        if (owner == null || ownerThread != owner) {
+            throw new IllegalMonitorStateException();
+        }
+        boolean free = (state.get() & EXCLUSIVE_MASK) == 1;
+        if (free) {
+            ownerThread = null;
+        }
+        state.decrementAndGet();
+        if (free) {
+            unparkHead();
+        }
     }
 
     boolean tryAcquire() {
-        Thread currentThread = Thread.currentThread();
+        return tryAcquire(Thread.currentThread(), false);
+    }
+
+    /**
+     * Holds of owners that are not threads are not sampled, their release may run in any thread.
+     *
+     * @param queued if true, the thread is the head of the queue, otherwise it is a newcomer that may take the lock
+     *               ahead of queued threads only if {@link Barging} allows it
+     */
+    private boolean tryAcquire(Object newOwner, boolean queued) {
         if (state.get() == 0) {
+            boolean barge = !queued && barging.getFairnessMode() != FairnessMode.NON_FAIR && !waiters.isEmpty();
+            if (barge && !barging.mayBarge()) {
+                return false;
+            }
             if (state.compareAndSet(0, 1)) {
-                ownerThread = currentThread;
+                ownerThread = newOwner;
+                acquiredAt = queued && newOwner instanceof Thread && adaptiveSpin.isEnabled() ? System.nanoTime() : 0L;
+                if (barge) {
+                    barging.barged();
+                } else if (queued) {
+                    barging.handedOff();
+                }
                 return true;
             }
-        } else if (currentThread == ownerThread) {
+        } else if (newOwner == ownerThread) {
+            if ((state.get() & EXCLUSIVE_MASK) == MAX_COUNT) {
+                throw new Error("Maximum lock count exceeded");
+            }
             state.incrementAndGet();
             return true;
         }
         return false;
     }
 
+    /**
+     * Acquires the lock in shared mode if it is not held exclusively by another thread.
+     *
+     * @param queued if false and the queue of waiters is not empty, the lock is acquired only by a thread that
+     *               already holds it
+     */
+    boolean tryAcquireShared(boolean queued) {
+        Thread currentThread = Thread.currentThread();
+        if (!queued && !waiters.isEmpty() && ownerThread != currentThread && !isSharedOwner(currentThread)) {
+            return false;
+        }
+        while (true) {
+            int current = state.get();
+            if ((current & EXCLUSIVE_MASK) != 0 && ownerThread != currentThread) {
+                return false;
+            }
+            if (current >>> 16 == MAX_COUNT) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            if (state.compareAndSet(current, current + SHARED_UNIT)) {
+                addSharedHold(currentThread);
+                return true;
+            }
+        }
+    }
+
     boolean addWaiterAndAcquireQueued(long nanosTimeout, boolean checkTimeout) {
+        return acquireQueued(nanosTimeout, checkTimeout, true, false, null);
+    }
+
+    /**
+     * Adds current thread to the queue of waiters and parks it until it becomes the head of the queue
+     * and acquires the lock. The head spins and yields before it parks for the first time, if
+     * {@link AdaptiveSpin} gives it a budget.
+     *
+     * @param interruptible if true, returns false when the thread is interrupted, otherwise keeps waiting
+     *                      and restores the interrupt status after the lock is acquired
+     * @param shared        if true, acquires the lock in shared mode and unparks the next waiter after that
+     * @param aborted       null or condition that cancels the wait, the thread then parks for at most
+     *                      {@link #MAX_ABORT_CHECK_NANOS} between checks
+     * @return true if the lock is acquired
+     */
+    private boolean acquireQueued(long nanosTimeout, boolean checkTimeout, boolean interruptible, boolean shared,
+                                  BooleanSupplier aborted) {
         if (checkTimeout && nanosTimeout <= 0L) {
             return false;
         }
 
         long deadline = System.nanoTime() + nanosTimeout;
         Thread currentThread = Thread.currentThread();
+        boolean interrupted = false;
+        long spinNanos = -1L;
+        long spinDeadline = 0L;
+        int yields = 0;
         waiters.add(currentThread);
 
         while (true) {
             if (currentThread.isInterrupted()) {
-                waiters.remove(currentThread);
+                if (interruptible) {
+                    cancelWaiting(currentThread);
+                    return false;
+                }
+                interrupted = Thread.interrupted();
+            }
+
+            long nanosLeft = deadline - System.nanoTime();
+            if (checkTimeout && nanosLeft <= 0L) {
+                cancelWaiting(currentThread);
                 return false;
             }
 
-            if (checkTimeout && deadline - System.nanoTime() <= 0L) {
+            boolean head = waiters.peek() == currentThread;
+            if (head && (shared ? tryAcquireShared(true) : tryAcquire(currentThread, true))) {
                 waiters.remove(currentThread);
-                return false;
+                if (shared) {
+                    unparkHead();
+                }
+                if (interrupted) {
+                    currentThread.interrupt();
+                }
+                return true;
             }
 
-            Thread head = waiters.peek();
-            if (head == null) {
-                break;
+            if (head && spinNanos < 0L) {
+                spinNanos = adaptiveSpin.getSpinNanos();
+                spinDeadline = System.nanoTime() + spinNanos;
+            }
+            if (head && spinNanos > 0L && yields <= AdaptiveSpin.MAX_YIELDS) {
+                if (System.nanoTime() - spinDeadline < 0L) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (yields++ < AdaptiveSpin.MAX_YIELDS) {
+                    Thread.yield();
+                    continue;
+                }
             }
 
-            if (head == currentThread) {
-                if (tryAcquire()) {
-                    waiters.remove(head);
-                    return true;
+            if (aborted != null && aborted.getAsBoolean()) {
+                cancelWaiting(currentThread);
+                if (interrupted) {
+                    currentThread.interrupt();
                 }
+                return false;
+            }
+            if (checkTimeout) {
+                LockSupport.parkNanos(this, nanosLeft);
+            } else if (aborted != null) {
+                LockSupport.parkNanos(this, MAX_ABORT_CHECK_NANOS);
+            } else {
+                LockSupport.park(this);
             }
         }
-        return false;
+    }
+
+    /**
+     * Removes the thread from the queue. The thread could be the head, so the next waiter is unparked
+     * to not lose the wakeup when the lock is free.
+     */
+    private void cancelWaiting(Thread thread) {
+        waiters.remove(thread);
+        unparkHead();
+    }
+
+    /**
+     * A queued request at the head is granted by the current thread.
+     */
+    private void unparkHead() {
+        Object head = waiters.peek();
+        if (head instanceof QueuedRequest) {
+            ((QueuedRequest) head).tryGrant();
+        } else if (head != null) {
+            LockSupport.unpark((Thread) head);
+        }
     }
 
     boolean release() {
-        int newState = state.get() - 1;
         if (Thread.currentThread() != ownerThread) {
             throw new IllegalMonitorStateException();
         } else {
             boolean free = false;
-            if (newState == 0) {
+            if ((state.get() & EXCLUSIVE_MASK) == 1) {
                 ownerThread = null;
                 free = true;
+                if (acquiredAt != 0L) {
+                    adaptiveSpin.recordHold(System.nanoTime() - acquiredAt);
+                    acquiredAt = 0L;
+                }
             }
             state.decrementAndGet();
+            if (free) {
+                unparkHead();
+            }
             return free;
         }
     }
 
+    /**
+     * The first shared owner field is set only from null by CAS and cleared only by its owner, a thread already
+     * counted in {@code sharedOwners} stays there until it releases all shared holds.
+     */
+    private void addSharedHold(Thread currentThread) {
+        if (firstSharedOwner == currentThread) {
+            firstSharedHolds++;
+        } else if (!sharedOwners.containsKey(currentThread) && FIRST_SHARED_OWNER.compareAndSet(this, null, currentThread)) {
+            firstSharedHolds = 1;
+        } else {
+            sharedOwners.merge(currentThread, 1, Integer::sum);
+        }
+    }
+
+    boolean releaseShared() {
+        Thread currentThread = Thread.currentThread();
+        if (firstSharedOwner == currentThread) {
+            if (--firstSharedHolds == 0) {
+                firstSharedOwner = null;
+            }
+        } else {
+            Integer holds = sharedOwners.get(currentThread);
+            if (holds == null) {
+                throw new IllegalMonitorStateException();
+            }
+            if (holds == 1) {
+                sharedOwners.remove(currentThread);
+            } else {
+                sharedOwners.put(currentThread, holds - 1);
+            }
+        }
+        boolean free = state.addAndGet(-SHARED_UNIT) == 0;
+        if (free) {
+            unparkHead();
+        }
+        return free;
+    }
+
+    /**
+     * Clears the owner before the exclusive holds, so a thread can acquire the lock only after both are cleared.
+     * Shared holds are kept. The hold start is written only by owners, the next owner overwrites it, so the hold
+     * released here is not sampled.
+     */
+    @Override
+    public boolean forceUnlock(Thread owner) {
+        if (owner == null || ownerThread != owner) {
+            return false;
+        }
+        ownerThread = null;
+        int current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current & ~EXCLUSIVE_MASK));
+        unparkHead();
+        return true;
+    }
+
+    /**
+     * Returns null while the lock is held by an owner that is not a thread.
+     */
     @Override
     public Thread getOwner() {
-        return ownerThread;
+        Object owner = ownerThread;
+        return owner instanceof Thread ? (Thread) owner : null;
+    }
+
+    @Override
+    public Set<Thread> getSharedOwners() {
+        Set<Thread> owners = new HashSet<>(sharedOwners.keySet());
+        Thread firstSharedOwner = this.firstSharedOwner;
+        if (firstSharedOwner != null) {
+            owners.add(firstSharedOwner);
+        }
+        return Collections.unmodifiableSet(owners);
+    }
+
+    @Override
+    public boolean isSharedOwner(Thread thread) {
+        return firstSharedOwner == thread || sharedOwners.containsKey(thread);
+    }
+
+    @Override
+    public int getExclusiveHoldCount() {
+        return state.get() & EXCLUSIVE_MASK;
+    }
+
+    @Override
+    public int getSharedHoldCount() {
+        return state.get() >>> 16;
     }
 
     @Override
     public Set<Thread> getOwnerAndQueuedThreads() {
         Set<Thread> queued = new HashSet<>();
-        queued.addAll(waiters);
-        if (ownerThread != null) {
-            queued.add(ownerThread);
+        for (Object waiter : waiters) {
+            if (waiter instanceof Thread) {
+                queued.add((Thread) waiter);
+            }
+        }
+        queued.addAll(getSharedOwners());
+        Thread owner = getOwner();
+        if (owner != null) {
+            queued.add(owner);
         }
         return queued;
     }
+
+    /**
+     * Releases all exclusive holds of the owner.
+     *
+     * @return count of released holds
+     */
+    private int releaseAll() {
+        if (Thread.currentThread() != ownerThread) {
+            throw new IllegalMonitorStateException();
+        }
+        int holds = state.get() & EXCLUSIVE_MASK;
+        ownerThread = null;
+        if (acquiredAt != 0L) {
+            adaptiveSpin.recordHold(System.nanoTime() - acquiredAt);
+            acquiredAt = 0L;
+        }
+        state.addAndGet(-holds);
+        unparkHead();
+        return holds;
+    }
+
+    /**
+     * Reacquires the exclusive holds released by {@link #releaseAll()}, the interrupt status is kept.
+     */
+    private void reacquire(int holds) {
+        if (!tryAcquire()) {
+            acquireQueued(0, false, false, false, null);
+        }
+        state.addAndGet(holds - 1);
+    }
+
+    /**
+     * Condition of the exclusive holds. A waiter is removed from the queue either by a signal or by itself
+     * on a timeout or an interrupt, so a signal is never lost: a waiter that fails to remove itself was signalled.
+     */
+    private final class ConditionObject implements Condition {
+
+        private final ConcurrentLinkedQueue<ConditionWaiter> conditionWaiters = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void await() throws InterruptedException {
+            await(0L, false, true);
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            try {
+                await(0L, false, false);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            long deadline = System.nanoTime() + nanosTimeout;
+            await(nanosTimeout, true, true);
+            return deadline - System.nanoTime();
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            return await(unit.toNanos(time), true, true);
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            return await(TimeUnit.MILLISECONDS.toNanos(deadline.getTime() - System.currentTimeMillis()), true, true);
+        }
+
+        @Override
+        public void signal() {
+            if (Thread.currentThread() != ownerThread) {
+                throw new IllegalMonitorStateException();
+            }
+            ConditionWaiter waiter = conditionWaiters.poll();
+            if (waiter != null) {
+                waiter.wakeUp();
+            }
+        }
+
+        @Override
+        public void signalAll() {
+            if (Thread.currentThread() != ownerThread) {
+                throw new IllegalMonitorStateException();
+            }
+            ConditionWaiter waiter;
+            while ((waiter = conditionWaiters.poll()) != null) {
+                waiter.wakeUp();
+            }
+        }
+
+        /**
+         * @param interruptible if true, an interrupt before the signal cancels the wait, otherwise the thread keeps
+         *                      waiting; an interrupt after the signal is restored
+         * @return false if the wait timed out
+         */
+        private boolean await(long nanosTimeout, boolean checkTimeout, boolean interruptible) throws InterruptedException {
+            if (interruptible && Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (Thread.currentThread() != ownerThread) {
+                throw new IllegalMonitorStateException();
+            }
+            ConditionWaiter waiter = new ConditionWaiter(Thread.currentThread());
+            conditionWaiters.add(waiter);
+            int holds = releaseAll();
+            long deadline = System.nanoTime() + nanosTimeout;
+            boolean interrupted = false;
+            boolean cancelled = false;
+            while (!waiter.signalled) {
+                long nanosLeft = deadline - System.nanoTime();
+                if (checkTimeout && nanosLeft <= 0L || interruptible && interrupted) {
+                    if (conditionWaiters.remove(waiter)) {
+                        cancelled = true;
+                        break;
+                    }
+                    Thread.onSpinWait();
+                } else if (checkTimeout) {
+                    LockSupport.parkNanos(this, nanosLeft);
+                } else {
+                    LockSupport.park(this);
+                }
+                interrupted |= Thread.interrupted();
+            }
+            reacquire(holds);
+            interrupted |= Thread.interrupted();
+            if (interrupted && interruptible && cancelled) {
+                throw new InterruptedException();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return !cancelled;
+        }
+    }
+
+    /**
+     * Request of an owner that is not a thread. The request is claimed by a thread that tries to acquire the lock
+     * for it, so it is granted at most once and is not cancelled in the middle of the attempt.
+     */
+    private final class QueuedRequest implements Request {
+
+        private static final int WAITING = 0;
+        private static final int CLAIMED = 1;
+        private static final int GRANTED = 2;
+        private static final int CANCELLED = 3;
+
+        private final Object requestOwner;
+        private final Runnable onLocked;
+        private final AtomicInteger status = new AtomicInteger(WAITING);
+
+        private QueuedRequest(Object requestOwner, Runnable onLocked) {
+            this.requestOwner = requestOwner;
+            this.onLocked = onLocked;
+        }
+
+        /**
+         * Acquires the lock for the owner if the request is the head of the queue. A release that happens while
+         * another thread holds the claim cannot grant the request, so the claim is given up before the lock is
+         * checked again.
+         */
+        private void tryGrant() {
+            while (waiters.peek() == this && status.compareAndSet(WAITING, CLAIMED)) {
+                if (tryAcquire(requestOwner, true)) {
+                    status.set(GRANTED);
+                    waiters.remove(this);
+                    onLocked.run();
+                    return;
+                }
+                status.set(WAITING);
+                if (state.get() != 0) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            while (true) {
+                int current = status.get();
+                if (current == GRANTED) {
+                    return false;
+                }
+                if (current == CANCELLED) {
+                    return true;
+                }
+                if (current == WAITING && status.compareAndSet(WAITING, CANCELLED)) {
+                    waiters.remove(this);
+                    unparkHead();
+                    return true;
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static final class ConditionWaiter {
+
+        private final Thread thread;
+        private volatile boolean signalled;
+
+        private ConditionWaiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        private void wakeUp() {
+            signalled = true;
+            LockSupport.unpark(thread);
+        }
+    }
 }
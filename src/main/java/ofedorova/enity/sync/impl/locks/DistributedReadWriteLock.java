@@ -0,0 +1,294 @@
+package ofedorova.enity.sync.impl.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * DistributedReadWriteLock.
+ *
+ * Read-write lock with distributed reader indicators: every reader increments a counter of its own slot,
+ * slots are padded to separate cache lines and chosen by thread ID, so readers on different cores do not write
+ * to a shared counter. The read side is cheap, the write side is expensive: the writer raises {@code writerActive}
+ * and waits until counters of all slots drop to zero. A reader that sees an active writer withdraws from its slot
+ * and waits for the writer to finish.
+ *
+ * The write lock is reentrant, the thread holding the write lock may also acquire the read lock. The read lock is
+ * not reentrant: a thread must not acquire it again while it holds it, otherwise a waiting writer may block
+ * the thread forever.
+ *
+ * @author Olga_Fedorova
+ */
+public class DistributedReadWriteLock implements ReadWriteLock {
+
+    /**
+     * Count of longs between used slots of {@code readers}, 128 bytes covers adjacent cache lines prefetching.
+     */
+    private static final int PADDING = 16;
+
+    private final AtomicLongArray readers;
+    private final int mask;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private volatile boolean writerActive;
+    private volatile Thread waitingWriter;
+    private final Lock readLock = new ReadLock();
+    private final Lock writeLock = new WriteLock();
+
+    public DistributedReadWriteLock() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public DistributedReadWriteLock(int slots) {
+        if (slots <= 0 || slots > 1 << 24) {
+            throw new IllegalArgumentException("Count of slots must be between 1 and 2^24");
+        }
+        int size = slots == 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.readers = new AtomicLongArray(size * PADDING);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    public int getSlotCount() {
+        return mask + 1;
+    }
+
+    public boolean isWriteLockedByCurrentThread() {
+        return writerLock.isHeldByCurrentThread();
+    }
+
+    /**
+     * Returns true if the write lock is held or taken by a writer that waits for readers to leave.
+     */
+    public boolean isWriteLocked() {
+        return writerLock.isLocked();
+    }
+
+    /**
+     * Returns sum of counters of all slots, read without stopping readers, so it is approximate under contention.
+     */
+    public int getReadLockCount() {
+        long count = 0;
+        for (int i = 0; i <= mask; i++) {
+            count += readers.get(i * PADDING);
+        }
+        return (int) count;
+    }
+
+    private int slot() {
+        long id = Thread.currentThread().getId();
+        return ((int) (id ^ (id >>> 32)) & mask) * PADDING;
+    }
+
+    /**
+     * Increments the slot of the current thread. If a writer is active, the increment is taken back
+     * and the writer is woken up to recheck the counters.
+     *
+     * @return true if the read lock is acquired
+     */
+    private boolean tryAcquireShared(int slot) {
+        readers.incrementAndGet(slot);
+        if (!writerActive || writerLock.isHeldByCurrentThread()) {
+            return true;
+        }
+        releaseShared(slot);
+        return false;
+    }
+
+    private void releaseShared(int slot) {
+        if (readers.decrementAndGet(slot) < 0) {
+            readers.incrementAndGet(slot);
+            throw new IllegalMonitorStateException();
+        }
+        if (writerActive) {
+            Thread writer = waitingWriter;
+            if (writer != null) {
+                LockSupport.unpark(writer);
+            }
+        }
+    }
+
+    private boolean hasReaders() {
+        for (int i = 0; i <= mask; i++) {
+            if (readers.get(i * PADDING) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits until all readers leave their slots. Called with {@code writerLock} held and {@code writerActive} raised.
+     *
+     * @param interruptible if true, throws {@link InterruptedException} when the thread is interrupted, otherwise
+     *                      keeps waiting and restores the interrupt status after readers leave
+     * @return true if there are no readers, false if the timeout elapsed
+     */
+    private boolean awaitReaders(long deadline, boolean checkTimeout, boolean interruptible) throws InterruptedException {
+        if (!hasReaders()) {
+            return true;
+        }
+        boolean interrupted = false;
+        waitingWriter = Thread.currentThread();
+        try {
+            while (hasReaders()) {
+                if (Thread.interrupted()) {
+                    if (interruptible) {
+                        throw new InterruptedException();
+                    }
+                    interrupted = true;
+                }
+                if (checkTimeout) {
+                    long nanosLeft = deadline - System.nanoTime();
+                    if (nanosLeft <= 0L) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, nanosLeft);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            return true;
+        } finally {
+            waitingWriter = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class ReadLock implements Lock {
+
+        @Override
+        public void lock() {
+            int slot = slot();
+            while (!tryAcquireShared(slot)) {
+                writerLock.lock();
+                writerLock.unlock();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            int slot = slot();
+            while (!tryAcquireShared(slot)) {
+                writerLock.lockInterruptibly();
+                writerLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            return tryAcquireShared(slot());
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            int slot = slot();
+            long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+            while (!tryAcquireShared(slot)) {
+                if (!writerLock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+                writerLock.unlock();
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            releaseShared(slot());
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class WriteLock implements Lock {
+
+        @Override
+        public void lock() {
+            writerLock.lock();
+            try {
+                acquireExclusive(0, false, false);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            writerLock.lockInterruptibly();
+            acquireExclusive(0, false, true);
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!writerLock.tryLock()) {
+                return false;
+            }
+            if (writerLock.getHoldCount() > 1) {
+                return true;
+            }
+            writerActive = true;
+            if (hasReaders()) {
+                unlock();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+            return writerLock.tryLock(timeout, timeUnit) && acquireExclusive(deadline, true, true);
+        }
+
+        /**
+         * Raises {@code writerActive} and waits for readers, called when {@code writerLock} is held.
+         * If waiting fails, releases {@code writerLock}.
+         */
+        private boolean acquireExclusive(long deadline, boolean checkTimeout, boolean interruptible) throws InterruptedException {
+            if (writerLock.getHoldCount() > 1) {
+                return true;
+            }
+            writerActive = true;
+            boolean isLocked = false;
+            try {
+                isLocked = awaitReaders(deadline, checkTimeout, interruptible);
+            } finally {
+                if (!isLocked) {
+                    unlock();
+                }
+            }
+            return isLocked;
+        }
+
+        @Override
+        public void unlock() {
+            if (writerLock.getHoldCount() == 1) {
+                writerActive = false;
+            }
+            writerLock.unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -2,22 +2,147 @@ package ofedorova.enity.sync.impl.locks;
 
 import ofedorova.enity.sync.EntityLock;
 
+import java.util.Collections;
+import java.util.Date;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
  * ExtendedReentrantLock.
  *
+ * Exclusive only, shared methods are not supported. {@link FairnessMode#FAIR} and {@link FairnessMode#BOUNDED_BARGING}
+ * use the fair {@link ReentrantLock}, bounded barging lets a newcomer take a free lock through {@link #tryLock()}
+ * ahead of queued threads.
+ *
+ * {@link #getHoldCount()} counts holds of the calling thread, so the holds of the owner are mirrored in {@code holds}
+ * for other threads, e.g. {@link ofedorova.enity.sync.impl.lockers.LockTableSnapshot}. Only the owner writes it,
+ * after every acquisition and before every release, with a lazy set that adds no fence to the fast path.
+ *
  * @author Olga_Fedorova
  */
 public class ExtendedReentrantLock extends ReentrantLock implements EntityLock {
 
+    private static final long serialVersionUID = 1L;
+    private static final AtomicIntegerFieldUpdater<ExtendedReentrantLock> HOLDS =
+            AtomicIntegerFieldUpdater.newUpdater(ExtendedReentrantLock.class, "holds");
+
+    private final Barging barging;
+    private volatile int holds;
+
+    public ExtendedReentrantLock() {
+        this(FairnessMode.NON_FAIR);
+    }
+
+    public ExtendedReentrantLock(FairnessMode fairnessMode) {
+        this(fairnessMode, FairnessMode.DEFAULT_MAX_BARGES);
+    }
+
+    /**
+     * @param maxBarges count of barges in a row for {@link FairnessMode#BOUNDED_BARGING}
+     */
+    public ExtendedReentrantLock(FairnessMode fairnessMode, int maxBarges) {
+        super(fairnessMode != FairnessMode.NON_FAIR);
+        this.barging = new Barging(fairnessMode, maxBarges);
+    }
+
+    @Override
+    public void lock() {
+        if (barging.getFairnessMode() == FairnessMode.NON_FAIR) {
+            super.lock();
+        } else if (!tryBarge()) {
+            super.lock();
+            barging.handedOff();
+        }
+        updateHolds();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        super.lockInterruptibly();
+        updateHolds();
+    }
+
+    @Override
+    public boolean tryLock() {
+        return tryBarge() && updateHolds();
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (barging.getFairnessMode() == FairnessMode.NON_FAIR) {
+            return super.tryLock(timeout, timeUnit) && updateHolds();
+        }
+        if (tryBarge()) {
+            return updateHolds();
+        }
+        if (super.tryLock(timeout, timeUnit)) {
+            barging.handedOff();
+            return updateHolds();
+        }
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        if (isHeldByCurrentThread()) {
+            HOLDS.lazySet(this, getHoldCount() - 1);
+        }
+        super.unlock();
+    }
+
+    /**
+     * Conditions update the holds of the owner after {@code await} reacquires the lock.
+     */
+    @Override
+    public Condition newCondition() {
+        return new HoldsCondition(super.newCondition());
+    }
+
     @Override
     public Thread getOwner() {
         return super.getOwner();
     }
 
+    @Override
+    public Set<Thread> getSharedOwners() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void lockShared() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean tryLockShared() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean tryLockShared(long timeout, TimeUnit timeUnit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unlockShared() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getExclusiveHoldCount() {
+        int holds = this.holds;
+        return getOwner() != null ? holds : 0;
+    }
+
+    @Override
+    public int getSharedHoldCount() {
+        return 0;
+    }
+
     @Override
     public Set<Thread> getOwnerAndQueuedThreads() {
         Set<Thread> queued = super.getQueuedThreads().stream().collect(Collectors.toSet());
@@ -26,4 +151,86 @@ public class ExtendedReentrantLock extends ReentrantLock implements EntityLock {
         }
         return queued;
     }
+
+    private boolean tryBarge() {
+        if (barging.getFairnessMode() == FairnessMode.NON_FAIR || isHeldByCurrentThread() || !hasQueuedThreads()) {
+            return super.tryLock();
+        }
+        if (barging.mayBarge() && super.tryLock()) {
+            barging.barged();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by the owner after an acquisition.
+     *
+     * @return true
+     */
+    private boolean updateHolds() {
+        HOLDS.lazySet(this, getHoldCount());
+        return true;
+    }
+
+    private final class HoldsCondition implements Condition {
+
+        private final Condition condition;
+
+        private HoldsCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            try {
+                condition.await();
+            } finally {
+                updateHolds();
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            condition.awaitUninterruptibly();
+            updateHolds();
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            try {
+                return condition.awaitNanos(nanosTimeout);
+            } finally {
+                updateHolds();
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            try {
+                return condition.await(time, unit);
+            } finally {
+                updateHolds();
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            try {
+                return condition.awaitUntil(deadline);
+            } finally {
+                updateHolds();
+            }
+        }
+
+        @Override
+        public void signal() {
+            condition.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            condition.signalAll();
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package ofedorova.enity.sync.impl.locks;
+
+import ofedorova.enity.sync.EntityLock;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ExtendedReentrantReadWriteLock.
+ *
+ * Exclusive methods use the write lock, shared methods use the read lock. {@link ReentrantReadWriteLock} does not
+ * expose threads holding the read lock, so they are tracked for deadlock detection: the first shared owner in a field,
+ * as {@link ReentrantReadWriteLock} keeps its first reader, other shared owners in {@code sharedOwners}, so a single
+ * reader does not allocate a set entry per acquisition.
+ *
+ * {@link FairnessMode#FAIR} and {@link FairnessMode#BOUNDED_BARGING} use the fair {@link ReentrantReadWriteLock},
+ * bounded barging lets a writer take a free lock through {@link #tryLock()} ahead of queued threads. In these modes
+ * {@link #tryLockShared()} does not barge either, unless the thread already holds the read lock.
+ *
+ * @author Olga_Fedorova
+ */
+public class ExtendedReentrantReadWriteLock extends ReentrantReadWriteLock implements EntityLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final AtomicReferenceFieldUpdater<ExtendedReentrantReadWriteLock, Thread> FIRST_SHARED_OWNER =
+            AtomicReferenceFieldUpdater.newUpdater(ExtendedReentrantReadWriteLock.class, Thread.class, "firstSharedOwner");
+
+    private final Set<Thread> sharedOwners = ConcurrentHashMap.newKeySet();
+    private volatile Thread firstSharedOwner;
+    private final Barging barging;
+
+    public ExtendedReentrantReadWriteLock() {
+        this(FairnessMode.NON_FAIR);
+    }
+
+    public ExtendedReentrantReadWriteLock(FairnessMode fairnessMode) {
+        this(fairnessMode, FairnessMode.DEFAULT_MAX_BARGES);
+    }
+
+    /**
+     * @param maxBarges count of barges in a row for {@link FairnessMode#BOUNDED_BARGING}
+     */
+    public ExtendedReentrantReadWriteLock(FairnessMode fairnessMode, int maxBarges) {
+        super(fairnessMode != FairnessMode.NON_FAIR);
+        this.barging = new Barging(fairnessMode, maxBarges);
+    }
+
+    @Override
+    public void lock() {
+        if (barging.getFairnessMode() == FairnessMode.NON_FAIR) {
+            writeLock().lock();
+        } else if (!tryLock()) {
+            writeLock().lock();
+            barging.handedOff();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        writeLock().lockInterruptibly();
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (barging.getFairnessMode() == FairnessMode.NON_FAIR || isWriteLockedByCurrentThread() || !hasQueuedThreads()) {
+            return writeLock().tryLock();
+        }
+        if (barging.mayBarge() && writeLock().tryLock()) {
+            barging.barged();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (barging.getFairnessMode() == FairnessMode.NON_FAIR) {
+            return writeLock().tryLock(timeout, timeUnit);
+        }
+        if (tryLock()) {
+            return true;
+        }
+        if (writeLock().tryLock(timeout, timeUnit)) {
+            barging.handedOff();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        writeLock().unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return writeLock().newCondition();
+    }
+
+    @Override
+    public void lockShared() {
+        readLock().lock();
+        addSharedOwner();
+    }
+
+    @Override
+    public boolean tryLockShared() {
+        if (barging.getFairnessMode() != FairnessMode.NON_FAIR && getReadHoldCount() == 0 && !isWriteLockedByCurrentThread()
+                && hasQueuedThreads()) {
+            return false;
+        }
+        if (readLock().tryLock()) {
+            addSharedOwner();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryLockShared(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (readLock().tryLock(timeout, timeUnit)) {
+            addSharedOwner();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void unlockShared() {
+        readLock().unlock();
+        if (getReadHoldCount() == 0) {
+            Thread currentThread = Thread.currentThread();
+            if (firstSharedOwner == currentThread) {
+                firstSharedOwner = null;
+            } else {
+                sharedOwners.remove(currentThread);
+            }
+        }
+    }
+
+    private void addSharedOwner() {
+        if (getReadHoldCount() == 1) {
+            Thread currentThread = Thread.currentThread();
+            if (!FIRST_SHARED_OWNER.compareAndSet(this, null, currentThread)) {
+                sharedOwners.add(currentThread);
+            }
+        }
+    }
+
+    @Override
+    public Thread getOwner() {
+        return super.getOwner();
+    }
+
+    @Override
+    public Set<Thread> getSharedOwners() {
+        Set<Thread> owners = new HashSet<>(sharedOwners);
+        Thread firstSharedOwner = this.firstSharedOwner;
+        if (firstSharedOwner != null) {
+            owners.add(firstSharedOwner);
+        }
+        return Collections.unmodifiableSet(owners);
+    }
+
+    @Override
+    public boolean isSharedOwner(Thread thread) {
+        return firstSharedOwner == thread || sharedOwners.contains(thread);
+    }
+
+    @Override
+    public int getSharedHoldCount() {
+        return getReadLockCount();
+    }
+
+    @Override
+    public Set<Thread> getOwnerAndQueuedThreads() {
+        Set<Thread> queued = new HashSet<>(super.getQueuedThreads());
+        queued.addAll(getSharedOwners());
+        if (getOwner() != null) {
+            queued.add(getOwner());
+        }
+        return queued;
+    }
+}
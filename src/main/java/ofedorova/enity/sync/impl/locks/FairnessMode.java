@@ -0,0 +1,32 @@
+package ofedorova.enity.sync.impl.locks;
+
+/**
+ * FairnessMode.
+ *
+ * Order in which a free lock is granted to a newcomer and to threads already queued for it. Reentrant acquisitions
+ * are always granted. {@code tryLock()} follows the mode as well, unlike {@code tryLock()} of
+ * {@link java.util.concurrent.locks.ReentrantLock} that barges even into a fair lock.
+ *
+ * @author Olga_Fedorova
+ */
+public enum FairnessMode {
+
+    /**
+     * A newcomer takes a free lock ahead of queued threads: the best throughput, queued threads can wait long.
+     */
+    NON_FAIR,
+
+    /**
+     * A newcomer queues behind waiting threads: FIFO order and the best tail of wait times, every contended
+     * acquisition is a handoff to a parked thread.
+     */
+    FAIR,
+
+    /**
+     * Exclusive newcomers may take a free lock ahead of queued threads up to {@code maxBarges} times in a row,
+     * then the lock is handed off to the head of the queue, which resets the count. Shared newcomers do not barge.
+     */
+    BOUNDED_BARGING;
+
+    public static final int DEFAULT_MAX_BARGES = 8;
+}
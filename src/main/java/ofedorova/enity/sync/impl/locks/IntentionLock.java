@@ -0,0 +1,289 @@
+package ofedorova.enity.sync.impl.locks;
+
+import ofedorova.enity.sync.EntityLock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * IntentionLock.
+ *
+ * Reentrant lock of a group of entities with {@link IntentionMode} modes. A mode is granted if it is compatible with
+ * the modes held by other threads, holds of the current thread never conflict, so a thread holding
+ * {@link IntentionMode#IX} may also take {@link IntentionMode#X} once the other threads release the group. A thread
+ * that holds nothing in the lock does not overtake queued threads whose modes conflict with its own, so a stream of
+ * intention locks does not starve a thread waiting for the whole group.
+ *
+ * Counts of holds are guarded by a {@link ReentrantLock}, which is held only to read or update them, waiting threads
+ * park on its condition. An owner that is not a thread, see {@link #lockFor(Object, IntentionMode, Runnable)},
+ * waits as a request in {@code requests}: whenever a thread leaves the monitor, it grants the queued requests that
+ * became compatible and calls their continuations.
+ *
+ * @author Olga_Fedorova
+ */
+public class IntentionLock {
+
+    private static final IntentionMode[] MODES = IntentionMode.values();
+
+    private final ReentrantLock monitor = new ReentrantLock();
+    private final Condition released = monitor.newCondition();
+    private final int[] holds = new int[MODES.length];
+    private final int[] waiters = new int[MODES.length];
+    private final Map<Object, int[]> holdsByOwners = new HashMap<>();
+    private final Deque<QueuedRequest> requests = new ArrayDeque<>();
+
+    public void lock(IntentionMode mode) {
+        monitor.lock();
+        try {
+            if (tryAcquire(Thread.currentThread(), mode, true)) {
+                return;
+            }
+            waiters[mode.ordinal()]++;
+            try {
+                do {
+                    released.awaitUninterruptibly();
+                } while (!tryAcquire(Thread.currentThread(), mode, false));
+            } finally {
+                leaveQueue(mode);
+            }
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    public void lockInterruptibly(IntentionMode mode) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        monitor.lock();
+        try {
+            if (tryAcquire(Thread.currentThread(), mode, true)) {
+                return;
+            }
+            waiters[mode.ordinal()]++;
+            try {
+                do {
+                    released.await();
+                } while (!tryAcquire(Thread.currentThread(), mode, false));
+            } finally {
+                leaveQueue(mode);
+            }
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    public boolean tryLock(IntentionMode mode) {
+        monitor.lock();
+        try {
+            return tryAcquire(Thread.currentThread(), mode, true);
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    public boolean tryLock(IntentionMode mode, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long nanos = timeUnit.toNanos(timeout);
+        monitor.lock();
+        try {
+            if (tryAcquire(Thread.currentThread(), mode, true)) {
+                return true;
+            }
+            waiters[mode.ordinal()]++;
+            try {
+                do {
+                    if (nanos <= 0L) {
+                        return false;
+                    }
+                    nanos = released.awaitNanos(nanos);
+                } while (!tryAcquire(Thread.currentThread(), mode, false));
+                return true;
+            } finally {
+                leaveQueue(mode);
+            }
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    public void unlock(IntentionMode mode) {
+        unlockFor(Thread.currentThread(), mode);
+    }
+
+    /**
+     * Acquires the mode for an owner that is not a thread without blocking the caller. If the mode is not granted
+     * at once, the request is queued and granted by a thread that leaves the monitor after the conflicting holds
+     * are released, {@code onLocked} is called in that thread, possibly before this method returns.
+     *
+     * @return null if the mode was granted at once and {@code onLocked} is not called, otherwise the queued request
+     */
+    public EntityLock.Request lockFor(Object owner, IntentionMode mode, Runnable onLocked) {
+        monitor.lock();
+        try {
+            if (tryAcquire(owner, mode, true)) {
+                return null;
+            }
+            QueuedRequest request = new QueuedRequest(owner, mode, onLocked);
+            requests.add(request);
+            waiters[mode.ordinal()]++;
+            return request;
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    /**
+     * Releases a hold of the owner, any thread may call it.
+     */
+    public void unlockFor(Object owner, IntentionMode mode) {
+        monitor.lock();
+        try {
+            int[] ownHolds = holdsByOwners.get(owner);
+            if (ownHolds == null || ownHolds[mode.ordinal()] == 0) {
+                throw new IllegalMonitorStateException();
+            }
+            ownHolds[mode.ordinal()]--;
+            holds[mode.ordinal()]--;
+            if (countHolds(ownHolds) == 0) {
+                holdsByOwners.remove(owner);
+            }
+            if (countHolds(waiters) > 0) {
+                released.signalAll();
+            }
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    /**
+     * Returns count of holds of the mode by the current thread.
+     */
+    public int getHoldCount(IntentionMode mode) {
+        monitor.lock();
+        try {
+            int[] ownHolds = holdsByOwners.get(Thread.currentThread());
+            return ownHolds == null ? 0 : ownHolds[mode.ordinal()];
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    /**
+     * Returns count of holds of the mode by all threads.
+     */
+    public int getHoldCountOfAllThreads(IntentionMode mode) {
+        monitor.lock();
+        try {
+            return holds[mode.ordinal()];
+        } finally {
+            unlockMonitor();
+        }
+    }
+
+    /**
+     * @param newcomer if true, the thread has not waited yet and queued threads with conflicting modes go first
+     */
+    private boolean tryAcquire(Object owner, IntentionMode mode, boolean newcomer) {
+        int[] ownHolds = holdsByOwners.get(owner);
+        for (IntentionMode heldMode : MODES) {
+            int otherHolds = holds[heldMode.ordinal()] - (ownHolds == null ? 0 : ownHolds[heldMode.ordinal()]);
+            if (otherHolds > 0 && !mode.isCompatibleWith(heldMode)) {
+                return false;
+            }
+            if (newcomer && ownHolds == null && waiters[heldMode.ordinal()] > 0 && !mode.isCompatibleWith(heldMode)) {
+                return false;
+            }
+        }
+        if (ownHolds == null) {
+            ownHolds = new int[MODES.length];
+            holdsByOwners.put(owner, ownHolds);
+        }
+        ownHolds[mode.ordinal()]++;
+        holds[mode.ordinal()]++;
+        return true;
+    }
+
+    /**
+     * Threads that deferred to the leaving thread may go now.
+     */
+    private void leaveQueue(IntentionMode mode) {
+        waiters[mode.ordinal()]--;
+        released.signalAll();
+    }
+
+    /**
+     * Grants queued requests whose modes became compatible and releases the monitor, continuations of the granted
+     * requests are called outside of the monitor.
+     */
+    private void unlockMonitor() {
+        List<Runnable> granted = requests.isEmpty() ? Collections.emptyList() : grantRequests();
+        monitor.unlock();
+        granted.forEach(Runnable::run);
+    }
+
+    private List<Runnable> grantRequests() {
+        List<Runnable> granted = new ArrayList<>(0);
+        requests.removeIf(request -> {
+            if (!tryAcquire(request.owner, request.mode, false)) {
+                return false;
+            }
+            request.granted = true;
+            granted.add(request.onLocked);
+            leaveQueue(request.mode);
+            return true;
+        });
+        return granted;
+    }
+
+    /**
+     * Request of {@link #lockFor(Object, IntentionMode, Runnable)}, its state is guarded by the monitor.
+     */
+    private final class QueuedRequest implements EntityLock.Request {
+
+        private final Object owner;
+        private final IntentionMode mode;
+        private final Runnable onLocked;
+        private boolean granted;
+
+        private QueuedRequest(Object owner, IntentionMode mode, Runnable onLocked) {
+            this.owner = owner;
+            this.mode = mode;
+            this.onLocked = onLocked;
+        }
+
+        @Override
+        public boolean cancel() {
+            monitor.lock();
+            try {
+                if (granted) {
+                    return false;
+                }
+                if (requests.remove(this)) {
+                    leaveQueue(mode);
+                }
+                return true;
+            } finally {
+                unlockMonitor();
+            }
+        }
+    }
+
+    private static int countHolds(int[] holds) {
+        int count = 0;
+        for (int hold : holds) {
+            count += hold;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,46 @@
+package ofedorova.enity.sync.impl.locks;
+
+/**
+ * IntentionMode.
+ *
+ * Modes of {@link IntentionLock} for multi-granularity locking: a thread takes an intention mode on a group before
+ * it locks entities of the group, and {@link #S} or {@link #X} to lock the whole group.
+ *
+ * @author Olga_Fedorova
+ */
+public enum IntentionMode {
+
+    /**
+     * Intention shared: the thread locks some entities of the group in shared mode.
+     */
+    IS,
+
+    /**
+     * Intention exclusive: the thread locks some entities of the group exclusively.
+     */
+    IX,
+
+    /**
+     * Shared: the thread locks all entities of the group in shared mode.
+     */
+    S,
+
+    /**
+     * Exclusive: the thread locks all entities of the group exclusively.
+     */
+    X;
+
+    private static final boolean[][] COMPATIBLE = {
+            {true, true, true, false},
+            {true, true, false, false},
+            {true, false, true, false},
+            {false, false, false, false}
+    };
+
+    /**
+     * Returns true if the mode may be held by one thread while another thread holds the given mode.
+     */
+    public boolean isCompatibleWith(IntentionMode mode) {
+        return COMPATIBLE[ordinal()][mode.ordinal()];
+    }
+}
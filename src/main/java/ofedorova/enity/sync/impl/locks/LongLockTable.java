@@ -0,0 +1,408 @@
+package ofedorova.enity.sync.impl.locks;
+
+import ofedorova.enity.sync.EntityLock;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LongLockTable.
+ *
+ * Exclusive reentrant locks of primitive {@code long} keys. State of the locks is embedded in slots of open-addressing
+ * tables: key, owner, hold count and count of waiting threads, so locking of a key neither boxes the key nor allocates
+ * a lock object. The table is split into a power-of-two count of segments, every segment is a linear probing table
+ * guarded by its own {@link ReentrantLock}, which is held only to read or update slots. A slot exists while the key
+ * has an owner or waiters: removal shifts back the following slots of the probe sequence, so there are no tombstones,
+ * and a segment shrinks when it becomes sparse.
+ *
+ * Waiting threads park on the condition of the segment, release of a key with waiters wakes up all waiters of
+ * the segment, so more segments mean fewer needless wakeups under contention.
+ *
+ * @author Olga_Fedorova
+ */
+public class LongLockTable {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_COUNT = Integer.MAX_VALUE;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    public LongLockTable() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public LongLockTable(int segments) {
+        if (segments <= 0 || segments > 1 << 16) {
+            throw new IllegalArgumentException("Count of segments must be between 1 and 2^16");
+        }
+        int size = segments == 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        this.segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.segmentMask = size - 1;
+    }
+
+    public boolean tryLock(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            return segment.tryAcquire(key, (int) hash, Thread.currentThread());
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    public void lock(long key) {
+        try {
+            acquire(key, 0, false, false);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void lockInterruptibly(long key) throws InterruptedException {
+        acquire(key, 0, false, true);
+    }
+
+    public boolean tryLock(long key, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return acquire(key, timeUnit.toNanos(timeout), true, true);
+    }
+
+    public void unlock(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.indexOf(key, (int) hash);
+            if (index < 0 || segment.owners[index] != Thread.currentThread()) {
+                throw new IllegalMonitorStateException();
+            }
+            if (--segment.holds[index] == 0) {
+                segment.owners[index] = null;
+                if (segment.waiters[index] > 0) {
+                    segment.released.signalAll();
+                } else {
+                    segment.remove(index);
+                }
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Returns the owner of the key or null if the key is not locked.
+     */
+    public Thread getOwner(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.indexOf(key, (int) hash);
+            return index < 0 ? null : segment.owners[index];
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Returns a view of the key as {@link EntityLock}. The view is created on every call, it is meant for the slow
+     * path only, e.g. for the deadlock checker. Queued threads are not tracked per key, so
+     * {@link EntityLock#getOwnerAndQueuedThreads()} of the view returns only the owner. Shared mode is not supported.
+     */
+    public EntityLock getLock(long key) {
+        return new KeyLock(key);
+    }
+
+    /**
+     * Returns count of keys that have an owner or waiters.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.unlock();
+            }
+        }
+        return size;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * @param interruptible if false, waits uninterruptibly and keeps the interrupt status
+     * @return true if the key is locked, false if the timeout elapsed
+     */
+    private boolean acquire(long key, long nanos, boolean checkTimeout, boolean interruptible) throws InterruptedException {
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        Thread currentThread = Thread.currentThread();
+        segment.lock();
+        try {
+            if (segment.tryAcquire(key, (int) hash, currentThread)) {
+                return true;
+            }
+            if (checkTimeout && nanos <= 0L) {
+                return false;
+            }
+            segment.waiters[segment.indexOf(key, (int) hash)]++;
+            try {
+                while (true) {
+                    if (!checkTimeout) {
+                        if (interruptible) {
+                            segment.released.await();
+                        } else {
+                            segment.released.awaitUninterruptibly();
+                        }
+                    } else if (nanos > 0L) {
+                        nanos = segment.released.awaitNanos(nanos);
+                    } else {
+                        return false;
+                    }
+                    if (segment.tryAcquire(key, (int) hash, currentThread)) {
+                        return true;
+                    }
+                }
+            } finally {
+                int index = segment.indexOf(key, (int) hash);
+                if (--segment.waiters[index] == 0 && segment.owners[index] == null) {
+                    segment.remove(index);
+                }
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & segmentMask];
+    }
+
+    /**
+     * Finalizer of MurmurHash3, high bits select the segment, low bits select the slot.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Linear probing table of one segment, accessed only with the segment locked. A slot is used while it has
+     * an owner or waiters.
+     */
+    private static final class Segment extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Condition released = newCondition();
+        private long[] keys = new long[MIN_CAPACITY];
+        private Thread[] owners = new Thread[MIN_CAPACITY];
+        private int[] holds = new int[MIN_CAPACITY];
+        private int[] waiters = new int[MIN_CAPACITY];
+        private int size;
+
+        private boolean tryAcquire(long key, int hash, Thread thread) {
+            int index = indexOf(key, hash);
+            if (index < 0) {
+                index = insert(key, hash);
+            } else if (owners[index] == thread) {
+                if (holds[index] == MAX_COUNT) {
+                    throw new Error("Maximum lock count exceeded");
+                }
+                holds[index]++;
+                return true;
+            } else if (owners[index] != null) {
+                return false;
+            }
+            owners[index] = thread;
+            holds[index] = 1;
+            return true;
+        }
+
+        private boolean isUsed(int index) {
+            return owners[index] != null || waiters[index] != 0;
+        }
+
+        private int indexOf(long key, int hash) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; isUsed(i); i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Reserves a free slot for the key, the caller must make it used before the segment is unlocked.
+         */
+        private int insert(long key, int hash) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            while (isUsed(index)) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            size++;
+            return index;
+        }
+
+        /**
+         * Removes the slot and shifts back the following slots whose probe sequence passes through it.
+         */
+        private void remove(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            clear(hole);
+            for (int i = (hole + 1) & mask; isUsed(i); i = (i + 1) & mask) {
+                int home = (int) hash(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    owners[hole] = owners[i];
+                    holds[hole] = holds[i];
+                    waiters[hole] = waiters[i];
+                    clear(i);
+                    hole = i;
+                }
+            }
+            size--;
+            if (size * 8 < keys.length && keys.length > MIN_CAPACITY) {
+                resize(keys.length / 2);
+            }
+        }
+
+        private void clear(int index) {
+            owners[index] = null;
+            holds[index] = 0;
+            waiters[index] = 0;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Thread[] oldOwners = owners;
+            int[] oldHolds = holds;
+            int[] oldWaiters = waiters;
+            keys = new long[capacity];
+            owners = new Thread[capacity];
+            holds = new int[capacity];
+            waiters = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldOwners[i] != null || oldWaiters[i] != 0) {
+                    int index = (int) hash(oldKeys[i]) & mask;
+                    while (isUsed(index)) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    owners[index] = oldOwners[i];
+                    holds[index] = oldHolds[i];
+                    waiters[index] = oldWaiters[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * View of one key of the table.
+     */
+    private class KeyLock implements EntityLock {
+
+        private final long key;
+
+        private KeyLock(long key) {
+            this.key = key;
+        }
+
+        @Override
+        public Thread getOwner() {
+            return LongLockTable.this.getOwner(key);
+        }
+
+        @Override
+        public Set<Thread> getSharedOwners() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Set<Thread> getOwnerAndQueuedThreads() {
+            Thread owner = getOwner();
+            return owner == null ? Collections.emptySet() : Collections.singleton(owner);
+        }
+
+        @Override
+        public void lock() {
+            LongLockTable.this.lock(key);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            LongLockTable.this.lockInterruptibly(key);
+        }
+
+        @Override
+        public boolean tryLock() {
+            return LongLockTable.this.tryLock(key);
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            return LongLockTable.this.tryLock(key, timeout, timeUnit);
+        }
+
+        @Override
+        public void unlock() {
+            LongLockTable.this.unlock(key);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void lockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared(long timeout, TimeUnit timeUnit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unlockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(key);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package ofedorova.enity.sync.impl.locks;
+
+import ofedorova.enity.sync.EntityLock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * MappedLockTable.
+ *
+ * Exclusive reentrant locks of primitive {@code long} keys shared by processes of one host: the table lives in
+ * a memory-mapped file, so every process that maps the file sees the same locks. Keys are mapped onto a fixed,
+ * power-of-two array of slots, keys that share a slot exclude each other and locking of several keys of one slot by
+ * one thread is reentrant, as in {@code EntityStripedLockImpl}. A slot is one cache line: the owner, the hold count
+ * and the start time of the owner process. The owner is a single word of the process ID and the thread ID, it is
+ * updated by CAS through a {@link VarHandle} view of the buffer, so an acquisition that does not wait is a CAS on
+ * shared memory, without system calls.
+ *
+ * Processes cannot unpark each other, so a waiting thread spins, then yields, then parks with exponential backoff
+ * up to {@link #MAX_PARK_NANOS} and polls the slot. While it waits, it checks every {@link #LIVENESS_CHECK_NANOS}
+ * whether the owner process is alive with {@link ProcessHandle}: a slot whose owner process exited or was killed is
+ * taken over. The start time of the owner process is kept in the slot, so a new process that reused the ID of a dead
+ * owner is not taken for the owner. Threads that died holding a lock in a live process are not detected. Deadlocks
+ * among threads of one process can be found through {@link #getLock(long, LongFunction)}, cycles through other
+ * processes cannot, so cross-process callers should lock with a timeout.
+ *
+ * The slot count is taken from the file if it exists, the header is created under a {@link FileLock}.
+ *
+ * @author Olga_Fedorova
+ */
+public class MappedLockTable implements Closeable {
+
+    public static final int DEFAULT_SLOTS = 4096;
+    public static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    public static final long LIVENESS_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long MAGIC = 0x4d4150504c4f434bL;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 64;
+    private static final int OWNER = 0;
+    private static final int HOLDS = 8;
+    private static final int START_OWNER = 16;
+    private static final int START_TIME = 24;
+    private static final int SPINS = 64;
+    private static final int YIELDS = 16;
+    private static final long MIN_PARK_NANOS = 1000;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final long PID = ProcessHandle.current().pid();
+    private static final long START_MILLIS = startMillis(ProcessHandle.current());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotMask;
+
+    public MappedLockTable(Path file) throws IOException {
+        this(file, DEFAULT_SLOTS);
+    }
+
+    /**
+     * @param slots count of slots of a new file, rounded up to a power of two
+     */
+    public MappedLockTable(Path file, int slots) throws IOException {
+        if (slots <= 0 || slots > 1 << 24) {
+            throw new IllegalArgumentException("Count of slots must be between 1 and 2^24");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int size = initHeader(channel, slots == 1 ? 1 : Integer.highestOneBit(slots - 1) << 1);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) size * SLOT_SIZE);
+            this.slotMask = size - 1;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public boolean tryLock(long key) {
+        return tryAcquire(slotOffset(key), ownerId());
+    }
+
+    public void lock(long key) {
+        try {
+            acquire(key, 0L, false, false);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void lockInterruptibly(long key) throws InterruptedException {
+        acquire(key, 0L, false, true);
+    }
+
+    public boolean tryLock(long key, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return acquire(key, timeUnit.toNanos(timeout), true, true);
+    }
+
+    public void unlock(long key) {
+        int offset = slotOffset(key);
+        if ((long) LONGS.getVolatile(buffer, offset + OWNER) != ownerId()) {
+            throw new IllegalMonitorStateException();
+        }
+        long holds = (long) LONGS.get(buffer, offset + HOLDS);
+        if (holds > 1) {
+            LONGS.set(buffer, offset + HOLDS, holds - 1);
+        } else {
+            LONGS.set(buffer, offset + HOLDS, 0L);
+            LONGS.setRelease(buffer, offset + OWNER, 0L);
+        }
+    }
+
+    /**
+     * Returns true if the slot of the key is held by the current thread.
+     */
+    public boolean isHeldByCurrentThread(long key) {
+        return (long) LONGS.getVolatile(buffer, slotOffset(key) + OWNER) == ownerId();
+    }
+
+    /**
+     * Returns the ID of the process holding the slot of the key or -1 if the slot is free.
+     */
+    public long getOwnerPid(long key) {
+        long owner = (long) LONGS.getVolatile(buffer, slotOffset(key) + OWNER);
+        return owner == 0L ? -1L : owner >>> 32;
+    }
+
+    /**
+     * Returns the ID of the thread of the current process holding the slot of the key, truncated to 32 bits as in
+     * the slot, or -1 if the slot is free or held by another process.
+     */
+    public long getLocalOwnerThreadId(long key) {
+        long owner = (long) LONGS.getVolatile(buffer, slotOffset(key) + OWNER);
+        return owner != 0L && owner >>> 32 == PID ? owner & 0xffffffffL : -1L;
+    }
+
+    /**
+     * Returns a view of the slot of the key as {@link EntityLock}, for the slow path only, e.g. for the deadlock checker.
+     * Owners are threads of the current process resolved from their truncated IDs by {@code localThreads}, so
+     * {@link EntityLock#getOwner()} of the view returns null for a free slot, a slot of another process and a thread
+     * the function does not resolve. Queued threads are not tracked, shared mode is not supported.
+     */
+    public EntityLock getLock(long key, LongFunction<Thread> localThreads) {
+        return new SlotLock(key, localThreads);
+    }
+
+    public int getSlotCount() {
+        return slotMask + 1;
+    }
+
+    /**
+     * Closes the file, locks held by the process stay held. The mapping is released when the table is collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @param interruptible if false, waits uninterruptibly and keeps the interrupt status
+     * @return true if the key is locked, false if the timeout elapsed
+     */
+    private boolean acquire(long key, long nanos, boolean checkTimeout, boolean interruptible) throws InterruptedException {
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        int offset = slotOffset(key);
+        long ownerId = ownerId();
+        if (tryAcquire(offset, ownerId)) {
+            return true;
+        }
+        if (checkTimeout && nanos <= 0L) {
+            return false;
+        }
+        long deadline = System.nanoTime() + nanos;
+        long nextLivenessCheck = System.nanoTime();
+        long parkNanos = MIN_PARK_NANOS;
+        boolean interrupted = false;
+        try {
+            for (int attempt = 0; ; attempt = Math.min(attempt + 1, SPINS + YIELDS)) {
+                if (tryAcquire(offset, ownerId)) {
+                    return true;
+                }
+                long now = System.nanoTime();
+                if (checkTimeout && now - deadline >= 0L) {
+                    return false;
+                }
+                if (now - nextLivenessCheck >= 0L) {
+                    if (tryAcquireFromDeadOwner(offset, ownerId)) {
+                        return true;
+                    }
+                    nextLivenessCheck = now + LIVENESS_CHECK_NANOS;
+                }
+                if (attempt < SPINS) {
+                    Thread.onSpinWait();
+                } else if (attempt < SPINS + YIELDS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, checkTimeout ? Math.min(parkNanos, deadline - now) : parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                    if (Thread.interrupted()) {
+                        if (interruptible) {
+                            throw new InterruptedException();
+                        }
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean tryAcquire(int offset, long ownerId) {
+        long owner = (long) LONGS.getVolatile(buffer, offset + OWNER);
+        if (owner == 0L && LONGS.compareAndSet(buffer, offset + OWNER, 0L, ownerId)) {
+            granted(offset, ownerId);
+            return true;
+        }
+        if (owner == ownerId) {
+            long holds = (long) LONGS.get(buffer, offset + HOLDS);
+            if (holds == Integer.MAX_VALUE) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            LONGS.set(buffer, offset + HOLDS, holds + 1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes over the slot if its owner process is not alive. The start time is trusted only if it was published by
+     * the current owner: the owner word is read before and after it.
+     */
+    private boolean tryAcquireFromDeadOwner(int offset, long ownerId) {
+        long owner = (long) LONGS.getVolatile(buffer, offset + OWNER);
+        if (owner == 0L) {
+            return false;
+        }
+        long startOwner = (long) LONGS.getAcquire(buffer, offset + START_OWNER);
+        long startTime = (long) LONGS.getAcquire(buffer, offset + START_TIME);
+        if ((long) LONGS.getVolatile(buffer, offset + OWNER) != owner) {
+            return false;
+        }
+        if (isAlive(owner >>> 32, startOwner == owner ? startTime : 0L)) {
+            return false;
+        }
+        if (!LONGS.compareAndSet(buffer, offset + OWNER, owner, ownerId)) {
+            return false;
+        }
+        granted(offset, ownerId);
+        return true;
+    }
+
+    private void granted(int offset, long ownerId) {
+        LONGS.set(buffer, offset + HOLDS, 1L);
+        if ((long) LONGS.get(buffer, offset + START_OWNER) != ownerId || (long) LONGS.get(buffer, offset + START_TIME) != START_MILLIS) {
+            LONGS.set(buffer, offset + START_TIME, START_MILLIS);
+            LONGS.setRelease(buffer, offset + START_OWNER, ownerId);
+        }
+    }
+
+    private int slotOffset(long key) {
+        return HEADER_SIZE + ((int) hash(key) & slotMask) * SLOT_SIZE;
+    }
+
+    /**
+     * Owner word of the current thread: process ID in high bits, thread ID in low bits, never 0.
+     */
+    private static long ownerId() {
+        return PID << 32 | (Thread.currentThread().getId() & 0xffffffffL);
+    }
+
+    /**
+     * @param startMillis start time of the owner process, 0 if unknown
+     */
+    private static boolean isAlive(long pid, long startMillis) {
+        if (pid == PID) {
+            return true;
+        }
+        Optional<ProcessHandle> process = ProcessHandle.of(pid);
+        if (!process.isPresent() || !process.get().isAlive()) {
+            return false;
+        }
+        return startMillis == 0L || startMillis(process.get()) == 0L || startMillis(process.get()) == startMillis;
+    }
+
+    private static long startMillis(ProcessHandle process) {
+        return process.info().startInstant().map(Instant::toEpochMilli).orElse(0L);
+    }
+
+    /**
+     * Writes the header of a new file or reads the slot count of an existing one.
+     */
+    private static int initHeader(FileChannel channel, int slots) throws IOException {
+        FileLock fileLock = channel.lock();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+            if (channel.size() == 0L) {
+                header.putLong(MAGIC).putLong(slots).flip();
+                channel.write(header, 0L);
+                channel.write(ByteBuffer.wrap(new byte[1]), HEADER_SIZE + (long) slots * SLOT_SIZE - 1);
+                return slots;
+            }
+            channel.read(header, 0L);
+            header.flip();
+            if (header.remaining() < 16 || header.getLong() != MAGIC) {
+                throw new IOException("File is not a lock table");
+            }
+            long size = header.getLong();
+            if (size <= 0L || size > 1 << 24 || Long.bitCount(size) != 1 || channel.size() < HEADER_SIZE + size * SLOT_SIZE) {
+                throw new IOException("Lock table is corrupted");
+            }
+            return (int) size;
+        } finally {
+            fileLock.release();
+        }
+    }
+
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * View of the slot of one key.
+     */
+    private class SlotLock implements EntityLock {
+
+        private final long key;
+        private final LongFunction<Thread> localThreads;
+
+        private SlotLock(long key, LongFunction<Thread> localThreads) {
+            this.key = key;
+            this.localThreads = localThreads;
+        }
+
+        @Override
+        public Thread getOwner() {
+            long threadId = getLocalOwnerThreadId(key);
+            return threadId < 0L ? null : localThreads.apply(threadId);
+        }
+
+        @Override
+        public Set<Thread> getSharedOwners() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Set<Thread> getOwnerAndQueuedThreads() {
+            Thread owner = getOwner();
+            return owner == null ? Collections.emptySet() : Collections.singleton(owner);
+        }
+
+        @Override
+        public void lock() {
+            MappedLockTable.this.lock(key);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            MappedLockTable.this.lockInterruptibly(key);
+        }
+
+        @Override
+        public boolean tryLock() {
+            return MappedLockTable.this.tryLock(key);
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            return MappedLockTable.this.tryLock(key, timeout, timeUnit);
+        }
+
+        @Override
+        public void unlock() {
+            MappedLockTable.this.unlock(key);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void lockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared(long timeout, TimeUnit timeUnit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unlockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(key);
+        }
+    }
+}
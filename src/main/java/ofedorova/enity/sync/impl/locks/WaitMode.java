@@ -0,0 +1,23 @@
+package ofedorova.enity.sync.impl.locks;
+
+/**
+ * WaitMode.
+ *
+ * How the head of the queue of {@link CustomLock} waits for the lock. Other queued threads always park, they cannot
+ * acquire the lock before they become the head.
+ *
+ * @author Olga_Fedorova
+ */
+public enum WaitMode {
+
+    /**
+     * The head parks at once: no CPU is burnt while waiting, every contended handoff costs a context switch.
+     */
+    PARK,
+
+    /**
+     * The head spins with {@link Thread#onSpinWait()} for up to twice the recent hold time of the lock, then yields,
+     * then parks. Locks held longer than a few context switches, and all locks on a single processor, park at once.
+     */
+    ADAPTIVE_SPIN
+}
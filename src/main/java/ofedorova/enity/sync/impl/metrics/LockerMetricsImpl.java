@@ -0,0 +1,126 @@
+package ofedorova.enity.sync.impl.metrics;
+
+import ofedorova.enity.sync.LockerMetrics;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LockerMetricsImpl.
+ *
+ * Collects times in {@link LogHistogram}s, counts in {@link LongAdder}s and the most contended entities in
+ * {@link SpaceSavingTopK}. Times are in nanoseconds. Hold times are measured for one of {@code holdSampleRate}
+ * holds chosen at random, wait times are measured for every contended acquisition.
+ *
+ * @author Olga_Fedorova
+ */
+public class LockerMetricsImpl implements LockerMetrics {
+
+    public static final int DEFAULT_TOP_K = 16;
+    public static final int DEFAULT_HOLD_SAMPLE_RATE = 16;
+
+    private final LogHistogram waitTimes = new LogHistogram();
+    private final LogHistogram holdTimes = new LogHistogram();
+    private final LogHistogram globalWaitTimes = new LogHistogram();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder deadlocks = new LongAdder();
+    private final LongAdder escalations = new LongAdder();
+    private final LongAdder leaseExpiries = new LongAdder();
+    private final SpaceSavingTopK<Object> contendedEntities;
+    private final int holdSampleRate;
+
+    public LockerMetricsImpl() {
+        this(DEFAULT_TOP_K, DEFAULT_HOLD_SAMPLE_RATE);
+    }
+
+    public LockerMetricsImpl(int topK, int holdSampleRate) {
+        if (holdSampleRate <= 0) {
+            throw new IllegalArgumentException("Hold sample rate must be positive");
+        }
+        this.contendedEntities = new SpaceSavingTopK<>(topK);
+        this.holdSampleRate = holdSampleRate;
+    }
+
+    @Override
+    public void recordWait(Object entityId, long waitNanos) {
+        waitTimes.record(waitNanos);
+        contendedEntities.add(entityId);
+    }
+
+    @Override
+    public boolean sampleHold() {
+        return holdSampleRate == 1 || ThreadLocalRandom.current().nextInt(holdSampleRate) == 0;
+    }
+
+    @Override
+    public void recordHold(long holdNanos) {
+        holdTimes.record(holdNanos);
+    }
+
+    @Override
+    public void recordTimeout(Object entityId) {
+        timeouts.increment();
+    }
+
+    @Override
+    public void recordDeadlock(Object entityId) {
+        deadlocks.increment();
+    }
+
+    @Override
+    public void recordEscalation() {
+        escalations.increment();
+    }
+
+    @Override
+    public void recordLeaseExpiry(Object entityId) {
+        leaseExpiries.increment();
+    }
+
+    @Override
+    public void recordGlobalWait(long waitNanos) {
+        globalWaitTimes.record(waitNanos);
+    }
+
+    /**
+     * Returns wait times of contended acquisitions of entities.
+     */
+    public LogHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * Returns times from the first exclusive acquisition of an entity by a thread to the last release, sampled.
+     */
+    public LogHistogram getHoldTimes() {
+        return holdTimes;
+    }
+
+    public LogHistogram getGlobalWaitTimes() {
+        return globalWaitTimes;
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getDeadlocks() {
+        return deadlocks.sum();
+    }
+
+    public long getEscalations() {
+        return escalations.sum();
+    }
+
+    public long getLeaseExpiries() {
+        return leaseExpiries.sum();
+    }
+
+    /**
+     * Returns the most contended entities, the most contended first.
+     */
+    public List<SpaceSavingTopK.Counter<Object>> getContendedEntities() {
+        return contendedEntities.getTopK();
+    }
+}
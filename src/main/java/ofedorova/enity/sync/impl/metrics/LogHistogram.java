@@ -0,0 +1,85 @@
+package ofedorova.enity.sync.impl.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LogHistogram.
+ *
+ * Histogram of non-negative values with power-of-two buckets: the bucket {@code i} counts values from
+ * {@code 2^(i-1)} to {@code 2^i - 1}, the bucket {@code 0} counts zeros. Recording is one {@link LongAdder} increment,
+ * so threads do not contend on a shared counter. Percentiles are precise up to the bucket, i.e. up to a factor of 2.
+ *
+ * @author Olga_Fedorova
+ */
+public class LogHistogram {
+
+    public static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    public LogHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        value = Math.max(value, 0L);
+        buckets[bucket(value)].increment();
+        sum.add(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the upper bound of the bucket that contains the value at the percentile, or 0 if there are no values.
+     *
+     * @param percentile from 0 to 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long[] counts = getBucketCounts();
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (counts[i] > 0 && seen >= rank) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    public static int bucket(long value) {
+        return BUCKETS - Long.numberOfLeadingZeros(value);
+    }
+
+    public static long getBucketUpperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,116 @@
+package ofedorova.enity.sync.impl.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SpaceSavingTopK.
+ *
+ * Approximate top-K of the most frequent items of a stream by the Space-Saving algorithm: at most {@code capacity}
+ * items are counted, a new item replaces the item with the minimal count and inherits that count as its error.
+ * Every item with frequency above {@code total / capacity} is guaranteed to be counted, a count never underestimates
+ * the frequency and overestimates it at most by the error.
+ *
+ * Replacement scans all counters, so {@code capacity} should stay small. Items are added under a lock, it is meant
+ * for the slow path, e.g. for contended acquisitions. The lock is a {@link ReentrantLock} rather than a monitor,
+ * so a virtual thread waiting for it does not pin its carrier thread.
+ *
+ * @author Olga_Fedorova
+ */
+public class SpaceSavingTopK<T> {
+
+    private final int capacity;
+    private final Map<T, Counter<T>> counters;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void add(T item) {
+        lock.lock();
+        try {
+            Counter<T> counter = counters.get(item);
+            if (counter != null) {
+                counter.count++;
+                return;
+            }
+            if (counters.size() < capacity) {
+                counters.put(item, new Counter<>(item, 1, 0));
+                return;
+            }
+            Counter<T> min = null;
+            for (Counter<T> candidate : counters.values()) {
+                if (min == null || candidate.count < min.count) {
+                    min = candidate;
+                }
+            }
+            counters.remove(min.item);
+            counters.put(item, new Counter<>(item, min.count + 1, min.count));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns counted items sorted by count, the most frequent first.
+     */
+    public List<Counter<T>> getTopK() {
+        List<Counter<T>> result;
+        lock.lock();
+        try {
+            result = new ArrayList<>(counters.size());
+            for (Counter<T> counter : counters.values()) {
+                result.add(new Counter<>(counter.item, counter.count, counter.error));
+            }
+        } finally {
+            lock.unlock();
+        }
+        result.sort(Comparator.comparingLong((Counter<T> counter) -> counter.count).reversed());
+        return result;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Count of an item, the frequency of the item is between {@code count - error} and {@code count}.
+     */
+    public static class Counter<T> {
+        private final T item;
+        private long count;
+        private final long error;
+
+        private Counter(T item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return item + "=" + count;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.EscalationPolicy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AdaptiveEscalationPolicy.
+ *
+ * Threshold that follows the cost of escalations, between {@code minThreshold} and {@code maxThreshold}.
+ * An escalation is harmful if the thread had to wait for other threads holding entity locks, if it failed, or if
+ * other threads waited for the global lock while it was held: every harmful escalation doubles the threshold, so
+ * under contention small transactions stop escalating and large ones escalate only above the new threshold, or never
+ * once {@code maxThreshold} is reached. An escalation that neither waited nor was waited for lowers the threshold by
+ * 1/16. A raised threshold is lowered by the same step once per {@code decay} without a new raise, so a quiet locker
+ * returns to {@code minThreshold} even if nothing escalates anymore.
+ *
+ * The threshold changes only in the feedback methods and in the decay task of the {@link TimingWheel}, which runs
+ * only while the threshold is above {@code minThreshold}. The check of an acquisition reads one volatile field.
+ * Threads waiting for one escalation raise the threshold once.
+ *
+ * @author Olga_Fedorova
+ */
+public class AdaptiveEscalationPolicy implements EscalationPolicy {
+
+    public static final int DEFAULT_MIN_THRESHOLD = 4;
+    public static final int DEFAULT_MAX_THRESHOLD = 1024;
+    public static final long DEFAULT_DECAY_MILLIS = 1000;
+
+    private static final AtomicIntegerFieldUpdater<AdaptiveEscalationPolicy> THRESHOLD =
+            AtomicIntegerFieldUpdater.newUpdater(AdaptiveEscalationPolicy.class, "threshold");
+
+    private final int minThreshold;
+    private final int maxThreshold;
+    private final long decayNanos;
+    private final TimingWheel timingWheel = TimingWheel.getDefault();
+    private final AtomicLong escalations = new AtomicLong();
+    private final AtomicLong raisedAtEscalation = new AtomicLong(-1);
+    private final AtomicBoolean decaying = new AtomicBoolean();
+    private volatile int threshold;
+    private volatile long raisedAt;
+
+    public AdaptiveEscalationPolicy() {
+        this(DEFAULT_MIN_THRESHOLD, DEFAULT_MAX_THRESHOLD, DEFAULT_DECAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public AdaptiveEscalationPolicy(int minThreshold, int maxThreshold, long decay, TimeUnit timeUnit) {
+        if (minThreshold <= 0 || maxThreshold < minThreshold) {
+            throw new IllegalArgumentException("Thresholds must be positive and min threshold must not exceed max threshold");
+        }
+        if (decay <= 0) {
+            throw new IllegalArgumentException("Decay must be positive");
+        }
+        this.minThreshold = minThreshold;
+        this.maxThreshold = maxThreshold;
+        this.decayNanos = timeUnit.toNanos(decay);
+        this.threshold = minThreshold;
+    }
+
+    @Override
+    public boolean shouldEscalate(int countLocks) {
+        return countLocks >= threshold;
+    }
+
+    @Override
+    public void recordEscalation(int countLocks, long waitNanos, boolean escalated) {
+        long escalation = escalations.incrementAndGet();
+        if (!escalated || waitNanos > 0L) {
+            raise(escalation);
+        } else {
+            lower(threshold);
+        }
+    }
+
+    @Override
+    public void recordWaitForEscalation(long waitNanos) {
+        raise(escalations.get());
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Doubles the threshold once per escalation.
+     */
+    private void raise(long escalation) {
+        long raisedAtEscalation = this.raisedAtEscalation.get();
+        if (raisedAtEscalation < escalation && this.raisedAtEscalation.compareAndSet(raisedAtEscalation, escalation)) {
+            raisedAt = System.nanoTime();
+            THRESHOLD.updateAndGet(this, current -> (int) Math.min(maxThreshold, 2L * current));
+            scheduleDecay();
+        }
+    }
+
+    private void lower(int current) {
+        int lowered = Math.max(minThreshold, current - Math.max(1, current / 16));
+        if (lowered < current) {
+            THRESHOLD.compareAndSet(this, current, lowered);
+        }
+    }
+
+    private void scheduleDecay() {
+        if (threshold > minThreshold && decaying.compareAndSet(false, true)) {
+            timingWheel.schedule(this::decay, decayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Called by the timing wheel, lowers the threshold if it was not raised during the last period.
+     */
+    private void decay() {
+        if (System.nanoTime() - raisedAt >= decayNanos) {
+            lower(threshold);
+        }
+        decaying.set(false);
+        scheduleDecay();
+    }
+}
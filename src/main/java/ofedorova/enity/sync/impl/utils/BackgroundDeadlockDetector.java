@@ -0,0 +1,313 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * BackgroundDeadlockDetector.
+ *
+ * Detects deadlocks after the fact instead of checking waits: a waiting thread only publishes the edge "thread waits
+ * for lock", as in {@link WaitForGraphDeadlockChecker}, and a daemon thread takes a snapshot of the wait-for graph every
+ * interval, finds its cycles and breaks each cycle by aborting the wait of one thread chosen by {@link VictimPolicy}.
+ * The wait of the victim is marked aborted and the victim is unparked, its pending {@code lock} throws
+ * {@link DeadlockException} and its interrupt status is not touched. Neither acquisitions nor waits search the graph,
+ * a deadlock lasts up to one interval, so the interval trades the resolution delay for the cost of the scans.
+ *
+ * A cycle is broken only if all its waits are still the ones of the snapshot and their locks are still held by
+ * the next threads of the cycle: a thread cannot release locks while it waits, so such a cycle is a real deadlock.
+ * Waits of {@code tryLock} take part in cycles, but are never aborted. The count of locks and the start of the first
+ * lock of a thread are kept in a {@link ThreadLocal} and copied to its wait. The daemon thread is started by the first
+ * wait and stops after a scan that finds no waits. A victim that stops waiting concurrently with the abort keeps
+ * the lock it has acquired, the mark of the finished wait is dropped.
+ *
+ * @author Olga_Fedorova
+ */
+public class BackgroundDeadlockDetector implements DeadlockChecker {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    private final long intervalNanos;
+    private final VictimPolicy victimPolicy;
+    private final Map<Thread, Wait> waits = new ConcurrentHashMap<>();
+    private final ThreadLocal<Holds> holds = ThreadLocal.withInitial(Holds::new);
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong victims = new AtomicLong();
+
+    public BackgroundDeadlockDetector() {
+        this(DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, VictimPolicy.FEWEST_LOCKS);
+    }
+
+    /**
+     * @param interval time between scans of the wait-for graph, the longest time a deadlock lasts before it is broken
+     */
+    public BackgroundDeadlockDetector(long interval, TimeUnit timeUnit, VictimPolicy victimPolicy) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        this.intervalNanos = timeUnit.toNanos(interval);
+        this.victimPolicy = victimPolicy;
+    }
+
+    @Override
+    public void beforeLock(EntityLockInfo lockInfo, boolean preventDeadlock) {
+        if (!isHeldByCurrentThread(lockInfo.getLock())) {
+            Holds holds = this.holds.get();
+            if (holds.countLocks++ == 0) {
+                holds.startedAt = System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    public void afterUnlock(EntityLockInfo lockInfo) {
+        if (!isHeldByCurrentThread(lockInfo.getLock())) {
+            Holds holds = this.holds.get();
+            if (holds.countLocks > 0) {
+                holds.countLocks--;
+            }
+        }
+    }
+
+    /**
+     * Publishes the edge of the wait, only waits without timeout ({@code preventDeadlock}) can be aborted.
+     */
+    @Override
+    public void beforeWait(EntityLockInfo lockInfo, boolean preventDeadlock) {
+        Holds holds = this.holds.get();
+        holds.wait = new Wait(lockInfo, preventDeadlock, holds.countLocks, holds.startedAt);
+        waits.put(Thread.currentThread(), holds.wait);
+        if (!running.get() && running.compareAndSet(false, true)) {
+            Thread detector = new Thread(this::run, "deadlock-detector");
+            detector.setDaemon(true);
+            detector.start();
+        }
+    }
+
+    @Override
+    public void afterWait(EntityLockInfo lockInfo) {
+        waits.remove(Thread.currentThread());
+        holds.get().wait = null;
+    }
+
+    @Override
+    public boolean abortsWaits() {
+        return true;
+    }
+
+    @Override
+    public boolean isWaitAborted() {
+        Wait wait = holds.get().wait;
+        return wait != null && wait.deadlock != null;
+    }
+
+    @Override
+    public void checkAborted(EntityLockInfo lockInfo) {
+        Wait wait = holds.get().wait;
+        if (wait != null && wait.deadlock != null) {
+            throw new DeadlockException(String.format("Deadlock entities: %s", wait.deadlock));
+        }
+    }
+
+    /**
+     * Returns count of waits aborted to break deadlocks.
+     */
+    public long getVictimCount() {
+        return victims.get();
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    private void run() {
+        while (true) {
+            LockSupport.parkNanos(this, intervalNanos);
+            if (waits.isEmpty()) {
+                running.set(false);
+                if (waits.isEmpty() || !running.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            try {
+                detectDeadlocks();
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Scans a snapshot of the wait-for graph once, a victim is removed from the graph, so the next search finds
+     * the next cycle.
+     *
+     * @return count of aborted waits
+     */
+    int detectDeadlocks() {
+        Map<Thread, Wait> snapshot = new HashMap<>(waits);
+        Map<Thread, List<Thread>> graph = new HashMap<>();
+        for (Map.Entry<Thread, Wait> entry : snapshot.entrySet()) {
+            EntityLock lock = entry.getValue().lockInfo.getLock();
+            List<Thread> owners = new ArrayList<>(lock.getSharedOwners());
+            Thread owner = lock.getOwner();
+            if (owner != null) {
+                owners.add(owner);
+            }
+            owners.removeIf(thread -> !snapshot.containsKey(thread));
+            graph.put(entry.getKey(), owners);
+        }
+        int aborted = 0;
+        List<Thread> cycle;
+        while ((cycle = findCycle(graph)) != null) {
+            Thread victim = selectVictim(cycle, snapshot);
+            if (victim != null && isDeadlocked(cycle, snapshot)) {
+                abort(victim, snapshot.get(victim), cycle, snapshot);
+                aborted++;
+            }
+            graph.remove(victim != null ? victim : cycle.get(0));
+        }
+        return aborted;
+    }
+
+    /**
+     * Iterative depth-first search, threads removed from the graph are skipped.
+     *
+     * @return threads of a cycle, every thread waits for a lock held by the next one, or null if there is no cycle
+     */
+    private static List<Thread> findCycle(Map<Thread, List<Thread>> graph) {
+        Map<Thread, Boolean> onPath = new HashMap<>();
+        for (Thread start : graph.keySet()) {
+            if (onPath.containsKey(start)) {
+                continue;
+            }
+            Deque<Thread> path = new ArrayDeque<>();
+            Deque<Iterator<Thread>> iterators = new ArrayDeque<>();
+            path.push(start);
+            iterators.push(graph.get(start).iterator());
+            onPath.put(start, true);
+            while (!path.isEmpty()) {
+                Iterator<Thread> iterator = iterators.peek();
+                if (!iterator.hasNext()) {
+                    onPath.put(path.pop(), false);
+                    iterators.pop();
+                    continue;
+                }
+                Thread next = iterator.next();
+                if (!graph.containsKey(next)) {
+                    continue;
+                }
+                Boolean visiting = onPath.get(next);
+                if (visiting == null) {
+                    path.push(next);
+                    iterators.push(graph.get(next).iterator());
+                    onPath.put(next, true);
+                } else if (visiting) {
+                    List<Thread> cycle = new ArrayList<>();
+                    for (Thread thread : path) {
+                        cycle.add(thread);
+                        if (thread == next) {
+                            break;
+                        }
+                    }
+                    Collections.reverse(cycle);
+                    return cycle;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return null if no thread of the cycle waits without timeout
+     */
+    private Thread selectVictim(List<Thread> cycle, Map<Thread, Wait> snapshot) {
+        Thread victim = null;
+        for (Thread thread : cycle) {
+            Wait wait = snapshot.get(thread);
+            if (wait.abortable && (victim == null || isBetterVictim(wait, snapshot.get(victim)))) {
+                victim = thread;
+            }
+        }
+        return victim;
+    }
+
+    private boolean isBetterVictim(Wait wait, Wait victim) {
+        boolean younger = wait.startedAt - victim.startedAt > 0L;
+        if (victimPolicy == VictimPolicy.YOUNGEST) {
+            return younger || wait.startedAt == victim.startedAt && wait.countLocks < victim.countLocks;
+        }
+        return wait.countLocks < victim.countLocks || wait.countLocks == victim.countLocks && younger;
+    }
+
+    private boolean isDeadlocked(List<Thread> cycle, Map<Thread, Wait> snapshot) {
+        for (int i = 0; i < cycle.size(); i++) {
+            Thread thread = cycle.get(i);
+            Wait wait = snapshot.get(thread);
+            Thread next = cycle.get((i + 1) % cycle.size());
+            EntityLock lock = wait.lockInfo.getLock();
+            if (waits.get(thread) != wait || lock.getOwner() != next && !lock.isSharedOwner(next)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void abort(Thread victim, Wait wait, List<Thread> cycle, Map<Thread, Wait> snapshot) {
+        List<EntityLockInfo> deadlock = new ArrayList<>();
+        for (Thread thread : cycle) {
+            deadlock.add(snapshot.get(thread).lockInfo);
+        }
+        wait.deadlock = deadlock;
+        victims.incrementAndGet();
+        LockSupport.unpark(victim);
+    }
+
+    private static boolean isHeldByCurrentThread(EntityLock lock) {
+        Thread currentThread = Thread.currentThread();
+        return lock.getOwner() == currentThread || lock.isSharedOwner(currentThread);
+    }
+
+    /**
+     * Entity locks and the current wait of a thread, accessed only by the thread itself.
+     */
+    private static final class Holds {
+        private int countLocks;
+        private long startedAt;
+        private Wait wait;
+    }
+
+    /**
+     * Published wait of a thread, {@code deadlock} is set by the detector when the wait is aborted.
+     */
+    private static final class Wait {
+
+        private final EntityLockInfo lockInfo;
+        private final boolean abortable;
+        private final int countLocks;
+        private final long startedAt;
+        private volatile List<EntityLockInfo> deadlock;
+
+        private Wait(EntityLockInfo lockInfo, boolean abortable, int countLocks, long startedAt) {
+            this.lockInfo = lockInfo;
+            this.abortable = abortable;
+            this.countLocks = countLocks;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import ofedorova.enity.sync.EntityLockInfo;
 import ofedorova.enity.sync.exception.DeadlockException;
 import ofedorova.enity.sync.DeadlockChecker;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
@@ -14,11 +15,18 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * DeadlockChecker.
  *
+ * Checks every acquisition: traverses locks held by owners and waiters of the lock.
+ *
+ * Locks held by a thread are kept in a {@link ThreadLocal} set, reclaimed with the thread. The traversal follows only
+ * threads holding more than one lock, so a thread publishes its set to {@code locksByThreads} when it takes its second
+ * lock and withdraws it when it is back to one lock: a thread holding a single lock does not touch shared structures.
+ *
  * @author Olga_Fedorova
  */
 public class DeadlockCheckerImpl implements DeadlockChecker {
 
     private final Map<Thread, Set<EntityLockInfo>> locksByThreads = new ConcurrentHashMap<>();
+    private final ThreadLocal<Set<EntityLockInfo>> heldLocks = ThreadLocal.withInitial(ConcurrentHashMap::newKeySet);
 
     @Override
     public void beforeLock(EntityLockInfo lockInfo, boolean preventDeadlock) {
@@ -33,16 +41,46 @@ public class DeadlockCheckerImpl implements DeadlockChecker {
         removeLockForThread(lockInfo);
     }
 
+    /**
+     * A thread waiting for the exclusive side of a lock it holds in shared mode waits for itself.
+     */
+    @Override
+    public void beforeWait(EntityLockInfo lockInfo, boolean preventDeadlock) {
+        if (preventDeadlock && lockInfo.getLock().isSharedOwner(Thread.currentThread())) {
+            throw new DeadlockException(String.format("Deadlock entities: [%s]", lockInfo));
+        }
+    }
+
+    @Override
+    public void afterWait(EntityLockInfo lockInfo) {
+    }
+
+    /**
+     * The set is concurrent: once published it is read by threads checking deadlocks.
+     */
     private void addLockForThread(EntityLockInfo lock) {
-        Set<EntityLockInfo> locks = locksByThreads.computeIfAbsent(Thread.currentThread(), v -> new HashSet<>());
-        locks.add(lock);
+        Set<EntityLockInfo> locks = heldLocks.get();
+        if (locks.add(lock) && locks.size() == 2) {
+            locksByThreads.put(Thread.currentThread(), locks);
+        }
     }
 
     private void removeLockForThread(EntityLockInfo lock) {
-        Set<EntityLockInfo> locks = locksByThreads.get(Thread.currentThread());
-        if (locks != null) {
-            locks.remove(lock);
+        Set<EntityLockInfo> locks = heldLocks.get();
+        if (locks.remove(lock) && locks.size() == 1) {
+            locksByThreads.remove(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Returns published locks of the thread, the current thread may read its own locks that are not published.
+     */
+    private Set<EntityLockInfo> getLocksOfThread(Thread thread) {
+        Set<EntityLockInfo> locks = locksByThreads.get(thread);
+        if (locks == null) {
+            locks = thread == Thread.currentThread() ? heldLocks.get() : Collections.emptySet();
         }
+        return locks;
     }
 
     private void checkDeadlock(EntityLockInfo lock) {
@@ -59,7 +97,7 @@ public class DeadlockCheckerImpl implements DeadlockChecker {
                 boolean isBlockedByOtherThreds = false;
                 for (Thread checkThread : pollLock.getLock().getOwnerAndQueuedThreads()) {
                     if (!checkedThreads.contains(checkThread)) {
-                        Set<EntityLockInfo> lockHoldsByCheckThread = locksByThreads.getOrDefault(checkThread, new HashSet<>());
+                        Set<EntityLockInfo> lockHoldsByCheckThread = getLocksOfThread(checkThread);
                         if (lockHoldsByCheckThread.size() > 1 || checkThread == Thread.currentThread()) {
                             queue.addAll(lockHoldsByCheckThread);
                             checkedThreads.add(checkThread);
@@ -0,0 +1,33 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.EscalationPolicy;
+
+/**
+ * ThresholdEscalationPolicy.
+ *
+ * Escalates when the count of entity locks of a thread reaches a fixed threshold, ignores feedback.
+ *
+ * @author Olga_Fedorova
+ */
+public class ThresholdEscalationPolicy implements EscalationPolicy {
+
+    /**
+     * Threshold that is never reached, escalation is disabled.
+     */
+    public static final ThresholdEscalationPolicy NEVER = new ThresholdEscalationPolicy(Integer.MAX_VALUE);
+
+    private final int threshold;
+
+    public ThresholdEscalationPolicy(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean shouldEscalate(int countLocks) {
+        return countLocks >= threshold;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+}
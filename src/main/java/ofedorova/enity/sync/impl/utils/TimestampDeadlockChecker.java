@@ -0,0 +1,237 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TimestampDeadlockChecker.
+ *
+ * Base of deadlock prevention policies that order threads by age. A thread gets a timestamp when it takes its first
+ * lock and keeps it until it releases the last one, a smaller timestamp means an older thread. A thread aborted by
+ * {@link DeadlockException} keeps its timestamp for its next transaction, the retry, so it gets older with every
+ * abort and is not aborted forever by younger threads. Before a thread waits, the policy compares its timestamp with
+ * timestamps of the owner and the shared owners of the lock, so the decision costs the same no matter how many locks
+ * are held in the system or how many threads are queued. A policy lets threads wait for each other only in one
+ * direction of age, so waits cannot form a cycle, at the cost of aborts of threads that would not deadlock.
+ * A thread that holds no other locks cannot close a cycle, so its wait is not checked. A thread waiting for a lock
+ * it holds in shared mode always deadlocks.
+ *
+ * A queued thread waits for the next owner as well, so the waiting thread checks its wait again against a new owner
+ * whenever it wakes up, see {@link EntityLock#lockAbortably}. Only waits without timeout are checked, waits of
+ * {@code tryLock} are bounded by their timeouts. The state of a thread is kept in a {@link ThreadLocal} and published
+ * to {@code transactions} while the thread holds locks, so other threads can read the age of an owner.
+ *
+ * @author Olga_Fedorova
+ */
+public abstract class TimestampDeadlockChecker implements DeadlockChecker {
+
+    private final AtomicLong timestamps = new AtomicLong();
+    private final Map<Thread, Transaction> transactions = new ConcurrentHashMap<>();
+    private final ThreadLocal<Transaction> currentTransaction = ThreadLocal.withInitial(Transaction::new);
+
+    @Override
+    public void beforeLock(EntityLockInfo lockInfo, boolean preventDeadlock) {
+        if (!isHeldByCurrentThread(lockInfo.getLock())) {
+            Transaction transaction = currentTransaction.get();
+            if (transaction.countLocks++ == 0) {
+                if (!transaction.aborted) {
+                    transaction.timestamp = timestamps.incrementAndGet();
+                }
+                transaction.aborted = false;
+                transactions.put(Thread.currentThread(), transaction);
+            }
+        }
+    }
+
+    @Override
+    public void afterUnlock(EntityLockInfo lockInfo) {
+        if (!isHeldByCurrentThread(lockInfo.getLock())) {
+            Transaction transaction = currentTransaction.get();
+            if (transaction.countLocks > 0 && --transaction.countLocks == 0) {
+                transactions.remove(Thread.currentThread());
+                if (!transaction.aborted) {
+                    transaction.timestamp = 0L;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the current thread as waiting before the check, so a thread wounding it concurrently either sees it
+     * waiting and unparks it, or the current thread sees the wound here.
+     */
+    @Override
+    public void beforeWait(EntityLockInfo lockInfo, boolean preventDeadlock) {
+        if (!preventDeadlock) {
+            return;
+        }
+        EntityLock lock = lockInfo.getLock();
+        Transaction transaction = currentTransaction.get();
+        transaction.waiting = true;
+        try {
+            checkWounded(transaction, lockInfo);
+            if (lock.isSharedOwner(Thread.currentThread())) {
+                throw new DeadlockException(String.format("Deadlock entities: [%s]", lockInfo));
+            }
+            if (transaction.countLocks > (isHeldByCurrentThread(lock) ? 0 : 1)) {
+                transaction.waitingFor = lockInfo;
+                checkOwners(transaction, lockInfo);
+            }
+        } catch (DeadlockException e) {
+            transaction.aborted = true;
+            afterWait(lockInfo);
+            throw e;
+        } catch (RuntimeException e) {
+            afterWait(lockInfo);
+            throw e;
+        }
+    }
+
+    @Override
+    public void afterWait(EntityLockInfo lockInfo) {
+        Transaction transaction = currentTransaction.get();
+        transaction.waiting = false;
+        transaction.waitingFor = null;
+        transaction.checkedOwner = null;
+        transaction.abort = null;
+    }
+
+    @Override
+    public boolean abortsWaits() {
+        return true;
+    }
+
+    /**
+     * Checks the wait again if the owner or the count of shared holds of the lock has changed since the last check.
+     */
+    @Override
+    public boolean isWaitAborted() {
+        Transaction transaction = currentTransaction.get();
+        if (transaction.abort != null || transaction.isWounded()) {
+            return true;
+        }
+        EntityLockInfo lockInfo = transaction.waitingFor;
+        if (lockInfo != null) {
+            EntityLock lock = lockInfo.getLock();
+            int sharedHolds = lock.getSharedHoldCount();
+            if (lock.getOwner() != transaction.checkedOwner || sharedHolds != transaction.checkedSharedHolds || sharedHolds < 0) {
+                try {
+                    checkOwners(transaction, lockInfo);
+                } catch (DeadlockException e) {
+                    transaction.abort = e;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void checkAborted(EntityLockInfo lockInfo) {
+        Transaction transaction = currentTransaction.get();
+        DeadlockException abort = transaction.abort;
+        try {
+            if (abort != null) {
+                throw abort;
+            }
+            checkWounded(transaction, lockInfo);
+        } catch (DeadlockException e) {
+            transaction.aborted = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Decides whether the current thread may wait for the lock held by another thread.
+     *
+     * @param timestamp      timestamp of the current thread
+     * @param otherTimestamp timestamp of the other thread read once, the other thread may start a new transaction
+     *                       concurrently
+     * @throws ofedorova.enity.sync.exception.DeadlockException if the current thread must not wait
+     */
+    protected abstract void resolveConflict(long timestamp, Thread otherThread, Transaction other, long otherTimestamp,
+                                            EntityLockInfo lockInfo);
+
+    /**
+     * Hook of policies that abort other threads, the current thread throws if another thread has aborted it.
+     */
+    protected void checkWounded(Transaction transaction, EntityLockInfo lockInfo) {
+    }
+
+    /**
+     * Resolves conflicts with the owner and the shared owners of the lock and remembers what was checked.
+     */
+    private void checkOwners(Transaction transaction, EntityLockInfo lockInfo) {
+        EntityLock lock = lockInfo.getLock();
+        Thread owner = lock.getOwner();
+        transaction.checkedOwner = owner;
+        transaction.checkedSharedHolds = lock.getSharedHoldCount();
+        resolveConflict(transaction, owner, lockInfo);
+        if (transaction.checkedSharedHolds != 0) {
+            for (Thread thread : lock.getSharedOwners()) {
+                resolveConflict(transaction, thread, lockInfo);
+            }
+        }
+    }
+
+    private void resolveConflict(Transaction transaction, Thread thread, EntityLockInfo lockInfo) {
+        Transaction other = thread != null && thread != Thread.currentThread() ? transactions.get(thread) : null;
+        long otherTimestamp = other != null ? other.timestamp : 0L;
+        if (otherTimestamp != 0L) {
+            resolveConflict(transaction.timestamp, thread, other, otherTimestamp, lockInfo);
+        }
+    }
+
+    private static boolean isHeldByCurrentThread(EntityLock lock) {
+        Thread currentThread = Thread.currentThread();
+        return lock.getOwner() == currentThread || lock.isSharedOwner(currentThread);
+    }
+
+    /**
+     * Locks of a thread from the first acquisition to the last release. {@code countLocks}, {@code aborted} and
+     * the state of the current wait are accessed only by the thread itself, other fields are read by threads
+     * checking their waits.
+     */
+    protected static final class Transaction {
+
+        private volatile long timestamp;
+        private volatile long woundedAt;
+        private volatile boolean waiting;
+        private int countLocks;
+        private boolean aborted;
+        private EntityLockInfo waitingFor;
+        private Thread checkedOwner;
+        private int checkedSharedHolds;
+        private DeadlockException abort;
+
+        /**
+         * Aborts the transaction with the timestamp. The wound is ignored if the thread has already finished
+         * the transaction, so it does not abort a transaction that does not conflict.
+         *
+         * @return true if the thread was waiting and has to be woken up
+         */
+        boolean wound(long timestamp) {
+            woundedAt = timestamp;
+            return waiting && this.timestamp == timestamp;
+        }
+
+        boolean isWounded() {
+            long timestamp = this.timestamp;
+            return timestamp != 0L && woundedAt == timestamp;
+        }
+
+        /**
+         * Consumes the wound when the thread is aborted by it, the retry keeps the timestamp and must not be aborted
+         * by the same wound again.
+         */
+        void healWound() {
+            woundedAt = 0L;
+        }
+    }
+}
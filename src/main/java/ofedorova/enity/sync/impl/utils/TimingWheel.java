@@ -0,0 +1,241 @@
+package ofedorova.enity.sync.impl.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TimingWheel.
+ *
+ * Hashed timing wheel: one daemon thread serves all scheduled timeouts instead of a timer per timeout. Time is split
+ * into ticks, a timeout is put into the bucket of its deadline tick modulo the wheel size and keeps the count of
+ * remaining rounds of the wheel. Every tick the worker thread expires timeouts of one bucket whose rounds are over,
+ * so scheduling and cancellation cost O(1) and a tick costs the size of one bucket, not the count of all timeouts.
+ * A timeout expires up to one tick late.
+ *
+ * New and cancelled timeouts are passed to the worker thread through lock-free queues, buckets are linked lists
+ * accessed only by the worker thread. Tasks run in the worker thread, so they must be short; an exception of a task
+ * is passed to the uncaught exception handler of the worker thread and does not stop the wheel.
+ *
+ * @author Olga_Fedorova
+ */
+public class TimingWheel {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Thread worker;
+    private final long startTime = System.nanoTime();
+    private volatile boolean stopped;
+    private long tick;
+
+    public TimingWheel() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param wheelSize count of buckets, rounded up to a power of two
+     */
+    public TimingWheel(long tickDuration, TimeUnit timeUnit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Wheel size must be between 1 and 2^30");
+        }
+        int size = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = timeUnit.toNanos(tickDuration);
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.worker = new Thread(this::run, "timing-wheel");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Returns the wheel shared by all users in the JVM, its worker thread is started on the first timeout.
+     */
+    public static TimingWheel getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Schedules the task to run in the worker thread after the delay, unless the returned timeout is cancelled.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit timeUnit) {
+        if (stopped) {
+            throw new IllegalStateException("Timing wheel is stopped");
+        }
+        start();
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + timeUnit.toNanos(delay));
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the worker thread, scheduled timeouts never expire.
+     */
+    public void stop() {
+        stopped = true;
+        worker.interrupt();
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    private void start() {
+        if (!started.get() && started.compareAndSet(false, true)) {
+            worker.start();
+        }
+    }
+
+    private void run() {
+        tick = (System.nanoTime() - startTime) / tickNanos;
+        while (!stopped) {
+            waitForTick();
+            removeCancelled();
+            addScheduled();
+            expireBucket(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void waitForTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (!stopped) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0L) {
+                return;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket >= 0) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    /**
+     * Puts new timeouts into buckets, a timeout whose deadline has passed goes into the current bucket.
+     */
+    private void addScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state != Timeout.INIT) {
+                continue;
+            }
+            long deadlineTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+            timeout.bucket = (int) (deadlineTick & mask);
+            timeout.next = buckets[timeout.bucket];
+            if (timeout.next != null) {
+                timeout.next.prev = timeout;
+            }
+            buckets[timeout.bucket] = timeout;
+        }
+    }
+
+    private void expireBucket(Timeout timeout) {
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                unlink(timeout);
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+    /**
+     * Scheduled task of the wheel. Links and rounds are accessed only by the worker thread.
+     */
+    public static final class Timeout {
+
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+        private long remainingRounds;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if the timeout was cancelled before it expired
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+                return false;
+            }
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    private static final class DefaultHolder {
+        private static final TimingWheel INSTANCE = new TimingWheel();
+    }
+}
@@ -0,0 +1,23 @@
+package ofedorova.enity.sync.impl.utils;
+
+/**
+ * VictimPolicy.
+ *
+ * Choice of the thread whose wait is aborted to break a deadlock found by {@link BackgroundDeadlockDetector}.
+ * Only threads waiting without timeout can be chosen, waits of {@code tryLock} end with their timeouts.
+ *
+ * @author Olga_Fedorova
+ */
+public enum VictimPolicy {
+
+    /**
+     * The thread holding the fewest entity locks, so the least work is rolled back; ties go to the youngest thread.
+     */
+    FEWEST_LOCKS,
+
+    /**
+     * The thread that took its first entity lock last, so older threads make progress; ties go to the thread holding
+     * the fewest locks.
+     */
+    YOUNGEST
+}
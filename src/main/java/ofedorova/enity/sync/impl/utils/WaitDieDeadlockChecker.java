@@ -0,0 +1,25 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+
+/**
+ * WaitDieDeadlockChecker.
+ *
+ * Wait-die policy: an older thread waits for a younger one, a younger thread that would wait for an older one
+ * "dies" with {@link DeadlockException} and is expected to release its locks and retry with the same age. A queued
+ * thread dies while waiting only when the lock passes to an older owner, other threads never abort its wait.
+ *
+ * @author Olga_Fedorova
+ */
+public class WaitDieDeadlockChecker extends TimestampDeadlockChecker {
+
+    @Override
+    protected void resolveConflict(long timestamp, Thread otherThread, Transaction other, long otherTimestamp,
+                                   EntityLockInfo lockInfo) {
+        if (timestamp > otherTimestamp) {
+            throw new DeadlockException(String.format("Wait-die: entity %s is held or awaited by older thread %s",
+                    lockInfo, otherThread.getName()));
+        }
+    }
+}
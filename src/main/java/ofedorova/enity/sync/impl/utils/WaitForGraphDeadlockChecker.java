@@ -0,0 +1,127 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.DeadlockChecker;
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WaitForGraphDeadlockChecker.
+ *
+ * Keeps explicit edges of the wait-for graph: thread waits for lock ({@code waitingLocks}), lock is held by
+ * the exclusive owner and shared owners ({@link EntityLock#getOwner()}, {@link EntityLock#getSharedOwners()}).
+ * Edges exist only while a thread waits, so an acquisition that does not wait costs nothing. Before a thread starts
+ * waiting the checker follows the edges from the lock: if a path comes back to the current thread it is a deadlock.
+ * The cost of the check depends on the count of waiting threads reachable from the lock, not on the count of
+ * held locks. Nothing is kept per thread outside of its wait, so short-lived and virtual threads leave no state.
+ * Waits of owners that are not threads are kept by their owners in the same map, see {@link #getWaitingLock(Object)}.
+ *
+ * @author Olga_Fedorova
+ */
+public class WaitForGraphDeadlockChecker implements DeadlockChecker {
+
+    private final Map<Object, EntityLockInfo> waitingLocks = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeLock(EntityLockInfo lockInfo, boolean preventDeadlock) {
+    }
+
+    @Override
+    public void afterUnlock(EntityLockInfo lockInfo) {
+    }
+
+    /**
+     * Adds the edge from the current thread to the lock before the check, so when two threads close a cycle
+     * concurrently at least one of them sees the edge of the other one.
+     */
+    @Override
+    public void beforeWait(EntityLockInfo lockInfo, boolean preventDeadlock) {
+        Thread currentThread = Thread.currentThread();
+        waitingLocks.put(currentThread, lockInfo);
+        if (preventDeadlock) {
+            List<EntityLockInfo> deadlockEntities = findDeadlock(currentThread, lockInfo);
+            if (deadlockEntities != null) {
+                waitingLocks.remove(currentThread);
+                throw new DeadlockException(String.format("Deadlock entities: %s", deadlockEntities));
+            }
+        }
+    }
+
+    @Override
+    public void afterWait(EntityLockInfo lockInfo) {
+        waitingLocks.remove(Thread.currentThread());
+    }
+
+    @Override
+    public void beforeAsyncWait(Object waiter, EntityLockInfo lockInfo) {
+        waitingLocks.put(waiter, lockInfo);
+    }
+
+    @Override
+    public void afterAsyncWait(Object waiter, EntityLockInfo lockInfo) {
+        waitingLocks.remove(waiter, lockInfo);
+    }
+
+    /**
+     * Returns the lock the thread or another owner waits for, or null if it does not wait.
+     */
+    public EntityLockInfo getWaitingLock(Object waiter) {
+        return waitingLocks.get(waiter);
+    }
+
+    /**
+     * Depth-first search from the lock through its owners: the exclusive owner and shared owners.
+     *
+     * @return path of locks from the lock to the lock held by the current thread, or null if there is no deadlock
+     */
+    private List<EntityLockInfo> findDeadlock(Thread currentThread, EntityLockInfo lockInfo) {
+        List<EntityLockInfo> locks = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        Set<Thread> checkedThreads = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+
+        locks.add(lockInfo);
+        parents.add(-1);
+        stack.push(0);
+
+        while (!stack.isEmpty()) {
+            int index = stack.pop();
+            EntityLock lock = locks.get(index).getLock();
+            List<Thread> owners = new ArrayList<>(lock.getSharedOwners());
+            if (lock.getOwner() != null) {
+                owners.add(lock.getOwner());
+            }
+            for (Thread owner : owners) {
+                if (owner == currentThread) {
+                    return getPath(locks, parents, index);
+                }
+                EntityLockInfo waitingLock = checkedThreads.add(owner) ? waitingLocks.get(owner) : null;
+                if (waitingLock != null) {
+                    locks.add(waitingLock);
+                    parents.add(index);
+                    stack.push(locks.size() - 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<EntityLockInfo> getPath(List<EntityLockInfo> locks, List<Integer> parents, int index) {
+        List<EntityLockInfo> path = new ArrayList<>();
+        for (int i = index; i >= 0; i = parents.get(i)) {
+            path.add(locks.get(i));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+}
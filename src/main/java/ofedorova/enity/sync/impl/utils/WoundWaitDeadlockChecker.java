@@ -0,0 +1,37 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * WoundWaitDeadlockChecker.
+ *
+ * Wound-wait policy: a younger thread waits for an older one, an older thread "wounds" younger owners
+ * of the lock and waits. A wounded thread gets {@link DeadlockException} from its current or next wait without
+ * timeout and is expected to release its locks and retry with the same age. A waiting thread is marked wounded and
+ * unparked, its interrupt status is not touched. A thread keeps running while it does not wait, so it can finish
+ * and release its locks without being aborted.
+ *
+ * @author Olga_Fedorova
+ */
+public class WoundWaitDeadlockChecker extends TimestampDeadlockChecker {
+
+    @Override
+    protected void resolveConflict(long timestamp, Thread otherThread, Transaction other, long otherTimestamp,
+                                   EntityLockInfo lockInfo) {
+        if (timestamp < otherTimestamp && other.wound(otherTimestamp)) {
+            LockSupport.unpark(otherThread);
+        }
+    }
+
+    @Override
+    protected void checkWounded(Transaction transaction, EntityLockInfo lockInfo) {
+        if (transaction.isWounded()) {
+            transaction.healWound();
+            throw new DeadlockException(String.format("Wound-wait: wounded by an older thread while waiting for entity %s",
+                    lockInfo));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * AllocationFreeLockingTest.
+ *
+ * Uncontended acquisitions and releases of an entity whose lock is already present must not allocate: locks held
+ * by the thread in every implementation and stripes of {@link EntityStripedLockImpl}. Allocated bytes of the thread
+ * are measured with {@link ThreadMXBean}, the minimum over several rounds is taken, so allocations of the JIT warm-up
+ * and of the measurement itself do not count.
+ *
+ * @author Olga_Fedorova
+ */
+class AllocationFreeLockingTest {
+
+    private static final int ROUNDS = 20;
+    private static final int ITERATIONS = 10_000;
+
+    private static ThreadMXBean threadMXBean;
+
+    @BeforeAll
+    static void enableAllocationCounting() {
+        threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_lockingOfHeldEntityDoesNotAllocate(AbstractEntityLockerImpl<Long> locker) {
+        Long entityId = 1L;
+        locker.lock(entityId);
+        try {
+            assertNoAllocation(() -> {
+                locker.lock(entityId);
+                locker.unlock(entityId);
+            });
+            assertNoAllocation(() -> {
+                locker.tryLock(entityId);
+                locker.unlock(entityId);
+            });
+            assertNoAllocation(() -> {
+                locker.lockShared(entityId);
+                locker.unlockShared(entityId);
+            });
+        } finally {
+            locker.unlock(entityId);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("stripedLockers")
+    public void test_lockingOfStripeDoesNotAllocate(EntityStripedLockImpl<Long> locker) throws Exception {
+        Long entityId = 1L;
+        assertNoAllocation(() -> {
+            locker.lock(entityId);
+            locker.unlock(entityId);
+        });
+        assertNoAllocation(() -> {
+            locker.tryLock(entityId);
+            locker.unlock(entityId);
+        });
+        assertNoAllocation(() -> {
+            locker.lockShared(entityId);
+            locker.unlockShared(entityId);
+        });
+    }
+
+    @Test
+    public void test_lockingWithConcurrentHolderOfDistributedGlobalLockDoesNotAllocate() throws Exception {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(16, 4, GlobalLockMode.DISTRIBUTED_READERS);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            locker.lock(2L);
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                locker.unlock(2L);
+            }
+        });
+        holder.start();
+        locked.await();
+        try {
+            assertNoAllocation(() -> {
+                locker.lock(1L);
+                locker.unlock(1L);
+            });
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    private static void assertNoAllocation(Runnable action) {
+        long threadId = Thread.currentThread().getId();
+        long calibration = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = threadMXBean.getThreadAllocatedBytes(threadId);
+            calibration = Math.min(calibration, threadMXBean.getThreadAllocatedBytes(threadId) - start);
+            start = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                action.run();
+            }
+            allocated = Math.min(allocated, threadMXBean.getThreadAllocatedBytes(threadId) - start);
+        }
+        Assertions.assertEquals(0L, Math.max(0L, allocated - calibration), "Bytes allocated by " + ITERATIONS + " iterations");
+    }
+
+    private static Stream<AbstractEntityLockerImpl<Long>> lockers() {
+        return Stream.of(
+                new EntityCustomLockImpl<>(),
+                new EntityExtendedReentrantLockImpl<>(),
+                new EntityCustomLockImpl<>(4, GlobalLockMode.DISTRIBUTED_READERS),
+                new EntityStripedLockImpl<>()
+        );
+    }
+
+    private static Stream<EntityStripedLockImpl<Long>> stripedLockers() {
+        return Stream.of(
+                new EntityStripedLockImpl<>(),
+                new EntityStripedLockImpl<>(16, 4, GlobalLockMode.DISTRIBUTED_READERS)
+        );
+    }
+}
@@ -0,0 +1,268 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.LockHandle;
+import ofedorova.enity.sync.impl.utils.WaitForGraphDeadlockChecker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AsyncEntityLockerImplTest.
+ *
+ * @author Olga_Fedorova
+ */
+class AsyncEntityLockerImplTest {
+
+    @Test
+    public void test_asyncHoldersExcludeEachOther() throws Exception {
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(new EntityCustomLockImpl<>());
+
+        LockHandle<Long> handle1 = asyncLocker.lockAsync(1L).get(2, TimeUnit.SECONDS);
+        CompletableFuture<LockHandle<Long>> future2 = asyncLocker.lockAsync(1L);
+        CompletableFuture<LockHandle<Long>> future3 = asyncLocker.lockAsync(2L);
+
+        Assertions.assertEquals(2L, future3.get(2, TimeUnit.SECONDS).getEntityId());
+        Thread.sleep(100);
+        Assertions.assertFalse(future2.isDone());
+
+        handle1.unlock();
+        LockHandle<Long> handle2 = future2.get(2, TimeUnit.SECONDS);
+        Assertions.assertThrows(IllegalMonitorStateException.class, handle1::unlock);
+
+        handle2.close();
+        handle2.close();
+        future3.get().unlock();
+    }
+
+    @Test
+    public void test_waitersDoNotOccupyThreads() throws Exception {
+        ExecutorService completionExecutor = Executors.newSingleThreadExecutor();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(new EntityCustomLockImpl<>(), completionExecutor);
+        try {
+            LockHandle<Long> handle = asyncLocker.lockAsync(1L).get(2, TimeUnit.SECONDS);
+            AtomicInteger countHolds = new AtomicInteger();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(asyncLocker.lockAsync(1L).thenAccept(next -> {
+                    countHolds.incrementAndGet();
+                    next.unlock();
+                }));
+            }
+            handle.unlock();
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(1000, countHolds.get());
+        } finally {
+            completionExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_countOfHeldEntitiesIsNotLimited() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(locker);
+        List<LockHandle<Long>> handles = new ArrayList<>();
+        for (long entityId = 0; entityId < 1000; entityId++) {
+            handles.add(asyncLocker.lockAsync(entityId).get(2, TimeUnit.SECONDS));
+        }
+
+        Assertions.assertEquals(1000, locker.snapshot().getGlobalReadHolds());
+        Assertions.assertFalse(locker.tryLock(999L));
+        handles.forEach(LockHandle::unlock);
+        Assertions.assertEquals(0, locker.snapshot().entries().count());
+    }
+
+    @Test
+    public void test_asyncWaitIsReportedToDeadlockChecker() throws Exception {
+        Map<Object, EntityLockInfo> asyncWaits = new ConcurrentHashMap<>();
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker() {
+            @Override
+            public void beforeAsyncWait(Object waiter, EntityLockInfo lockInfo) {
+                asyncWaits.put(waiter, lockInfo);
+                super.beforeAsyncWait(waiter, lockInfo);
+            }
+        };
+        EntityCustomLockImpl<Long> locker = new EntityLockerBuilder<Long>().deadlockChecker(deadlockChecker).buildCustom();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(locker);
+
+        locker.lock(1L);
+        CompletableFuture<LockHandle<Long>> future = asyncLocker.lockAsync(1L);
+        Assertions.assertEquals(1, asyncWaits.size());
+        Object waiter = asyncWaits.keySet().iterator().next();
+        Assertions.assertEquals(1L, deadlockChecker.getWaitingLock(waiter).getEntityId());
+
+        locker.unlock(1L);
+        LockHandle<Long> handle = future.get(2, TimeUnit.SECONDS);
+        Assertions.assertSame(waiter, handle);
+        Assertions.assertNull(deadlockChecker.getWaitingLock(waiter));
+        handle.unlock();
+    }
+
+    @Test
+    public void test_groupLockWaitsForAsyncHolders() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityLockerBuilder<Long>().groupResolver(entityId -> entityId % 2).buildCustom();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(locker);
+
+        LockHandle<Long> handle = asyncLocker.lockAsync(1L).get(2, TimeUnit.SECONDS);
+        Assertions.assertFalse(locker.tryLockGroup(1L, 100, TimeUnit.MILLISECONDS));
+        Assertions.assertTrue(locker.tryLockGroup(0L, 100, TimeUnit.MILLISECONDS));
+        locker.unlockGroup(0L);
+
+        handle.unlock();
+        locker.lockGroup(1L);
+        CompletableFuture<LockHandle<Long>> future = asyncLocker.lockAsync(3L);
+        Thread.sleep(100);
+        Assertions.assertFalse(future.isDone());
+
+        locker.unlockGroup(1L);
+        future.get(2, TimeUnit.SECONDS).unlock();
+        Assertions.assertTrue(locker.getLockGroups().getGroupLocks().isEmpty());
+    }
+
+    @Test
+    public void test_timeoutsUnderContentionLeaveNoHolds() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityLockerBuilder<Long>().groupResolver(entityId -> entityId % 2).buildCustom();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(locker);
+        AtomicInteger[] holders = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+        AtomicBoolean excluded = new AtomicBoolean(true);
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            long entityId = i % 3;
+            futures.add(asyncLocker.tryLockAsync(entityId, i % 5, TimeUnit.MILLISECONDS).thenAccept(handle -> {
+                if (holders[(int) entityId].incrementAndGet() != 1) {
+                    excluded.set(false);
+                }
+                holders[(int) entityId].decrementAndGet();
+                handle.unlock();
+            }).exceptionally(e -> null));
+        }
+        Thread thread1 = new Thread(() -> {
+            for (int i = 0; i < 300; i++) {
+                long entityId = i % 3;
+                locker.lock(entityId);
+                if (holders[(int) entityId].incrementAndGet() != 1) {
+                    excluded.set(false);
+                }
+                holders[(int) entityId].decrementAndGet();
+                locker.unlock(entityId);
+                if (i % 50 == 0) {
+                    locker.globalLock();
+                    locker.globalUnlock();
+                }
+            }
+        });
+        thread1.start();
+        thread1.join(10_000);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(excluded.get());
+        Assertions.assertEquals(0, locker.snapshot().entries().count());
+        Assertions.assertEquals(0, locker.snapshot().getGlobalReadHolds());
+        Assertions.assertTrue(locker.getLockGroups().getGroupLocks().isEmpty());
+    }
+
+    @Test
+    public void test_lockerWithThreadOwnedLocksIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AsyncEntityLockerImpl<>(new EntityExtendedReentrantLockImpl<Long>()));
+    }
+
+    @Test
+    public void test_syncAndAsyncCallersExcludeEachOther() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(locker);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        LockHandle<Long> handle = asyncLocker.lockAsync(1L).get(2, TimeUnit.SECONDS);
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(1L, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        handle.unlock();
+
+        locker.lock(1L);
+        CompletableFuture<LockHandle<Long>> future = asyncLocker.tryLockAsync(1L, 100, TimeUnit.MILLISECONDS);
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof TimeoutException);
+
+        CompletableFuture<LockHandle<Long>> future2 = asyncLocker.lockAsync(1L);
+        locker.unlock(1L);
+        future2.get(2, TimeUnit.SECONDS).unlock();
+    }
+
+    @Test
+    public void test_globalLockWaitsForAsyncHolders() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(locker);
+
+        LockHandle<Long> handle = asyncLocker.lockAsync(1L).get(2, TimeUnit.SECONDS);
+        Assertions.assertFalse(locker.tryGlobalLock(100, TimeUnit.MILLISECONDS));
+
+        handle.unlock();
+        Assertions.assertTrue(locker.tryGlobalLock(2, TimeUnit.SECONDS));
+        CompletableFuture<LockHandle<Long>> future = asyncLocker.lockAsync(1L);
+        Thread.sleep(100);
+        Assertions.assertFalse(future.isDone());
+
+        locker.globalUnlock();
+        future.get(2, TimeUnit.SECONDS).unlock();
+    }
+
+    @Test
+    public void test_timedOutWaiterCancelsAcquisition() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(locker);
+
+        locker.lock(1L);
+        CompletableFuture<LockHandle<Long>> future = asyncLocker.tryLockAsync(1L, 100, TimeUnit.MILLISECONDS);
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof TimeoutException);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (locker.snapshot().entries().anyMatch(entry -> !entry.getQueuedThreads().isEmpty()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(locker.snapshot().entries().allMatch(entry -> entry.getQueuedThreads().isEmpty()));
+        locker.unlock(1L);
+        Assertions.assertEquals(0, locker.snapshot().entries().count());
+        Assertions.assertEquals(0, locker.snapshot().getGlobalReadHolds());
+
+        asyncLocker.lockAsync(1L).get(2, TimeUnit.SECONDS).unlock();
+    }
+
+    @Test
+    public void test_futuresCompleteOnCompletionExecutor() throws Exception {
+        ExecutorService completionExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "completion"));
+        AsyncEntityLockerImpl<Long> asyncLocker = new AsyncEntityLockerImpl<>(new EntityCustomLockImpl<>(), completionExecutor);
+        try {
+            LockHandle<Long> handle = asyncLocker.lockAsync(1L).get(2, TimeUnit.SECONDS);
+            CompletableFuture<String> threadName = new CompletableFuture<>();
+            asyncLocker.lockAsync(1L).thenAccept(next -> {
+                threadName.complete(Thread.currentThread().getName());
+                next.unlock();
+            });
+            handle.unlock();
+            Assertions.assertEquals("completion", threadName.get(2, TimeUnit.SECONDS));
+        } finally {
+            completionExecutor.shutdown();
+        }
+    }
+}
@@ -3,19 +3,29 @@ package ofedorova.enity.sync.impl.lockers;
 import ofedorova.enity.sync.EntityLockInfo;
 import ofedorova.enity.sync.EntityLocker;
 import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.locks.ExtendedReentrantLock;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
+import ofedorova.enity.sync.impl.metrics.LockerMetricsImpl;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
 
 
 /**
@@ -148,6 +158,47 @@ class EntityLockerImplTest {
         Assertions.assertEquals(testData.entityIds[0], result.get());
     }
 
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_reentrantLockingOfMoreEntitiesThanCachedLocks(TestData testData) throws Exception {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        int countEntities = testData.entityIds.length;
+
+        for (int depth = 0; depth < 3; depth++) {
+            for (int i = 1; i <= countEntities; i++) {
+                locker.lock(testData.entityId(i));
+            }
+        }
+        for (int depth = 0; depth < 2; depth++) {
+            for (int i = countEntities - 1; i >= 0; i--) {
+                locker.unlock(testData.entityIds[i]);
+            }
+        }
+        Assertions.assertEquals(countEntities, locker.getLockStorage().size());
+
+        Thread currentThread = Thread.currentThread();
+        AtomicInteger ownedByCurrentThread = new AtomicInteger();
+        Thread thread1 = new Thread(() -> {
+            for (int i = 0; i < countEntities; i++) {
+                if (locker.getLock(testData.entityIds[i]).getLock().getOwner() == currentThread) {
+                    ownedByCurrentThread.incrementAndGet();
+                }
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertEquals(countEntities, ownedByCurrentThread.get());
+
+        for (int i = 0; i < countEntities; i++) {
+            locker.unlock(testData.entityIds[i]);
+        }
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+        for (int i = 0; i < countEntities; i++) {
+            Assertions.assertNull(locker.getLock(testData.entityIds[i]));
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("testDataProvider")
     public void test_deadlockCaseWithException(TestData testData) throws Exception {
@@ -331,12 +382,14 @@ class EntityLockerImplTest {
         AbstractEntityLockerImpl locker = testData.locker;
 
         CountDownLatch latch = new CountDownLatch(2);
+        CountDownLatch globalLatch = new CountDownLatch(1);
 
         Thread thread1 = new Thread(() -> {
             try {
                 locker.globalLock();
                 tryAcquireForGlobal.set(true);
                 latch.countDown();
+                globalLatch.countDown();
             } finally {
                 locker.globalUnlock();
             }
@@ -344,13 +397,16 @@ class EntityLockerImplTest {
         });
         thread1.start();
 
-        Thread thread2 = new Thread(() -> {
+        FutureTask<Void> task2 = new FutureTask<>(() -> {
+            globalLatch.await();
             locker.lock(testData.entityIds[1]);
             tryAcquireForNonGlobal.set(true);
             latch.countDown();
+            return null;
         });
-        thread2.start();
+        new Thread(task2).start();
 
+        task2.get(10, TimeUnit.SECONDS);
         latch.await();
 
         Assertions.assertTrue(tryAcquireForNonGlobal.get());
@@ -524,22 +580,632 @@ class EntityLockerImplTest {
 
 
 
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_globalLockFreeAfterEscalationAboveThreshold(TestData testData) throws Exception {
+
+        AtomicBoolean tryAcquireForThread2 = new AtomicBoolean();
+        AbstractEntityLockerImpl locker = testData.locker;
+
+        Thread thread1 = new Thread(() -> {
+            for (Object entityId : testData.entityIds) {
+                locker.lock(entityId);
+            }
+            for (Object entityId : testData.entityIds) {
+                locker.unlock(entityId);
+            }
+        });
+        thread1.start();
+        thread1.join();
+
+        Thread thread2 = new Thread(() -> {
+            try {
+                tryAcquireForThread2.set(locker.tryGlobalLock(1, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                if (tryAcquireForThread2.get()) {
+                    locker.globalUnlock();
+                }
+            }
+        });
+        thread2.start();
+        thread2.join();
+
+        Assertions.assertTrue(tryAcquireForThread2.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_tryLockTimesOutOnGlobalLock(TestData testData) throws Exception {
+
+        AtomicBoolean tryAcquireForThread2 = new AtomicBoolean(true);
+        AbstractEntityLockerImpl locker = testData.locker;
+
+        locker.globalLock();
+        try {
+            Thread thread2 = new Thread(() -> {
+                try {
+                    tryAcquireForThread2.set(locker.tryLock(testData.entityIds[0], 100, TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            thread2.start();
+            thread2.join();
+        } finally {
+            locker.globalUnlock();
+        }
+
+        Assertions.assertFalse(tryAcquireForThread2.get());
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+        Assertions.assertTrue(locker.tryLock(testData.entityIds[0], 100, TimeUnit.MILLISECONDS));
+        locker.unlock(testData.entityIds[0]);
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_tryLockWithoutTimeoutDoesNotWait(TestData testData) throws Exception {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread thread1 = new Thread(() -> {
+            locker.lock(testData.entityIds[0]);
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                locker.unlock(testData.entityIds[0]);
+            }
+        });
+        thread1.start();
+        locked.await();
+
+        long start = System.nanoTime();
+        Assertions.assertFalse(locker.tryLock(testData.entityIds[0]));
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        Assertions.assertTrue(locker.tryLock(testData.entityIds[1]));
+        Assertions.assertTrue(locker.tryLock(testData.entityIds[1]));
+        locker.unlock(testData.entityIds[1]);
+        locker.unlock(testData.entityIds[1]);
+
+        Thread.currentThread().interrupt();
+        Assertions.assertTrue(locker.tryLock(testData.entityIds[2]));
+        Assertions.assertTrue(Thread.interrupted());
+        locker.unlock(testData.entityIds[2]);
+
+        release.countDown();
+        thread1.join();
+        locker.globalLock();
+        try {
+            AtomicBoolean tryAcquireForThread2 = new AtomicBoolean(true);
+            Thread thread2 = new Thread(() -> tryAcquireForThread2.set(locker.tryLock(testData.entityIds[0])));
+            thread2.start();
+            thread2.join();
+            Assertions.assertFalse(tryAcquireForThread2.get());
+        } finally {
+            locker.globalUnlock();
+        }
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_lockInterruptiblyIsAbortedByInterrupt(TestData testData) throws Exception {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        AtomicBoolean interruptedForThread1 = new AtomicBoolean();
+
+        locker.lock(testData.entityIds[0]);
+        Thread thread1 = new Thread(() -> {
+            try {
+                locker.lockInterruptibly(testData.entityIds[0]);
+                locker.unlock(testData.entityIds[0]);
+            } catch (InterruptedException e) {
+                interruptedForThread1.set(true);
+            }
+        });
+        thread1.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread1.getState() != Thread.State.WAITING && thread1.getState() != Thread.State.TIMED_WAITING
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        thread1.interrupt();
+        thread1.join(5000);
+        locker.unlock(testData.entityIds[0]);
+
+        Assertions.assertFalse(thread1.isAlive());
+        Assertions.assertTrue(interruptedForThread1.get());
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+
+        locker.lockInterruptibly(testData.entityIds[0]);
+        locker.unlock(testData.entityIds[0]);
+        Thread.currentThread().interrupt();
+        Assertions.assertThrows(InterruptedException.class, () -> locker.lockInterruptibly(testData.entityIds[0]));
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_sharedLocksDoNotExcludeEachOther(TestData testData) throws Exception {
+
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+        AbstractEntityLockerImpl locker = testData.locker;
+
+        locker.lockShared(testData.entityIds[0]);
+        try {
+            Thread thread1 = new Thread(() -> {
+                try {
+                    tryAcquireForThread1.set(locker.tryLockShared(testData.entityIds[0], 100, TimeUnit.MILLISECONDS));
+                    locker.unlockShared(testData.entityIds[0]);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            thread1.start();
+            thread1.join();
+        } finally {
+            locker.unlockShared(testData.entityIds[0]);
+        }
+
+        Assertions.assertTrue(tryAcquireForThread1.get());
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_sharedAndExclusiveLocksExcludeEachOther(TestData testData) throws Exception {
+
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+        AbstractEntityLockerImpl locker = testData.locker;
+
+        locker.lockShared(testData.entityIds[0]);
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(testData.entityIds[0], 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        locker.unlockShared(testData.entityIds[0]);
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.lock(testData.entityIds[0]);
+        Thread thread2 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLockShared(testData.entityIds[0], 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread2.start();
+        thread2.join();
+        locker.unlock(testData.entityIds[0]);
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_deadlockWithSharedOwners(TestData testData) {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch latch = new CountDownLatch(1);
+
+            locker.lockShared(testData.entityIds[1]);
+
+            Thread thread1 = new Thread(() -> {
+                locker.lockShared(testData.entityIds[0]);
+                latch.countDown();
+                try {
+                    locker.lock(testData.entityIds[1]);
+                } catch (DeadlockException e) {
+                    e.printStackTrace();
+                }
+            });
+            thread1.setDaemon(true);
+            thread1.start();
+            latch.await();
+
+            EntityLockInfo lockInfo = locker.getLock(testData.entityIds[1]);
+            while (lockInfo.getLock().getOwnerAndQueuedThreads().size() != 2) {
+                Thread.sleep(1);
+            }
+
+            Assertions.assertThrows(DeadlockException.class, () -> locker.lock(testData.entityIds[0]));
+        });
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_sharedLocksCountForGlobalLockEscalation(TestData testData) throws Exception {
+
+        AtomicBoolean tryAcquireForThread2 = new AtomicBoolean();
+        AbstractEntityLockerImpl locker = testData.locker;
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Thread thread1 = new Thread(() -> {
+            locker.lockShared(testData.entityIds[0]);
+            locker.lockShared(testData.entityIds[1]);
+            locker.lock(testData.entityIds[2]);
+            locker.lockShared(testData.entityIds[3]);
+            latch.countDown();
+        });
+        thread1.start();
+        latch.await();
+
+        Thread thread2 = new Thread(() -> {
+            try {
+                tryAcquireForThread2.set(locker.tryLockShared(testData.entityIds[4], 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread2.start();
+        thread2.join();
+
+        Assertions.assertFalse(tryAcquireForThread2.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_lockAllAndUnlockAll(TestData testData) throws Exception {
+
+        AtomicInteger acquiredByThread1 = new AtomicInteger();
+        AbstractEntityLockerImpl locker = testData.locker;
+        List<Object> entityIds = List.of(testData.entityIds[2], testData.entityIds[0], testData.entityIds[1], testData.entityIds[0]);
+
+        Runnable tryLockAll = () -> {
+            acquiredByThread1.set(0);
+            for (Object entityId : entityIds) {
+                try {
+                    if (locker.tryLock(entityId, 10, TimeUnit.MILLISECONDS)) {
+                        acquiredByThread1.incrementAndGet();
+                        locker.unlock(entityId);
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+
+        locker.lockAll(entityIds);
+        Thread thread1 = new Thread(tryLockAll);
+        thread1.start();
+        thread1.join();
+        Assertions.assertEquals(0, acquiredByThread1.get());
+
+        locker.unlockAll(entityIds);
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+        Thread thread2 = new Thread(tryLockAll);
+        thread2.start();
+        thread2.join();
+        Assertions.assertEquals(4, acquiredByThread1.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_tryLockAllIsAllOrNothing(TestData testData) throws Exception {
+
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+        AbstractEntityLockerImpl locker = testData.locker;
+        List<Object> entityIds = List.of(testData.entityIds[0], testData.entityIds[1], testData.entityIds[2]);
+
+        locker.lock(testData.entityIds[1]);
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLockAll(entityIds, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        Thread thread2 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(testData.entityIds[0], 10, TimeUnit.MILLISECONDS)
+                        && locker.tryLock(testData.entityIds[2], 10, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread2.start();
+        thread2.join();
+        Assertions.assertTrue(tryAcquireForThread1.get());
+        locker.unlock(testData.entityIds[1]);
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_lockAllInOppositeOrdersDoesNotDeadlock(TestData testData) {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        int iterations = 20_000;
+        long[] counters = new long[2];
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            ExecutorService executorService = Executors.newFixedThreadPool(2);
+            CountDownLatch latch = new CountDownLatch(2);
+            List<List<Object>> orders = List.of(
+                    List.of(testData.entityIds[0], testData.entityIds[1]),
+                    List.of(testData.entityIds[1], testData.entityIds[0]));
+            for (List<Object> entityIds : orders) {
+                executorService.submit(() -> {
+                    try {
+                        for (int i = 0; i < iterations; i++) {
+                            locker.lockAll(entityIds);
+                            try {
+                                counters[0]++;
+                                counters[1]++;
+                            } finally {
+                                locker.unlockAll(entityIds);
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await();
+            executorService.shutdown();
+        });
+
+        Assertions.assertEquals(2L * iterations, counters[0]);
+        Assertions.assertEquals(2L * iterations, counters[1]);
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_lockAllEscalatesOnceForBatch(TestData testData) throws Exception {
+
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+        AbstractEntityLockerImpl locker = testData.locker;
+        List<Object> entityIds = List.of(testData.entityIds[0], testData.entityIds[1], testData.entityIds[2], testData.entityIds[3]);
+
+        Runnable tryLock = () -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(testData.entityIds[4], 100, TimeUnit.MILLISECONDS));
+                if (tryAcquireForThread1.get()) {
+                    locker.unlock(testData.entityIds[4]);
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        };
+
+        locker.lockAll(entityIds);
+        Thread thread1 = new Thread(tryLock);
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlockAll(entityIds);
+        Thread thread2 = new Thread(tryLock);
+        thread2.start();
+        thread2.join();
+        Assertions.assertTrue(tryAcquireForThread1.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_lockerMetrics(TestData testData) throws Exception {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        LockerMetricsImpl metrics = new LockerMetricsImpl(LockerMetricsImpl.DEFAULT_TOP_K, 1);
+        locker.setLockerMetrics(metrics);
+        Runnable tryLock = () -> {
+            try {
+                Assertions.assertFalse(locker.tryLock(testData.entityIds[0], 50, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        };
+
+        locker.lock(testData.entityIds[0]);
+        locker.lock(testData.entityIds[0]);
+        Thread thread1 = new Thread(tryLock);
+        thread1.start();
+        thread1.join();
+        locker.unlock(testData.entityIds[0]);
+        locker.unlock(testData.entityIds[0]);
+
+        locker.globalLock();
+        Thread thread2 = new Thread(tryLock);
+        thread2.start();
+        thread2.join();
+        locker.globalUnlock();
+
+        locker.lockAll(List.of(testData.entityIds[0], testData.entityIds[1], testData.entityIds[2], testData.entityIds[3]));
+        locker.unlockAll(List.of(testData.entityIds[0], testData.entityIds[1], testData.entityIds[2], testData.entityIds[3]));
+
+        locker.lockShared(testData.entityIds[4]);
+        Assertions.assertThrows(DeadlockException.class, () -> locker.lock(testData.entityIds[4]));
+        locker.unlockShared(testData.entityIds[4]);
+
+        Assertions.assertEquals(2, metrics.getTimeouts());
+        Assertions.assertEquals(1, metrics.getWaitTimes().getCount());
+        Assertions.assertTrue(metrics.getWaitTimes().getSum() >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assertions.assertEquals(1, metrics.getGlobalWaitTimes().getCount());
+        Assertions.assertEquals(5, metrics.getHoldTimes().getCount());
+        Assertions.assertEquals(1, metrics.getEscalations());
+        Assertions.assertEquals(1, metrics.getDeadlocks());
+        Assertions.assertEquals(testData.entityIds[0], metrics.getContendedEntities().get(0).getItem());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_idleLocksEvictedForUniqueIds(TestData testData) throws Exception {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        int maxStorageSize = 0;
+
+        for (int i = 0; i < 200_000; i++) {
+            Object entityId = testData.entityId(i);
+            try {
+                locker.lock(entityId);
+                maxStorageSize = Math.max(maxStorageSize, locker.getLockStorage().size());
+            } finally {
+                locker.unlock(entityId);
+            }
+        }
+
+        Assertions.assertEquals(1, maxStorageSize);
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    /*
+    Every round locks unique IDs that were never used before. Without eviction every round would retain
+    its entries (megabytes), with eviction the heap retained after GC stays at the level of the first round.
+     */
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_heapStaysFlatUnderChurnOfUniqueIds(TestData testData) throws Exception {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        int rounds = 5;
+        int idsPerRound = 100_000;
+        long toleranceBytes = 8L * 1024 * 1024;
+        long baseline = 0L;
+
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < idsPerRound; i++) {
+                Object entityId = testData.entityId((long) round * idsPerRound + i);
+                locker.lock(entityId);
+                locker.unlock(entityId);
+            }
+            long retained = usedHeapAfterGc();
+            if (round == 0) {
+                baseline = retained;
+            } else {
+                Assertions.assertTrue(retained - baseline < toleranceBytes,
+                        "Retained heap grew by " + (retained - baseline) + " bytes after round " + round);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDataProvider")
+    public void test_idleLocksEvictedUnderConcurrentChurn(TestData testData) throws Exception {
+
+        AbstractEntityLockerImpl locker = testData.locker;
+        int threads = 4;
+        int iterations = 50_000;
+        int sharedIds = 8;
+        long[] counters = new long[sharedIds];
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executorService.submit(() -> {
+                try {
+                    for (int i = 0; i < iterations; i++) {
+                        Object uniqueId = testData.entityId(sharedIds + (long) thread * iterations + i);
+                        Object sharedId = testData.entityId(i % sharedIds);
+                        try {
+                            locker.lock(sharedId);
+                            counters[i % sharedIds]++;
+                            try {
+                                locker.lock(uniqueId);
+                            } finally {
+                                locker.unlock(uniqueId);
+                            }
+                        } finally {
+                            locker.unlock(sharedId);
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        executorService.shutdown();
+
+        long total = 0;
+        for (long counter : counters) {
+            total += counter;
+        }
+        Assertions.assertEquals((long) threads * iterations, total);
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @Test
+    public void test_exclusiveOnlyLocker() throws Exception {
+        EntityExtendedReentrantLockImpl<Long> locker = new EntityLockerBuilder<Long>()
+                .fairnessMode(FairnessMode.FAIR)
+                .exclusiveOnly(true)
+                .buildReentrant();
+
+        locker.lock(1L);
+        locker.lock(1L);
+        Assertions.assertTrue(locker.getLock(1L).getLock() instanceof ExtendedReentrantLock);
+        Assertions.assertTrue(((ExtendedReentrantLock) locker.getLock(1L).getLock()).isFair());
+        Assertions.assertEquals(2, locker.getLock(1L).getLock().getExclusiveHoldCount());
+        locker.unlock(1L);
+        locker.unlock(1L);
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> locker.lockShared(2L));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> locker.tryLockShared(2L, 1, TimeUnit.SECONDS));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> locker.unlockShared(2L));
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+        Assertions.assertTrue(locker.tryLock(2L));
+        locker.unlock(2L);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
     static List<TestData> testDataProvider() {
         return List.of(
-                new TestData(new EntityExtendedReentrantLockImpl<String>(), new String[] {"stringId1", "stringId2", "stringId3", "stringId4", "stringId5"}),
-                new TestData(new EntityCustomLockImpl<String>(), new String[] {"stringId1", "stringId2", "stringId3", "stringId4", "stringId5"}),
-                new TestData(new EntityExtendedReentrantLockImpl<Long>(), new Long[]{1L, 2L, 3L, 4L, 5L}),
-                new TestData(new EntityCustomLockImpl<Long>(), new Long[]{1L, 2L, 3L, 4L, 5L})
+                new TestData(new EntityExtendedReentrantLockImpl<String>(), new String[] {"stringId1", "stringId2", "stringId3", "stringId4", "stringId5"}, i -> "stringId" + i),
+                new TestData(new EntityCustomLockImpl<String>(), new String[] {"stringId1", "stringId2", "stringId3", "stringId4", "stringId5"}, i -> "stringId" + i),
+                new TestData(new EntityExtendedReentrantLockImpl<Long>(), new Long[]{1L, 2L, 3L, 4L, 5L}, i -> i),
+                new TestData(new EntityCustomLockImpl<Long>(), new Long[]{1L, 2L, 3L, 4L, 5L}, i -> i),
+                new TestData(new EntityExtendedReentrantLockImpl<String>(4, GlobalLockMode.DISTRIBUTED_READERS), new String[] {"stringId1", "stringId2", "stringId3", "stringId4", "stringId5"}, i -> "stringId" + i),
+                new TestData(new EntityCustomLockImpl<Long>(4, GlobalLockMode.DISTRIBUTED_READERS), new Long[]{1L, 2L, 3L, 4L, 5L}, i -> i),
+                new TestData(new EntityLockerBuilder<Long>().fairnessMode(FairnessMode.FAIR).buildCustom(), new Long[]{1L, 2L, 3L, 4L, 5L}, i -> i),
+                new TestData(new EntityLockerBuilder<Long>().fairnessMode(FairnessMode.BOUNDED_BARGING).buildReentrant(), new Long[]{1L, 2L, 3L, 4L, 5L}, i -> i),
+                new TestData(new EntityCustomLockImpl<Long>(4, GlobalLockMode.SHARED_READERS, DeadlockPolicy.HELD_LOCKS), new Long[]{1L, 2L, 3L, 4L, 5L}, i -> i),
+                new TestData(new EntityExtendedReentrantLockImpl<Long>(4, GlobalLockMode.SHARED_READERS, DeadlockPolicy.HELD_LOCKS), new Long[]{1L, 2L, 3L, 4L, 5L}, i -> i)
         );
     }
 
     private static class TestData<T> {
         private final AbstractEntityLockerImpl<T> locker;
         private final T[] entityIds;
+        private final LongFunction<T> entityIdFactory;
 
-        TestData(AbstractEntityLockerImpl<T> locker, T[] entityIds) {
+        TestData(AbstractEntityLockerImpl<T> locker, T[] entityIds, LongFunction<T> entityIdFactory) {
             this.locker = locker;
             this.entityIds = entityIds;
+            this.entityIdFactory = entityIdFactory;
+        }
+
+        T entityId(long index) {
+            return entityIdFactory.apply(index);
         }
     }
 
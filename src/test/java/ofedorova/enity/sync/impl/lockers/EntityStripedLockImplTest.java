@@ -0,0 +1,186 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.locks.FairnessMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * EntityStripedLockImplTest.
+ *
+ * Lockers in the tests have 2 stripes: IDs 1 and 3 share one stripe, IDs 2 and 4 share another one.
+ *
+ * @author Olga_Fedorova
+ */
+class EntityStripedLockImplTest {
+
+    @Test
+    public void test_stripeCountIsPowerOfTwo() {
+        Assertions.assertEquals(1, new EntityStripedLockImpl<Long>(1).getStripeCount());
+        Assertions.assertEquals(4, new EntityStripedLockImpl<Long>(3).getStripeCount());
+        Assertions.assertEquals(1024, new EntityStripedLockImpl<Long>().getStripeCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new EntityStripedLockImpl<Long>(0));
+    }
+
+    @Test
+    public void test_collidingIdsShareStripe() {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2);
+
+        Assertions.assertSame(locker.getLock(1L), locker.getLock(3L));
+        Assertions.assertNotSame(locker.getLock(1L), locker.getLock(2L));
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @Test
+    public void test_stripesFollowFairnessMode() {
+        EntityStripedLockImpl<Long> fairLocker = new EntityLockerBuilder<Long>().fairnessMode(FairnessMode.FAIR).buildStriped(2);
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2);
+
+        Assertions.assertTrue(((ReentrantReadWriteLock) fairLocker.getLock(1L).getLock()).isFair());
+        Assertions.assertTrue(((ReentrantReadWriteLock) fairLocker.getLock(2L).getLock()).isFair());
+        Assertions.assertFalse(((ReentrantReadWriteLock) locker.getLock(1L).getLock()).isFair());
+    }
+
+    @Test
+    public void test_reentrantLockingAcrossCollidingIds() throws Exception {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2, 10);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+
+        locker.lock(1L);
+        locker.lock(3L);
+        locker.unlock(3L);
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(1L, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlock(1L);
+
+        Thread thread2 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(3L, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread2.start();
+        thread2.join();
+        Assertions.assertTrue(tryAcquireForThread1.get());
+    }
+
+    @Test
+    public void test_lockAllWithCollidingIds() throws Exception {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2, 10);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        locker.lockAll(List.of(3L, 2L, 1L));
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLockAll(List.of(4L), 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlockAll(List.of(1L, 2L, 3L));
+        Assertions.assertNull(locker.getLock(1L).getLock().getOwner());
+        Assertions.assertNull(locker.getLock(2L).getLock().getOwner());
+    }
+
+    @Test
+    public void test_falseContentionIsReported() throws Exception {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        locker.lock(1L);
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(3L, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        Assertions.assertEquals(1, locker.getContendedAcquisitions());
+        Assertions.assertEquals(1, locker.getFalseContendedAcquisitions());
+    }
+
+    @Test
+    public void test_deadlockAcrossCollidingIds() {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2, 10);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch latch = new CountDownLatch(1);
+
+            locker.lock(4L);
+
+            Thread thread1 = new Thread(() -> {
+                locker.lock(1L);
+                locker.lock(3L);
+                locker.unlock(3L);
+                latch.countDown();
+                locker.lock(2L);
+                locker.unlock(2L);
+                locker.unlock(1L);
+            });
+            thread1.start();
+            try {
+                latch.await();
+
+                EntityLockInfo lockInfo = locker.getLock(2L);
+                while (lockInfo.getLock().getOwnerAndQueuedThreads().size() != 2) {
+                    Thread.sleep(1);
+                }
+
+                Assertions.assertThrows(DeadlockException.class, () -> locker.lock(3L));
+            } finally {
+                locker.unlock(4L);
+                thread1.interrupt();
+                thread1.join();
+            }
+        });
+    }
+
+    @Test
+    public void test_globalLockEscalationWithCollidingIds() throws Exception {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2, 2);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+
+        locker.lock(1L);
+        locker.lock(3L);
+
+        Thread thread1 = new Thread(() -> {
+            locker.lock(2L);
+            tryAcquireForThread1.set(true);
+        });
+        thread1.start();
+        thread1.join(200);
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlock(3L);
+        thread1.join(2000);
+        Assertions.assertTrue(tryAcquireForThread1.get());
+    }
+}
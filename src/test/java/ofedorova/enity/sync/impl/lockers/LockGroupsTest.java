@@ -0,0 +1,273 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.impl.metrics.LockerMetricsImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * LockGroupsTest.
+ *
+ * Entities with odd IDs belong to group 1, entities with even IDs belong to group 0.
+ *
+ * @author Olga_Fedorova
+ */
+class LockGroupsTest {
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_groupLockExcludesOnlyEntitiesOfGroup(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        locker.lockGroup(1L);
+
+        Assertions.assertFalse(tryLockInOtherThread(locker, 3L, false));
+        Assertions.assertFalse(tryLockInOtherThread(locker, 3L, true));
+        Assertions.assertTrue(tryLockInOtherThread(locker, 2L, false));
+
+        locker.lock(3L);
+        locker.unlock(3L);
+        locker.unlockGroup(1L);
+        Assertions.assertTrue(tryLockInOtherThread(locker, 3L, false));
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_entityLockExcludesGroupLock(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        locker.lock(1L);
+        Assertions.assertFalse(tryLockGroupInOtherThread(locker, 1L, false));
+        Assertions.assertFalse(tryLockGroupInOtherThread(locker, 1L, true));
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 0L, false));
+        locker.unlock(1L);
+
+        locker.lockShared(1L);
+        Assertions.assertFalse(tryLockGroupInOtherThread(locker, 1L, false));
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 1L, true));
+        locker.unlockShared(1L);
+
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 1L, false));
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_escalationToGroup(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        LockerMetricsImpl metrics = new LockerMetricsImpl();
+        locker.setLockerMetrics(metrics);
+
+        locker.lock(1L);
+        Assertions.assertTrue(tryLockInOtherThread(locker, 5L, false));
+        locker.lock(3L);
+        Assertions.assertEquals(1, metrics.getEscalations());
+
+        Assertions.assertFalse(tryLockInOtherThread(locker, 5L, false));
+        Assertions.assertTrue(tryLockInOtherThread(locker, 2L, false));
+
+        locker.unlock(3L);
+        Assertions.assertTrue(tryLockInOtherThread(locker, 5L, false));
+        locker.unlock(1L);
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_escalationDoesNotWaitForOtherHolders(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        LockerMetricsImpl metrics = new LockerMetricsImpl();
+        locker.setLockerMetrics(metrics);
+
+        locker.lockShared(7L);
+        Thread thread1 = new Thread(() -> {
+            locker.lockAll(List.of(1L, 3L));
+            locker.unlockAll(List.of(1L, 3L));
+        });
+        thread1.start();
+        thread1.join(2000);
+
+        Assertions.assertFalse(thread1.isAlive());
+        Assertions.assertEquals(0, metrics.getEscalations());
+        locker.unlockShared(7L);
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_tryLockAllReleasesIntentionsOnTimeout(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        locker.lock(4L);
+
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLockAll(List.of(1L, 4L), 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlock(4L);
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 0L, false));
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 1L, false));
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_tryLockWithoutTimeoutReleasesIntentionOnFailure(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        locker.lock(4L);
+
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+        Thread thread1 = new Thread(() -> tryAcquireForThread1.set(locker.tryLock(4L)));
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlock(4L);
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 0L, false));
+
+        locker.lockGroup(1L);
+        Thread thread2 = new Thread(() -> tryAcquireForThread1.set(locker.tryLock(3L)));
+        thread2.start();
+        thread2.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        locker.unlockGroup(1L);
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 1L, false));
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_groupLocksAreEvicted(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        locker.lock(1L);
+        locker.lockShared(2L);
+        locker.lock(3L);
+        Assertions.assertEquals(2, locker.getLockGroups().getGroupLocks().size());
+        Assertions.assertFalse(tryLockGroupInOtherThread(locker, 1L, false));
+
+        locker.unlock(3L);
+        locker.unlock(1L);
+        locker.unlockShared(2L);
+        Assertions.assertTrue(locker.getLockGroups().getGroupLocks().isEmpty());
+
+        locker.lockGroupShared(0L);
+        Assertions.assertEquals(1, locker.getLockGroups().getGroupLocks().size());
+        locker.unlockGroupShared(0L);
+        Assertions.assertTrue(locker.getLockGroups().getGroupLocks().isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_lockInterruptiblyWaitsForGroup(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        locker.lockGroup(1L);
+
+        AtomicBoolean isInterrupted = new AtomicBoolean();
+        Thread thread1 = new Thread(() -> {
+            try {
+                locker.lockInterruptibly(3L);
+                locker.unlock(3L);
+            } catch (InterruptedException e) {
+                isInterrupted.set(true);
+            }
+        });
+        thread1.start();
+        awaitWaiting(thread1);
+        Assertions.assertTrue(thread1.isAlive());
+        thread1.interrupt();
+        thread1.join();
+        Assertions.assertTrue(isInterrupted.get());
+
+        locker.unlockGroup(1L);
+        Assertions.assertTrue(locker.getLockGroups().getGroupLocks().isEmpty());
+        Assertions.assertTrue(tryLockGroupInOtherThread(locker, 1L, false));
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_globalLockExcludesGroupHolders(AbstractEntityLockerImpl<Long> locker) throws Exception {
+        locker.lockGroupShared(0L);
+        Assertions.assertFalse(tryGlobalLockInOtherThread(locker));
+        locker.unlockGroupShared(0L);
+        Assertions.assertTrue(tryGlobalLockInOtherThread(locker));
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockers")
+    public void test_groupsAreNotConfigured(AbstractEntityLockerImpl<Long> locker) {
+        EntityCustomLockImpl<Long> lockerWithoutGroups = new EntityCustomLockImpl<>();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> lockerWithoutGroups.lockGroup(1L));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> locker.lock(null));
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> locker.unlockGroup(1L));
+    }
+
+    private static Stream<AbstractEntityLockerImpl<Long>> lockers() {
+        return Stream.of(
+                new EntityLockerBuilder<Long>().countGlobalLockEscalation(2).groupResolver(id -> id % 2).buildCustom(),
+                new EntityLockerBuilder<Long>().countGlobalLockEscalation(2).groupResolver(id -> id % 2).buildReentrant()
+        );
+    }
+
+    private static boolean tryLockInOtherThread(AbstractEntityLockerImpl<Long> locker, Long entityId, boolean shared) throws InterruptedException {
+        AtomicBoolean isLocked = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                isLocked.set(shared ? locker.tryLockShared(entityId, 100, TimeUnit.MILLISECONDS) : locker.tryLock(entityId, 100, TimeUnit.MILLISECONDS));
+                if (isLocked.get()) {
+                    if (shared) {
+                        locker.unlockShared(entityId);
+                    } else {
+                        locker.unlock(entityId);
+                    }
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.start();
+        thread.join();
+        return isLocked.get();
+    }
+
+    private static boolean tryLockGroupInOtherThread(AbstractEntityLockerImpl<Long> locker, Long groupId, boolean shared) throws InterruptedException {
+        AtomicBoolean isLocked = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                isLocked.set(shared ? locker.tryLockGroupShared(groupId, 100, TimeUnit.MILLISECONDS) : locker.tryLockGroup(groupId, 100, TimeUnit.MILLISECONDS));
+                if (isLocked.get()) {
+                    if (shared) {
+                        locker.unlockGroupShared(groupId);
+                    } else {
+                        locker.unlockGroup(groupId);
+                    }
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.start();
+        thread.join();
+        return isLocked.get();
+    }
+
+    private static boolean tryGlobalLockInOtherThread(AbstractEntityLockerImpl<Long> locker) throws InterruptedException {
+        AtomicBoolean isLocked = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                isLocked.set(locker.tryGlobalLock(100, TimeUnit.MILLISECONDS));
+                if (isLocked.get()) {
+                    locker.globalUnlock();
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.start();
+        thread.join();
+        return isLocked.get();
+    }
+
+    private static void awaitWaiting(Thread thread) {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.metrics.LockerMetricsImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * LockLeasesTest.
+ *
+ * @author Olga_Fedorova
+ */
+class LockLeasesTest {
+
+    @Test
+    public void test_expiredLeaseReleasesEntity() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+        LockerMetricsImpl metrics = new LockerMetricsImpl();
+        Map<Long, Thread> expiredLeases = new ConcurrentHashMap<>();
+        locker.setLockerMetrics(metrics);
+        locker.setLeaseExpiryListener(expiredLeases::put);
+
+        locker.lock(1L, 100, TimeUnit.MILLISECONDS);
+        locker.lock(1L);
+
+        Thread thread1 = new Thread(() -> {
+            locker.lock(1L);
+            locker.unlock(1L);
+        });
+        thread1.start();
+        thread1.join(5000);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (expiredLeases.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertFalse(thread1.isAlive());
+        Assertions.assertEquals(Thread.currentThread(), expiredLeases.get(1L));
+        Assertions.assertEquals(1, metrics.getLeaseExpiries());
+
+        locker.unlock(1L);
+        locker.unlock(1L);
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> locker.unlock(1L));
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @Test
+    public void test_unlockBeforeExpiryCancelsLease() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+        AtomicBoolean expired = new AtomicBoolean();
+        locker.setLeaseExpiryListener((entityId, owner) -> expired.set(true));
+
+        locker.lock(1L, 100, TimeUnit.MILLISECONDS);
+        locker.unlock(1L);
+        locker.lock(1L);
+        Thread.sleep(300);
+
+        Assertions.assertFalse(expired.get());
+        Assertions.assertEquals(Thread.currentThread(), locker.getLock(1L).getLock().getOwner());
+        locker.unlock(1L);
+    }
+
+    @Test
+    public void test_lateUnlockDoesNotReleaseNextOwner() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch unlocked = new CountDownLatch(1);
+
+        Assertions.assertTrue(locker.tryLock(1L, 1, 100, TimeUnit.MILLISECONDS));
+
+        Thread thread1 = new Thread(() -> {
+            locker.lock(1L);
+            locked.countDown();
+            try {
+                unlocked.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            locker.unlock(1L);
+        });
+        thread1.start();
+        Assertions.assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        locker.unlock(1L);
+        Assertions.assertEquals(thread1, locker.getLock(1L).getLock().getOwner());
+        Assertions.assertFalse(locker.tryLock(1L, 10, TimeUnit.MILLISECONDS));
+
+        unlocked.countDown();
+        thread1.join(2000);
+        Assertions.assertTrue(locker.tryLock(1L, 10, TimeUnit.MILLISECONDS));
+        locker.unlock(1L);
+    }
+
+    @Test
+    public void test_revokedReentrantHoldsAreReleasedOnceForDeadlockChecker() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityLockerBuilder<Long>().deadlockPolicy(DeadlockPolicy.WAIT_DIE).buildCustom();
+        CountDownLatch expired = new CountDownLatch(1);
+        locker.setLeaseExpiryListener((entityId, owner) -> expired.countDown());
+
+        locker.lock(1L, 100, TimeUnit.MILLISECONDS);
+        locker.lock(1L);
+        locker.lock(1L);
+        locker.lock(2L);
+        Assertions.assertTrue(expired.await(5, TimeUnit.SECONDS));
+        locker.unlock(1L);
+        locker.unlock(1L);
+        locker.unlock(1L);
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread thread1 = new Thread(() -> {
+            locker.lock(3L);
+            try {
+                locker.lock(2L);
+                locker.unlock(2L);
+            } catch (DeadlockException e) {
+                failure.set(e);
+            } finally {
+                locker.unlock(3L);
+            }
+        });
+        thread1.start();
+        thread1.join(5000);
+        boolean isDied = !thread1.isAlive();
+        locker.unlock(2L);
+        thread1.join();
+
+        Assertions.assertTrue(isDied);
+        Assertions.assertTrue(failure.get() instanceof DeadlockException);
+        Assertions.assertTrue(locker.getLockStorage().isEmpty());
+    }
+
+    @Test
+    public void test_leaseIsInvalidOrAlreadyHeld() {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> locker.lock(1L, 0, TimeUnit.SECONDS));
+
+        locker.lock(1L);
+        Assertions.assertThrows(IllegalStateException.class, () -> locker.lock(1L, 1, TimeUnit.SECONDS));
+        locker.unlock(1L);
+    }
+}
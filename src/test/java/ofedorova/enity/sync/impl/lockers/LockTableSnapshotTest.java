@@ -0,0 +1,152 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * LockTableSnapshotTest.
+ *
+ * @author Olga_Fedorova
+ */
+class LockTableSnapshotTest {
+
+    @Test
+    public void test_snapshotShowsOwnersHoldsAndQueuedThreads() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>(10);
+        Thread current = Thread.currentThread();
+
+        locker.lock(1L);
+        locker.lock(1L);
+        locker.lockShared(2L);
+        Thread thread2 = new Thread(() -> {
+            locker.lock(1L);
+            locker.unlock(1L);
+        });
+        thread2.start();
+        awaitWaiting(thread2);
+
+        LockTableSnapshot snapshot = locker.snapshot();
+        Map<Object, LockTableSnapshot.Entry> entries = snapshot.entries()
+                .collect(Collectors.toMap(LockTableSnapshot.Entry::getEntityId, Function.identity()));
+
+        Assertions.assertEquals(2, entries.size());
+        LockTableSnapshot.Entry entry1 = entries.get(1L);
+        Assertions.assertSame(current, entry1.getOwner());
+        Assertions.assertEquals(2, entry1.getExclusiveHolds());
+        Assertions.assertEquals(Collections.singleton(thread2), entry1.getQueuedThreads());
+        LockTableSnapshot.Entry entry2 = entries.get(2L);
+        Assertions.assertNull(entry2.getOwner());
+        Assertions.assertEquals(Collections.singleton(current), entry2.getSharedOwners());
+        Assertions.assertEquals(1, entry2.getSharedHolds());
+        Assertions.assertFalse(snapshot.isGlobalWriteLocked());
+        Assertions.assertEquals(1, snapshot.getGlobalReadHolds());
+        Assertions.assertTrue(snapshot.getEscalatedThreads().isEmpty());
+
+        locker.unlock(1L);
+        locker.unlock(1L);
+        thread2.join();
+        locker.unlockShared(2L);
+        Assertions.assertEquals(0, locker.snapshot().entries().count());
+    }
+
+    @Test
+    public void test_snapshotShowsEscalatedThreads() {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>(2, GlobalLockMode.DISTRIBUTED_READERS);
+
+        locker.lock(1L);
+        locker.lock(2L);
+        LockTableSnapshot snapshot = locker.snapshot();
+        Assertions.assertTrue(snapshot.isGlobalWriteLocked());
+        Assertions.assertEquals(Collections.singleton(Thread.currentThread()), snapshot.getEscalatedThreads());
+        locker.unlock(2L);
+        locker.unlock(1L);
+
+        snapshot = locker.snapshot();
+        Assertions.assertFalse(snapshot.isGlobalWriteLocked());
+        Assertions.assertEquals(0, snapshot.getGlobalReadHolds());
+        Assertions.assertTrue(snapshot.getEscalatedThreads().isEmpty());
+    }
+
+    @Test
+    public void test_snapshotShowsHoldsOfOtherOwner() throws Exception {
+        EntityExtendedReentrantLockImpl<Long> locker = new EntityLockerBuilder<Long>()
+                .exclusiveOnly(true)
+                .buildReentrant();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch snapshotTaken = new CountDownLatch(1);
+
+        Thread thread2 = new Thread(() -> {
+            locker.lock(1L);
+            locker.lock(1L);
+            locker.lock(1L);
+            locker.unlock(1L);
+            locked.countDown();
+            try {
+                snapshotTaken.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                locker.unlock(1L);
+                locker.unlock(1L);
+            }
+        });
+        thread2.start();
+        locked.await();
+
+        LockTableSnapshot.Entry entry = locker.snapshot().entries().findFirst().orElseThrow(AssertionError::new);
+        snapshotTaken.countDown();
+        thread2.join();
+
+        Assertions.assertSame(thread2, entry.getOwner());
+        Assertions.assertEquals(2, entry.getExclusiveHolds());
+        Assertions.assertEquals(0, locker.snapshot().entries().count());
+    }
+
+    @Test
+    public void test_stripedSnapshotSkipsFreeStripes() {
+        EntityStripedLockImpl<Long> locker = new EntityStripedLockImpl<>(2, 10);
+
+        locker.lock(1L);
+        Set<Object> stripes = locker.snapshot().entries()
+                .map(LockTableSnapshot.Entry::getEntityId)
+                .collect(Collectors.toSet());
+        locker.unlock(1L);
+
+        Assertions.assertEquals(Collections.singleton(1), stripes);
+    }
+
+    @Test
+    public void test_jsonIsCompactAndEscaped() throws Exception {
+        EntityExtendedReentrantLockImpl<String> locker = new EntityExtendedReentrantLockImpl<>(10);
+        Thread thread = new Thread(() -> {
+            locker.lock("a\"b");
+            locker.unlock("a\"b");
+        }, "worker \"1\"");
+
+        locker.lock("a\"b");
+        thread.start();
+        awaitWaiting(thread);
+        String json = locker.snapshot().toJson();
+        locker.unlock("a\"b");
+        thread.join();
+
+        Thread current = Thread.currentThread();
+        Assertions.assertTrue(json.startsWith("{\"capturedAt\":"));
+        Assertions.assertTrue(json.contains(",\"global\":{\"writeLocked\":false,\"readHolds\":1,\"escalated\":[]},\"locks\":["));
+        Assertions.assertTrue(json.endsWith("{\"entity\":\"a\\\"b\",\"owner\":{\"id\":" + current.getId() + ",\"name\":\"" + current.getName()
+                + "\"},\"queued\":[{\"id\":" + thread.getId() + ",\"name\":\"worker \\\"1\\\"\"}]}]}"), json);
+    }
+
+    private static void awaitWaiting(Thread thread) {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+    }
+}
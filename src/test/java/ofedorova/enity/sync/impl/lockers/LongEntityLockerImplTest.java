@@ -0,0 +1,111 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.exception.DeadlockException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LongEntityLockerImplTest.
+ *
+ * @author Olga_Fedorova
+ */
+class LongEntityLockerImplTest {
+
+    @Test
+    public void test_reentrantLocking() throws Exception {
+        LongEntityLockerImpl locker = new LongEntityLockerImpl(10);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        locker.lock(1L);
+        locker.lock(1L);
+        locker.unlock(1L);
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(1L, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlock(1L);
+        Assertions.assertEquals(0, locker.getLockTable().size());
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> locker.unlock(1L));
+    }
+
+    @Test
+    public void test_deadlockCaseWithException() {
+        LongEntityLockerImpl locker = new LongEntityLockerImpl(10);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch latch = new CountDownLatch(1);
+
+            locker.lock(2L);
+
+            Thread thread1 = new Thread(() -> {
+                locker.lock(1L);
+                latch.countDown();
+                locker.lock(2L);
+            });
+            thread1.start();
+            latch.await();
+
+            while (thread1.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+
+            Assertions.assertThrows(DeadlockException.class, () -> locker.lock(1L));
+        });
+    }
+
+    @Test
+    public void test_globalLockEscalation() throws Exception {
+        LongEntityLockerImpl locker = new LongEntityLockerImpl(2);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+
+        locker.lock(1L);
+        locker.lock(2L);
+
+        Thread thread1 = new Thread(() -> {
+            locker.lock(3L);
+            tryAcquireForThread1.set(true);
+        });
+        thread1.start();
+        thread1.join(200);
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        locker.unlock(2L);
+        thread1.join(2000);
+        Assertions.assertTrue(tryAcquireForThread1.get());
+    }
+
+    @Test
+    public void test_tryLockTimesOutOnGlobalLock() throws Exception {
+        LongEntityLockerImpl locker = new LongEntityLockerImpl(4, GlobalLockMode.DISTRIBUTED_READERS);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        locker.globalLock();
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(locker.tryLock(1L, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        Assertions.assertEquals(0, locker.getLockTable().size());
+        locker.globalUnlock();
+    }
+}
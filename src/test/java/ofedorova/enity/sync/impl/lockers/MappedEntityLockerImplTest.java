@@ -0,0 +1,198 @@
+package ofedorova.enity.sync.impl.lockers;
+
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.locks.MappedLockTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MappedEntityLockerImplTest.
+ *
+ * Other processes are JVMs forked with {@link Child}.
+ *
+ * @author Olga_Fedorova
+ */
+public class MappedEntityLockerImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void test_entityIsLockedAcrossProcesses() throws Exception {
+        Path file = tempDir.resolve("locks");
+        try (MappedEntityLockerImpl locker = new MappedEntityLockerImpl(file)) {
+            Process child = startChild("hold", file.toString(), "1");
+            try {
+                awaitLine(child, "locked");
+                Assertions.assertFalse(locker.tryLock(1L, 50, TimeUnit.MILLISECONDS));
+                Assertions.assertEquals(child.pid(), locker.getLockTable().getOwnerPid(1L));
+                Assertions.assertTrue(locker.tryLock(2L, 50, TimeUnit.MILLISECONDS));
+                locker.unlock(2L);
+
+                OutputStream input = child.getOutputStream();
+                input.write('\n');
+                input.flush();
+                Assertions.assertTrue(locker.tryLock(1L, 5, TimeUnit.SECONDS));
+                locker.unlock(1L);
+                Assertions.assertTrue(child.waitFor(5, TimeUnit.SECONDS));
+                Assertions.assertEquals(0, child.exitValue());
+            } finally {
+                child.destroyForcibly();
+            }
+        }
+    }
+
+    @Test
+    public void test_lockOfKilledProcessIsTakenOver() throws Exception {
+        Path file = tempDir.resolve("locks");
+        try (MappedEntityLockerImpl locker = new MappedEntityLockerImpl(file)) {
+            Process child = startChild("hold", file.toString(), "1");
+            try {
+                awaitLine(child, "locked");
+                Assertions.assertFalse(locker.tryLock(1L, 50, TimeUnit.MILLISECONDS));
+            } finally {
+                child.destroyForcibly();
+            }
+            Assertions.assertTrue(child.waitFor(5, TimeUnit.SECONDS));
+
+            Assertions.assertTrue(locker.tryLock(1L, 5, TimeUnit.SECONDS));
+            Assertions.assertEquals(ProcessHandle.current().pid(), locker.getLockTable().getOwnerPid(1L));
+            locker.unlock(1L);
+        }
+    }
+
+    /*
+    Two processes and this process increment a counter in a shared file under the lock of one entity
+     */
+    @Test
+    public void test_processesExcludeEachOther() throws Exception {
+        Path file = tempDir.resolve("locks");
+        Path counterFile = tempDir.resolve("counter");
+        int increments = 2000;
+        try (MappedEntityLockerImpl locker = new MappedEntityLockerImpl(file);
+             FileChannel channel = FileChannel.open(counterFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE)) {
+            MappedByteBuffer counter = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+            List<Process> children = new ArrayList<>();
+            try {
+                for (int i = 0; i < 2; i++) {
+                    children.add(startChild("count", file.toString(), counterFile.toString(), String.valueOf(increments)));
+                }
+                increment(locker, counter, increments);
+                for (Process child : children) {
+                    Assertions.assertTrue(child.waitFor(60, TimeUnit.SECONDS));
+                    Assertions.assertEquals(0, child.exitValue());
+                }
+            } finally {
+                children.forEach(Process::destroyForcibly);
+            }
+            Assertions.assertEquals(3L * increments, counter.getLong(0));
+        }
+    }
+
+    /*
+    T1 holds R2, wait R1
+    T2 holds R1, wait R2
+
+    threads of one process
+     */
+    @Test
+    public void test_deadlockOfThreadsOfProcess() throws Exception {
+        Path file = tempDir.resolve("locks");
+        try (MappedEntityLockerImpl locker = new MappedEntityLockerImpl(file)) {
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                CountDownLatch locked = new CountDownLatch(1);
+                locker.lock(2L);
+                Assertions.assertEquals(Thread.currentThread().getId(), locker.getLockTable().getLocalOwnerThreadId(2L));
+                Assertions.assertEquals(-1L, locker.getLockTable().getLocalOwnerThreadId(1L));
+                Thread thread1 = new Thread(() -> {
+                    locker.lock(1L);
+                    locked.countDown();
+                    locker.lock(2L);
+                    locker.unlock(2L);
+                    locker.unlock(1L);
+                });
+                thread1.start();
+                try {
+                    locked.await();
+                    while (thread1.getState() != Thread.State.TIMED_WAITING) {
+                        Thread.sleep(1);
+                    }
+                    Assertions.assertThrows(DeadlockException.class, () -> locker.lock(1L));
+                } finally {
+                    locker.unlock(2L);
+                    thread1.join();
+                }
+                Assertions.assertTrue(locker.tryLock(1L, 1, TimeUnit.SECONDS));
+                locker.unlock(1L);
+            });
+        }
+    }
+
+    private static void increment(MappedEntityLockerImpl locker, MappedByteBuffer counter, int increments) {
+        for (int i = 0; i < increments; i++) {
+            locker.lock(1L);
+            try {
+                counter.putLong(0, counter.getLong(0) + 1);
+            } finally {
+                locker.unlock(1L);
+            }
+        }
+    }
+
+    private static Process startChild(String... args) throws Exception {
+        String classPath = Paths.get(Child.class.getProtectionDomain().getCodeSource().getLocation().toURI()) + File.pathSeparator
+                + Paths.get(MappedLockTable.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp", classPath, Child.class.getName()));
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private static void awaitLine(Process child, String expected) throws Exception {
+        BufferedReader output = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(expected, output.readLine());
+    }
+
+    /**
+     * Another process: {@code hold <file> <entityId>} locks the entity and unlocks it after a line of input,
+     * {@code count <file> <counterFile> <increments>} increments the counter under the lock of entity 1.
+     */
+    public static class Child {
+
+        public static void main(String[] args) throws Exception {
+            try (MappedEntityLockerImpl locker = new MappedEntityLockerImpl(Paths.get(args[1]))) {
+                if ("hold".equals(args[0])) {
+                    long entityId = Long.parseLong(args[2]);
+                    locker.lock(entityId);
+                    System.out.println("locked");
+                    System.out.flush();
+                    new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+                    locker.unlock(entityId);
+                } else {
+                    try (FileChannel channel = FileChannel.open(Paths.get(args[2]), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        increment(locker, channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES), Integer.parseInt(args[3]));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package ofedorova.enity.sync.impl.locks;
 
+import ofedorova.enity.sync.EntityLock;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * CustomLockTest.
@@ -239,6 +249,7 @@ public class CustomLockTest {
             tryAcquireForThread1.set(customLock.tryAcquire());
         });
         thread1.start();
+        thread1.join();
 
         AtomicLong timePassed = new AtomicLong(0);
         Thread thread2 = new Thread(() -> {
@@ -259,4 +270,542 @@ public class CustomLockTest {
         Assertions.assertTrue(timePassed.get() >= TimeUnit.SECONDS.toNanos(10));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void test_waiterIsParkedUntilUnlock() throws Exception {
+        CustomLock customLock = new CustomLock();
+
+        customLock.lock();
+
+        Thread thread1 = new Thread(() -> {
+            customLock.lock();
+        });
+        thread1.start();
+
+        awaitState(thread1, Thread.State.WAITING);
+
+        Field waitersField = CustomLock.class.getDeclaredField("waiters");
+        waitersField.setAccessible(true);
+        ConcurrentLinkedQueue<Thread> waiters = (ConcurrentLinkedQueue<Thread>) waitersField.get(customLock);
+        Assertions.assertEquals(thread1, waiters.peek());
+
+        customLock.unlock();
+        thread1.join(2000);
+
+        Field ownerThreadField = CustomLock.class.getDeclaredField("ownerThread");
+        ownerThreadField.setAccessible(true);
+        Thread ownerThread = (Thread) ownerThreadField.get(customLock);
+
+        Assertions.assertEquals(thread1, ownerThread);
+        Assertions.assertEquals(0, waiters.size());
+    }
+
+    @Test
+    public void test_interruptedWaiterKeepsWaitingInLock() throws Exception {
+        CustomLock customLock = new CustomLock();
+        AtomicBoolean interruptedAfterLock = new AtomicBoolean();
+
+        customLock.lock();
+
+        Thread thread1 = new Thread(() -> {
+            customLock.lock();
+            interruptedAfterLock.set(Thread.currentThread().isInterrupted());
+        });
+        thread1.start();
+
+        awaitState(thread1, Thread.State.WAITING);
+        thread1.interrupt();
+        thread1.join(500);
+        Assertions.assertTrue(thread1.isAlive());
+
+        customLock.unlock();
+        thread1.join(2000);
+
+        Field ownerThreadField = CustomLock.class.getDeclaredField("ownerThread");
+        ownerThreadField.setAccessible(true);
+        Thread ownerThread = (Thread) ownerThreadField.get(customLock);
+
+        Assertions.assertEquals(thread1, ownerThread);
+        Assertions.assertTrue(interruptedAfterLock.get());
+    }
+
+    @Test
+    public void test_timedOutWaiterLeavesQueue() throws Exception {
+        CustomLock customLock = new CustomLock();
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        customLock.lock();
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(customLock.tryLock(300, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.TIMED_WAITING);
+
+        Thread thread2 = new Thread(() -> {
+            customLock.lock();
+        });
+        thread2.start();
+        thread1.join();
+
+        Field waitersField = CustomLock.class.getDeclaredField("waiters");
+        waitersField.setAccessible(true);
+        ConcurrentLinkedQueue<Thread> waiters = (ConcurrentLinkedQueue<Thread>) waitersField.get(customLock);
+
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        Assertions.assertFalse(waiters.contains(thread1));
+
+        customLock.unlock();
+        thread2.join(2000);
+
+        Field ownerThreadField = CustomLock.class.getDeclaredField("ownerThread");
+        ownerThreadField.setAccessible(true);
+        Thread ownerThread = (Thread) ownerThreadField.get(customLock);
+
+        Assertions.assertEquals(thread2, ownerThread);
+        Assertions.assertEquals(0, waiters.size());
+    }
+
+    @Test
+    public void test_sharedOwnersExcludeExclusiveOwner() throws Exception {
+        CustomLock customLock = new CustomLock();
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+        AtomicBoolean tryAcquireForThread2 = new AtomicBoolean(true);
+
+        customLock.lockShared();
+
+        Thread thread1 = new Thread(() -> {
+            tryAcquireForThread1.set(customLock.tryLockShared());
+            customLock.unlockShared();
+        });
+        thread1.start();
+        thread1.join();
+
+        Thread thread2 = new Thread(() -> tryAcquireForThread2.set(customLock.tryLock()));
+        thread2.start();
+        thread2.join();
+
+        Assertions.assertTrue(tryAcquireForThread1.get());
+        Assertions.assertFalse(tryAcquireForThread2.get());
+        Assertions.assertEquals(Set.of(Thread.currentThread()), customLock.getSharedOwners());
+
+        customLock.unlockShared();
+        Assertions.assertTrue(customLock.getSharedOwners().isEmpty());
+        Assertions.assertThrows(IllegalMonitorStateException.class, customLock::unlockShared);
+    }
+
+    @Test
+    public void test_sharedWaitersAreGrantedTogether() throws Exception {
+        CustomLock customLock = new CustomLock();
+        CountDownLatch latch = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        customLock.lock();
+
+        Runnable reader = () -> {
+            customLock.lockShared();
+            latch.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                customLock.unlockShared();
+            }
+        };
+        Thread thread1 = new Thread(reader);
+        Thread thread2 = new Thread(reader);
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+        thread2.start();
+        awaitState(thread2, Thread.State.WAITING);
+
+        customLock.unlock();
+
+        Assertions.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        release.countDown();
+        thread1.join();
+        thread2.join();
+    }
+
+    @Test
+    public void test_sharedAcquisitionDoesNotBargeQueuedExclusiveWaiter() throws Exception {
+        CustomLock customLock = new CustomLock();
+        AtomicBoolean tryAcquireForThread2 = new AtomicBoolean(true);
+
+        customLock.lockShared();
+
+        Thread thread1 = new Thread(customLock::lock);
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+
+        Thread thread2 = new Thread(() -> tryAcquireForThread2.set(customLock.tryLockShared()));
+        thread2.start();
+        thread2.join();
+
+        Assertions.assertFalse(tryAcquireForThread2.get());
+        Assertions.assertTrue(customLock.tryLockShared());
+
+        customLock.unlockShared();
+        customLock.unlockShared();
+        thread1.join(2000);
+        Assertions.assertEquals(thread1, customLock.getOwner());
+    }
+
+    @Test
+    public void test_exclusiveOwnerMayAcquireShared() {
+        CustomLock customLock = new CustomLock();
+
+        customLock.lock();
+        Assertions.assertTrue(customLock.tryLockShared());
+        customLock.unlock();
+
+        Assertions.assertNull(customLock.getOwner());
+        Assertions.assertFalse(customLock.getSharedOwners().isEmpty());
+        customLock.unlockShared();
+        Assertions.assertTrue(customLock.tryLock());
+    }
+
+    @Test
+    public void test_fairnessModesOfNewcomerWithQueuedWaiter() throws Exception {
+        CustomLock nonFairLock = new CustomLock();
+        CustomLock fairLock = new CustomLock(FairnessMode.FAIR);
+
+        getWaiters(nonFairLock).add(new Thread());
+        getWaiters(fairLock).add(new Thread());
+
+        Assertions.assertTrue(nonFairLock.tryLock());
+        Assertions.assertFalse(fairLock.tryLock());
+        Assertions.assertFalse(fairLock.tryLock(10, TimeUnit.MILLISECONDS));
+        Assertions.assertNull(fairLock.getOwner());
+
+        getWaiters(fairLock).clear();
+        Assertions.assertTrue(fairLock.tryLock());
+        Assertions.assertTrue(fairLock.tryLock());
+    }
+
+    @Test
+    public void test_boundedBargingHandsOffAfterMaxBarges() throws Exception {
+        CustomLock customLock = new CustomLock(FairnessMode.BOUNDED_BARGING, 2);
+        ConcurrentLinkedQueue<Object> waiters = getWaiters(customLock);
+        Thread queuedThread = new Thread();
+        waiters.add(queuedThread);
+
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertTrue(customLock.tryLock());
+            Assertions.assertTrue(customLock.tryLock());
+            customLock.unlock();
+            customLock.unlock();
+        }
+        Assertions.assertFalse(customLock.tryLock());
+
+        Thread thread1 = new Thread(() -> {
+            customLock.lock();
+            customLock.unlock();
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+        waiters.remove(queuedThread);
+        LockSupport.unpark(thread1);
+        thread1.join(2000);
+        Assertions.assertFalse(thread1.isAlive());
+
+        waiters.add(queuedThread);
+        Assertions.assertTrue(customLock.tryLock());
+    }
+
+    @Test
+    public void test_forceUnlockReleasesExclusiveHoldsOfOwner() throws InterruptedException {
+        CustomLock customLock = new CustomLock();
+        customLock.lock();
+        customLock.lock();
+        customLock.lockShared();
+
+        Thread thread1 = new Thread(() -> {
+            customLock.lockShared();
+            customLock.unlockShared();
+        });
+        Assertions.assertFalse(customLock.forceUnlock(thread1));
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+
+        Assertions.assertTrue(customLock.forceUnlock(Thread.currentThread()));
+        thread1.join(2000);
+        Assertions.assertFalse(thread1.isAlive());
+        Assertions.assertNull(customLock.getOwner());
+        Assertions.assertEquals(Collections.singleton(Thread.currentThread()), customLock.getSharedOwners());
+        Assertions.assertThrows(IllegalMonitorStateException.class, customLock::unlock);
+        customLock.unlockShared();
+        Assertions.assertTrue(customLock.tryLock());
+        customLock.unlock();
+    }
+
+    @Test
+    public void test_lockInterruptiblyLeavesQueueOnInterrupt() throws Exception {
+        CustomLock customLock = new CustomLock();
+        customLock.lock();
+        AtomicBoolean interruptedForThread1 = new AtomicBoolean();
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                customLock.lockInterruptibly();
+                customLock.unlock();
+            } catch (InterruptedException e) {
+                interruptedForThread1.set(!Thread.currentThread().isInterrupted());
+            }
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+        thread1.interrupt();
+        thread1.join(2000);
+
+        Assertions.assertTrue(interruptedForThread1.get());
+        Assertions.assertTrue(getWaiters(customLock).isEmpty());
+        customLock.lockInterruptibly();
+        customLock.unlock();
+        customLock.unlock();
+        Assertions.assertNull(customLock.getOwner());
+    }
+
+    @Test
+    public void test_conditionReleasesAndReacquiresExclusiveHolds() throws Exception {
+        CustomLock customLock = new CustomLock();
+        Condition condition = customLock.newCondition();
+        AtomicBoolean signalled = new AtomicBoolean();
+        AtomicInteger holdsAfterAwait = new AtomicInteger();
+
+        Thread thread1 = new Thread(() -> {
+            customLock.lock();
+            customLock.lock();
+            try {
+                while (!signalled.get()) {
+                    condition.awaitUninterruptibly();
+                }
+                holdsAfterAwait.set(customLock.getOwner() == Thread.currentThread() ? 2 : 0);
+                customLock.unlock();
+                holdsAfterAwait.addAndGet(customLock.getOwner() == Thread.currentThread() ? 1 : 0);
+            } finally {
+                customLock.unlock();
+            }
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+
+        Assertions.assertTrue(customLock.tryLock());
+        signalled.set(true);
+        condition.signal();
+        awaitState(thread1, Thread.State.WAITING);
+        customLock.unlock();
+        thread1.join(2000);
+
+        Assertions.assertFalse(thread1.isAlive());
+        Assertions.assertEquals(3, holdsAfterAwait.get());
+        Assertions.assertThrows(IllegalMonitorStateException.class, condition::signal);
+        Assertions.assertThrows(IllegalMonitorStateException.class, condition::await);
+
+        customLock.lock();
+        Assertions.assertFalse(condition.await(10, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(Thread.currentThread(), customLock.getOwner());
+        Thread.currentThread().interrupt();
+        Assertions.assertThrows(InterruptedException.class, condition::await);
+        customLock.unlock();
+        Assertions.assertNull(customLock.getOwner());
+    }
+
+    @Test
+    public void test_adaptiveSpinBudgetFollowsHoldTimes() {
+        AdaptiveSpin adaptiveSpin = new AdaptiveSpin(WaitMode.ADAPTIVE_SPIN, 4);
+        Assertions.assertTrue(adaptiveSpin.isEnabled());
+        Assertions.assertEquals(0L, adaptiveSpin.getSpinNanos());
+
+        adaptiveSpin.recordHold(2000L);
+        Assertions.assertEquals(4000L, adaptiveSpin.getSpinNanos());
+        adaptiveSpin.recordHold(10L);
+        Assertions.assertEquals(2 * (2000L + ((10L - 2000L) >> 3)), adaptiveSpin.getSpinNanos());
+
+        for (int i = 0; i < 64; i++) {
+            adaptiveSpin.recordHold(10 * AdaptiveSpin.MAX_SPIN_NANOS);
+        }
+        Assertions.assertEquals(0L, adaptiveSpin.getSpinNanos());
+
+        AdaptiveSpin park = new AdaptiveSpin(WaitMode.PARK, 4);
+        AdaptiveSpin singleProcessor = new AdaptiveSpin(WaitMode.ADAPTIVE_SPIN, 1);
+        park.recordHold(2000L);
+        singleProcessor.recordHold(2000L);
+        Assertions.assertFalse(park.isEnabled());
+        Assertions.assertEquals(0L, park.getSpinNanos());
+        Assertions.assertEquals(0L, singleProcessor.getSpinNanos());
+    }
+
+    @Test
+    public void test_abortedWaitLeavesQueue() throws Exception {
+        CustomLock customLock = new CustomLock();
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicBoolean locked = new AtomicBoolean(true);
+        AtomicBoolean interrupted = new AtomicBoolean(true);
+
+        customLock.lock();
+        Thread thread1 = new Thread(() -> {
+            try {
+                locked.set(customLock.lockAbortably(false, false, aborted::get));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.TIMED_WAITING);
+        aborted.set(true);
+        LockSupport.unpark(thread1);
+        thread1.join(5000);
+        customLock.unlock();
+
+        Assertions.assertFalse(locked.get());
+        Assertions.assertFalse(interrupted.get());
+        Assertions.assertTrue(getWaiters(customLock).isEmpty());
+    }
+
+    @Test
+    public void test_forceReleasedHoldIsNotSampled() throws Exception {
+        AdaptiveSpin adaptiveSpin = new AdaptiveSpin(WaitMode.ADAPTIVE_SPIN, 4);
+        adaptiveSpin.recordHold(2000L);
+        CustomLock customLock = new CustomLock(FairnessMode.NON_FAIR, FairnessMode.DEFAULT_MAX_BARGES, adaptiveSpin);
+
+        customLock.lock();
+        Thread thread1 = new Thread(customLock::lock);
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+        customLock.unlock();
+        thread1.join();
+        Thread.sleep(20);
+        Assertions.assertTrue(customLock.forceUnlock(thread1));
+
+        customLock.lock();
+        customLock.unlock();
+        Assertions.assertEquals(4000L, adaptiveSpin.getSpinNanos());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitMode.class)
+    public void test_waitModesExcludeThreads(WaitMode waitMode) throws Exception {
+        AdaptiveSpin adaptiveSpin = new AdaptiveSpin(waitMode, 4);
+        adaptiveSpin.recordHold(5000L);
+        CustomLock customLock = new CustomLock(FairnessMode.NON_FAIR, FairnessMode.DEFAULT_MAX_BARGES, adaptiveSpin);
+        int[] counter = new int[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    customLock.lock();
+                    try {
+                        counter[0]++;
+                    } finally {
+                        customLock.unlock();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(10_000);
+            Assertions.assertFalse(thread.isAlive());
+        }
+        Assertions.assertEquals(40_000, counter[0]);
+        Assertions.assertTrue(getWaiters(customLock).isEmpty());
+    }
+
+    @Test
+    public void test_requestIsGrantedByReleasingThread() throws Exception {
+        CustomLock customLock = new CustomLock();
+        Object owner = new Object();
+        AtomicReference<Thread> grantedIn = new AtomicReference<>();
+
+        Assertions.assertNull(customLock.lockFor(owner, () -> Assertions.fail("Free lock is acquired at once")));
+        Assertions.assertNull(customLock.getOwner());
+        Assertions.assertFalse(customLock.tryLock());
+        Assertions.assertThrows(IllegalMonitorStateException.class, customLock::unlock);
+
+        Thread thread1 = new Thread(() -> customLock.unlockFor(owner));
+        thread1.start();
+        thread1.join();
+        Assertions.assertTrue(customLock.tryLock());
+
+        EntityLock.Request request = customLock.lockFor(owner, () -> grantedIn.set(Thread.currentThread()));
+        Assertions.assertNotNull(request);
+        Assertions.assertEquals(1, getWaiters(customLock).size());
+        Assertions.assertNull(grantedIn.get());
+
+        customLock.unlock();
+        Assertions.assertSame(Thread.currentThread(), grantedIn.get());
+        Assertions.assertTrue(getWaiters(customLock).isEmpty());
+        Assertions.assertFalse(request.cancel());
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> customLock.unlockFor(new Object()));
+        customLock.unlockFor(owner);
+        Assertions.assertEquals(0, customLock.getExclusiveHoldCount());
+    }
+
+    @Test
+    public void test_cancelledRequestLeavesQueue() throws Exception {
+        CustomLock customLock = new CustomLock();
+        AtomicBoolean granted = new AtomicBoolean();
+        customLock.lock();
+
+        EntityLock.Request request = customLock.lockFor(new Object(), () -> granted.set(true));
+        Thread thread1 = new Thread(customLock::lock);
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+
+        Assertions.assertTrue(request.cancel());
+        Assertions.assertTrue(request.cancel());
+        customLock.unlock();
+        thread1.join(5_000);
+        Assertions.assertFalse(thread1.isAlive());
+        Assertions.assertFalse(granted.get());
+        Assertions.assertTrue(getWaiters(customLock).isEmpty());
+    }
+
+    @Test
+    public void test_requestsAndThreadsAreGrantedInOrder() throws Exception {
+        CustomLock customLock = new CustomLock(FairnessMode.FAIR);
+        Object owner1 = new Object();
+        Object owner2 = new Object();
+        ConcurrentLinkedQueue<Object> granted = new ConcurrentLinkedQueue<>();
+        customLock.lock();
+
+        customLock.lockFor(owner1, () -> granted.add(owner1));
+        Thread thread1 = new Thread(() -> {
+            customLock.lock();
+            granted.add(Thread.currentThread());
+            customLock.unlock();
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+        customLock.lockFor(owner2, () -> granted.add(owner2));
+
+        customLock.unlock();
+        Assertions.assertEquals(Collections.singletonList(owner1), new ArrayList<>(granted));
+        customLock.unlockFor(owner1);
+        thread1.join(5_000);
+        Assertions.assertFalse(thread1.isAlive());
+        Assertions.assertEquals(Arrays.asList(owner1, thread1, owner2), new ArrayList<>(granted));
+        customLock.unlockFor(owner2);
+    }
+
+    private static ConcurrentLinkedQueue<Object> getWaiters(CustomLock customLock) throws Exception {
+        Field waitersField = CustomLock.class.getDeclaredField("waiters");
+        waitersField.setAccessible(true);
+        return (ConcurrentLinkedQueue<Object>) waitersField.get(customLock);
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(state, thread.getState());
+    }
+
+}
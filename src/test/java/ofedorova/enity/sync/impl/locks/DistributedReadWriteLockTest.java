@@ -0,0 +1,151 @@
+package ofedorova.enity.sync.impl.locks;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DistributedReadWriteLockTest.
+ *
+ * @author Olga_Fedorova
+ */
+public class DistributedReadWriteLockTest {
+
+    @Test
+    public void test_slotCountIsPowerOfTwo() {
+        Assertions.assertEquals(1, new DistributedReadWriteLock(1).getSlotCount());
+        Assertions.assertEquals(8, new DistributedReadWriteLock(5).getSlotCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new DistributedReadWriteLock(0));
+    }
+
+    @Test
+    public void test_readersShareLock() throws Exception {
+        DistributedReadWriteLock lock = new DistributedReadWriteLock(4);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+
+        lock.readLock().lock();
+
+        Thread thread1 = new Thread(() -> {
+            tryAcquireForThread1.set(lock.readLock().tryLock());
+            lock.readLock().unlock();
+        });
+        thread1.start();
+        thread1.join();
+
+        Assertions.assertTrue(tryAcquireForThread1.get());
+    }
+
+    @Test
+    public void test_writerWaitsForReaders() throws Exception {
+        DistributedReadWriteLock lock = new DistributedReadWriteLock(4);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        lock.readLock().lock();
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(lock.writeLock().tryLock(100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        lock.readLock().unlock();
+
+        Thread thread2 = new Thread(() -> {
+            tryAcquireForThread1.set(lock.writeLock().tryLock());
+            lock.writeLock().unlock();
+        });
+        thread2.start();
+        thread2.join();
+        Assertions.assertTrue(tryAcquireForThread1.get());
+    }
+
+    @Test
+    public void test_parkedWriterIsWokenUpByReader() throws Exception {
+        DistributedReadWriteLock lock = new DistributedReadWriteLock(4);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+
+        lock.readLock().lock();
+
+        Thread thread1 = new Thread(() -> {
+            lock.writeLock().lock();
+            tryAcquireForThread1.set(true);
+            lock.writeLock().unlock();
+        });
+        thread1.start();
+        while (thread1.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        lock.readLock().unlock();
+        thread1.join(2000);
+
+        Assertions.assertTrue(tryAcquireForThread1.get());
+    }
+
+    @Test
+    public void test_readerWaitsForWriter() throws Exception {
+        DistributedReadWriteLock lock = new DistributedReadWriteLock(4);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lock.writeLock().lock();
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(lock.readLock().tryLock(100, TimeUnit.MILLISECONDS));
+                lock.readLock().lock();
+                latch.countDown();
+                lock.readLock().unlock();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        Assertions.assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        lock.writeLock().unlock();
+
+        Assertions.assertTrue(latch.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_writerIsReentrantAndMayRead() throws Exception {
+        DistributedReadWriteLock lock = new DistributedReadWriteLock(4);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        lock.writeLock().lock();
+        Assertions.assertTrue(lock.writeLock().tryLock());
+        lock.writeLock().unlock();
+        Assertions.assertTrue(lock.isWriteLockedByCurrentThread());
+
+        lock.readLock().lock();
+        lock.writeLock().unlock();
+        Assertions.assertFalse(lock.isWriteLockedByCurrentThread());
+
+        Thread thread1 = new Thread(() -> tryAcquireForThread1.set(lock.writeLock().tryLock()));
+        thread1.start();
+        thread1.join();
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        lock.readLock().unlock();
+    }
+
+    @Test
+    public void test_unlockWithoutLock() {
+        DistributedReadWriteLock lock = new DistributedReadWriteLock(4);
+
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> lock.readLock().unlock());
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> lock.writeLock().unlock());
+        Assertions.assertTrue(lock.writeLock().tryLock());
+    }
+}
@@ -0,0 +1,76 @@
+package ofedorova.enity.sync.impl.locks;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ExtendedReentrantReadWriteLockTest.
+ *
+ * @author Olga_Fedorova
+ */
+class ExtendedReentrantReadWriteLockTest {
+
+    @ParameterizedTest
+    @EnumSource(FairnessMode.class)
+    public void test_sharedNewcomerWithQueuedWriter(FairnessMode fairnessMode) throws Exception {
+        ExtendedReentrantReadWriteLock lock = new ExtendedReentrantReadWriteLock(fairnessMode);
+        AtomicBoolean tryAcquireForThread2 = new AtomicBoolean();
+
+        lock.lockShared();
+
+        Thread thread1 = new Thread(lock::lock);
+        thread1.start();
+        awaitQueued(lock);
+
+        Thread thread2 = new Thread(() -> {
+            tryAcquireForThread2.set(lock.tryLockShared());
+            if (tryAcquireForThread2.get()) {
+                lock.unlockShared();
+            }
+        });
+        thread2.start();
+        thread2.join();
+
+        Assertions.assertEquals(fairnessMode == FairnessMode.NON_FAIR, tryAcquireForThread2.get());
+        Assertions.assertTrue(lock.tryLockShared());
+
+        lock.unlockShared();
+        lock.unlockShared();
+        thread1.join(2000);
+        Assertions.assertEquals(thread1, lock.getOwner());
+    }
+
+    @ParameterizedTest
+    @EnumSource(FairnessMode.class)
+    public void test_writerIsReentrantWhateverFairness(FairnessMode fairnessMode) throws Exception {
+        ExtendedReentrantReadWriteLock lock = new ExtendedReentrantReadWriteLock(fairnessMode);
+
+        lock.lock();
+        Thread thread1 = new Thread(lock::lock);
+        thread1.setDaemon(true);
+        thread1.start();
+        awaitQueued(lock);
+
+        Assertions.assertTrue(lock.tryLock());
+        Assertions.assertTrue(lock.tryLock(10, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(3, lock.getWriteHoldCount());
+
+        lock.unlock();
+        lock.unlock();
+        lock.unlock();
+        thread1.join(2000);
+        Assertions.assertEquals(thread1, lock.getOwner());
+    }
+
+    private static void awaitQueued(ExtendedReentrantReadWriteLock lock) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!lock.hasQueuedThreads() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertTrue(lock.hasQueuedThreads());
+    }
+}
@@ -0,0 +1,198 @@
+package ofedorova.enity.sync.impl.locks;
+
+import ofedorova.enity.sync.EntityLock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * IntentionLockTest.
+ *
+ * @author Olga_Fedorova
+ */
+class IntentionLockTest {
+
+    @Test
+    public void test_compatibilityOfModes() {
+        String[] expected = {
+                "IS:IS IS:IX IS:S",
+                "IX:IS IX:IX",
+                "S:IS S:S",
+                ""
+        };
+        for (IntentionMode mode : IntentionMode.values()) {
+            StringBuilder compatible = new StringBuilder();
+            for (IntentionMode other : IntentionMode.values()) {
+                Assertions.assertEquals(mode.isCompatibleWith(other), other.isCompatibleWith(mode));
+                if (mode.isCompatibleWith(other)) {
+                    compatible.append(compatible.length() == 0 ? "" : " ").append(mode).append(':').append(other);
+                }
+            }
+            Assertions.assertEquals(expected[mode.ordinal()], compatible.toString());
+        }
+    }
+
+    @Test
+    public void test_conflictingModesOfTwoThreads() throws Exception {
+        IntentionLock lock = new IntentionLock();
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+        AtomicBoolean tryAcquireSharedForThread1 = new AtomicBoolean();
+
+        lock.lock(IntentionMode.IS);
+
+        Thread thread1 = new Thread(() -> {
+            tryAcquireForThread1.set(lock.tryLock(IntentionMode.X));
+            tryAcquireSharedForThread1.set(lock.tryLock(IntentionMode.S));
+            if (tryAcquireSharedForThread1.get()) {
+                lock.unlock(IntentionMode.S);
+            }
+        });
+        thread1.start();
+        thread1.join();
+
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        Assertions.assertTrue(tryAcquireSharedForThread1.get());
+        Assertions.assertEquals(1, lock.getHoldCountOfAllThreads(IntentionMode.IS));
+        Assertions.assertEquals(0, lock.getHoldCountOfAllThreads(IntentionMode.S));
+    }
+
+    @Test
+    public void test_ownHoldsDoNotConflict() {
+        IntentionLock lock = new IntentionLock();
+
+        lock.lock(IntentionMode.IX);
+        lock.lock(IntentionMode.IX);
+        Assertions.assertTrue(lock.tryLock(IntentionMode.X));
+        Assertions.assertTrue(lock.tryLock(IntentionMode.S));
+        Assertions.assertEquals(2, lock.getHoldCount(IntentionMode.IX));
+
+        lock.unlock(IntentionMode.S);
+        lock.unlock(IntentionMode.X);
+        lock.unlock(IntentionMode.IX);
+        lock.unlock(IntentionMode.IX);
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> lock.unlock(IntentionMode.IX));
+    }
+
+    @Test
+    public void test_waiterIsGrantedAfterRelease() throws Exception {
+        IntentionLock lock = new IntentionLock();
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+
+        lock.lock(IntentionMode.X);
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(lock.tryLock(IntentionMode.IX, 10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.TIMED_WAITING);
+
+        lock.unlock(IntentionMode.X);
+        thread1.join(2000);
+        Assertions.assertTrue(tryAcquireForThread1.get());
+        Assertions.assertEquals(1, lock.getHoldCountOfAllThreads(IntentionMode.IX));
+    }
+
+    @Test
+    public void test_newcomerDoesNotOvertakeConflictingWaiter() throws Exception {
+        IntentionLock lock = new IntentionLock();
+        AtomicBoolean tryAcquireForThread2 = new AtomicBoolean(true);
+
+        lock.lock(IntentionMode.IX);
+
+        Thread thread1 = new Thread(() -> {
+            lock.lock(IntentionMode.X);
+            lock.unlock(IntentionMode.X);
+        });
+        thread1.start();
+        awaitState(thread1, Thread.State.WAITING);
+
+        Thread thread2 = new Thread(() -> tryAcquireForThread2.set(lock.tryLock(IntentionMode.IX)));
+        thread2.start();
+        thread2.join();
+        Assertions.assertFalse(tryAcquireForThread2.get());
+
+        Assertions.assertTrue(lock.tryLock(IntentionMode.IX));
+        lock.unlock(IntentionMode.IX);
+        lock.unlock(IntentionMode.IX);
+        thread1.join(2000);
+        Assertions.assertFalse(thread1.isAlive());
+    }
+
+    @Test
+    public void test_tryLockWithTimeout() throws Exception {
+        IntentionLock lock = new IntentionLock();
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        lock.lock(IntentionMode.S);
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(lock.tryLock(IntentionMode.IX, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        Assertions.assertTrue(lock.tryLock(IntentionMode.IS));
+    }
+
+    @Test
+    public void test_requestIsGrantedWhenConflictingModeIsReleased() throws Exception {
+        IntentionLock lock = new IntentionLock();
+        Object owner = new Object();
+        AtomicReference<Thread> grantedIn = new AtomicReference<>();
+
+        Assertions.assertNull(lock.lockFor(owner, IntentionMode.IX, () -> Assertions.fail("Free lock is granted at once")));
+        Assertions.assertEquals(1, lock.getHoldCountOfAllThreads(IntentionMode.IX));
+        Assertions.assertFalse(lock.tryLock(IntentionMode.S));
+        lock.unlockFor(owner, IntentionMode.IX);
+
+        Thread thread1 = new Thread(() -> lock.lock(IntentionMode.S));
+        thread1.start();
+        thread1.join();
+        EntityLock.Request request = lock.lockFor(owner, IntentionMode.IX, () -> grantedIn.set(Thread.currentThread()));
+        Assertions.assertNotNull(request);
+        Assertions.assertNull(grantedIn.get());
+
+        Thread thread2 = new Thread(() -> lock.unlockFor(thread1, IntentionMode.S));
+        thread2.start();
+        thread2.join();
+        Assertions.assertSame(thread2, grantedIn.get());
+        Assertions.assertFalse(request.cancel());
+        Assertions.assertFalse(lock.tryLock(IntentionMode.X));
+        lock.unlockFor(owner, IntentionMode.IX);
+        Assertions.assertTrue(lock.tryLock(IntentionMode.X));
+    }
+
+    @Test
+    public void test_cancelledRequestIsNotGranted() {
+        IntentionLock lock = new IntentionLock();
+        AtomicBoolean granted = new AtomicBoolean();
+        lock.lock(IntentionMode.X);
+
+        EntityLock.Request request = lock.lockFor(new Object(), IntentionMode.IS, () -> granted.set(true));
+        Assertions.assertTrue(request.cancel());
+        lock.unlock(IntentionMode.X);
+
+        Assertions.assertFalse(granted.get());
+        Assertions.assertEquals(0, lock.getHoldCountOfAllThreads(IntentionMode.IS));
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(state, thread.getState());
+    }
+}
@@ -0,0 +1,124 @@
+package ofedorova.enity.sync.impl.locks;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LongLockTableTest.
+ *
+ * @author Olga_Fedorova
+ */
+public class LongLockTableTest {
+
+    @Test
+    public void test_segmentCountIsPowerOfTwo() {
+        Assertions.assertEquals(1, new LongLockTable(1).getSegmentCount());
+        Assertions.assertEquals(8, new LongLockTable(5).getSegmentCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LongLockTable(0));
+    }
+
+    @Test
+    public void test_reentrantLocking() {
+        LongLockTable table = new LongLockTable(1);
+
+        Assertions.assertTrue(table.tryLock(0L));
+        Assertions.assertTrue(table.tryLock(0L));
+        table.unlock(0L);
+        Assertions.assertSame(Thread.currentThread(), table.getOwner(0L));
+
+        table.unlock(0L);
+        Assertions.assertNull(table.getOwner(0L));
+        Assertions.assertEquals(0, table.size());
+        Assertions.assertThrows(IllegalMonitorStateException.class, () -> table.unlock(0L));
+    }
+
+    @Test
+    public void test_slotsSurviveGrowthAndRemoval() {
+        LongLockTable table = new LongLockTable(1);
+        Set<Long> lockedKeys = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextInt(500) * 0x100000000L;
+            if (lockedKeys.add(key)) {
+                Assertions.assertTrue(table.tryLock(key));
+            } else {
+                table.unlock(key);
+                lockedKeys.remove(key);
+            }
+            Assertions.assertEquals(lockedKeys.size(), table.size());
+        }
+        for (long key : lockedKeys) {
+            Assertions.assertSame(Thread.currentThread(), table.getOwner(key));
+            table.unlock(key);
+        }
+        Assertions.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void test_tryLockWithTimeout() throws Exception {
+        LongLockTable table = new LongLockTable(1);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean(true);
+
+        table.lock(1L);
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                tryAcquireForThread1.set(table.tryLock(1L, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        thread1.start();
+        thread1.join();
+
+        Assertions.assertFalse(tryAcquireForThread1.get());
+        table.unlock(1L);
+        Assertions.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void test_waiterIsWokenUpByUnlock() throws Exception {
+        LongLockTable table = new LongLockTable(1);
+        AtomicBoolean tryAcquireForThread1 = new AtomicBoolean();
+
+        table.lock(1L);
+        table.lock(2L);
+
+        Thread thread1 = new Thread(() -> {
+            table.lock(1L);
+            tryAcquireForThread1.set(true);
+            table.unlock(1L);
+        });
+        thread1.start();
+        while (thread1.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        table.unlock(2L);
+        Assertions.assertFalse(tryAcquireForThread1.get());
+
+        table.unlock(1L);
+        thread1.join(2000);
+        Assertions.assertTrue(tryAcquireForThread1.get());
+        Assertions.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void test_lockViewReadsOwner() {
+        LongLockTable table = new LongLockTable(1);
+
+        table.lock(1L);
+
+        Assertions.assertSame(Thread.currentThread(), table.getLock(1L).getOwner());
+        Assertions.assertTrue(table.getLock(1L).getSharedOwners().isEmpty());
+        Assertions.assertNull(table.getLock(2L).getOwner());
+        Assertions.assertEquals("1", table.getLock(1L).toString());
+    }
+}
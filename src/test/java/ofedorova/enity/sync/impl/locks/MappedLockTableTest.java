@@ -0,0 +1,121 @@
+package ofedorova.enity.sync.impl.locks;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MappedLockTableTest.
+ *
+ * @author Olga_Fedorova
+ */
+public class MappedLockTableTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void test_slotCountIsTakenFromFile() throws IOException {
+        Path file = tempDir.resolve("locks");
+        try (MappedLockTable table = new MappedLockTable(file, 5)) {
+            Assertions.assertEquals(8, table.getSlotCount());
+        }
+        try (MappedLockTable table = new MappedLockTable(file, 1024)) {
+            Assertions.assertEquals(8, table.getSlotCount());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedLockTable(file, 0));
+
+        Path notTable = tempDir.resolve("not-table");
+        Files.write(notTable, new byte[64]);
+        Assertions.assertThrows(IOException.class, () -> new MappedLockTable(notTable));
+    }
+
+    @Test
+    public void test_reentrantLocking() throws IOException {
+        try (MappedLockTable table = new MappedLockTable(tempDir.resolve("locks"), 16)) {
+            Assertions.assertEquals(-1L, table.getOwnerPid(1L));
+            Assertions.assertTrue(table.tryLock(1L));
+            Assertions.assertTrue(table.tryLock(1L));
+            Assertions.assertEquals(ProcessHandle.current().pid(), table.getOwnerPid(1L));
+
+            table.unlock(1L);
+            Assertions.assertTrue(table.isHeldByCurrentThread(1L));
+            table.unlock(1L);
+            Assertions.assertFalse(table.isHeldByCurrentThread(1L));
+            Assertions.assertEquals(-1L, table.getOwnerPid(1L));
+            Assertions.assertThrows(IllegalMonitorStateException.class, () -> table.unlock(1L));
+        }
+    }
+
+    /*
+    Two tables map one file like two processes, T1 holds the key in the first table,
+    T2 waits for it in the second table
+     */
+    @Test
+    public void test_tablesOfOneFileShareLocks() throws Exception {
+        Path file = tempDir.resolve("locks");
+        try (MappedLockTable table1 = new MappedLockTable(file, 16); MappedLockTable table2 = new MappedLockTable(file)) {
+            CountDownLatch locked = new CountDownLatch(1);
+            AtomicBoolean isLockedByThread2 = new AtomicBoolean();
+
+            table1.lock(1L);
+            Thread thread2 = new Thread(() -> {
+                try {
+                    Assertions.assertFalse(table2.tryLock(1L, 50, TimeUnit.MILLISECONDS));
+                    locked.countDown();
+                    table2.lock(1L);
+                    isLockedByThread2.set(true);
+                    table2.unlock(1L);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            });
+            thread2.start();
+            Assertions.assertTrue(locked.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            Assertions.assertFalse(isLockedByThread2.get());
+
+            table1.unlock(1L);
+            thread2.join(5000);
+            Assertions.assertTrue(isLockedByThread2.get());
+            Assertions.assertEquals(-1L, table1.getOwnerPid(1L));
+        }
+    }
+
+    @Test
+    public void test_lockKeepsInterruptStatus() throws Exception {
+        try (MappedLockTable table = new MappedLockTable(tempDir.resolve("locks"), 16)) {
+            AtomicBoolean interrupted = new AtomicBoolean();
+            AtomicBoolean interruptedException = new AtomicBoolean();
+
+            table.lock(1L);
+            Thread thread1 = new Thread(() -> {
+                table.lock(1L);
+                interrupted.set(Thread.currentThread().isInterrupted());
+                table.unlock(1L);
+                try {
+                    table.lockInterruptibly(1L);
+                } catch (InterruptedException e) {
+                    interruptedException.set(true);
+                }
+            });
+            thread1.start();
+            Thread.sleep(50);
+            thread1.interrupt();
+            Thread.sleep(50);
+            Assertions.assertTrue(thread1.isAlive());
+
+            table.unlock(1L);
+            thread1.join(5000);
+            Assertions.assertTrue(interrupted.get());
+            Assertions.assertTrue(interruptedException.get());
+        }
+    }
+}
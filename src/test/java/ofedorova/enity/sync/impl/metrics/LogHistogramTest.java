@@ -0,0 +1,43 @@
+package ofedorova.enity.sync.impl.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * LogHistogramTest.
+ *
+ * @author Olga_Fedorova
+ */
+public class LogHistogramTest {
+
+    @Test
+    public void test_bucketsArePowersOfTwo() {
+        Assertions.assertEquals(0, LogHistogram.bucket(0));
+        Assertions.assertEquals(1, LogHistogram.bucket(1));
+        Assertions.assertEquals(2, LogHistogram.bucket(2));
+        Assertions.assertEquals(2, LogHistogram.bucket(3));
+        Assertions.assertEquals(11, LogHistogram.bucket(1024));
+        Assertions.assertEquals(63, LogHistogram.bucket(Long.MAX_VALUE));
+        Assertions.assertEquals(3, LogHistogram.getBucketUpperBound(2));
+        Assertions.assertEquals(Long.MAX_VALUE, LogHistogram.getBucketUpperBound(63));
+    }
+
+    @Test
+    public void test_percentiles() {
+        LogHistogram histogram = new LogHistogram();
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(99));
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(100_000);
+        histogram.record(-1);
+
+        Assertions.assertEquals(101, histogram.getCount());
+        Assertions.assertEquals(99 * 100 + 100_000, histogram.getSum());
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(0));
+        Assertions.assertEquals(127, histogram.getValueAtPercentile(50));
+        Assertions.assertEquals(131_071, histogram.getValueAtPercentile(100));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+}
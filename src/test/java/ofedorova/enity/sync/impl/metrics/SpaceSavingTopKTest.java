@@ -0,0 +1,51 @@
+package ofedorova.enity.sync.impl.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * SpaceSavingTopKTest.
+ *
+ * @author Olga_Fedorova
+ */
+public class SpaceSavingTopKTest {
+
+    @Test
+    public void test_countsItemsBelowCapacity() {
+        SpaceSavingTopK<String> topK = new SpaceSavingTopK<>(3);
+        topK.add("a");
+        topK.add("b");
+        topK.add("a");
+
+        List<SpaceSavingTopK.Counter<String>> counters = topK.getTopK();
+        Assertions.assertEquals(2, counters.size());
+        Assertions.assertEquals("a", counters.get(0).getItem());
+        Assertions.assertEquals(2, counters.get(0).getCount());
+        Assertions.assertEquals(0, counters.get(0).getError());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SpaceSavingTopK<String>(0));
+    }
+
+    @Test
+    public void test_heavyHittersSurviveLongTail() {
+        SpaceSavingTopK<Long> topK = new SpaceSavingTopK<>(4);
+        for (long i = 0; i < 10_000; i++) {
+            topK.add(-1L);
+            if (i % 2 == 0) {
+                topK.add(-2L);
+            }
+            topK.add(i);
+        }
+
+        List<SpaceSavingTopK.Counter<Long>> counters = topK.getTopK();
+        Assertions.assertEquals(4, counters.size());
+        Assertions.assertEquals(-1L, counters.get(0).getItem());
+        Assertions.assertEquals(-2L, counters.get(1).getItem());
+        for (SpaceSavingTopK.Counter<Long> counter : counters) {
+            Assertions.assertTrue(counter.getCount() - counter.getError() <= 10_000);
+        }
+        Assertions.assertTrue(counters.get(0).getCount() >= 10_000);
+        Assertions.assertTrue(counters.get(1).getCount() >= 5_000);
+    }
+}
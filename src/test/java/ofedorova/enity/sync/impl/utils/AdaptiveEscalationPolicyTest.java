@@ -0,0 +1,129 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.impl.lockers.EntityCustomLockImpl;
+import ofedorova.enity.sync.impl.lockers.EntityLockerBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AdaptiveEscalationPolicyTest.
+ *
+ * @author Olga_Fedorova
+ */
+class AdaptiveEscalationPolicyTest {
+
+    @Test
+    public void test_harmfulEscalationRaisesThresholdOnce() {
+        AdaptiveEscalationPolicy policy = new AdaptiveEscalationPolicy(4, 64, 1, TimeUnit.HOURS);
+
+        Assertions.assertFalse(policy.shouldEscalate(3));
+        Assertions.assertTrue(policy.shouldEscalate(4));
+
+        policy.recordEscalation(4, 0L, true);
+        Assertions.assertEquals(4, policy.getThreshold());
+        policy.recordWaitForEscalation(1000L);
+        policy.recordWaitForEscalation(1000L);
+        Assertions.assertEquals(8, policy.getThreshold());
+        Assertions.assertFalse(policy.shouldEscalate(4));
+
+        policy.recordEscalation(8, 1000L, true);
+        policy.recordWaitForEscalation(1000L);
+        Assertions.assertEquals(16, policy.getThreshold());
+        policy.recordEscalation(16, 0L, false);
+        Assertions.assertEquals(32, policy.getThreshold());
+
+        for (int i = 0; i < 4; i++) {
+            policy.recordEscalation(64, 1000L, true);
+        }
+        Assertions.assertEquals(64, policy.getThreshold());
+    }
+
+    @Test
+    public void test_harmlessEscalationsLowerThreshold() {
+        AdaptiveEscalationPolicy policy = new AdaptiveEscalationPolicy(4, 64, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 4; i++) {
+            policy.recordEscalation(4, 1000L, true);
+        }
+        Assertions.assertEquals(64, policy.getThreshold());
+
+        policy.recordEscalation(64, 0L, true);
+        Assertions.assertEquals(60, policy.getThreshold());
+        for (int i = 0; i < 100; i++) {
+            policy.recordEscalation(64, 0L, true);
+        }
+        Assertions.assertEquals(4, policy.getThreshold());
+    }
+
+    @Test
+    public void test_raisedThresholdDecays() throws InterruptedException {
+        AdaptiveEscalationPolicy policy = new AdaptiveEscalationPolicy(4, 64, 20, TimeUnit.MILLISECONDS);
+        policy.recordEscalation(4, 1000L, true);
+        Assertions.assertEquals(8, policy.getThreshold());
+        Assertions.assertFalse(policy.shouldEscalate(7));
+        Assertions.assertTrue(policy.shouldEscalate(8));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (policy.getThreshold() > 4 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(4, policy.getThreshold());
+        Assertions.assertTrue(policy.shouldEscalate(4));
+    }
+
+    @Test
+    public void test_checkDoesNotChangeThreshold() {
+        AdaptiveEscalationPolicy policy = new AdaptiveEscalationPolicy(4, 64, 1, TimeUnit.HOURS);
+        policy.recordEscalation(4, 1000L, true);
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertFalse(policy.shouldEscalate(4 + i % 4));
+        }
+        Assertions.assertEquals(8, policy.getThreshold());
+    }
+
+    @Test
+    public void test_invalidArguments() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveEscalationPolicy(0, 64, 1, TimeUnit.SECONDS));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveEscalationPolicy(8, 4, 1, TimeUnit.SECONDS));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveEscalationPolicy(4, 8, 0, TimeUnit.SECONDS));
+    }
+
+    /*
+    T1 escalates on 2 entities, T2 waits for the global lock and raises the threshold,
+    then T1 holds 2 entities without escalation and T2 locks its entity
+     */
+    @Test
+    public void test_lockerStopsEscalationThatBlocksOtherThreads() throws Exception {
+        AdaptiveEscalationPolicy policy = new AdaptiveEscalationPolicy(2, 64, 1, TimeUnit.HOURS);
+        EntityCustomLockImpl<Long> locker = new EntityLockerBuilder<Long>().escalationPolicy(policy).buildCustom();
+
+        locker.lock(1L);
+        locker.lock(2L);
+        Thread thread2 = new Thread(() -> {
+            locker.lock(3L);
+            locker.unlock(3L);
+        });
+        thread2.start();
+        thread2.join(200);
+        Assertions.assertTrue(thread2.isAlive());
+
+        locker.unlock(2L);
+        locker.unlock(1L);
+        thread2.join(2000);
+        Assertions.assertFalse(thread2.isAlive());
+        Assertions.assertEquals(4, policy.getThreshold());
+
+        locker.lock(1L);
+        locker.lock(2L);
+        Thread thread3 = new Thread(() -> {
+            locker.lock(3L);
+            locker.unlock(3L);
+        });
+        thread3.start();
+        thread3.join(2000);
+        Assertions.assertFalse(thread3.isAlive());
+        locker.unlock(2L);
+        locker.unlock(1L);
+    }
+}
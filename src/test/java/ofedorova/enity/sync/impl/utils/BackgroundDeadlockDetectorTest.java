@@ -0,0 +1,165 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.EntityLocker;
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.lockers.DeadlockPolicy;
+import ofedorova.enity.sync.impl.lockers.EntityCustomLockImpl;
+import ofedorova.enity.sync.impl.lockers.EntityLockerBuilder;
+import ofedorova.enity.sync.impl.lockers.GlobalLockMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * BackgroundDeadlockDetectorTest.
+ *
+ * @author Olga_Fedorova
+ */
+class BackgroundDeadlockDetectorTest {
+
+    /*
+    T1 holds R1, wait R2
+    T2 holds R2, wait R1
+
+    the detector aborts the wait of one thread, the other one locks
+     */
+    @Test
+    public void test_detectorBreaksCycle() {
+        BackgroundDeadlockDetector detector = new BackgroundDeadlockDetector(10, TimeUnit.MILLISECONDS, VictimPolicy.FEWEST_LOCKS);
+        EntityLocker<Long> locker = new EntityLockerBuilder<Long>().countGlobalLockEscalation(10).deadlockChecker(detector).buildCustom();
+        AtomicBoolean deadlockForThread1 = new AtomicBoolean();
+        AtomicBoolean deadlockForThread2 = new AtomicBoolean();
+        AtomicBoolean interruptedThread2 = new AtomicBoolean(true);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            locker.lock(1L);
+            Thread thread2 = new Thread(() -> {
+                locker.lock(2L);
+                try {
+                    locker.lock(1L);
+                    locker.unlock(1L);
+                } catch (DeadlockException e) {
+                    deadlockForThread2.set(true);
+                } finally {
+                    interruptedThread2.set(Thread.currentThread().isInterrupted());
+                    locker.unlock(2L);
+                }
+            });
+            thread2.start();
+            awaitWaiting(thread2);
+
+            try {
+                locker.lock(2L);
+                locker.unlock(2L);
+            } catch (DeadlockException e) {
+                deadlockForThread1.set(true);
+            } finally {
+                locker.unlock(1L);
+            }
+            thread2.join();
+        });
+
+        Assertions.assertTrue(deadlockForThread1.get() ^ deadlockForThread2.get());
+        Assertions.assertFalse(interruptedThread2.get());
+        Assertions.assertEquals(1, detector.getVictimCount());
+    }
+
+    /*
+    T1 holds R4
+    T2 holds R1, R2, R3, wait R4
+    T1 wait R1
+
+    T1 holds fewer locks, T2 is younger
+     */
+    @ParameterizedTest
+    @EnumSource(VictimPolicy.class)
+    public void test_victimIsChosenByPolicy(VictimPolicy victimPolicy) {
+        BackgroundDeadlockDetector detector = new BackgroundDeadlockDetector(10, TimeUnit.MILLISECONDS, victimPolicy);
+        EntityLocker<Long> locker = new EntityLockerBuilder<Long>().countGlobalLockEscalation(10).deadlockChecker(detector).buildReentrant();
+        AtomicBoolean deadlockForThread1 = new AtomicBoolean();
+        AtomicBoolean deadlockForThread2 = new AtomicBoolean();
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch locked = new CountDownLatch(1);
+            locker.lock(4L);
+            Thread thread2 = new Thread(() -> {
+                locker.lock(1L);
+                locker.lock(2L);
+                locker.lock(3L);
+                locked.countDown();
+                try {
+                    locker.lock(4L);
+                    locker.unlock(4L);
+                } catch (DeadlockException e) {
+                    deadlockForThread2.set(true);
+                } finally {
+                    locker.unlock(3L);
+                    locker.unlock(2L);
+                    locker.unlock(1L);
+                }
+            });
+            thread2.start();
+            locked.await();
+            awaitWaiting(thread2);
+
+            try {
+                locker.lock(1L);
+                locker.unlock(1L);
+            } catch (DeadlockException e) {
+                deadlockForThread1.set(true);
+            } finally {
+                locker.unlock(4L);
+            }
+            thread2.join();
+        });
+
+        Assertions.assertEquals(victimPolicy == VictimPolicy.FEWEST_LOCKS, deadlockForThread1.get());
+        Assertions.assertEquals(victimPolicy == VictimPolicy.YOUNGEST, deadlockForThread2.get());
+    }
+
+    @Test
+    public void test_waitWithoutCycleIsNotAborted() throws Exception {
+        BackgroundDeadlockDetector detector = new BackgroundDeadlockDetector(10, TimeUnit.MILLISECONDS, VictimPolicy.FEWEST_LOCKS);
+        EntityLocker<Long> locker = new EntityLockerBuilder<Long>().countGlobalLockEscalation(10).deadlockChecker(detector).buildCustom();
+        AtomicBoolean lockedByThread2 = new AtomicBoolean();
+
+        locker.lock(1L);
+        Thread thread2 = new Thread(() -> {
+            locker.lock(1L);
+            lockedByThread2.set(true);
+            locker.unlock(1L);
+        });
+        thread2.start();
+        awaitWaiting(thread2);
+        thread2.join(100);
+        Assertions.assertFalse(lockedByThread2.get());
+
+        locker.unlock(1L);
+        thread2.join(5000);
+        Assertions.assertTrue(lockedByThread2.get());
+        Assertions.assertEquals(0, detector.getVictimCount());
+    }
+
+    @Test
+    public void test_policyCreatesDetector() {
+        Assertions.assertDoesNotThrow(() -> {
+            EntityLocker<Long> locker = new EntityCustomLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.BACKGROUND_DETECTION);
+            locker.lock(1L);
+            locker.unlock(1L);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new BackgroundDeadlockDetector(0, TimeUnit.MILLISECONDS, VictimPolicy.YOUNGEST));
+    }
+
+    private static void awaitWaiting(Thread thread) {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -54,6 +55,29 @@ class DeadlockCheckerImplTest {
 
     }
 
+    @Test
+    public void test_locksOfThreadPublishedWhileMoreThanOneHeld() throws Exception {
+        DeadlockCheckerImpl deadlockChecker = new DeadlockCheckerImpl();
+        Field locksByThreadsField = DeadlockCheckerImpl.class.getDeclaredField("locksByThreads");
+        locksByThreadsField.setAccessible(true);
+        Map<Thread, Set<EntityLockInfo>> locksByThreads = (Map<Thread, Set<EntityLockInfo>>) locksByThreadsField.get(deadlockChecker);
+
+        EntityLockInfo r1 = new EntityLockInfo("r1", new EntityTestLock(Thread.currentThread(), Sets.newHashSet()));
+        EntityLockInfo r2 = new EntityLockInfo("r2", new EntityTestLock(Thread.currentThread(), Sets.newHashSet()));
+
+        deadlockChecker.beforeLock(r1, false);
+        Assertions.assertTrue(locksByThreads.isEmpty());
+
+        deadlockChecker.beforeLock(r2, false);
+        Assertions.assertEquals(Sets.newHashSet(r1, r2), locksByThreads.get(Thread.currentThread()));
+
+        deadlockChecker.afterUnlock(r1);
+        Assertions.assertTrue(locksByThreads.isEmpty());
+
+        deadlockChecker.afterUnlock(r2);
+        Assertions.assertTrue(locksByThreads.isEmpty());
+    }
+
     /*
     T1 holds R1, R4
     T2 holds R2, R5, wait R3
@@ -236,6 +260,11 @@ class DeadlockCheckerImplTest {
             return ownerThread;
         }
 
+        @Override
+        public Set<Thread> getSharedOwners() {
+            return Collections.emptySet();
+        }
+
         @Override
         public Set<Thread> getOwnerAndQueuedThreads() {
             Set<Thread> result = new HashSet<>();
@@ -273,6 +302,26 @@ class DeadlockCheckerImplTest {
         public Condition newCondition() {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public void lockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared(long l, TimeUnit timeUnit) throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unlockShared() {
+            throw new UnsupportedOperationException();
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package ofedorova.enity.sync.impl.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TimingWheelTest.
+ *
+ * @author Olga_Fedorova
+ */
+class TimingWheelTest {
+
+    @Test
+    public void test_timeoutExpiresNotBeforeDelay() throws Exception {
+        TimingWheel timingWheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong expiredAt = new AtomicLong();
+
+        long start = System.nanoTime();
+        TimingWheel.Timeout timeout = timingWheel.schedule(() -> {
+            expiredAt.set(System.nanoTime());
+            latch.countDown();
+        }, 100, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(expiredAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assertions.assertTrue(timeout.isExpired());
+        Assertions.assertFalse(timeout.cancel());
+        timingWheel.stop();
+    }
+
+    @Test
+    public void test_cancelledTimeoutDoesNotExpire() throws Exception {
+        TimingWheel timingWheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 8);
+        AtomicInteger expired = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        TimingWheel.Timeout cancelled = timingWheel.schedule(expired::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        timingWheel.schedule(latch::countDown, 150, TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(cancelled.cancel());
+        Assertions.assertFalse(cancelled.cancel());
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, expired.get());
+        Assertions.assertTrue(cancelled.isCancelled());
+        timingWheel.stop();
+    }
+
+    @Test
+    public void test_timeoutsOfSeveralRoundsExpireInOrder() throws Exception {
+        TimingWheel timingWheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 4);
+        List<Integer> expired = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(10);
+
+        for (int i = 9; i >= 0; i--) {
+            int delay = i;
+            timingWheel.schedule(() -> {
+                expired.add(delay);
+                latch.countDown();
+            }, 20L * i, TimeUnit.MILLISECONDS);
+        }
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), expired);
+        timingWheel.stop();
+    }
+
+    @Test
+    public void test_exceptionOfTaskDoesNotStopWheel() throws Exception {
+        TimingWheel timingWheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 4);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        timingWheel.schedule(() -> {
+            throw new IllegalStateException("expected by the test");
+        }, 1, TimeUnit.MILLISECONDS);
+        timingWheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        timingWheel.stop();
+        Assertions.assertThrows(IllegalStateException.class, () -> timingWheel.schedule(() -> { }, 1, TimeUnit.MILLISECONDS));
+    }
+}
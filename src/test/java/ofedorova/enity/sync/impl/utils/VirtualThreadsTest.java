@@ -0,0 +1,29 @@
+package ofedorova.enity.sync.impl.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * VirtualThreadsTest.
+ *
+ * @author Olga_Fedorova
+ */
+class VirtualThreadsTest {
+
+    @Test
+    public void test_supportDependsOnRuntime() {
+        Assertions.assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+        Assertions.assertFalse(VirtualThreads.isVirtual(Thread.currentThread()));
+    }
+
+    @Test
+    public void test_factoryCreatesVirtualThreads() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.factory("test-"));
+            return;
+        }
+        Thread thread = VirtualThreads.factory("test-").newThread(() -> { });
+        Assertions.assertTrue(VirtualThreads.isVirtual(thread));
+        Assertions.assertEquals("test-1", thread.getName());
+    }
+}
@@ -0,0 +1,244 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.lockers.DeadlockPolicy;
+import ofedorova.enity.sync.impl.lockers.EntityCustomLockImpl;
+import ofedorova.enity.sync.impl.lockers.GlobalLockMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WaitDieDeadlockCheckerTest.
+ *
+ * The main thread locks its first entity before other threads start, so it is the oldest thread.
+ *
+ * @author Olga_Fedorova
+ */
+class WaitDieDeadlockCheckerTest {
+
+    /*
+    T1 holds R1
+    T2 holds R2
+
+    T2 tries to block R1 and dies, T2 is younger
+     */
+    @Test
+    public void test_youngerThreadDies() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.WAIT_DIE);
+        AtomicBoolean deadlockForThread2 = new AtomicBoolean();
+
+        locker.lock(1L);
+        Thread thread2 = new Thread(() -> {
+            locker.lock(2L);
+            try {
+                locker.lock(1L);
+            } catch (DeadlockException e) {
+                deadlockForThread2.set(true);
+            } finally {
+                locker.unlock(2L);
+            }
+        });
+        thread2.start();
+        thread2.join(5000);
+        locker.unlock(1L);
+
+        Assertions.assertTrue(deadlockForThread2.get());
+    }
+
+    /*
+    T1 holds R1
+    T2 holds R2
+
+    T1 tries to block R1 and waits, T1 is older
+     */
+    @Test
+    public void test_olderThreadWaits() {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.WAIT_DIE);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch latch = new CountDownLatch(1);
+
+            locker.lock(1L);
+            Thread thread2 = new Thread(() -> {
+                locker.lock(2L);
+                latch.countDown();
+                sleep(100);
+                locker.unlock(2L);
+            });
+            thread2.start();
+            latch.await();
+
+            locker.lock(2L);
+            locker.unlock(2L);
+            locker.unlock(1L);
+            thread2.join();
+        });
+    }
+
+    /*
+    T1 holds R1
+
+    T2 tries to block R1 and waits, T2 does not hold other locks
+     */
+    @Test
+    public void test_youngerThreadWithoutOtherLocksWaits() throws Exception {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.WAIT_DIE);
+        AtomicBoolean lockedByThread2 = new AtomicBoolean();
+
+        locker.lock(1L);
+        Thread thread2 = new Thread(() -> {
+            locker.lock(1L);
+            lockedByThread2.set(true);
+            locker.unlock(1L);
+        });
+        thread2.start();
+        thread2.join(100);
+        Assertions.assertFalse(lockedByThread2.get());
+
+        locker.unlock(1L);
+        thread2.join(5000);
+        Assertions.assertTrue(lockedByThread2.get());
+    }
+
+    /*
+    T1 holds R1
+    T2 holds R2, tries to block R1 and dies, releases R2
+    T3 holds R3
+    T2 holds R2 again, tries to block R3 and waits, T2 keeps its age
+     */
+    @Test
+    public void test_abortedThreadKeepsAge() {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.WAIT_DIE);
+        AtomicBoolean deadlockForThread2 = new AtomicBoolean();
+        AtomicBoolean lockedByThread2 = new AtomicBoolean();
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch died = new CountDownLatch(1);
+            CountDownLatch locked = new CountDownLatch(1);
+
+            locker.lock(1L);
+            Thread thread2 = new Thread(() -> {
+                try {
+                    locker.lock(2L);
+                    try {
+                        locker.lock(1L);
+                    } catch (DeadlockException e) {
+                        deadlockForThread2.set(true);
+                    } finally {
+                        locker.unlock(2L);
+                    }
+                    died.countDown();
+                    locked.await();
+                    locker.lock(2L);
+                    locker.lock(3L);
+                    lockedByThread2.set(true);
+                    locker.unlock(3L);
+                    locker.unlock(2L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread2.start();
+            died.await();
+            locker.unlock(1L);
+
+            Thread thread3 = new Thread(() -> {
+                locker.lock(3L);
+                locked.countDown();
+                sleep(100);
+                locker.unlock(3L);
+            });
+            thread3.start();
+            thread2.join();
+            thread3.join();
+        });
+
+        Assertions.assertTrue(deadlockForThread2.get());
+        Assertions.assertTrue(lockedByThread2.get());
+    }
+
+    /*
+    T3 holds R3, T2 holds R2, T1 holds R1, T3 is the oldest
+    T3 and T2 wait R1 in this order, both are older than T1
+    T1 releases R1, T3 gets it, T2 now waits for an older thread and dies
+     */
+    @Test
+    public void test_queuedThreadDiesWhenOlderThreadGetsLock() {
+        EntityCustomLockImpl<Long> locker = new EntityCustomLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.WAIT_DIE);
+        AtomicBoolean deadlockForThread2 = new AtomicBoolean();
+        AtomicBoolean lockedByThread3 = new AtomicBoolean();
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch locked3 = new CountDownLatch(1);
+            CountDownLatch locked2 = new CountDownLatch(1);
+            CountDownLatch locked1 = new CountDownLatch(1);
+            CountDownLatch released = new CountDownLatch(1);
+
+            Thread thread3 = new Thread(() -> {
+                try {
+                    locker.lock(3L);
+                    locked3.countDown();
+                    locked1.await();
+                    locker.lock(1L);
+                    lockedByThread3.set(true);
+                    released.await();
+                    locker.unlock(1L);
+                    locker.unlock(3L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Thread thread2 = new Thread(() -> {
+                try {
+                    locked3.await();
+                    locker.lock(2L);
+                    locked2.countDown();
+                    locked1.await();
+                    awaitWaiting(thread3);
+                    try {
+                        locker.lock(1L);
+                        locker.unlock(1L);
+                    } catch (DeadlockException e) {
+                        deadlockForThread2.set(true);
+                    } finally {
+                        locker.unlock(2L);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread3.start();
+            thread2.start();
+            locked2.await();
+            locker.lock(1L);
+            locked1.countDown();
+            awaitWaiting(thread3);
+            awaitWaiting(thread2);
+            locker.unlock(1L);
+            thread2.join();
+            released.countDown();
+            thread3.join();
+        });
+
+        Assertions.assertTrue(deadlockForThread2.get());
+        Assertions.assertTrue(lockedByThread3.get());
+    }
+
+    private static void awaitWaiting(Thread thread) {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package ofedorova.enity.sync.impl.utils;
+
+import com.google.common.collect.Sets;
+import ofedorova.enity.sync.EntityLock;
+import ofedorova.enity.sync.EntityLockInfo;
+import ofedorova.enity.sync.exception.DeadlockException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * WaitForGraphDeadlockCheckerTest.
+ *
+ * @author Olga_Fedorova
+ */
+class WaitForGraphDeadlockCheckerTest {
+
+    /*
+    T1 holds R1, wait R2
+    T2 holds R2
+
+    T2 tries to block R3 held by T3
+     */
+    @Test
+    public void test_notDeadlockWhenOwnerIsNotWaiting() throws Exception {
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+        Map<Thread, EntityLockInfo> waitingLocks = getWaitingLocks(deadlockChecker);
+
+        Thread t1 = new Thread();
+        Thread t2 = Thread.currentThread();
+        Thread t3 = new Thread();
+
+        EntityLockInfo r2 = new EntityLockInfo("r2", new EntityTestLock(t2));
+        EntityLockInfo r3 = new EntityLockInfo("r3", new EntityTestLock(t3));
+
+        waitingLocks.put(t1, r2);
+
+        deadlockChecker.beforeWait(r3, true);
+        Assertions.assertSame(r3, waitingLocks.get(t2));
+
+        deadlockChecker.afterWait(r3);
+        Assertions.assertNull(waitingLocks.get(t2));
+    }
+
+    /*
+    T1 holds R1, wait R3
+    T2 holds R2, wait R1
+    T3 holds R3
+
+    T3 tries to block R2
+     */
+    @Test
+    public void test_deadlockThroughChain() throws Exception {
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+        Map<Thread, EntityLockInfo> waitingLocks = getWaitingLocks(deadlockChecker);
+
+        Thread t1 = new Thread();
+        Thread t2 = new Thread();
+        Thread t3 = Thread.currentThread();
+
+        EntityLockInfo r1 = new EntityLockInfo("r1", new EntityTestLock(t1));
+        EntityLockInfo r2 = new EntityLockInfo("r2", new EntityTestLock(t2));
+        EntityLockInfo r3 = new EntityLockInfo("r3", new EntityTestLock(t3));
+
+        waitingLocks.put(t1, r3);
+        waitingLocks.put(t2, r1);
+
+        DeadlockException exception = Assertions.assertThrows(DeadlockException.class, () -> deadlockChecker.beforeWait(r2, true));
+        Assertions.assertEquals("Deadlock entities: [r2, r1, r3]", exception.getMessage());
+        Assertions.assertNull(waitingLocks.get(t3));
+    }
+
+    /*
+    T1 holds R1, wait R2
+    T2 holds R2
+
+    T2 tries to block R1
+     */
+    @Test
+    public void test_deadlockOfTwoThreads() throws Exception {
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+        Map<Thread, EntityLockInfo> waitingLocks = getWaitingLocks(deadlockChecker);
+
+        Thread t1 = new Thread();
+        Thread t2 = Thread.currentThread();
+
+        EntityLockInfo r1 = new EntityLockInfo("r1", new EntityTestLock(t1));
+        EntityLockInfo r2 = new EntityLockInfo("r2", new EntityTestLock(t2));
+
+        waitingLocks.put(t1, r2);
+
+        Assertions.assertThrows(DeadlockException.class, () -> deadlockChecker.beforeWait(r1, true));
+    }
+
+    /*
+    T1 holds R1, wait R2
+    T2 holds R2, wait R1
+
+    T3 tries to block R1, the cycle does not contain T3
+     */
+    @Test
+    public void test_notDeadlockWhenCycleDoesNotContainCurrentThread() throws Exception {
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+        Map<Thread, EntityLockInfo> waitingLocks = getWaitingLocks(deadlockChecker);
+
+        Thread t1 = new Thread();
+        Thread t2 = new Thread();
+
+        EntityLockInfo r1 = new EntityLockInfo("r1", new EntityTestLock(t1));
+        EntityLockInfo r2 = new EntityLockInfo("r2", new EntityTestLock(t2));
+
+        waitingLocks.put(t1, r2);
+        waitingLocks.put(t2, r1);
+
+        deadlockChecker.beforeWait(r1, true);
+    }
+
+    /*
+    T1 holds R1, wait R2
+    T2 holds R2
+
+    T2 tries to block R1 without deadlock prevention
+     */
+    @Test
+    public void test_notCheckedWithoutPrevention() throws Exception {
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+        Map<Thread, EntityLockInfo> waitingLocks = getWaitingLocks(deadlockChecker);
+
+        Thread t1 = new Thread();
+        Thread t2 = Thread.currentThread();
+
+        EntityLockInfo r1 = new EntityLockInfo("r1", new EntityTestLock(t1));
+        EntityLockInfo r2 = new EntityLockInfo("r2", new EntityTestLock(t2));
+
+        waitingLocks.put(t1, r2);
+
+        deadlockChecker.beforeWait(r1, false);
+        Assertions.assertSame(r1, waitingLocks.get(t2));
+    }
+
+    /*
+    T1 holds R1 shared, wait R3
+    T2 holds R1 shared
+    T3 holds R3
+
+    T3 tries to block R1 exclusively
+     */
+    @Test
+    public void test_deadlockThroughSharedOwner() throws Exception {
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+        Map<Thread, EntityLockInfo> waitingLocks = getWaitingLocks(deadlockChecker);
+
+        Thread t1 = new Thread();
+        Thread t2 = new Thread();
+        Thread t3 = Thread.currentThread();
+
+        EntityLockInfo r1 = new EntityLockInfo("r1", new EntityTestLock(null, Sets.newHashSet(t2, t1)));
+        EntityLockInfo r3 = new EntityLockInfo("r3", new EntityTestLock(t3));
+
+        waitingLocks.put(t1, r3);
+
+        DeadlockException exception = Assertions.assertThrows(DeadlockException.class, () -> deadlockChecker.beforeWait(r1, true));
+        Assertions.assertEquals("Deadlock entities: [r1, r3]", exception.getMessage());
+    }
+
+    /*
+    T1 holds R1 shared
+
+    T1 tries to block R1 exclusively
+     */
+    @Test
+    public void test_deadlockOnUpgradeOfSharedLock() throws Exception {
+        WaitForGraphDeadlockChecker deadlockChecker = new WaitForGraphDeadlockChecker();
+
+        EntityLockInfo r1 = new EntityLockInfo("r1", new EntityTestLock(null, Sets.newHashSet(Thread.currentThread())));
+
+        Assertions.assertThrows(DeadlockException.class, () -> deadlockChecker.beforeWait(r1, true));
+    }
+
+    private static Map<Thread, EntityLockInfo> getWaitingLocks(WaitForGraphDeadlockChecker deadlockChecker) throws Exception {
+        Field waitingLocksField = WaitForGraphDeadlockChecker.class.getDeclaredField("waitingLocks");
+        waitingLocksField.setAccessible(true);
+        return (Map<Thread, EntityLockInfo>) waitingLocksField.get(deadlockChecker);
+    }
+
+    private static class EntityTestLock implements EntityLock {
+
+        private final Thread ownerThread;
+        private final Set<Thread> sharedOwners;
+
+        private EntityTestLock(Thread ownerThread) {
+            this(ownerThread, Collections.emptySet());
+        }
+
+        private EntityTestLock(Thread ownerThread, Set<Thread> sharedOwners) {
+            this.ownerThread = ownerThread;
+            this.sharedOwners = sharedOwners;
+        }
+
+        @Override
+        public Thread getOwner() {
+            return ownerThread;
+        }
+
+        @Override
+        public Set<Thread> getSharedOwners() {
+            return sharedOwners;
+        }
+
+        @Override
+        public Set<Thread> getOwnerAndQueuedThreads() {
+            Set<Thread> result = new HashSet<>(sharedOwners);
+            if (ownerThread != null) {
+                result.add(ownerThread);
+            }
+            return result;
+        }
+
+        @Override
+        public void lock() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLock() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLock(long l, TimeUnit timeUnit) throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unlock() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void lockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean tryLockShared(long l, TimeUnit timeUnit) throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void unlockShared() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ofedorova.enity.sync.impl.utils;
+
+import ofedorova.enity.sync.EntityLocker;
+import ofedorova.enity.sync.exception.DeadlockException;
+import ofedorova.enity.sync.impl.lockers.DeadlockPolicy;
+import ofedorova.enity.sync.impl.lockers.EntityCustomLockImpl;
+import ofedorova.enity.sync.impl.lockers.EntityExtendedReentrantLockImpl;
+import ofedorova.enity.sync.impl.lockers.GlobalLockMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * WoundWaitDeadlockCheckerTest.
+ *
+ * The main thread locks its first entity before other threads start, so it is the oldest thread.
+ *
+ * @author Olga_Fedorova
+ */
+class WoundWaitDeadlockCheckerTest {
+
+    /*
+    T1 holds R1
+    T2 holds R2, wait R1
+
+    T1 tries to block R2, wounds T2 and waits
+     */
+    @ParameterizedTest
+    @MethodSource("lockerProvider")
+    public void test_olderThreadWoundsWaitingThread(EntityLocker<Long> locker) {
+        AtomicBoolean deadlockForThread2 = new AtomicBoolean();
+        AtomicBoolean interruptedThread2 = new AtomicBoolean(true);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            locker.lock(1L);
+            Thread thread2 = new Thread(() -> {
+                locker.lock(2L);
+                try {
+                    locker.lock(1L);
+                } catch (DeadlockException e) {
+                    deadlockForThread2.set(true);
+                } finally {
+                    interruptedThread2.set(Thread.currentThread().isInterrupted());
+                    locker.unlock(2L);
+                }
+            });
+            thread2.start();
+            awaitWaiting(thread2);
+
+            locker.lock(2L);
+            locker.unlock(2L);
+            locker.unlock(1L);
+            thread2.join();
+        });
+
+        Assertions.assertTrue(deadlockForThread2.get());
+        Assertions.assertFalse(interruptedThread2.get());
+    }
+
+    /*
+    T1 holds R1
+    T2 holds R2
+
+    T1 tries to block R2, wounds T2 and waits
+    T2 tries to block R1 and is aborted without waiting
+     */
+    @ParameterizedTest
+    @MethodSource("lockerProvider")
+    public void test_woundedThreadAbortedOnNextWait(EntityLocker<Long> locker) {
+        AtomicBoolean deadlockForThread2 = new AtomicBoolean();
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch wounded = new CountDownLatch(1);
+
+            locker.lock(1L);
+            Thread thread2 = new Thread(() -> {
+                locker.lock(2L);
+                locked.countDown();
+                try {
+                    wounded.await();
+                    locker.lock(1L);
+                } catch (DeadlockException e) {
+                    deadlockForThread2.set(true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    locker.unlock(2L);
+                }
+            });
+            thread2.start();
+            locked.await();
+
+            Thread thread1 = Thread.currentThread();
+            Thread woundedWatcher = new Thread(() -> {
+                awaitWaiting(thread1);
+                wounded.countDown();
+            });
+            woundedWatcher.start();
+
+            locker.lock(2L);
+            locker.unlock(2L);
+            locker.unlock(1L);
+            thread2.join();
+        });
+
+        Assertions.assertTrue(deadlockForThread2.get());
+    }
+
+    /*
+    T1 holds R1
+    T2 holds R2, wait R1
+
+    T2 waits for the older thread and is not wounded
+     */
+    @ParameterizedTest
+    @MethodSource("lockerProvider")
+    public void test_youngerThreadWaits(EntityLocker<Long> locker) throws Exception {
+        AtomicBoolean lockedByThread2 = new AtomicBoolean();
+
+        locker.lock(1L);
+        Thread thread2 = new Thread(() -> {
+            locker.lock(2L);
+            locker.lock(1L);
+            lockedByThread2.set(true);
+            locker.unlock(1L);
+            locker.unlock(2L);
+        });
+        thread2.start();
+        awaitWaiting(thread2);
+
+        locker.unlock(1L);
+        thread2.join(5000);
+        Assertions.assertTrue(lockedByThread2.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource("lockerProvider")
+    public void test_interruptDoesNotAbortWait(EntityLocker<Long> locker) throws Exception {
+        AtomicBoolean lockedByThread2 = new AtomicBoolean();
+        AtomicBoolean interruptedThread2 = new AtomicBoolean();
+
+        locker.lock(1L);
+        Thread thread2 = new Thread(() -> {
+            locker.lock(1L);
+            lockedByThread2.set(true);
+            interruptedThread2.set(Thread.currentThread().isInterrupted());
+            locker.unlock(1L);
+        });
+        thread2.start();
+        awaitWaiting(thread2);
+        thread2.interrupt();
+        thread2.join(100);
+        Assertions.assertFalse(lockedByThread2.get());
+
+        locker.unlock(1L);
+        thread2.join(5000);
+        Assertions.assertTrue(lockedByThread2.get());
+        Assertions.assertTrue(interruptedThread2.get());
+    }
+
+    private static Stream<EntityLocker<Long>> lockerProvider() {
+        return Stream.of(
+                new EntityCustomLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.WOUND_WAIT),
+                new EntityExtendedReentrantLockImpl<>(10, GlobalLockMode.SHARED_READERS, DeadlockPolicy.WOUND_WAIT)
+        );
+    }
+
+    private static void awaitWaiting(Thread thread) {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+    }
+}